@@ -31,6 +31,7 @@ import org.lambdamatic.analyzer.ast.SerializedLambdaInfo;
 import org.lambdamatic.analyzer.ast.StatementExpressionsDelegateVisitor;
 import org.lambdamatic.analyzer.ast.node.NodeUtils;
 import org.lambdamatic.analyzer.ast.node.CapturedArgument;
+import org.lambdamatic.analyzer.ast.node.CompactLambdaExpression;
 import org.lambdamatic.analyzer.ast.node.ControlFlowStatement;
 import org.lambdamatic.analyzer.ast.node.Expression;
 import org.lambdamatic.analyzer.ast.node.Expression.ExpressionType;
@@ -72,9 +73,11 @@ public class LambdaExpressionAnalyzer {
   private static LambdaExpressionAnalyzer instance = new LambdaExpressionAnalyzer();
 
   /**
-   * {@link Expression} indexed by their functional implementation className.methodName.
+   * {@link Expression} indexed by their functional implementation className.methodName. Expressions
+   * are kept in their {@link CompactLambdaExpression} form to reduce the memory footprint of the
+   * cache.
    */
-  private final Map<String, LambdaExpression> cache = new HashMap<>();
+  private final Map<String, CompactLambdaExpression> cache = new HashMap<>();
 
   private final Set<LambdaExpressionAnalyzerListener> listeners = new HashSet<>();
 
@@ -206,11 +209,10 @@ public class LambdaExpressionAnalyzer {
         } else {
           this.listeners.stream().forEach(l -> l.cacheMissed(methodImplementationId));
           final LambdaExpression rawExpression = analyzeByteCode(serializedLambdaInfo);
-          this.cache.put(methodImplementationId, rawExpression);
+          this.cache.put(methodImplementationId, CompactLambdaExpression.encode(rawExpression));
         }
-        // we need to return a duplicate of the expression to be sure the original is kept
-        // *unchanged*
-        return (LambdaExpression) this.cache.get(methodImplementationId).duplicate();
+        // always return a copy, so the cached form is kept *unchanged*
+        return this.cache.get(methodImplementationId).getLambdaExpression();
       }
     } catch (IOException e) {
       throw new AnalyzeException("Failed to analyze lambda expression", e);
@@ -289,7 +291,8 @@ public class LambdaExpressionAnalyzer {
    * @param statements the {@link List} of {@link Statement} containing arguments to evaluate.
    * @param capturedArguments the actual captured arguments during the call.
    * @return the equivalent expression, where method calls on {@link CapturedArgument}s have been
-   *         replaced with their actual values.
+   *         replaced with their actual values (each distinct method call being performed only
+   *         once).
    */
   public static List<Statement> evaluateCapturedArguments(final List<Statement> statements,
       final List<CapturedArgument> capturedArguments) {
@@ -300,8 +303,12 @@ public class LambdaExpressionAnalyzer {
       // retrieve the captured arguments from the given serializedLambda
       final List<Object> capturedArgValues =
           capturedArguments.stream().map(a -> a.getValue()).collect(Collectors.toList());
-      statements.stream().forEach(s -> s.accept(new StatementExpressionsDelegateVisitor(
-          new CapturedArgumentsEvaluator(capturedArgValues))));
+      // use a single evaluator for all statements, so that a subexpression on the captured
+      // arguments is evaluated only once
+      final StatementExpressionsDelegateVisitor evaluator =
+          new StatementExpressionsDelegateVisitor(
+              new CapturedArgumentsEvaluator(capturedArgValues));
+      statements.stream().forEach(s -> s.accept(evaluator));
       // final StatementVisitor visitor = new CapturedArgumentsEvaluator(capturedArgValues);
       // return ExpressionVisitorUtil.visit(sourceExpression, visitor);
       return statements;
@@ -13,7 +13,12 @@ import static org.lambdamatic.analyzer.ast.node.Expression.ExpressionType.LOCAL_
 
 import java.lang.invoke.SerializedLambda;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 import org.lambdamatic.analyzer.ast.node.CapturedArgument;
 import org.lambdamatic.analyzer.ast.node.CapturedArgumentRef;
@@ -25,7 +30,9 @@ import org.lambdamatic.analyzer.ast.node.ExpressionVisitor;
 import org.lambdamatic.analyzer.ast.node.FieldAccess;
 import org.lambdamatic.analyzer.ast.node.LambdaExpression;
 import org.lambdamatic.analyzer.ast.node.MethodInvocation;
+import org.lambdamatic.analyzer.ast.node.NumberLiteral;
 import org.lambdamatic.analyzer.ast.node.ObjectInstance;
+import org.lambdamatic.analyzer.ast.node.Operation;
 import org.lambdamatic.analyzer.exception.AnalyzeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +41,17 @@ import org.slf4j.LoggerFactory;
  * A {@link ExpressionVisitor} that will replace the given {@link CapturedArgument} with their
  * actual values in the visited {@link Expression}.
  * 
+ * <p>
+ * The values of the {@link MethodInvocation} and {@link FieldAccess} on the captured arguments
+ * are kept during the whole visit (including in nested {@link LambdaExpression}), so that a
+ * subexpression which appears many times in the visited {@link Expression} (eg:
+ * {@code req.getMin()}) is evaluated only once. Those values are indexed by the <strong>identity
+ * </strong> of the captured instance on which the subexpression applies (the user-defined
+ * {@code equals()} and {@code hashCode()} methods are never called), so two distinct but equal
+ * captured arguments never share a value. {@link Operation}s whose operands have been replaced
+ * with {@link NumberLiteral}s are folded into constants.
+ * </p>
+ * 
  */
 public class CapturedArgumentsEvaluator extends ExpressionVisitor {
 
@@ -45,13 +63,32 @@ public class CapturedArgumentsEvaluator extends ExpressionVisitor {
    */
   private final List<Object> capturedArgs;
 
+  /**
+   * the values of the captured argument subexpressions that were already evaluated, indexed by
+   * their {@link EvaluationKey}.
+   */
+  private final Map<EvaluationKey, Object> evaluatedExpressions;
+
   /**
    * Constructor.
    * 
    * @param capturedArgs the captured arguments provided by the {@link SerializedLambda}
    */
   public CapturedArgumentsEvaluator(final List<Object> capturedArgs) {
+    this(capturedArgs, new HashMap<>());
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param capturedArgs the captured arguments provided by the {@link SerializedLambda}
+   * @param evaluatedExpressions the values of the captured argument subexpressions that were
+   *        already evaluated
+   */
+  private CapturedArgumentsEvaluator(final List<Object> capturedArgs,
+      final Map<EvaluationKey, Object> evaluatedExpressions) {
     this.capturedArgs = capturedArgs;
+    this.evaluatedExpressions = evaluatedExpressions;
   }
 
   @Override
@@ -77,7 +114,7 @@ public class CapturedArgumentsEvaluator extends ExpressionVisitor {
         || methodInvocation.anyElementMatches(LOCAL_VARIABLE)) {
       return true;
     }
-    final Object replacement = methodInvocation.evaluate();
+    final Object replacement = evaluate(methodInvocation, () -> methodInvocation.evaluate());
     final ComplexExpression parentExpression = methodInvocation.getParent();
     if (parentExpression != null) {
       parentExpression.replaceElement(methodInvocation,
@@ -89,41 +126,175 @@ public class CapturedArgumentsEvaluator extends ExpressionVisitor {
   @Override
   public boolean visitFieldAccessExpression(final FieldAccess fieldAccess) {
     if (fieldAccess.getSource().getExpressionType() == ExpressionType.OBJECT_INSTANCE) {
-      final String fieldName = fieldAccess.getFieldName();
-      try {
-        final Object source = fieldAccess.getSource().getValue();
-        final Field f = ReflectionUtils.getFieldToInvoke(source, fieldName);
-        f.setAccessible(true);
-        final Object replacement = f.get(source);
-        final ComplexExpression parentExpression = fieldAccess.getParent();
-        if (parentExpression != null) {
-          final Expression fieldAccessReplacement = ExpressionFactory.getExpression(replacement);
-          LOGGER.trace(" replacing {} ({}) with {} ({})", fieldAccess,
-              fieldAccess.getExpressionType(), fieldAccessReplacement,
-              fieldAccessReplacement.getExpressionType());
-          parentExpression.replaceElement(fieldAccess, fieldAccessReplacement);
-        }
-        // no further visiting on this (obsolete) branch of the expression tree.
-        return false;
-      } catch (NoSuchFieldException | SecurityException | IllegalAccessException
-          | IllegalArgumentException e) {
-        throw new AnalyzeException("Failed to execute method '" + fieldName
-            + "' on captured argument '" + fieldAccess.getSource().getValue() + "'", e);
+      final Object replacement = evaluate(fieldAccess, () -> getFieldValue(fieldAccess));
+      final ComplexExpression parentExpression = fieldAccess.getParent();
+      if (parentExpression != null) {
+        final Expression fieldAccessReplacement = ExpressionFactory.getExpression(replacement);
+        LOGGER.trace(" replacing {} ({}) with {} ({})", fieldAccess,
+            fieldAccess.getExpressionType(), fieldAccessReplacement,
+            fieldAccessReplacement.getExpressionType());
+        parentExpression.replaceElement(fieldAccess, fieldAccessReplacement);
       }
+      // no further visiting on this (obsolete) branch of the expression tree.
+      return false;
     }
     return super.visitFieldAccessExpression(fieldAccess);
   }
 
+  /**
+   * Retrieves the value of the field accessed in the given {@link FieldAccess}.
+   * 
+   * @param fieldAccess the {@link FieldAccess} whose source is an {@link ObjectInstance}
+   * @return the field value
+   * @throws AnalyzeException if the field could not be read
+   */
+  private static Object getFieldValue(final FieldAccess fieldAccess) {
+    final String fieldName = fieldAccess.getFieldName();
+    try {
+      final Object source = fieldAccess.getSource().getValue();
+      final Field f = ReflectionUtils.getFieldToInvoke(source, fieldName);
+      f.setAccessible(true);
+      return f.get(source);
+    } catch (NoSuchFieldException | SecurityException | IllegalAccessException
+        | IllegalArgumentException e) {
+      throw new AnalyzeException("Failed to execute method '" + fieldName
+          + "' on captured argument '" + fieldAccess.getSource().getValue() + "'", e);
+    }
+  }
+
+  @Override
+  public boolean visitOperation(final Operation operation) {
+    // manually visit both operands, first
+    operation.getLeftOperand().accept(this);
+    operation.getRightOperand().accept(this);
+    ExpressionSanitizer.foldOperation(operation);
+    // the branch was already visited
+    return false;
+  }
+
   @Override
   public boolean visitLambdaExpression(final LambdaExpression lambdaExpression) {
-    // run another CapturedArgumentsEvaluator on the given lambdaExpression
+    // run another CapturedArgumentsEvaluator on the given lambdaExpression, sharing the values
+    // that were already evaluated
     lambdaExpression.getBody().stream()
         .forEach(s -> s.accept(new StatementExpressionsDelegateVisitor(
-            new CapturedArgumentsEvaluator(this.capturedArgs))));
+            new CapturedArgumentsEvaluator(this.capturedArgs, this.evaluatedExpressions))));
     // final ComplexExpression parentExpression = lambdaExpression.getParent();
     // parentExpression.replaceElement(lambdaExpression, new LambdaExpression(evaluatedExpression,
     // lambdaExpression.getArgumentType(), lambdaExpression.getArgumentName()));
     // no need to further visit this expression.
     return false;
   }
+
+  /**
+   * Returns the value of the given {@code expression}, reusing the value of the same subexpression
+   * on the same captured instance if it was already evaluated during this visit.
+   * 
+   * @param expression the captured argument subexpression to evaluate
+   * @param evaluation the actual evaluation to perform if the same subexpression was not evaluated
+   *        yet
+   * @return the value of the given {@code expression}
+   */
+  private Object evaluate(final Expression expression, final Supplier<Object> evaluation) {
+    final EvaluationKey key = EvaluationKey.of(expression);
+    if (key == null) {
+      return evaluation.get();
+    }
+    if (this.evaluatedExpressions.containsKey(key)) {
+      LOGGER.trace(" reusing value of {}", expression);
+      return this.evaluatedExpressions.get(key);
+    }
+    final Object value = evaluation.get();
+    this.evaluatedExpressions.put(key, value);
+    return value;
+  }
+
+  /**
+   * Identifies a chain of {@link MethodInvocation}s and {@link FieldAccess}es on a captured
+   * instance: the captured instance is compared by identity, the chain elements by the
+   * {@link Method}, the field names and the literal arguments, so that no user-defined
+   * {@code equals()} or {@code hashCode()} method is called.
+   */
+  static final class EvaluationKey {
+
+    /** The captured instance on which the chain applies. */
+    private final Object root;
+
+    /** The elements of the chain, starting from the {@link #root}. */
+    private final List<Object> path;
+
+    private EvaluationKey(final Object root, final List<Object> path) {
+      this.root = root;
+      this.path = path;
+    }
+
+    /**
+     * @param expression the {@link Expression} to identify
+     * @return the {@link EvaluationKey} for the given {@link Expression}, or {@code null} if the
+     *         {@link Expression} is not a chain of {@link MethodInvocation}s and
+     *         {@link FieldAccess}es with literal arguments on an {@link ObjectInstance}.
+     */
+    static EvaluationKey of(final Expression expression) {
+      switch (expression.getExpressionType()) {
+        case OBJECT_INSTANCE:
+          return new EvaluationKey(expression.getValue(), new ArrayList<>());
+        case FIELD_ACCESS:
+          final FieldAccess fieldAccess = (FieldAccess) expression;
+          final EvaluationKey fieldAccessSourceKey = of(fieldAccess.getSource());
+          if (fieldAccessSourceKey != null) {
+            fieldAccessSourceKey.path.add(fieldAccess.getFieldName());
+          }
+          return fieldAccessSourceKey;
+        case METHOD_INVOCATION:
+          final MethodInvocation methodInvocation = (MethodInvocation) expression;
+          final EvaluationKey methodInvocationSourceKey = of(methodInvocation.getSource());
+          if (methodInvocationSourceKey == null) {
+            return null;
+          }
+          methodInvocationSourceKey.path.add(methodInvocation.getJavaMethod());
+          methodInvocationSourceKey.path.add(methodInvocation.isInverted());
+          for (Expression argument : methodInvocation.getArguments()) {
+            if (!isLiteral(argument)) {
+              return null;
+            }
+            methodInvocationSourceKey.path.add(argument.getValue());
+          }
+          return methodInvocationSourceKey;
+        default:
+          return null;
+      }
+    }
+
+    private static boolean isLiteral(final Expression expression) {
+      switch (expression.getExpressionType()) {
+        case BOOLEAN_LITERAL:
+        case CHARACTER_LITERAL:
+        case CLASS_LITERAL:
+        case ENUM_LITERAL:
+        case NULL_LITERAL:
+        case NUMBER_LITERAL:
+        case STRING_LITERAL:
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(this.root) + this.path.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof EvaluationKey)) {
+        return false;
+      }
+      final EvaluationKey other = (EvaluationKey) obj;
+      return this.root == other.root && this.path.equals(other.path);
+    }
+  }
 }
@@ -25,6 +25,8 @@ import org.lambdamatic.analyzer.ast.node.FieldAccess;
 import org.lambdamatic.analyzer.ast.node.CompoundExpression;
 import org.lambdamatic.analyzer.ast.node.CompoundExpression.CompoundExpressionOperator;
 import org.lambdamatic.analyzer.ast.node.MethodInvocation;
+import org.lambdamatic.analyzer.ast.node.NumberLiteral;
+import org.lambdamatic.analyzer.ast.node.Operation;
 import org.lambdamatic.analyzer.exception.AnalyzeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,7 +36,8 @@ import org.slf4j.LoggerFactory;
  * removed because they are not relevant in our case (they are just underlying conversion methods)
  * Finally, {@link CompoundExpression} with a boolean conditions (eg: {@link MethodInvocation} ==
  * {@link BooleanLiteral}) are simplified as well: the {@link CompoundExpression} is replaced with
- * the meaningful operand.
+ * the meaningful operand, and {@link Operation} on {@link NumberLiteral} operands are folded into
+ * constants.
  *
  * @author Xavier Coulon
  *
@@ -72,6 +75,37 @@ public class ExpressionSanitizer extends ExpressionVisitor {
     return true;
   }
 
+  /**
+   * Replaces the given {@link Operation} with its result if both operands are
+   * {@link NumberLiteral}s (once they have been visited themselves).
+   * 
+   * @param operation the {@link Operation} to fold
+   */
+  @Override
+  public boolean visitOperation(final Operation operation) {
+    // manually visit both operands, first
+    operation.getLeftOperand().accept(this);
+    operation.getRightOperand().accept(this);
+    foldOperation(operation);
+    // the branch was already visited
+    return false;
+  }
+
+  /**
+   * Replaces the given {@link Operation} with a {@link NumberLiteral} in its parent
+   * {@link Expression} if the operation can be folded.
+   * 
+   * @param operation the {@link Operation} to fold
+   * @see Operation#canBeFolded()
+   */
+  static void foldOperation(final Operation operation) {
+    if (operation.getParent() instanceof ComplexExpression && operation.canBeFolded()) {
+      final NumberLiteral constant = operation.fold();
+      LOGGER.trace(" folding {} into {}", operation, constant);
+      ((ComplexExpression) operation.getParent()).replaceElement(operation, constant);
+    }
+  }
+
   /**
    * Removes all auto-boxing methods.
    */
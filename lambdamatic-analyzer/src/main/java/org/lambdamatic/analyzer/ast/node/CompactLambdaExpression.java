@@ -0,0 +1,538 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.analyzer.ast.node;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lambdamatic.analyzer.ast.node.CompoundExpression.CompoundExpressionOperator;
+import org.lambdamatic.analyzer.ast.node.Expression.ExpressionType;
+import org.lambdamatic.analyzer.ast.node.Operation.Operator;
+import org.lambdamatic.analyzer.ast.node.Statement.StatementType;
+import org.lambdamatic.analyzer.exception.AnalyzeException;
+
+/**
+ * Compact, immutable storage form of a {@link LambdaExpression}, used to keep analyzed Lambda
+ * Expressions in cache without retaining a graph of {@link Expression} and {@link Statement} nodes
+ * (with their parent pointers, ids and lists).
+ * <p>
+ * The AST is flattened into a few primitive arrays:
+ * <ul>
+ * <li>{@code kinds}: one byte per node, holding the {@link ExpressionType} or {@link StatementType}
+ * of the node as well as its inverted flag,</li>
+ * <li>{@code offsets}: for each node, the position of its payload in the {@code operands}
+ * array,</li>
+ * <li>{@code operands}: the payload of all nodes, i.e., child node indices, children counts,
+ * operators and indices in the constant pool,</li>
+ * <li>{@code constants}: the pool of (deduplicated) values referenced by the nodes, such as
+ * {@link Class}, {@link Method}, {@link String} or {@link Number} values.</li>
+ * </ul>
+ * Node {@code 0} is always the root {@link LambdaExpression}. A new tree of {@link Expression} and
+ * {@link Statement} is built on each call to {@link #decode()}, which means that callers are free to
+ * manipulate the returned expression without altering this instance.
+ * </p>
+ * <p>
+ * {@link #getLambdaExpression()} keeps the decoded tree behind a {@link SoftReference} and returns
+ * copies of it, so that the compact form is only decoded again once the garbage collector reclaimed
+ * that tree.
+ * </p>
+ */
+public final class CompactLambdaExpression {
+
+  /** Bit set in the node kind when the node is an inverted {@link Expression}. */
+  private static final int INVERTED_FLAG = 0x80;
+
+  /** Mask to retrieve the node kind without the inverted flag. */
+  private static final int KIND_MASK = 0x7F;
+
+  /** Offset of the {@link StatementType} kinds, to distinguish them from the expression kinds. */
+  private static final int STATEMENT_KIND_OFFSET = 0x40;
+
+  /** Node index or constant index used to represent a {@code null} element. */
+  private static final int NONE = -1;
+
+  private static final ExpressionType[] EXPRESSION_TYPES = ExpressionType.values();
+
+  private static final StatementType[] STATEMENT_TYPES = StatementType.values();
+
+  private static final CompoundExpressionOperator[] COMPOUND_OPERATORS =
+      CompoundExpressionOperator.values();
+
+  private static final Operator[] OPERATORS = Operator.values();
+
+  /** The kind of each node, along with its inverted flag. */
+  private final byte[] kinds;
+
+  /** The position of each node's payload in the {@link #operands} array. */
+  private final int[] offsets;
+
+  /** The payload of all nodes. */
+  private final int[] operands;
+
+  /** The constant pool. */
+  private final Object[] constants;
+
+  /** The decoded tree, never handed out to callers (only copies of it are). */
+  private volatile SoftReference<LambdaExpression> decodedLambdaExpression =
+      new SoftReference<>(null);
+
+  private CompactLambdaExpression(final byte[] kinds, final int[] offsets, final int[] operands,
+      final Object[] constants) {
+    this.kinds = kinds;
+    this.offsets = offsets;
+    this.operands = operands;
+    this.constants = constants;
+  }
+
+  /**
+   * Encodes the given {@link LambdaExpression} into its compact form.
+   *
+   * @param lambdaExpression the expression to encode
+   * @return the corresponding {@link CompactLambdaExpression}
+   * @throws AnalyzeException if the expression contains an unsupported kind of node
+   */
+  public static CompactLambdaExpression encode(final LambdaExpression lambdaExpression) {
+    final Encoder encoder = new Encoder();
+    encoder.encodeExpression(lambdaExpression);
+    return encoder.toCompactLambdaExpression();
+  }
+
+  /**
+   * @return a new {@link LambdaExpression} tree decoded from {@code this} compact form.
+   */
+  public LambdaExpression decode() {
+    return (LambdaExpression) decodeExpression(0);
+  }
+
+  /**
+   * @return a copy of the {@link LambdaExpression} tree decoded from {@code this} compact form. The
+   *         compact form is decoded only if the tree decoded during a previous call has been
+   *         reclaimed by the garbage collector.
+   */
+  public LambdaExpression getLambdaExpression() {
+    LambdaExpression lambdaExpression = this.decodedLambdaExpression.get();
+    if (lambdaExpression == null) {
+      lambdaExpression = decode();
+      this.decodedLambdaExpression = new SoftReference<>(lambdaExpression);
+    }
+    return (LambdaExpression) lambdaExpression.duplicate();
+  }
+
+  /**
+   * @return the number of nodes ({@link Expression} and {@link Statement}) in the encoded tree.
+   */
+  public int getNodeCount() {
+    return this.kinds.length;
+  }
+
+  /**
+   * @return the number of values in the constant pool.
+   */
+  public int getConstantCount() {
+    return this.constants.length;
+  }
+
+  private Object constant(final int constantIndex) {
+    return constantIndex == NONE ? null : this.constants[constantIndex];
+  }
+
+  private List<Expression> decodeExpressions(final int offset) {
+    final int count = this.operands[offset];
+    final List<Expression> expressions = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      expressions.add(decodeExpression(this.operands[offset + i]));
+    }
+    return expressions;
+  }
+
+  private List<Statement> decodeStatements(final int offset) {
+    final int count = this.operands[offset];
+    final List<Statement> statements = new ArrayList<>(count);
+    for (int i = 1; i <= count; i++) {
+      statements.add(decodeStatement(this.operands[offset + i]));
+    }
+    return statements;
+  }
+
+  private Expression decodeExpression(final int node) {
+    if (node == NONE) {
+      return null;
+    }
+    final int kind = this.kinds[node] & KIND_MASK;
+    final boolean inverted = (this.kinds[node] & INVERTED_FLAG) != 0;
+    final int offset = this.offsets[node];
+    final int[] ops = this.operands;
+    final int id = Expression.generateId();
+    switch (EXPRESSION_TYPES[kind]) {
+      case BOOLEAN_LITERAL:
+        return new BooleanLiteral(id, (Boolean) constant(ops[offset]), inverted);
+      case CHARACTER_LITERAL:
+        return new CharacterLiteral(id, (Character) constant(ops[offset]), inverted);
+      case CLASS_LITERAL:
+        return new ClassLiteral(id, (Class<?>) constant(ops[offset]), inverted);
+      case NUMBER_LITERAL:
+        return new NumberLiteral(id, (Number) constant(ops[offset]), ops[offset + 1] != 0,
+            inverted);
+      case NULL_LITERAL:
+        return new NullLiteral(id, inverted);
+      case STRING_LITERAL:
+        return new StringLiteral(id, (String) constant(ops[offset]), inverted);
+      case ENUM_LITERAL:
+        return new EnumLiteral(id, (Enum<?>) constant(ops[offset]), inverted);
+      case CAPTURED_ARGUMENT:
+        return new CapturedArgument(id, constant(ops[offset]), inverted);
+      case OBJECT_INSTANCE:
+        return new ObjectInstance(id, constant(ops[offset]), inverted);
+      case OBJECT_INSTANCIATION:
+        final ObjectInstanciation objectInstanciation =
+            new ObjectInstanciation(id, (Class<?>) constant(ops[offset]), inverted);
+        objectInstanciation.setInitArguments(decodeExpressions(offset + 1));
+        return objectInstanciation;
+      case ARRAY_VARIABLE:
+        final int length = ops[offset + 1];
+        final ArrayVariable arrayVariable =
+            new ArrayVariable(id, (Class<?>) constant(ops[offset]), length, inverted);
+        for (int i = 0; i < length; i++) {
+          final Expression element = decodeExpression(ops[offset + 2 + i]);
+          if (element != null) {
+            arrayVariable.setElement(i, element);
+          }
+        }
+        return arrayVariable;
+      case METHOD_INVOCATION:
+        return new MethodInvocation(id, decodeExpression(ops[offset]),
+            (Method) constant(ops[offset + 1]), (Class<?>) constant(ops[offset + 2]),
+            decodeExpressions(offset + 3), inverted);
+      case FIELD_ACCESS:
+        return new FieldAccess(id, decodeExpression(ops[offset]), (String) constant(ops[offset + 1]),
+            inverted);
+      case COMPOUND:
+        return new CompoundExpression(id, COMPOUND_OPERATORS[ops[offset]],
+            decodeExpressions(offset + 1), inverted);
+      case INSTANCE_OF:
+        return new InstanceOf(id, decodeExpression(ops[offset]), (Type) constant(ops[offset + 1]),
+            inverted);
+      case LOCAL_VARIABLE:
+        return new LocalVariable(id, ops[offset], (String) constant(ops[offset + 1]),
+            (Class<?>) constant(ops[offset + 2]), inverted);
+      case CAPTURED_ARGUMENT_REF:
+        return new CapturedArgumentRef(id, ops[offset], (Class<?>) constant(ops[offset + 1]),
+            inverted);
+      case LAMBDA_EXPRESSION:
+        return new LambdaExpression(id, decodeStatements(offset + 2),
+            (Class<?>) constant(ops[offset]), (String) constant(ops[offset + 1]));
+      case ASSIGNMENT:
+        return new Assignment(id, decodeExpression(ops[offset]), decodeExpression(ops[offset + 1]),
+            inverted);
+      case OPERATION:
+        return new Operation(id, OPERATORS[ops[offset]], decodeExpression(ops[offset + 1]),
+            decodeExpression(ops[offset + 2]), inverted);
+      case ARRAY_ELEMENT_ACCESS:
+        return new ArrayElementAccess(id, (FieldAccess) decodeExpression(ops[offset]),
+            (String) constant(ops[offset + 1]), (Class<?>) constant(ops[offset + 2]), inverted);
+      default:
+        throw new AnalyzeException("Unexpected expression kind: " + EXPRESSION_TYPES[kind]);
+    }
+  }
+
+  private Statement decodeStatement(final int node) {
+    final int kind = (this.kinds[node] & KIND_MASK) - STATEMENT_KIND_OFFSET;
+    final int offset = this.offsets[node];
+    switch (STATEMENT_TYPES[kind]) {
+      case EXPRESSION_STMT:
+        return new ExpressionStatement(decodeExpression(this.operands[offset]));
+      case RETURN_STMT:
+        return new ReturnStatement(decodeExpression(this.operands[offset]));
+      case CONTROL_FLOW_STMT:
+        final int thenOffset = offset + 1;
+        final int elseOffset = thenOffset + 1 + this.operands[thenOffset];
+        return new ControlFlowStatement(decodeExpression(this.operands[offset]),
+            decodeStatements(thenOffset), decodeStatements(elseOffset));
+      default:
+        throw new AnalyzeException("Unexpected statement kind: " + STATEMENT_TYPES[kind]);
+    }
+  }
+
+  /**
+   * Flattens a tree of {@link Expression} and {@link Statement} into the arrays of a
+   * {@link CompactLambdaExpression}. Nodes are numbered in pre-order, but since the payload of a
+   * node refers to the indices of its children, it is written once all children have been encoded.
+   */
+  private static class Encoder {
+
+    private byte[] kinds = new byte[16];
+
+    private int[] offsets = new int[16];
+
+    private int nodeCount = 0;
+
+    private int[] operands = new int[64];
+
+    private int operandCount = 0;
+
+    private final List<Object> constants = new ArrayList<>();
+
+    /** indices of the literal constants, deduplicated by equality. */
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+
+    /**
+     * indices of the captured arguments and object instances, deduplicated by identity so that
+     * decoding returns the very instances that were captured.
+     */
+    private final Map<Object, Integer> instanceIndices = new IdentityHashMap<>();
+
+    CompactLambdaExpression toCompactLambdaExpression() {
+      return new CompactLambdaExpression(Arrays.copyOf(this.kinds, this.nodeCount),
+          Arrays.copyOf(this.offsets, this.nodeCount),
+          Arrays.copyOf(this.operands, this.operandCount), this.constants.toArray());
+    }
+
+    private int newNode(final int kind) {
+      if (this.nodeCount == this.kinds.length) {
+        this.kinds = Arrays.copyOf(this.kinds, this.nodeCount * 2);
+        this.offsets = Arrays.copyOf(this.offsets, this.nodeCount * 2);
+      }
+      this.kinds[this.nodeCount] = (byte) kind;
+      return this.nodeCount++;
+    }
+
+    private void startPayload(final int node) {
+      this.offsets[node] = this.operandCount;
+    }
+
+    private void write(final int value) {
+      if (this.operandCount == this.operands.length) {
+        this.operands = Arrays.copyOf(this.operands, this.operandCount * 2);
+      }
+      this.operands[this.operandCount++] = value;
+    }
+
+    private void write(final int[] values) {
+      write(values.length);
+      for (int value : values) {
+        write(value);
+      }
+    }
+
+    private int constant(final Object value) {
+      return constant(value, this.constantIndices);
+    }
+
+    private int instance(final Object value) {
+      return constant(value, this.instanceIndices);
+    }
+
+    private int constant(final Object value, final Map<Object, Integer> indices) {
+      if (value == null) {
+        return NONE;
+      }
+      final Integer existingIndex = indices.get(value);
+      if (existingIndex != null) {
+        return existingIndex;
+      }
+      final int index = this.constants.size();
+      this.constants.add(value);
+      indices.put(value, index);
+      return index;
+    }
+
+    private int[] encodeExpressions(final List<Expression> expressions) {
+      final int[] nodes = new int[expressions.size()];
+      for (int i = 0; i < nodes.length; i++) {
+        nodes[i] = encodeExpression(expressions.get(i));
+      }
+      return nodes;
+    }
+
+    private int[] encodeStatements(final List<Statement> statements) {
+      final int[] nodes = new int[statements.size()];
+      for (int i = 0; i < nodes.length; i++) {
+        nodes[i] = encodeStatement(statements.get(i));
+      }
+      return nodes;
+    }
+
+    int encodeExpression(final Expression expression) {
+      if (expression == null) {
+        return NONE;
+      }
+      final ExpressionType expressionType = expression.getExpressionType();
+      final int node = newNode(
+          expressionType.ordinal() | (expression.isInverted() ? INVERTED_FLAG : 0));
+      switch (expressionType) {
+        case BOOLEAN_LITERAL:
+        case CHARACTER_LITERAL:
+        case CLASS_LITERAL:
+        case STRING_LITERAL:
+        case ENUM_LITERAL:
+          final int value = constant(expression.getValue());
+          startPayload(node);
+          write(value);
+          break;
+        case CAPTURED_ARGUMENT:
+        case OBJECT_INSTANCE:
+          final int instance = instance(expression.getValue());
+          startPayload(node);
+          write(instance);
+          break;
+        case NUMBER_LITERAL:
+          final NumberLiteral numberLiteral = (NumberLiteral) expression;
+          final int number = constant(numberLiteral.getValue());
+          startPayload(node);
+          write(number);
+          write(numberLiteral.isPrimitiveType() ? 1 : 0);
+          break;
+        case NULL_LITERAL:
+          startPayload(node);
+          break;
+        case OBJECT_INSTANCIATION:
+          final ObjectInstanciation objectInstanciation = (ObjectInstanciation) expression;
+          final int instanceType = constant(objectInstanciation.getJavaType());
+          final int[] initArguments = encodeExpressions(objectInstanciation.getArguments());
+          startPayload(node);
+          write(instanceType);
+          write(initArguments);
+          break;
+        case ARRAY_VARIABLE:
+          final ArrayVariable arrayVariable = (ArrayVariable) expression;
+          final int arrayType = constant(arrayVariable.getJavaType());
+          final int[] elements = encodeExpressions(Arrays.asList(arrayVariable.getElements()));
+          startPayload(node);
+          write(arrayType);
+          write(elements);
+          break;
+        case METHOD_INVOCATION:
+          final MethodInvocation methodInvocation = (MethodInvocation) expression;
+          final int methodSource = encodeExpression(methodInvocation.getSource());
+          final int javaMethod = constant(methodInvocation.getJavaMethod());
+          final int returnType = constant(methodInvocation.getReturnType());
+          final int[] arguments = encodeExpressions(methodInvocation.getArguments());
+          startPayload(node);
+          write(methodSource);
+          write(javaMethod);
+          write(returnType);
+          write(arguments);
+          break;
+        case FIELD_ACCESS:
+          final FieldAccess fieldAccess = (FieldAccess) expression;
+          final int fieldSource = encodeExpression(fieldAccess.getSource());
+          final int fieldName = constant(fieldAccess.getFieldName());
+          startPayload(node);
+          write(fieldSource);
+          write(fieldName);
+          break;
+        case COMPOUND:
+          final CompoundExpression compoundExpression = (CompoundExpression) expression;
+          final int[] compoundOperands = encodeExpressions(compoundExpression.getOperands());
+          startPayload(node);
+          write(compoundExpression.getOperator().ordinal());
+          write(compoundOperands);
+          break;
+        case INSTANCE_OF:
+          final InstanceOf instanceOf = (InstanceOf) expression;
+          final int instanceOfExpression = encodeExpression(instanceOf.getExpression());
+          final int instanceOfType = constant(instanceOf.getType());
+          startPayload(node);
+          write(instanceOfExpression);
+          write(instanceOfType);
+          break;
+        case LOCAL_VARIABLE:
+          final LocalVariable localVariable = (LocalVariable) expression;
+          final int variableName = constant(localVariable.getName());
+          final int variableType = constant(localVariable.getType());
+          startPayload(node);
+          write(localVariable.getIndex());
+          write(variableName);
+          write(variableType);
+          break;
+        case CAPTURED_ARGUMENT_REF:
+          final CapturedArgumentRef capturedArgumentRef = (CapturedArgumentRef) expression;
+          final int capturedArgumentType = constant(capturedArgumentRef.getJavaType());
+          startPayload(node);
+          write(capturedArgumentRef.getArgumentIndex());
+          write(capturedArgumentType);
+          break;
+        case LAMBDA_EXPRESSION:
+          final LambdaExpression lambdaExpression = (LambdaExpression) expression;
+          final int argumentType = constant(lambdaExpression.getArgumentType());
+          final int argumentName = constant(lambdaExpression.getArgumentName());
+          final int[] body = encodeStatements(lambdaExpression.getBody());
+          startPayload(node);
+          write(argumentType);
+          write(argumentName);
+          write(body);
+          break;
+        case ASSIGNMENT:
+          final Assignment assignment = (Assignment) expression;
+          final int assignmentSource = encodeExpression(assignment.getSource());
+          final int assignedValue = encodeExpression(assignment.getAssignedValue());
+          startPayload(node);
+          write(assignmentSource);
+          write(assignedValue);
+          break;
+        case OPERATION:
+          final Operation operation = (Operation) expression;
+          final int leftOperand = encodeExpression(operation.getLeftOperand());
+          final int rightOperand = encodeExpression(operation.getRightOperand());
+          startPayload(node);
+          write(operation.getOperator().ordinal());
+          write(leftOperand);
+          write(rightOperand);
+          break;
+        case ARRAY_ELEMENT_ACCESS:
+          final ArrayElementAccess arrayElementAccess = (ArrayElementAccess) expression;
+          final int sourceField = encodeExpression(arrayElementAccess.getSourceField());
+          final int elementIndex = constant(arrayElementAccess.getIndex());
+          final int elementType = constant(arrayElementAccess.getJavaType());
+          startPayload(node);
+          write(sourceField);
+          write(elementIndex);
+          write(elementType);
+          break;
+        default:
+          throw new AnalyzeException("Unexpected expression kind: " + expressionType);
+      }
+      return node;
+    }
+
+    int encodeStatement(final Statement statement) {
+      final StatementType statementType = statement.getStatementType();
+      final int node = newNode(STATEMENT_KIND_OFFSET + statementType.ordinal());
+      switch (statementType) {
+        case EXPRESSION_STMT:
+        case RETURN_STMT:
+          final int expression = encodeExpression(((SimpleStatement) statement).getExpression());
+          startPayload(node);
+          write(expression);
+          break;
+        case CONTROL_FLOW_STMT:
+          final ControlFlowStatement controlFlowStatement = (ControlFlowStatement) statement;
+          final int controlFlowExpression =
+              encodeExpression(controlFlowStatement.getControlFlowExpression());
+          final int[] thenStatements = encodeStatements(controlFlowStatement.getThenStatements());
+          final int[] elseStatements = encodeStatements(controlFlowStatement.getElseStatements());
+          startPayload(node);
+          write(controlFlowExpression);
+          write(thenStatements);
+          write(elseStatements);
+          break;
+        default:
+          throw new AnalyzeException("Unexpected statement kind: " + statementType);
+      }
+      return node;
+    }
+  }
+
+}
@@ -70,6 +70,8 @@ public abstract class ExpressionVisitor {
           return visitLocalVariable((LocalVariable) expr);
         case LAMBDA_EXPRESSION:
           return visitLambdaExpression((LambdaExpression) expr);
+        case OPERATION:
+          return visitOperation((Operation) expr);
         default:
           break;
       }
@@ -87,6 +89,16 @@ public abstract class ExpressionVisitor {
     return true;
   }
 
+  /**
+   * @param expr the {@link Operation} to visit.
+   * @return <code>true</code> to visit any existing child expressions, <code>false</code>
+   *         otherwise. <code>true</code> by default. Can be overridden.
+   */
+  @SuppressWarnings("static-method")
+  public boolean visitOperation(final Operation expr) {
+    return true;
+  }
+
   /**
    * @param expr the {@link LambdaExpression} to visit.
    * @return <code>true</code> to visit any existing child expressions, <code>false</code>
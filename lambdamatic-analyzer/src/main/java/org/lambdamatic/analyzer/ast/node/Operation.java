@@ -146,6 +146,68 @@ public class Operation extends ComplexExpression {
     }
   }
 
+  /**
+   * Checks if {@code this} {@link Operation} can be replaced with a single {@link NumberLiteral},
+   * ie, if both operands are {@link NumberLiteral} and the operation would not fail at runtime (eg:
+   * integral division by zero).
+   * 
+   * @return {@code true} if this operation can be folded into a constant, {@code false} otherwise.
+   * @see Operation#fold()
+   */
+  public boolean canBeFolded() {
+    if (this.leftOperand.getExpressionType() != ExpressionType.NUMBER_LITERAL
+        || this.rightOperand.getExpressionType() != ExpressionType.NUMBER_LITERAL) {
+      return false;
+    }
+    try {
+      getFoldedValue();
+      return true;
+    } catch (ArithmeticException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Folds {@code this} {@link Operation} into a constant.
+   * 
+   * @return a {@link NumberLiteral} holding the result of this operation.
+   * @throws AnalyzeException if this operation cannot be folded
+   * @see Operation#canBeFolded()
+   */
+  public NumberLiteral fold() {
+    if (!canBeFolded()) {
+      throw new AnalyzeException("Operation '" + this + "' cannot be folded into a constant");
+    }
+    final NumberLiteral leftLiteral = (NumberLiteral) this.leftOperand;
+    final NumberLiteral rightLiteral = (NumberLiteral) this.rightOperand;
+    final Number value = getFoldedValue();
+    return new NumberLiteral(value, leftLiteral.isPrimitiveType() && rightLiteral.isPrimitiveType()
+        && !MathUtils.isArbitraryPrecision(value));
+  }
+
+  /**
+   * @return the value of {@code this} Operation, with the type that the Java compiler would give it
+   *         (binary numeric promotion of both operands).
+   * @throws AnalyzeException if the operator is not supported
+   */
+  private Number getFoldedValue() {
+    final Number leftValue = (Number) this.leftOperand.getValue();
+    final Number rightValue = (Number) this.rightOperand.getValue();
+    switch (this.operator) {
+      case ADD:
+        return MathUtils.promotedAdd(leftValue, rightValue);
+      case SUBTRACT:
+        return MathUtils.promotedSubtract(leftValue, rightValue);
+      case MULTIPLY:
+        return MathUtils.promotedMultiply(leftValue, rightValue);
+      case DIVIDE:
+        return MathUtils.promotedDivide(leftValue, rightValue);
+      default:
+        throw new AnalyzeException("Operator '" + this.operator
+            + "' is not supported while trying to evaluate the operation.");
+    }
+  }
+
   @Override
   public void accept(final ExpressionVisitor visitor) {
     if (visitor.visit(this)) {
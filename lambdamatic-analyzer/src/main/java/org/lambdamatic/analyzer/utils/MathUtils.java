@@ -86,6 +86,104 @@ public class MathUtils {
     }
   }
 
+  /**
+   * Adds the <code>right</code> value to the <code>left</code> value, following the Java binary
+   * numeric promotion rules (unlike {@link MathUtils#add(Number, Number)}).
+   * 
+   * @param left the left value in the addition
+   * @param right the right value in the addition
+   * @return the addition result as a {@link BigDecimal}, a {@link BigInteger}, or as the
+   *         primitive wrapper type resulting from the binary numeric promotion of both operands
+   */
+  public static Number promotedAdd(final Number left, final Number right) {
+    if (useBigDecimal(left, right)) {
+      return toBigDecimal(left).add(toBigDecimal(right));
+    } else if (isBigInteger(left) || isBigInteger(right)) {
+      return toBigInteger(left).add(toBigInteger(right));
+    } else if (left instanceof Double || right instanceof Double) {
+      return left.doubleValue() + right.doubleValue();
+    } else if (left instanceof Float || right instanceof Float) {
+      return left.floatValue() + right.floatValue();
+    } else if (left instanceof Long || right instanceof Long) {
+      return left.longValue() + right.longValue();
+    }
+    return left.intValue() + right.intValue();
+  }
+
+  /**
+   * Subtracts the <code>right</code> value to the <code>left</code> value, following the Java
+   * binary numeric promotion rules.
+   * 
+   * @param left the left value in the subtraction
+   * @param right the right value in the subtraction
+   * @return the subtraction result as a {@link BigDecimal}, a {@link BigInteger}, or as the
+   *         primitive wrapper type resulting from the binary numeric promotion of both operands
+   */
+  public static Number promotedSubtract(final Number left, final Number right) {
+    if (useBigDecimal(left, right)) {
+      return toBigDecimal(left).subtract(toBigDecimal(right));
+    } else if (isBigInteger(left) || isBigInteger(right)) {
+      return toBigInteger(left).subtract(toBigInteger(right));
+    } else if (left instanceof Double || right instanceof Double) {
+      return left.doubleValue() - right.doubleValue();
+    } else if (left instanceof Float || right instanceof Float) {
+      return left.floatValue() - right.floatValue();
+    } else if (left instanceof Long || right instanceof Long) {
+      return left.longValue() - right.longValue();
+    }
+    return left.intValue() - right.intValue();
+  }
+
+  /**
+   * Multiplies the <code>left</code> value with the <code>right</code> value, following the Java
+   * binary numeric promotion rules.
+   * 
+   * @param left the left value in the multiplication
+   * @param right the right value in the multiplication
+   * @return the multiplication result as a {@link BigDecimal}, a {@link BigInteger}, or as the
+   *         primitive wrapper type resulting from the binary numeric promotion of both operands
+   */
+  public static Number promotedMultiply(final Number left, final Number right) {
+    if (useBigDecimal(left, right)) {
+      return toBigDecimal(left).multiply(toBigDecimal(right));
+    } else if (isBigInteger(left) || isBigInteger(right)) {
+      return toBigInteger(left).multiply(toBigInteger(right));
+    } else if (left instanceof Double || right instanceof Double) {
+      return left.doubleValue() * right.doubleValue();
+    } else if (left instanceof Float || right instanceof Float) {
+      return left.floatValue() * right.floatValue();
+    } else if (left instanceof Long || right instanceof Long) {
+      return left.longValue() * right.longValue();
+    }
+    return left.intValue() * right.intValue();
+  }
+
+  /**
+   * Divides the <code>left</code> value with the <code>right</code> value, following the Java
+   * binary numeric promotion rules.
+   * 
+   * @param left the left value in the division
+   * @param right the right value in the division
+   * @return the division result as a {@link BigDecimal}, a {@link BigInteger}, or as the primitive
+   *         wrapper type resulting from the binary numeric promotion of both operands
+   * @throws ArithmeticException if both operands are integral values and the <code>right</code>
+   *         value is zero
+   */
+  public static Number promotedDivide(final Number left, final Number right) {
+    if (useBigDecimal(left, right)) {
+      return toBigDecimal(left).divide(toBigDecimal(right));
+    } else if (isBigInteger(left) || isBigInteger(right)) {
+      return toBigInteger(left).divide(toBigInteger(right));
+    } else if (left instanceof Double || right instanceof Double) {
+      return left.doubleValue() / right.doubleValue();
+    } else if (left instanceof Float || right instanceof Float) {
+      return left.floatValue() / right.floatValue();
+    } else if (left instanceof Long || right instanceof Long) {
+      return left.longValue() / right.longValue();
+    }
+    return left.intValue() / right.intValue();
+  }
+
   /**
    * @param number the number convert
    * @return the opposite value of the given number, in the same class wrapper.
@@ -112,4 +210,47 @@ public class MathUtils {
     return number instanceof BigDecimal || number instanceof Double || number instanceof Float;
   }
 
+  /**
+   * @param number the number to check
+   * @return <code>true</code> if the given number is an arbitrary-precision value, ie, a
+   *         {@link BigDecimal} or a {@link BigInteger}, <code>false</code> otherwise.
+   */
+  public static boolean isArbitraryPrecision(final Number number) {
+    return isBigDecimal(number) || isBigInteger(number);
+  }
+
+  private static boolean useBigDecimal(final Number left, final Number right) {
+    if (isBigDecimal(left) || isBigDecimal(right)) {
+      return true;
+    }
+    return (isBigInteger(left) || isBigInteger(right))
+        && (isFloatingPoint(left) || isFloatingPoint(right));
+  }
+
+  private static boolean isFloatingPoint(final Number number) {
+    return number instanceof Double || number instanceof Float;
+  }
+
+  private static boolean isBigDecimal(final Number number) {
+    return number instanceof BigDecimal;
+  }
+
+  private static boolean isBigInteger(final Number number) {
+    return number instanceof BigInteger;
+  }
+
+  private static BigDecimal toBigDecimal(final Number number) {
+    if (number instanceof BigDecimal) {
+      return (BigDecimal) number;
+    }
+    return new BigDecimal(number.toString());
+  }
+
+  private static BigInteger toBigInteger(final Number number) {
+    if (number instanceof BigInteger) {
+      return (BigInteger) number;
+    }
+    return BigInteger.valueOf(number.longValue());
+  }
+
 }
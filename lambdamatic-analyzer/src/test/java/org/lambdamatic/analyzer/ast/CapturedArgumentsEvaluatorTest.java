@@ -15,6 +15,7 @@ import static org.lambdamatic.testutils.JavaMethods.Object_equals;
 import static org.lambdamatic.testutils.JavaMethods.TestPojo_getPrimitiveIntValue;
 import static org.lambdamatic.testutils.JavaMethods.TestPojo_getStringValue;
 
+import java.lang.reflect.Method;
 import java.util.Arrays;
 import java.util.List;
 
@@ -26,6 +27,8 @@ import org.lambdamatic.analyzer.ast.node.CompoundExpression.CompoundExpressionOp
 import org.lambdamatic.analyzer.ast.node.LocalVariable;
 import org.lambdamatic.analyzer.ast.node.MethodInvocation;
 import org.lambdamatic.analyzer.ast.node.NumberLiteral;
+import org.lambdamatic.analyzer.ast.node.Operation;
+import org.lambdamatic.analyzer.ast.node.Operation.Operator;
 import org.lambdamatic.analyzer.ast.node.StringLiteral;
 
 import com.sample.model.TestPojo;
@@ -118,4 +121,121 @@ public class CapturedArgumentsEvaluatorTest {
     assertThat(actualExpr).isEqualTo(expectedExpr);
   }
 
+  @Test
+  public void shouldFoldOperationOnSubstitutedCapturedArgument() {
+    // given
+    final LocalVariable testPojo = new LocalVariable(0, "t", TestPojo.class);
+    final MethodInvocation getPrimitiveIntValueMethod =
+        new MethodInvocation(testPojo, TestPojo_getPrimitiveIntValue);
+    final MethodInvocation actualExpr = new MethodInvocation(getPrimitiveIntValueMethod,
+        Object_equals, new Operation(Operator.ADD, new CapturedArgumentRef(0, int.class),
+            new NumberLiteral(1)));
+    // when
+    final CapturedArgumentsEvaluator expressionRewriter =
+        new CapturedArgumentsEvaluator(Arrays.asList(41));
+    actualExpr.accept(expressionRewriter);
+    // then
+    final MethodInvocation expectedExpr = new MethodInvocation(getPrimitiveIntValueMethod,
+        Object_equals, new NumberLiteral(42));
+    assertThat(actualExpr).isEqualTo(expectedExpr);
+  }
+
+  @Test
+  public void shouldEvaluateRepeatedCapturedArgumentSubexpressionOnce() throws Exception {
+    // given
+    final Method countingPojoGetValue = CountingPojo.class.getMethod("getValue");
+    final LocalVariable testPojo = new LocalVariable(0, "t", TestPojo.class);
+    final MethodInvocation getPrimitiveIntValueMethod =
+        new MethodInvocation(testPojo, TestPojo_getPrimitiveIntValue);
+    final MethodInvocation equalsValue = new MethodInvocation(getPrimitiveIntValueMethod,
+        Object_equals, new MethodInvocation(new CapturedArgumentRef(0, CountingPojo.class),
+            countingPojoGetValue));
+    final MethodInvocation equalsTwiceValue =
+        new MethodInvocation(getPrimitiveIntValueMethod, Object_equals,
+            new Operation(Operator.MULTIPLY,
+                new MethodInvocation(new CapturedArgumentRef(0, CountingPojo.class),
+                    countingPojoGetValue),
+                new NumberLiteral(2)));
+    final CompoundExpression actualExpr = new CompoundExpression(
+        CompoundExpressionOperator.CONDITIONAL_OR, equalsValue, equalsTwiceValue);
+    final CountingPojo countingPojo = new CountingPojo(21);
+    // when
+    final CapturedArgumentsEvaluator expressionRewriter =
+        new CapturedArgumentsEvaluator(Arrays.asList(countingPojo));
+    actualExpr.accept(expressionRewriter);
+    // then
+    final CompoundExpression expectedExpr =
+        new CompoundExpression(CompoundExpressionOperator.CONDITIONAL_OR,
+            new MethodInvocation(getPrimitiveIntValueMethod, Object_equals, new NumberLiteral(21)),
+            new MethodInvocation(getPrimitiveIntValueMethod, Object_equals, new NumberLiteral(42)));
+    assertThat(actualExpr).isEqualTo(expectedExpr);
+    assertThat(countingPojo.getInvocations()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotShareValuesBetweenDistinctButEqualCapturedArguments() throws Exception {
+    // given
+    final Method countingPojoGetValue = CountingPojo.class.getMethod("getValue");
+    final LocalVariable testPojo = new LocalVariable(0, "t", TestPojo.class);
+    final MethodInvocation getPrimitiveIntValueMethod =
+        new MethodInvocation(testPojo, TestPojo_getPrimitiveIntValue);
+    final MethodInvocation equalsFirstValue = new MethodInvocation(getPrimitiveIntValueMethod,
+        Object_equals, new MethodInvocation(new CapturedArgumentRef(0, CountingPojo.class),
+            countingPojoGetValue));
+    final MethodInvocation equalsSecondValue = new MethodInvocation(getPrimitiveIntValueMethod,
+        Object_equals, new MethodInvocation(new CapturedArgumentRef(1, CountingPojo.class),
+            countingPojoGetValue));
+    final CompoundExpression actualExpr = new CompoundExpression(
+        CompoundExpressionOperator.CONDITIONAL_OR, equalsFirstValue, equalsSecondValue);
+    final CountingPojo firstPojo = new CountingPojo(21);
+    final CountingPojo secondPojo = new CountingPojo(42);
+    assertThat(firstPojo).isEqualTo(secondPojo);
+    // when
+    final CapturedArgumentsEvaluator expressionRewriter =
+        new CapturedArgumentsEvaluator(Arrays.asList(firstPojo, secondPojo));
+    actualExpr.accept(expressionRewriter);
+    // then
+    final CompoundExpression expectedExpr =
+        new CompoundExpression(CompoundExpressionOperator.CONDITIONAL_OR,
+            new MethodInvocation(getPrimitiveIntValueMethod, Object_equals, new NumberLiteral(21)),
+            new MethodInvocation(getPrimitiveIntValueMethod, Object_equals, new NumberLiteral(42)));
+    assertThat(actualExpr).isEqualTo(expectedExpr);
+    assertThat(firstPojo.getInvocations()).isEqualTo(1);
+    assertThat(secondPojo.getInvocations()).isEqualTo(1);
+  }
+
+  /**
+   * Pojo that counts how many times its {@link CountingPojo#getValue()} method was called. All
+   * instances are equal, regardless of their value.
+   */
+  public static class CountingPojo {
+
+    private final int value;
+
+    private int invocations = 0;
+
+    public CountingPojo(final int value) {
+      this.value = value;
+    }
+
+    public int getValue() {
+      this.invocations++;
+      return this.value;
+    }
+
+    public int getInvocations() {
+      return this.invocations;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      return obj instanceof CountingPojo;
+    }
+  }
+
 }
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *      Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.analyzer.ast.node;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.lambdamatic.testutils.JavaMethods.Object_equals;
+import static org.lambdamatic.testutils.JavaMethods.TestPojo_getEnumPojo;
+import static org.lambdamatic.testutils.JavaMethods.TestPojo_getPrimitiveIntValue;
+import static org.lambdamatic.testutils.JavaMethods.TestPojo_getStringValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.lambdamatic.analyzer.ast.node.CompoundExpression.CompoundExpressionOperator;
+import org.lambdamatic.analyzer.ast.node.Operation.Operator;
+
+import com.sample.model.EnumPojo;
+import com.sample.model.TestPojo;
+
+public class CompactLambdaExpressionTest {
+
+  private static LambdaExpression buildLambdaExpression() {
+    final LocalVariable testPojo = new LocalVariable(1, "t", TestPojo.class);
+    final MethodInvocation getStringValueEqualsFoo = new MethodInvocation(
+        new MethodInvocation(testPojo, TestPojo_getStringValue), Object_equals,
+        new StringLiteral("foo"));
+    final MethodInvocation getPrimitiveIntValueEqualsSum = new MethodInvocation(
+        new MethodInvocation(testPojo, TestPojo_getPrimitiveIntValue), Object_equals,
+        new Operation(Operator.ADD, new CapturedArgumentRef(0, int.class), new NumberLiteral(1)));
+    final MethodInvocation getEnumPojoEqualsBar =
+        new MethodInvocation(new MethodInvocation(testPojo, TestPojo_getEnumPojo), Object_equals,
+            new EnumLiteral(EnumPojo.BAR));
+    final CompoundExpression controlFlowExpression =
+        new CompoundExpression(CompoundExpressionOperator.CONDITIONAL_OR, getStringValueEqualsFoo,
+            getPrimitiveIntValueEqualsSum.inverse());
+    final ControlFlowStatement controlFlowStatement = new ControlFlowStatement(
+        controlFlowExpression, Arrays.asList(new ReturnStatement(getEnumPojoEqualsBar)),
+        Arrays.asList(new ReturnStatement(new FieldAccess(testPojo, "field"))));
+    return new LambdaExpression(controlFlowStatement, TestPojo.class, "t");
+  }
+
+  @Test
+  public void shouldDecodeEncodedLambdaExpression() {
+    // given
+    final LambdaExpression lambdaExpression = buildLambdaExpression();
+    // when
+    final CompactLambdaExpression compactLambdaExpression =
+        CompactLambdaExpression.encode(lambdaExpression);
+    // then
+    assertThat(compactLambdaExpression.decode()).isEqualTo(lambdaExpression);
+  }
+
+  @Test
+  public void shouldDeduplicateConstants() {
+    // given
+    final LambdaExpression lambdaExpression = buildLambdaExpression();
+    // when
+    final CompactLambdaExpression compactLambdaExpression =
+        CompactLambdaExpression.encode(lambdaExpression);
+    // then 'Object#equals', 'TestPojo', 't' and 'boolean' are only stored once
+    assertThat(compactLambdaExpression.getNodeCount()).isEqualTo(21);
+    assertThat(compactLambdaExpression.getConstantCount()).isEqualTo(14);
+  }
+
+  @Test
+  public void shouldDecodeIndependentLambdaExpressions() {
+    // given
+    final LambdaExpression lambdaExpression =
+        new LambdaExpression(new ReturnStatement(new MethodInvocation(
+            new LocalVariable(1, "t", TestPojo.class), Object_equals, new NullLiteral())),
+            TestPojo.class, "t");
+    final CompactLambdaExpression compactLambdaExpression =
+        CompactLambdaExpression.encode(lambdaExpression);
+    // when
+    final LambdaExpression firstDecoded = compactLambdaExpression.decode();
+    final MethodInvocation firstMethodInvocation =
+        (MethodInvocation) ((ReturnStatement) firstDecoded.getBody().get(0)).getExpression();
+    firstMethodInvocation.replaceElement(firstMethodInvocation.getArguments().get(0),
+        new StringLiteral("foo"));
+    final LambdaExpression secondDecoded = compactLambdaExpression.decode();
+    // then
+    assertThat(firstDecoded).isNotEqualTo(lambdaExpression);
+    assertThat(secondDecoded).isEqualTo(lambdaExpression);
+  }
+
+  @Test
+  public void shouldReturnIndependentCopiesOfDecodedLambdaExpression() {
+    // given
+    final LambdaExpression lambdaExpression =
+        new LambdaExpression(new ReturnStatement(new MethodInvocation(
+            new LocalVariable(1, "t", TestPojo.class), Object_equals, new NullLiteral())),
+            TestPojo.class, "t");
+    final CompactLambdaExpression compactLambdaExpression =
+        CompactLambdaExpression.encode(lambdaExpression);
+    // when
+    final LambdaExpression firstCopy = compactLambdaExpression.getLambdaExpression();
+    final MethodInvocation firstMethodInvocation =
+        (MethodInvocation) ((ReturnStatement) firstCopy.getBody().get(0)).getExpression();
+    firstMethodInvocation.replaceElement(firstMethodInvocation.getArguments().get(0),
+        new StringLiteral("foo"));
+    final LambdaExpression secondCopy = compactLambdaExpression.getLambdaExpression();
+    // then
+    assertThat(firstCopy).isNotEqualTo(lambdaExpression);
+    assertThat(secondCopy).isEqualTo(lambdaExpression);
+  }
+
+  @Test
+  public void shouldNotMergeEqualCapturedInstances() {
+    // given
+    final List<String> firstValue = new ArrayList<>(Arrays.asList("foo"));
+    final List<String> secondValue = new ArrayList<>(Arrays.asList("foo"));
+    final LambdaExpression lambdaExpression = new LambdaExpression(
+        new ReturnStatement(new MethodInvocation(new CapturedArgument(firstValue), Object_equals,
+            new ObjectInstance(secondValue))),
+        TestPojo.class, "t");
+    // when
+    final LambdaExpression decoded = CompactLambdaExpression.encode(lambdaExpression).decode();
+    // then
+    final MethodInvocation methodInvocation =
+        (MethodInvocation) ((ReturnStatement) decoded.getBody().get(0)).getExpression();
+    assertThat(methodInvocation.getSource().getValue()).isSameAs(firstValue);
+    assertThat(methodInvocation.getArguments().get(0).getValue()).isSameAs(secondValue);
+  }
+
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb;
+
+/**
+ * The aggregated result of a bulk write operation, which may have been sent to the database in
+ * multiple batches.
+ */
+public class BulkWriteResult {
+
+  /** the number of inserted documents. */
+  private final int insertedCount;
+
+  /** the number of documents matched by the updates and replacements. */
+  private final int matchedCount;
+
+  /**
+   * the number of documents actually modified by the updates and replacements, or {@code null} if
+   * the server did not report it.
+   */
+  private final Integer modifiedCount;
+
+  /** the number of removed documents. */
+  private final int deletedCount;
+
+  /** the number of documents inserted by the upserts. */
+  private final int upsertedCount;
+
+  /**
+   * Constructor.
+   * 
+   * @param insertedCount the number of inserted documents
+   * @param matchedCount the number of documents matched by the updates and replacements
+   * @param modifiedCount the number of documents actually modified by the updates and
+   *        replacements, or {@code null} if the server did not report it (eg, MongoDB servers
+   *        before 2.6 or unacknowledged batches)
+   * @param deletedCount the number of removed documents
+   * @param upsertedCount the number of documents inserted by the upserts
+   */
+  public BulkWriteResult(final int insertedCount, final int matchedCount,
+      final Integer modifiedCount, final int deletedCount, final int upsertedCount) {
+    this.insertedCount = insertedCount;
+    this.matchedCount = matchedCount;
+    this.modifiedCount = modifiedCount;
+    this.deletedCount = deletedCount;
+    this.upsertedCount = upsertedCount;
+  }
+
+  /**
+   * @return the number of inserted documents.
+   */
+  public int getInsertedCount() {
+    return this.insertedCount;
+  }
+
+  /**
+   * @return the number of documents matched by the updates and replacements.
+   */
+  public int getMatchedCount() {
+    return this.matchedCount;
+  }
+
+  /**
+   * @return {@code true} if the server reported the number of modified documents for all the
+   *         batches of the operation, {@code false} otherwise.
+   */
+  public boolean isModifiedCountAvailable() {
+    return this.modifiedCount != null;
+  }
+
+  /**
+   * @return the number of documents actually modified by the updates and replacements.
+   * @throws UnsupportedOperationException if the server did not report it (see
+   *         {@link #isModifiedCountAvailable()})
+   */
+  public int getModifiedCount() {
+    if (this.modifiedCount == null) {
+      throw new UnsupportedOperationException(
+          "The number of modified documents was not reported by the server");
+    }
+    return this.modifiedCount;
+  }
+
+  /**
+   * @return the number of removed documents.
+   */
+  public int getDeletedCount() {
+    return this.deletedCount;
+  }
+
+  /**
+   * @return the number of documents inserted by the upserts.
+   */
+  public int getUpsertedCount() {
+    return this.upsertedCount;
+  }
+
+  @Override
+  public String toString() {
+    return "BulkWriteResult [inserted=" + this.insertedCount + ", matched=" + this.matchedCount
+        + ", modified=" + (this.modifiedCount != null ? this.modifiedCount : "unavailable")
+        + ", deleted=" + this.deletedCount + ", upserted="
+        + this.upsertedCount + "]";
+  }
+
+}
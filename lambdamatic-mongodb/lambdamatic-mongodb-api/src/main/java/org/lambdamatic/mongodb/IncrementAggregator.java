@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb;
+
+import org.lambdamatic.mongodb.metadata.QueryMetadata;
+import org.lambdamatic.mongodb.metadata.UpdateMetadata;
+
+/**
+ * Aggregates the increments of counter fields (eg: {@code u -> u.hits += 1}) on the client side,
+ * per filter and per field, and sends them periodically (or when {@link #flush()} or
+ * {@link #close()} is called) with a single {@code $inc} update per filter, in an unordered bulk
+ * write operation. This turns many small updates of the same documents into a few ones, at the
+ * cost of a delay before they are visible in the database.
+ * <p>
+ * Until they are flushed, the increments are only held in memory: they are lost if the
+ * application stops without closing this aggregator. A counter is kept in memory for each
+ * distinct pair of filter and field, until it is left unchanged between two flushes.
+ * </p>
+ * 
+ * @param <QueryType> the {@link QueryMetadata} associated with Domain Type
+ * @param <UpdateType> the {@link UpdateMetadata} associated with Domain Type
+ */
+public interface IncrementAggregator<QueryType, UpdateType> extends AutoCloseable {
+
+  /**
+   * Adds the increments of the given {@code updateExpression} to the pending ones for the
+   * documents matching the given {@code filterExpression}.
+   * 
+   * @param filterExpression the filter to select the documents to update
+   * @param updateExpression the increments or decrements of integral fields (eg:
+   *        {@code u -> u.hits += 1}) to perform on the matching documents
+   * @throws org.lambdamatic.mongodb.exceptions.ConversionException if the update expression
+   *         contains other operations than increments of integral values
+   * @throws org.lambdamatic.mongodb.exceptions.OperationException if this aggregator was closed
+   */
+  public void increment(final FilterExpression<QueryType> filterExpression,
+      final UpdateExpression<UpdateType> updateExpression);
+
+  /**
+   * Sends all the pending increments to the database. If the operation fails, the increments are
+   * kept pending and sent again by the next flushes. The update of a filter which failed in 3
+   * consecutive flushes is dropped (see {@link #getDroppedCount()}).
+   */
+  public void flush();
+
+  /**
+   * Stops the periodic flushes and sends all the pending increments to the database.
+   */
+  @Override
+  public void close();
+
+  /**
+   * @return the total number of increments received by this aggregator.
+   */
+  public long getIncrementCount();
+
+  /**
+   * @return the number of {@code $inc} updates sent to the database.
+   */
+  public long getUpdateCount();
+
+  /**
+   * @return the number of {@code $inc} updates which were dropped after failing repeatedly, and
+   *         whose increments are hence lost.
+   */
+  public long getDroppedCount();
+
+}
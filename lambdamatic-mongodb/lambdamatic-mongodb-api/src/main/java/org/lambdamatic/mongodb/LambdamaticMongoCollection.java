@@ -6,12 +6,18 @@
 
 package org.lambdamatic.mongodb;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
 import org.lambdamatic.SerializablePredicate;
 import org.lambdamatic.mongodb.annotations.Document;
 import org.lambdamatic.mongodb.annotations.DocumentId;
 import org.lambdamatic.mongodb.metadata.ProjectionMetadata;
 import org.lambdamatic.mongodb.metadata.QueryMetadata;
 import org.lambdamatic.mongodb.metadata.UpdateMetadata;
+import org.lambdamatic.mongodb.query.context.BulkWriteContext;
 import org.lambdamatic.mongodb.query.context.FilterContext;
 
 /**
@@ -57,6 +63,27 @@ public interface LambdamaticMongoCollection
    */
   public void add(@SuppressWarnings("unchecked") final DomainType... domainObjects);
 
+  /**
+   * Adds (Inserts) all the given {@code domainObjects} in the underlying MongoDB Collection, in
+   * bounded memory: the domain objects are encoded in parallel and sent in batches, with a bounded
+   * number of batches in flight. If no {@code id} attribute (ie, annotated with
+   * {@link DocumentId}) was set, a random value will be provided. This method returns once all
+   * domain objects were inserted, or after the first failure (in which case some of the domain
+   * objects may have been inserted).
+   * 
+   * @param domainObjects the domain objects to insert
+   */
+  public void addAll(final Iterator<DomainType> domainObjects);
+
+  /**
+   * Adds (Inserts) all the given {@code domainObjects} in the underlying MongoDB Collection (see
+   * {@link #addAll(Iterator)}). The given {@link Stream} is consumed sequentially, and is not
+   * closed by this method.
+   * 
+   * @param domainObjects the domain objects to insert
+   */
+  public void addAll(final Stream<DomainType> domainObjects);
+
   /**
    * "Upserts" the given {@code domainObject} in the Database, ie, of the domain object exists, it
    * is <strong>replaced</strong>, otherwise it is <strong>inserted</strong>.
@@ -74,4 +101,60 @@ public interface LambdamaticMongoCollection
    */
   public void replace(final DomainType domainObject);
 
+  /**
+   * "Upserts" all the given {@code domainObjects} in a single bulk write operation (see
+   * {@link #upsert(Object)}).
+   * 
+   * @param domainObjects the domain objects to insert/update.
+   * @return the {@link BulkWriteResult}
+   */
+  public BulkWriteResult upsertAll(final Collection<DomainType> domainObjects);
+
+  /**
+   * Replaces all the given {@code domainObjects} in a single bulk write operation (see
+   * {@link #replace(Object)}).
+   * 
+   * @param domainObjects the domain objects to update.
+   * @return the {@link BulkWriteResult}
+   * @throws org.lambdamatic.mongodb.exceptions.OperationException if some of the given domain
+   *         objects did not match any document. The exception is thrown <strong>after</strong>
+   *         the bulk write operation completed: the other domain objects are replaced
+   *         nonetheless, and the exception message reports the {@link BulkWriteResult}. Use
+   *         {@link #bulk()} to get the {@link BulkWriteResult} without any check instead.
+   */
+  public BulkWriteResult replaceAll(final Collection<DomainType> domainObjects);
+
+  /**
+   * Returns a new {@link WriteBehindBuffer} which coalesces the upserts of domain objects with the
+   * same id and sends them in bulk write operations. The buffer must be closed once it is no
+   * longer needed, to flush the remaining upserts.
+   * 
+   * @param maxPendingUpserts the number of pending upserts above which they are flushed
+   * @param flushInterval the maximum delay between two flushes, or {@code 0} to only flush when
+   *        the maximum number of pending upserts is reached or when explicitly requested
+   * @param unit the time unit of the {@code flushInterval}
+   * @return a new {@link WriteBehindBuffer} for this collection
+   */
+  public WriteBehindBuffer<DomainType> writeBehind(final int maxPendingUpserts,
+      final long flushInterval, final TimeUnit unit);
+
+  /**
+   * Returns a new {@link IncrementAggregator} which aggregates the increments of counter fields in
+   * memory and sends them periodically to this collection. The aggregator must be closed once it is
+   * no longer needed, to flush the remaining increments.
+   * 
+   * @param flushInterval the delay between two flushes, or {@code 0} to only flush when explicitly
+   *        requested
+   * @param unit the time unit of the {@code flushInterval}
+   * @return a new {@link IncrementAggregator} for this collection
+   */
+  public IncrementAggregator<QueryType, UpdateType> incrementAggregator(final long flushInterval,
+      final TimeUnit unit);
+
+  /**
+   * @return a new {@link BulkWriteContext} to collect insertions, replacements, updates and
+   *         removals that will be sent together to the database.
+   */
+  public BulkWriteContext<DomainType, QueryType, UpdateType> bulk();
+
 }
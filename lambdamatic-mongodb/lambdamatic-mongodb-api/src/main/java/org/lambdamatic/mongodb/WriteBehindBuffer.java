@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb;
+
+import org.lambdamatic.mongodb.annotations.DocumentId;
+
+/**
+ * A write-behind buffer for the "upserts" of a {@link LambdamaticMongoCollection}, obtained with
+ * {@link LambdamaticMongoCollection#writeBehind(int, long, java.util.concurrent.TimeUnit)}. The
+ * pending upserts are coalesced by {@link DocumentId} (the last one wins), and are sent in an
+ * unordered bulk write operation when the maximum number of pending upserts is reached, when the
+ * flush interval elapsed, or when {@link #flush()} or {@link #close()} is called.
+ * <p>
+ * Until they are flushed, the pending upserts are only held in memory: they are lost if the
+ * application stops without closing this buffer.
+ * </p>
+ * 
+ * @param <DomainType> the Domain Type annotated with
+ *        {@link org.lambdamatic.mongodb.annotations.Document}
+ */
+public interface WriteBehindBuffer<DomainType> extends AutoCloseable {
+
+  /**
+   * Adds the "upsert" of the given {@code domainObject} to the pending ones, replacing any pending
+   * upsert of a domain object with the same id. When their maximum number is reached, the
+   * pending upserts are flushed in the background. If the database does not keep up and twice
+   * that number is reached, the pending upserts are flushed on the calling thread instead, and a
+   * failure of that flush is logged rather than thrown (the upserts are kept pending).
+   * 
+   * @param domainObject the domain object to insert/update.
+   * @throws org.lambdamatic.mongodb.exceptions.OperationException if this buffer was closed, or
+   *         if the id of the given {@code domainObject} is not set
+   */
+  public void upsert(final DomainType domainObject);
+
+  /**
+   * Sends all the pending upserts to the database. If the operation fails, the upserts which were
+   * not superseded in the mean time are kept pending.
+   */
+  public void flush();
+
+  /**
+   * Stops the background flushes, waits for the one in progress (if any) to complete, and sends
+   * all the remaining pending upserts to the database.
+   */
+  @Override
+  public void close();
+
+  /**
+   * @return the number of pending upserts.
+   */
+  public int getPendingCount();
+
+  /**
+   * @return the total number of upserts received by this buffer.
+   */
+  public long getUpsertCount();
+
+  /**
+   * @return the number of upserts that replaced a pending one, and hence were never sent
+   *         separately to the database.
+   */
+  public long getCoalescedCount();
+
+  /**
+   * @return the number of documents sent to the database.
+   */
+  public long getWrittenCount();
+
+  /**
+   * @return the number of bulk write operations sent to the database.
+   */
+  public long getFlushCount();
+
+}
@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Optional annotation for fields of type {@code short[]}, {@code char[]}, {@code int[]},
+ * {@code long[]}, {@code float[]} or {@code double[]}, to store their elements in a single BSON
+ * binary value (with the user-defined subtype) instead of a BSON array. The binary form is more
+ * compact and faster to read and write, but its elements cannot be queried on the server side.
+ * Fields of any other type are not affected by this annotation.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface BinaryArray {
+  // empty interface
+}
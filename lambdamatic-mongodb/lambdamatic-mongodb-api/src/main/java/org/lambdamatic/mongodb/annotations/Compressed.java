@@ -0,0 +1,46 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.lambdamatic.mongodb.converters.CompressionCodec;
+
+/**
+ * Optional annotation for fields of type {@link String} or {@code byte[]} whose large values should
+ * be compressed on the client side. Values whose size (in bytes, UTF-8 encoded for {@link String}s)
+ * reach the {@link #threshold()} are stored as BSON binary data compressed with the given
+ * {@link CompressionCodec}, smaller values are stored as usual. Compressed values are decompressed
+ * transparently when the document is decoded.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Compressed {
+
+  /** Name of the built-in {@link CompressionCodec}, based on {@code java.util.zip.Deflater}. */
+  public static final String DEFLATE = "deflate";
+
+  /**
+   * The minimum size of the values to compress, in bytes.
+   * 
+   * @return the compression threshold
+   */
+  public int threshold() default 1024;
+
+  /**
+   * The name of the {@link CompressionCodec} to use.
+   * 
+   * @return the codec name
+   */
+  public String codec() default DEFLATE;
+
+}
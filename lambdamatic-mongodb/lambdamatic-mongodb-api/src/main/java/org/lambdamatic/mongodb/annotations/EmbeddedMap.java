@@ -0,0 +1,33 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Optional annotation for fields of type {@link java.util.Map} with {@link String} or
+ * {@link Enum} keys, to store their entries in an embedded document whose field names are the
+ * keys, instead of an array of single-entry documents. The embedded form is more compact, faster
+ * to read and its entries can be queried and indexed with a dotted path (eg:
+ * {@code map.key.field}). Keys must then be valid field names: they may not contain a dot nor
+ * start with a dollar sign.
+ * <p>
+ * This mode can be enabled for all {@link java.util.Map} values with the
+ * {@code org.lambdamatic.mongodb.embeddedMaps} system property. In both cases, the values are read
+ * back from either form.
+ * </p>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface EmbeddedMap {
+  // empty interface
+}
@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Optional annotation for fields of type {@code org.bson.RawBsonDocument} or
+ * {@code java.nio.ByteBuffer} holding an embedded document that should be kept in its raw BSON
+ * form: when decoding, the bytes of the embedded document are copied without being parsed, and
+ * when encoding, they are written back as-is. Use this annotation for opaque subdocuments that are
+ * passed along but never read.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface RawDocument {
+  // empty interface
+}
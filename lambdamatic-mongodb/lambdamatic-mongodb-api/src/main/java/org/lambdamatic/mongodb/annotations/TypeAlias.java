@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Optional annotation for user-domain classes annotated with {@link Document} or
+ * {@link EmbeddedDocument}, which specifies a short alias to store in the documents instead of the
+ * fully qualified name of the class, when the type discriminator is written in alias mode.
+ * <p>
+ * Aliases must be unique among all user-domain classes.
+ * </p>
+ *
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface TypeAlias {
+
+  /**
+   * The alias of the annotated class.
+   * 
+   * @return the alias
+   */
+  public String value();
+
+}
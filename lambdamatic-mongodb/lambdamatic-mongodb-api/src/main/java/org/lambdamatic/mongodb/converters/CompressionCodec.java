@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.converters;
+
+import org.lambdamatic.mongodb.annotations.Compressed;
+
+/**
+ * Compresses and decompresses the values of the fields annotated with {@link Compressed}.
+ * Implementations must be thread-safe.
+ */
+public interface CompressionCodec {
+
+  /**
+   * @return the name of this codec, as referenced by {@link Compressed#codec()}.
+   */
+  String getName();
+
+  /**
+   * @return the identifier of this codec, stored along with each compressed value so that it can
+   *         be decompressed with the same codec. Identifiers must not change once values have been
+   *         stored.
+   */
+  byte getId();
+
+  /**
+   * Compresses the given data.
+   * 
+   * @param data the data to compress
+   * @return the compressed data
+   */
+  byte[] compress(byte[] data);
+
+  /**
+   * Compresses the given data into a new array whose first {@code headerSize} bytes are reserved
+   * for the caller, so that it can write a header without copying the compressed data again. The
+   * content of the reserved bytes is unspecified.
+   * 
+   * @param data the data to compress
+   * @param headerSize the number of bytes to reserve before the compressed data
+   * @return the reserved header bytes followed by the compressed data
+   */
+  default byte[] compress(final byte[] data, final int headerSize) {
+    final byte[] compressedData = compress(data);
+    final byte[] result = new byte[headerSize + compressedData.length];
+    System.arraycopy(compressedData, 0, result, headerSize, compressedData.length);
+    return result;
+  }
+
+  /**
+   * Decompresses the given data.
+   * 
+   * @param data the buffer holding the compressed data
+   * @param offset the offset of the compressed data in the given buffer
+   * @param length the length of the compressed data
+   * @param decompressedLength the length of the data once decompressed
+   * @return the decompressed data
+   */
+  byte[] decompress(byte[] data, int offset, int length, int decompressedLength);
+
+}
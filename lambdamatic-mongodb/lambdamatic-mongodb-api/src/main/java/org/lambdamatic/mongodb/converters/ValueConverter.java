@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat, Inc. Distributed under license by Red Hat, Inc. All rights
+ * reserved. This program is made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+package org.lambdamatic.mongodb.converters;
+
+import java.util.Date;
+
+/**
+ * Converts the values of a Java type that is not natively supported (for example, a
+ * {@code java.time} type) to/from a type that can be stored in a MongoDB document.
+ * <p>
+ * The document type must be one of {@link String}, {@link Integer}, {@link Long}, {@link Double},
+ * {@link Boolean}, {@link Date}, {@code org.bson.types.ObjectId} or {@code byte[]}.
+ * </p>
+ * <p>
+ * Converters cannot replace the built-in conversion of the natively supported types: {@link String},
+ * the primitive types and their wrappers, {@link Date}, {@code org.bson.types.ObjectId},
+ * {@code byte[]} and {@code org.lambdamatic.mongodb.types.geospatial.Location}.
+ * </p>
+ * <p>
+ * Converters should be registered before the codecs of the domain classes that use them are
+ * created: the generated codecs look up the decoder of each field once, when they are
+ * instantiated, so a converter registered later is only used by the codecs instantiated after
+ * it (values are always encoded with the converter registered at the time of the encoding).
+ * </p>
+ * 
+ * @param <JavaType> the Java type of the domain class fields
+ * @param <DocumentType> the type of the values stored in the MongoDB documents
+ */
+public interface ValueConverter<JavaType, DocumentType> {
+
+  /**
+   * @return the Java type of the domain class fields that this converter supports.
+   */
+  Class<JavaType> getJavaType();
+
+  /**
+   * @return the type of the values stored in the MongoDB documents.
+   */
+  Class<DocumentType> getDocumentType();
+
+  /**
+   * Converts the given Java value into a value to store in a MongoDB document.
+   * 
+   * @param javaValue the (non-null) value to convert
+   * @return the document value
+   */
+  DocumentType toDocumentValue(JavaType javaValue);
+
+  /**
+   * Converts the given MongoDB document value into a Java value.
+   * 
+   * @param documentValue the (non-null) value to convert
+   * @return the Java value
+   */
+  JavaType toJavaValue(DocumentType documentValue);
+
+}
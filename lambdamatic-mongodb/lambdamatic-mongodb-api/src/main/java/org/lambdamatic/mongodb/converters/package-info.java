@@ -0,0 +1,12 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat, Inc. Distributed under license by Red Hat, Inc. All rights
+ * reserved. This program is made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ ******************************************************************************/
+
+/**
+ * Package for the user-defined conversions between Java types and MongoDB document values.
+ *
+ */
+
+package org.lambdamatic.mongodb.converters;
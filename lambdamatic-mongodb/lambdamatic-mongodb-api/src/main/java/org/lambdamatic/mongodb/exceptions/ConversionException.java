@@ -27,12 +27,12 @@ public class ConversionException extends RuntimeException {
   }
 
   /**
-   * Constructor with an underlying cause {@link Exception}.
+   * Constructor with an underlying cause {@link Throwable}.
    * 
    * @param message the contextual message
    * @param cause the underlying cause
    */
-  public ConversionException(final String message, final Exception cause) {
+  public ConversionException(final String message, final Throwable cause) {
     super(message, cause);
   }
 
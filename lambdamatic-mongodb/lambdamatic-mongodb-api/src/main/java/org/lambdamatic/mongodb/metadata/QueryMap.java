@@ -15,6 +15,11 @@ import org.lambdamatic.mongodb.FilterExpression;
 /**
  * MongoDB operation available on a given Document field of type Array in MongoDB mapped as a
  * {@link Map} in Java.
+ * <p>
+ * Maps stored as embedded documents (see {@link org.lambdamatic.mongodb.annotations.EmbeddedMap})
+ * can only be queried with {@link #get(Object)}, since the {@link #size(long)} and
+ * {@link #elementMatch(FilterExpression)} operations apply to arrays.
+ * </p>
  * 
  * @author Xavier Coulon
  * @param <Key> the type of the key to look-up values in the map
@@ -44,7 +49,8 @@ public interface QueryMap<Key, DomainMetadata> {
   public boolean elementMatch(final FilterExpression<DomainMetadata> expression);
 
   /**
-   * Accessing a specific element in the domain {@link Map}.
+   * Accessing a specific element in the domain {@link Map}, using the dotted path of its key (eg:
+   * {@code map.key}).
    * 
    * @param key the key of the element in the {@link Map}
    * @return the desired element to carry on with the query in a {@link FilterExpression}
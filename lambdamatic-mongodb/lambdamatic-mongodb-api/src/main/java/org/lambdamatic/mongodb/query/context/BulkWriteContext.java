@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.query.context;
+
+import org.lambdamatic.mongodb.BulkWriteResult;
+import org.lambdamatic.mongodb.FilterExpression;
+import org.lambdamatic.mongodb.UpdateExpression;
+import org.lambdamatic.mongodb.metadata.QueryMetadata;
+import org.lambdamatic.mongodb.metadata.UpdateMetadata;
+
+/**
+ * Context to collect write operations (insertions, replacements, updates and removals) which are
+ * sent together to the database when {@link #execute()} is called, in as few round trips as
+ * possible.
+ * 
+ * @param <DomainType> the actual domain type being written.
+ * @param <QueryType> the associated {@link QueryMetadata} class to select the documents to update
+ *        or remove
+ * @param <UpdateType> the associated {@link UpdateMetadata} class to specify the updates to
+ *        perform
+ */
+public interface BulkWriteContext<DomainType, QueryType, UpdateType> {
+
+  /**
+   * Adds the insertion of the given {@code domainObjects}.
+   * 
+   * @param domainObjects the domain objects to insert
+   * @return this {@link BulkWriteContext} to carry on with more operations.
+   */
+  public abstract BulkWriteContext<DomainType, QueryType, UpdateType> add(
+      @SuppressWarnings("unchecked") final DomainType... domainObjects);
+
+  /**
+   * Adds the "upsert" of the given {@code domainObject}, ie, the replacement of the document with
+   * the same id, or its insertion if no such document exists.
+   * 
+   * @param domainObject the domain object to insert/update.
+   * @return this {@link BulkWriteContext} to carry on with more operations.
+   */
+  public abstract BulkWriteContext<DomainType, QueryType, UpdateType> upsert(
+      final DomainType domainObject);
+
+  /**
+   * Adds the <strong>full replacement</strong> of the document with the same id as the given
+   * {@code domainObject}.
+   * 
+   * @param domainObject the domain object to update.
+   * @return this {@link BulkWriteContext} to carry on with more operations.
+   */
+  public abstract BulkWriteContext<DomainType, QueryType, UpdateType> replace(
+      final DomainType domainObject);
+
+  /**
+   * Adds the <strong>partial replacement</strong> of all documents matching the given
+   * {@code filterExpression}, based on the field assignments in the given
+   * {@code updateExpression}.
+   * 
+   * @param filterExpression the filter to select the documents to update
+   * @param updateExpression the field assignments that explain how the document fields should be
+   *        updated.
+   * @return this {@link BulkWriteContext} to carry on with more operations.
+   */
+  public abstract BulkWriteContext<DomainType, QueryType, UpdateType> update(
+      final FilterExpression<QueryType> filterExpression,
+      final UpdateExpression<UpdateType> updateExpression);
+
+  /**
+   * Adds the removal of all documents matching the given {@code filterExpression}.
+   * 
+   * @param filterExpression the filter to select the documents to remove
+   * @return this {@link BulkWriteContext} to carry on with more operations.
+   */
+  public abstract BulkWriteContext<DomainType, QueryType, UpdateType> remove(
+      final FilterExpression<QueryType> filterExpression);
+
+  /**
+   * Specifies whether the operations must be performed in order (the default), in which case the
+   * execution stops at the first failing operation. Otherwise, the database may perform the
+   * operations in any order, and carries on after a failure.
+   * 
+   * @param ordered {@code true} if the operations must be performed in order, {@code false}
+   *        otherwise
+   * @return this {@link BulkWriteContext} to carry on with more operations.
+   */
+  public abstract BulkWriteContext<DomainType, QueryType, UpdateType> ordered(
+      final boolean ordered);
+
+  /**
+   * Specifies the maximum number of operations sent to the database in a single request.
+   * 
+   * @param size the number of operations per batch, or {@code 0} to send all operations at once
+   *        and let the driver split them according to the server limits
+   * @return this {@link BulkWriteContext} to carry on with more operations.
+   */
+  public abstract BulkWriteContext<DomainType, QueryType, UpdateType> batchSize(final int size);
+
+  /**
+   * Sends all the collected operations to the database, batch by batch. In ordered mode, the
+   * remaining batches are not sent after a failure. In unordered mode, all batches are sent and
+   * the failures are reported once they were all processed. In both cases, the failures are
+   * reported in a single {@code com.mongodb.MongoBulkWriteException} whose result is aggregated
+   * over the batches that were sent, and whose error indexes refer to the collected operations.
+   * 
+   * @return the {@link BulkWriteResult} aggregated over all the batches.
+   */
+  public abstract BulkWriteResult execute();
+
+}
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.query.context;
+
+import java.util.Iterator;
+
+/**
+ * An {@link Iterator} over the documents returned by a query, backed by a server-side cursor that
+ * must be closed once the iteration is done (or abandoned), typically in a try-with-resources
+ * statement.
+ * 
+ * @param <DomainType> the actual domain type being queried.
+ */
+public interface CloseableIterator<DomainType> extends Iterator<DomainType>, AutoCloseable {
+
+  /**
+   * Closes the underlying cursor. Calling this method more than once has no effect.
+   */
+  @Override
+  public abstract void close();
+
+}
@@ -8,6 +8,8 @@
 
 package org.lambdamatic.mongodb.query.context;
 
+import java.util.List;
+
 import org.lambdamatic.mongodb.ProjectionExpression;
 import org.lambdamatic.mongodb.UpdateExpression;
 import org.lambdamatic.mongodb.metadata.ProjectionMetadata;
@@ -36,6 +38,34 @@ public interface FilterContext<DomainType, ProjectionType, UpdateType>
   public ProjectionContext<DomainType> projection(
       final ProjectionExpression<ProjectionType> projectionExpression);
 
+  /**
+   * Reduce the fields to be <strong>decoded</strong> in the returned domain objects to the given
+   * {@link ProjectionExpression} expression. Unlike {@link #projection(ProjectionExpression)}, the
+   * whole documents are still returned by the server, but the other fields are skipped when the
+   * documents are read, leaving the corresponding fields of the domain objects to their default
+   * value.
+   *
+   * @param projectionExpression the set of fields to include in (or exclude from) the returned
+   *        domain objects
+   * @return the {@link ProjectionContext} to optionally specify more settings
+   */
+  public ProjectionContext<DomainType> decodeOnly(
+      final ProjectionExpression<ProjectionType> projectionExpression);
+
+  /**
+   * Specifies that the returned domain objects should be <strong>lazily decoded</strong>: each
+   * domain object is backed by the raw BSON bytes of its document, and its fields are decoded
+   * when their getter is called for the first time. This is useful when only a few fields of
+   * large documents are read.
+   * <p>
+   * The returned domain objects are instances of a generated subclass of the domain class. Domain
+   * classes that cannot be subclassed (eg: final classes) are decoded eagerly.
+   * </p>
+   *
+   * @return the {@link ProjectionContext} to optionally specify more settings
+   */
+  public ProjectionContext<DomainType> lazily();
+
   /**
    * Updates <strong>one</strong> {@code domainObject}, performing <strong>a partial
    * replacement</strong> based on the field assignments in the given {@code updateExpression}.
@@ -45,6 +75,39 @@ public interface FilterContext<DomainType, ProjectionType, UpdateType>
    */
   public void forEach(final UpdateExpression<UpdateType> updateExpression);
 
+  /**
+   * Counts the matching documents on the server side, without retrieving them.
+   * 
+   * @return the number of matching documents.
+   */
+  public long count();
+
+  /**
+   * Checks on the server side whether at least one document matches, by retrieving at most one
+   * document with only its {@code _id} field, which is not decoded.
+   * 
+   * @return {@code true} if at least one document matches, {@code false} otherwise.
+   */
+  public boolean exists();
+
+  /**
+   * Finds the distinct values of a given field among the matching documents, on the server side.
+   * The field is specified with a {@link ProjectionExpression} that includes this single field
+   * (eg: {@code e -> Projection.include(e.authorName)}).
+   * 
+   * @param fieldExpression the expression that includes the field whose distinct values should be
+   *        returned
+   * @param valueType the Java type of the values, which are decoded like the fields of a domain
+   *        class (eg: the {@link Enum} type of an enum field, an embedded document class, or a
+   *        type handled by a registered converter)
+   * @param <T> the Java type of the values
+   * @return the {@link List} of distinct values.
+   * @throws org.lambdamatic.mongodb.exceptions.ConversionException if the given expression does
+   *         not include a single field
+   */
+  public <T> List<T> distinct(final ProjectionExpression<ProjectionType> fieldExpression,
+      final Class<T> valueType);
+
   /**
    * Removes all element matching the preceding request.
    */
@@ -9,6 +9,8 @@
 package org.lambdamatic.mongodb.query.context;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * API available after a call to the ".limit(int)" method
@@ -23,5 +25,40 @@ public interface LimitContext<DomainType> {
    */
   public abstract List<DomainType> toList();
 
+  /**
+   * Specifies the number of documents to return per batch, ie, the maximum number of documents
+   * that are held in memory at once while iterating over the results.
+   * 
+   * @param size the number of documents per batch, or {@code 0} to use the server default
+   * @return the {@link LimitContext} to carry on with the query.
+   */
+  public abstract LimitContext<DomainType> batchSize(final int size);
+
+  /**
+   * Returns an iterator over the matching documents, which are fetched batch by batch (see
+   * {@link #batchSize(int)}) and decoded one at a time. The iterator must be closed once it is no
+   * longer needed.
+   * 
+   * @return a {@link CloseableIterator} over the documents of type {@code T}.
+   */
+  public abstract CloseableIterator<DomainType> iterator();
+
+  /**
+   * Returns a sequential {@link Stream} of the matching documents, which are fetched batch by batch
+   * (see {@link #batchSize(int)}) and decoded one at a time. The stream must be closed once it is
+   * no longer needed, typically in a try-with-resources statement.
+   * 
+   * @return a {@link Stream} of documents of type {@code T}.
+   */
+  public abstract Stream<DomainType> stream();
+
+  /**
+   * Performs the given action on each matching document, in bounded memory. The underlying cursor
+   * is closed when this method returns, including when the action throws an exception.
+   * 
+   * @param action the action to perform on each document
+   */
+  public abstract void forEachDocument(final Consumer<? super DomainType> action);
+
 
 }
@@ -24,4 +24,7 @@ public interface ProjectionContext<DomainType> extends SkipContext<DomainType> {
    * @return the {@link SkipContext} to carry on with the query.
    */
   public abstract SkipContext<DomainType> skip(final int skip);
+
+  @Override
+  public abstract ProjectionContext<DomainType> batchSize(final int size);
 }
@@ -24,6 +24,9 @@ public interface SkipContext<DomainType> extends LimitContext<DomainType> {
    */
   public abstract LimitContext<DomainType> limit(final int size);
 
+  @Override
+  public abstract SkipContext<DomainType> batchSize(final int size);
+
   /**
    * @return the <strong>first</strong> element matching the query.
    */
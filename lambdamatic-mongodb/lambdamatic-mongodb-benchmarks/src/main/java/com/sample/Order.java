@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package com.sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.annotations.DocumentId;
+
+/**
+ * A domain class with a mix of primitive, {@link String}, {@link Date}, enum, collection and
+ * embedded document fields, used in the codec benchmarks.
+ */
+@Document(collection = "orders")
+public class Order {
+
+  /** order id. */
+  @DocumentId
+  private ObjectId id;
+
+  /** customer name. */
+  private String customer;
+
+  /** order number. */
+  private long number;
+
+  /** number of items. */
+  private int itemCount;
+
+  /** total amount. */
+  private double total;
+
+  /** whether the order was paid. */
+  private boolean paid;
+
+  /** creation date. */
+  private Date creationDate;
+
+  /** order status. */
+  private OrderStatus status;
+
+  /** tags. */
+  private List<String> tags;
+
+  /** order lines. */
+  private List<OrderLine> lines;
+
+  public ObjectId getId() {
+    return this.id;
+  }
+
+  public void setId(final ObjectId id) {
+    this.id = id;
+  }
+
+  public String getCustomer() {
+    return this.customer;
+  }
+
+  public void setCustomer(final String customer) {
+    this.customer = customer;
+  }
+
+  public long getNumber() {
+    return this.number;
+  }
+
+  public void setNumber(final long number) {
+    this.number = number;
+  }
+
+  public int getItemCount() {
+    return this.itemCount;
+  }
+
+  public void setItemCount(final int itemCount) {
+    this.itemCount = itemCount;
+  }
+
+  public double getTotal() {
+    return this.total;
+  }
+
+  public void setTotal(final double total) {
+    this.total = total;
+  }
+
+  public boolean isPaid() {
+    return this.paid;
+  }
+
+  public void setPaid(final boolean paid) {
+    this.paid = paid;
+  }
+
+  public Date getCreationDate() {
+    return this.creationDate;
+  }
+
+  public void setCreationDate(final Date creationDate) {
+    this.creationDate = creationDate;
+  }
+
+  public OrderStatus getStatus() {
+    return this.status;
+  }
+
+  public void setStatus(final OrderStatus status) {
+    this.status = status;
+  }
+
+  public List<String> getTags() {
+    return this.tags;
+  }
+
+  public void setTags(final List<String> tags) {
+    this.tags = tags;
+  }
+
+  public List<OrderLine> getLines() {
+    return this.lines;
+  }
+
+  public void setLines(final List<OrderLine> lines) {
+    this.lines = lines;
+  }
+
+  /**
+   * @return a fully populated {@link Order}, with 3 {@link OrderLine}s.
+   */
+  public static Order newSampleOrder() {
+    final Order order = new Order();
+    order.setId(new ObjectId("5459fed60986a72813eb2d59"));
+    order.setCustomer("John Doe");
+    order.setNumber(1_234_567_890_123L);
+    order.setItemCount(6);
+    order.setTotal(164.85);
+    order.setPaid(true);
+    order.setCreationDate(new Date(1446032000000L));
+    order.setStatus(OrderStatus.SHIPPED);
+    order.setTags(new ArrayList<>(Arrays.asList("gift", "express", "fragile")));
+    order.setLines(new ArrayList<>(Arrays.asList(new OrderLine("BK-001", 1, 39.95),
+        new OrderLine("BK-002", 2, 24.95), new OrderLine("DVD-042", 3, 25.0))));
+    return order;
+  }
+
+}
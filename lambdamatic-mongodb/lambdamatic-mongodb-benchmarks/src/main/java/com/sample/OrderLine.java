@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package com.sample;
+
+import org.lambdamatic.mongodb.annotations.EmbeddedDocument;
+
+@EmbeddedDocument
+public class OrderLine {
+
+  /** product reference. */
+  private String sku;
+
+  /** ordered quantity. */
+  private int quantity;
+
+  /** unit price. */
+  private double unitPrice;
+
+  public OrderLine() {
+    super();
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param sku the product reference
+   * @param quantity the ordered quantity
+   * @param unitPrice the unit price
+   */
+  public OrderLine(final String sku, final int quantity, final double unitPrice) {
+    this.sku = sku;
+    this.quantity = quantity;
+    this.unitPrice = unitPrice;
+  }
+
+  public String getSku() {
+    return this.sku;
+  }
+
+  public void setSku(final String sku) {
+    this.sku = sku;
+  }
+
+  public int getQuantity() {
+    return this.quantity;
+  }
+
+  public void setQuantity(final int quantity) {
+    this.quantity = quantity;
+  }
+
+  public double getUnitPrice() {
+    return this.unitPrice;
+  }
+
+  public void setUnitPrice(final double unitPrice) {
+    this.unitPrice = unitPrice;
+  }
+
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mongodb.MongoClient;
+import com.sample.Order;
+import com.sample.OrderCodec;
+
+/**
+ * Compares the throughput of the {@link Codec}s available for a domain class when encoding it into
+ * (and decoding it from) its binary BSON form:
+ * <ul>
+ * <li>the reflection-based {@link DocumentCodec},</li>
+ * <li>the {@link GeneratedDocumentCodec} generated at compile time by the annotation
+ * processor,</li>
+ * <li>the {@link GeneratedDocumentCodec} generated at runtime by the
+ * {@link RuntimeDocumentCodecGenerator},</li>
+ * <li>the driver's own {@link org.bson.codecs.DocumentCodec}, with the equivalent
+ * {@link org.bson.Document}.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentCodecBenchmark {
+
+  private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+  private static final DecoderContext DECODER_CONTEXT = DecoderContext.builder().build();
+
+  private Order order;
+
+  private byte[] encodedOrder;
+
+  private org.bson.Document document;
+
+  private Codec<Order> reflectiveCodec;
+
+  private Codec<Order> generatedCodec;
+
+  private Codec<Order> runtimeCodec;
+
+  private Codec<org.bson.Document> driverCodec;
+
+  /**
+   * Instantiates the codecs and prepares the domain object, the equivalent
+   * {@link org.bson.Document} and their binary BSON form.
+   * 
+   * @throws ReflectiveOperationException if the runtime codec could not be instantiated
+   */
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup() throws ReflectiveOperationException {
+    final CodecRegistry codecRegistry = MongoClient.getDefaultCodecRegistry();
+    this.reflectiveCodec = new DocumentCodec<>(Order.class, codecRegistry);
+    this.generatedCodec = new OrderCodec(codecRegistry);
+    this.runtimeCodec = (Codec<Order>) RuntimeDocumentCodecGenerator.generate(Order.class).get()
+        .newInstance(codecRegistry);
+    this.driverCodec = codecRegistry.get(org.bson.Document.class);
+    this.order = Order.newSampleOrder();
+    this.encodedOrder = encode(this.reflectiveCodec, this.order);
+    this.document = decode(this.driverCodec, this.encodedOrder);
+  }
+
+  private static <T> byte[] encode(final Codec<T> codec, final T value) {
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    try (final BsonBinaryWriter writer = new BsonBinaryWriter(outputBuffer)) {
+      codec.encode(writer, value, ENCODER_CONTEXT);
+    }
+    return outputBuffer.toByteArray();
+  }
+
+  private static <T> T decode(final Codec<T> codec, final byte[] bytes) {
+    try (final BsonBinaryReader reader = new BsonBinaryReader(ByteBuffer.wrap(bytes))) {
+      return codec.decode(reader, DECODER_CONTEXT);
+    }
+  }
+
+  @Benchmark
+  public byte[] encodeWithReflectiveCodec() {
+    return encode(this.reflectiveCodec, this.order);
+  }
+
+  @Benchmark
+  public byte[] encodeWithGeneratedCodec() {
+    return encode(this.generatedCodec, this.order);
+  }
+
+  @Benchmark
+  public byte[] encodeWithRuntimeCodec() {
+    return encode(this.runtimeCodec, this.order);
+  }
+
+  @Benchmark
+  public byte[] encodeWithDriverCodec() {
+    return encode(this.driverCodec, this.document);
+  }
+
+  @Benchmark
+  public Order decodeWithReflectiveCodec() {
+    return decode(this.reflectiveCodec, this.encodedOrder);
+  }
+
+  @Benchmark
+  public Order decodeWithGeneratedCodec() {
+    return decode(this.generatedCodec, this.encodedOrder);
+  }
+
+  @Benchmark
+  public Order decodeWithRuntimeCodec() {
+    return decode(this.runtimeCodec, this.encodedOrder);
+  }
+
+  @Benchmark
+  public org.bson.Document decodeWithDriverCodec() {
+    return decode(this.driverCodec, this.encodedOrder);
+  }
+
+}
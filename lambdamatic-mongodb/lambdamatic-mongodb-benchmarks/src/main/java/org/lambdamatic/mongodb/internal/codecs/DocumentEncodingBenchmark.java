@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.mongodb.MongoClient;
+import com.sample.Order;
+import com.sample.OrderLine;
+
+/**
+ * Measures the throughput of the reflection-based {@link DocumentCodec} when encoding a domain
+ * object with primitive fields and collections of values and embedded documents, for an increasing
+ * number of collection elements.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentEncodingBenchmark {
+
+  private static final EncoderContext ENCODER_CONTEXT = EncoderContext.builder().build();
+
+  /** number of tags and order lines in the encoded {@link Order}. */
+  @Param({"3", "100"})
+  private int elementCount;
+
+  private Order order;
+
+  private DocumentCodec<Order> codec;
+
+  /**
+   * Instantiates the codec and prepares the domain object to encode.
+   */
+  @Setup
+  public void setup() {
+    this.codec = new DocumentCodec<>(Order.class, MongoClient.getDefaultCodecRegistry());
+    this.order = Order.newSampleOrder();
+    final List<String> tags = new ArrayList<>(this.elementCount);
+    final List<OrderLine> lines = new ArrayList<>(this.elementCount);
+    for (int i = 0; i < this.elementCount; i++) {
+      tags.add("tag-" + i);
+      lines.add(new OrderLine("SKU-" + i, i, i * 1.5));
+    }
+    this.order.setTags(tags);
+    this.order.setLines(lines);
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    try (final BsonBinaryWriter writer = new BsonBinaryWriter(outputBuffer)) {
+      this.codec.encode(writer, this.order, ENCODER_CONTEXT);
+    }
+    return outputBuffer.toByteArray();
+  }
+
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package com.sample;
+
+import java.util.Arrays;
+
+import org.bson.types.ObjectId;
+import org.lambdamatic.mongodb.annotations.Compressed;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.annotations.DocumentId;
+
+@Document(collection = "articles")
+public class Article {
+
+  /** article id. */
+  @DocumentId
+  private ObjectId id;
+
+  /** article title. */
+  private String title;
+
+  /** article body, compressed when large enough. */
+  @Compressed(threshold = 64)
+  private String body;
+
+  /** article attachment, compressed when large enough. */
+  @Compressed
+  private byte[] attachment;
+
+  public ObjectId getId() {
+    return this.id;
+  }
+
+  public void setId(final ObjectId id) {
+    this.id = id;
+  }
+
+  public String getTitle() {
+    return this.title;
+  }
+
+  public void setTitle(final String title) {
+    this.title = title;
+  }
+
+  public String getBody() {
+    return this.body;
+  }
+
+  public void setBody(final String body) {
+    this.body = body;
+  }
+
+  public byte[] getAttachment() {
+    return this.attachment;
+  }
+
+  public void setAttachment(final byte[] attachment) {
+    this.attachment = attachment;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ((this.id == null) ? 0 : this.id.hashCode());
+    result = prime * result + ((this.title == null) ? 0 : this.title.hashCode());
+    result = prime * result + ((this.body == null) ? 0 : this.body.hashCode());
+    result = prime * result + Arrays.hashCode(this.attachment);
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    final Article other = (Article) obj;
+    if (this.id == null ? other.id != null : !this.id.equals(other.id)) {
+      return false;
+    }
+    if (this.title == null ? other.title != null : !this.title.equals(other.title)) {
+      return false;
+    }
+    if (this.body == null ? other.body != null : !this.body.equals(other.body)) {
+      return false;
+    }
+    return Arrays.equals(this.attachment, other.attachment);
+  }
+
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package com.sample;
+
+import java.nio.ByteBuffer;
+
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.annotations.DocumentId;
+import org.lambdamatic.mongodb.annotations.RawDocument;
+
+@Document(collection = "envelopes")
+public class Envelope {
+
+  /** envelope id. */
+  @DocumentId
+  private ObjectId id;
+
+  /** envelope recipient. */
+  private String recipient;
+
+  /** opaque payload. */
+  @RawDocument
+  private RawBsonDocument payload;
+
+  /** opaque attachment. */
+  @RawDocument
+  private ByteBuffer attachment;
+
+  public ObjectId getId() {
+    return this.id;
+  }
+
+  public void setId(final ObjectId id) {
+    this.id = id;
+  }
+
+  public String getRecipient() {
+    return this.recipient;
+  }
+
+  public void setRecipient(final String recipient) {
+    this.recipient = recipient;
+  }
+
+  public RawBsonDocument getPayload() {
+    return this.payload;
+  }
+
+  public void setPayload(final RawBsonDocument payload) {
+    this.payload = payload;
+  }
+
+  public ByteBuffer getAttachment() {
+    return this.attachment;
+  }
+
+  public void setAttachment(final ByteBuffer attachment) {
+    this.attachment = attachment;
+  }
+
+}
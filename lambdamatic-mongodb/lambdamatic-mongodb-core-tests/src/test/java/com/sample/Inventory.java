@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package com.sample;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+
+import org.bson.types.ObjectId;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.annotations.DocumentId;
+
+@Document(collection = "inventories")
+public class Inventory {
+
+  /** inventory id. */
+  @DocumentId
+  private ObjectId id;
+
+  /** stored items. */
+  private List<Bar> bars;
+
+  /** inventory tags. */
+  private Set<EnumFoo> tags;
+
+  /** inventory history, declared with its implementation type. */
+  private LinkedList<String> history;
+
+  /** sorted scores. */
+  private SortedSet<Integer> scores;
+
+  /** stored items, indexed by name. */
+  private Map<String, Bar> barsByName;
+
+  /** item counts, indexed by tag. */
+  private Map<EnumFoo, Integer> countsByTag;
+
+  public ObjectId getId() {
+    return this.id;
+  }
+
+  public void setId(final ObjectId id) {
+    this.id = id;
+  }
+
+  public List<Bar> getBars() {
+    return this.bars;
+  }
+
+  public void setBars(final List<Bar> bars) {
+    this.bars = bars;
+  }
+
+  public Set<EnumFoo> getTags() {
+    return this.tags;
+  }
+
+  public void setTags(final Set<EnumFoo> tags) {
+    this.tags = tags;
+  }
+
+  public LinkedList<String> getHistory() {
+    return this.history;
+  }
+
+  public void setHistory(final LinkedList<String> history) {
+    this.history = history;
+  }
+
+  public SortedSet<Integer> getScores() {
+    return this.scores;
+  }
+
+  public void setScores(final SortedSet<Integer> scores) {
+    this.scores = scores;
+  }
+
+  public Map<String, Bar> getBarsByName() {
+    return this.barsByName;
+  }
+
+  public void setBarsByName(final Map<String, Bar> barsByName) {
+    this.barsByName = barsByName;
+  }
+
+  public Map<EnumFoo, Integer> getCountsByTag() {
+    return this.countsByTag;
+  }
+
+  public void setCountsByTag(final Map<EnumFoo, Integer> countsByTag) {
+    this.countsByTag = countsByTag;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.id, this.bars, this.tags, this.history, this.scores,
+        this.barsByName, this.countsByTag);
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    final Inventory other = (Inventory) obj;
+    return Objects.equals(this.id, other.id) && Objects.equals(this.bars, other.bars)
+        && Objects.equals(this.tags, other.tags) && Objects.equals(this.history, other.history)
+        && Objects.equals(this.scores, other.scores)
+        && Objects.equals(this.barsByName, other.barsByName)
+        && Objects.equals(this.countsByTag, other.countsByTag);
+  }
+
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package com.sample;
+
+import java.util.Objects;
+
+import org.lambdamatic.mongodb.annotations.EmbeddedDocument;
+import org.lambdamatic.mongodb.annotations.TypeAlias;
+
+@EmbeddedDocument
+@TypeAlias("label")
+public class Label {
+
+  /** label text. */
+  private String text;
+
+  public Label() {
+    super();
+  }
+
+  public Label(final String text) {
+    this.text = text;
+  }
+
+  public String getText() {
+    return this.text;
+  }
+
+  public void setText(final String text) {
+    this.text = text;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(this.text);
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    return obj instanceof Label && Objects.equals(this.text, ((Label) obj).text);
+  }
+
+}
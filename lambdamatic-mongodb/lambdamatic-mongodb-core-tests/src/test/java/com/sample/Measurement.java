@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package com.sample;
+
+import java.util.Arrays;
+
+import org.bson.types.ObjectId;
+import org.lambdamatic.mongodb.annotations.BinaryArray;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.annotations.DocumentId;
+
+@Document(collection = "measurements")
+public class Measurement {
+
+  /** measurement id. */
+  @DocumentId
+  private ObjectId id;
+
+  /** counters, stored as a BSON array. */
+  private int[] counts;
+
+  /** flags, stored as a BSON array. */
+  private boolean[] flags;
+
+  /** samples, stored as a BSON binary value. */
+  @BinaryArray
+  private double[] samples;
+
+  /** timestamps, stored as a BSON binary value. */
+  @BinaryArray
+  private long[] timestamps;
+
+  public ObjectId getId() {
+    return this.id;
+  }
+
+  public void setId(final ObjectId id) {
+    this.id = id;
+  }
+
+  public int[] getCounts() {
+    return this.counts;
+  }
+
+  public void setCounts(final int[] counts) {
+    this.counts = counts;
+  }
+
+  public boolean[] getFlags() {
+    return this.flags;
+  }
+
+  public void setFlags(final boolean[] flags) {
+    this.flags = flags;
+  }
+
+  public double[] getSamples() {
+    return this.samples;
+  }
+
+  public void setSamples(final double[] samples) {
+    this.samples = samples;
+  }
+
+  public long[] getTimestamps() {
+    return this.timestamps;
+  }
+
+  public void setTimestamps(final long[] timestamps) {
+    this.timestamps = timestamps;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ((this.id == null) ? 0 : this.id.hashCode());
+    result = prime * result + Arrays.hashCode(this.counts);
+    result = prime * result + Arrays.hashCode(this.flags);
+    result = prime * result + Arrays.hashCode(this.samples);
+    result = prime * result + Arrays.hashCode(this.timestamps);
+    return result;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    final Measurement other = (Measurement) obj;
+    if (this.id == null) {
+      if (other.id != null) {
+        return false;
+      }
+    } else if (!this.id.equals(other.id)) {
+      return false;
+    }
+    return Arrays.equals(this.counts, other.counts) && Arrays.equals(this.flags, other.flags)
+        && Arrays.equals(this.samples, other.samples)
+        && Arrays.equals(this.timestamps, other.timestamps);
+  }
+
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package com.sample;
+
+import java.util.Map;
+import java.util.Objects;
+
+import org.bson.types.ObjectId;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.annotations.DocumentId;
+import org.lambdamatic.mongodb.annotations.EmbeddedMap;
+
+@Document(collection = "profiles")
+public class Profile {
+
+  /** profile id. */
+  @DocumentId
+  private ObjectId id;
+
+  /** profile attributes, stored in an embedded document. */
+  @EmbeddedMap
+  private Map<String, String> attributes;
+
+  /** items indexed by tag, stored in an embedded document. */
+  @EmbeddedMap
+  private Map<EnumFoo, Bar> barsByTag;
+
+  /** legacy attributes, stored in an array. */
+  private Map<String, String> legacyAttributes;
+
+  public ObjectId getId() {
+    return this.id;
+  }
+
+  public void setId(final ObjectId id) {
+    this.id = id;
+  }
+
+  public Map<String, String> getAttributes() {
+    return this.attributes;
+  }
+
+  public void setAttributes(final Map<String, String> attributes) {
+    this.attributes = attributes;
+  }
+
+  public Map<EnumFoo, Bar> getBarsByTag() {
+    return this.barsByTag;
+  }
+
+  public void setBarsByTag(final Map<EnumFoo, Bar> barsByTag) {
+    this.barsByTag = barsByTag;
+  }
+
+  public Map<String, String> getLegacyAttributes() {
+    return this.legacyAttributes;
+  }
+
+  public void setLegacyAttributes(final Map<String, String> legacyAttributes) {
+    this.legacyAttributes = legacyAttributes;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(this.id, this.attributes, this.barsByTag, this.legacyAttributes);
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || getClass() != obj.getClass()) {
+      return false;
+    }
+    final Profile other = (Profile) obj;
+    return Objects.equals(this.id, other.id) && Objects.equals(this.attributes, other.attributes)
+        && Objects.equals(this.barsByTag, other.barsByTag)
+        && Objects.equals(this.legacyAttributes, other.legacyAttributes);
+  }
+
+}
@@ -9,6 +9,7 @@ package org.lambdamatic.mongodb;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.IOException;
+import java.util.stream.IntStream;
 
 import org.bson.Document;
 import org.bson.types.Binary;
@@ -179,5 +180,17 @@ public class MongoInsertionTest extends MongoBaseTest {
     final Foo foundFoo = fooCollection.all().first();
     assertThat(foundFoo.getBytes()).isNotNull().isEqualTo(new byte[]{1,2,3,4});
   }
-  
+
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.DELETE_ALL)
+  public void shouldInsertStreamOfDocuments() throws IOException {
+    // when
+    fooCollection.addAll(IntStream.range(0, 2500).mapToObj(i -> new FooBuilder()
+        .withStringField("foo" + i).withPrimitiveIntField(i).withEnumFoo(EnumFoo.FOO).build()));
+    // then
+    assertThat(
+        getMongoClient().getDatabase(DATABASE_NAME).getCollection(getCollectionName()).count())
+            .isEqualTo(2500);
+  }
+
 }
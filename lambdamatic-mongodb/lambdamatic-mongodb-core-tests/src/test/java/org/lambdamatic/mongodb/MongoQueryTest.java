@@ -11,9 +11,12 @@ import static org.lambdamatic.mongodb.Projection.include;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.swing.plaf.ListUI;
 
@@ -21,6 +24,7 @@ import org.assertj.core.api.Condition;
 import org.assertj.core.description.TextDescription;
 import org.junit.Before;
 import org.junit.Test;
+import org.lambdamatic.mongodb.query.context.CloseableIterator;
 
 import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
 import com.lordofthejars.nosqlunit.core.LoadStrategyEnum;
@@ -155,6 +159,22 @@ public class MongoQueryTest extends MongoBaseTest {
     }.as(new TextDescription("only a 'id' and 'authorName' fields initialized")));
   }
 
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldFindOneFooDecodingOnlyIncludedFields() throws IOException {
+    // when
+    final BlogEntry blogEntry = blogEntryCollection.filter(e -> e.id.equals("1"))
+        .decodeOnly(e -> include(e.id, e.authorName)).first();
+    // then
+    assertThat(blogEntry).isNotNull().has(new Condition<BlogEntry>() {
+      @Override
+      public boolean matches(final BlogEntry blogEntry) {
+        return blogEntry.getId().equals("1") && blogEntry.getAuthorName().equals("jdoe")
+            && blogEntry.getComments() == null && blogEntry.getContent() == null;
+      }
+    }.as(new TextDescription("only a 'id' and 'authorName' fields initialized")));
+  }
+
   @Test
   @UsingDataSet(loadStrategy = LoadStrategyEnum.DELETE_ALL)
   public void shouldFindOneFooWithBinaryFieldInclusionProjection() throws IOException {
@@ -178,5 +198,80 @@ public class MongoQueryTest extends MongoBaseTest {
       }
     }.as(new TextDescription("only a 'id', 'authorName' and 'photos' fields initialized")));
   }
-  
+
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldStreamBlogEntriesInBatches() throws IOException {
+    // given
+    final List<String> expectedIds = blogEntryCollection.filter(e -> e.authorName.equals("jdoe"))
+        .toList().stream().map(BlogEntry::getId).collect(Collectors.toList());
+    // when
+    final List<String> blogEntryIds;
+    try (final Stream<BlogEntry> blogEntries =
+        blogEntryCollection.filter(e -> e.authorName.equals("jdoe")).batchSize(1).stream()) {
+      blogEntryIds = blogEntries.map(BlogEntry::getId).collect(Collectors.toList());
+    }
+    // then
+    assertThat(blogEntryIds).isNotEmpty().isEqualTo(expectedIds);
+  }
+
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldIterateOverBlogEntriesWithSkip() throws IOException {
+    // when
+    final List<String> blogEntryIds = new ArrayList<>();
+    try (final CloseableIterator<BlogEntry> blogEntries = blogEntryCollection
+        .filter(e -> e.authorName.equals("jdoe")).batchSize(1).skip(1).iterator()) {
+      blogEntries.forEachRemaining(e -> blogEntryIds.add(e.getId()));
+    }
+    // then
+    assertThat(blogEntryIds).isNotEmpty().doesNotContain("1");
+  }
+
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldPerformActionOnEachBlogEntry() throws IOException {
+    // when
+    final List<String> blogEntryIds = new ArrayList<>();
+    blogEntryCollection.filter(e -> e.authorName.equals("jdoe")).limit(1)
+        .forEachDocument(e -> blogEntryIds.add(e.getId()));
+    // then
+    assertThat(blogEntryIds).containsExactly("1");
+  }
+
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldCountBlogEntries() throws IOException {
+    // given
+    final int expectedCount =
+        blogEntryCollection.filter(e -> e.authorName.equals("jdoe")).toList().size();
+    // when
+    final long count = blogEntryCollection.filter(e -> e.authorName.equals("jdoe")).count();
+    // then
+    assertThat(count).isGreaterThan(0).isEqualTo(expectedCount);
+    assertThat(blogEntryCollection.all().count())
+        .isEqualTo(blogEntryCollection.all().toList().size());
+  }
+
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldCheckBlogEntryExistence() throws IOException {
+    assertThat(blogEntryCollection.filter(e -> e.id.equals("1")).exists()).isTrue();
+    assertThat(blogEntryCollection.filter(e -> e.id.equals("unknown")).exists()).isFalse();
+  }
+
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldFindDistinctAuthorNames() throws IOException {
+    // given
+    final List<String> expectedAuthorNames = blogEntryCollection.all().toList().stream()
+        .map(BlogEntry::getAuthorName).distinct().collect(Collectors.toList());
+    // when
+    final List<String> authorNames =
+        blogEntryCollection.all().distinct(e -> include(e.authorName), String.class);
+    // then
+    assertThat(authorNames).containsOnlyElementsOf(expectedAuthorNames)
+        .hasSameSizeAs(expectedAuthorNames);
+  }
+
 }
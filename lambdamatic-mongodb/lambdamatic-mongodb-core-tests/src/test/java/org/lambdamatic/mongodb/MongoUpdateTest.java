@@ -15,10 +15,12 @@ import java.util.List;
 import java.util.TimeZone;
 
 import org.assertj.core.api.Assertions;
+import org.lambdamatic.mongodb.exceptions.OperationException;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.lordofthejars.nosqlunit.annotation.ShouldMatchDataSet;
+import com.mongodb.MongoBulkWriteException;
 import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
 import com.lordofthejars.nosqlunit.core.LoadStrategyEnum;
 import com.sample.BlogEntry;
@@ -91,4 +93,66 @@ public class MongoUpdateTest extends MongoBaseTest {
 
   }
 
+  private static BlogEntry newBlogEntry(final String id, final String authorName) {
+    final BlogEntry blogEntry = new BlogEntry();
+    blogEntry.setId(id);
+    blogEntry.setAuthorName(authorName);
+    return blogEntry;
+  }
+
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldUpsertAllDocuments() {
+    // when
+    final BulkWriteResult result = blogEntryCollection
+        .upsertAll(Arrays.asList(newBlogEntry("1", "John Doe"), newBlogEntry("2", "Jane Doe")));
+    // then
+    Assertions.assertThat(result.getMatchedCount()).isEqualTo(1);
+    Assertions.assertThat(result.getUpsertedCount()).isEqualTo(1);
+    Assertions.assertThat(blogEntryCollection.filter(e -> e.id.equals("1")).first()
+        .getAuthorName()).isEqualTo("John Doe");
+    Assertions.assertThat(blogEntryCollection.filter(e -> e.id.equals("2")).first()
+        .getAuthorName()).isEqualTo("Jane Doe");
+  }
+
+  @Test(expected = OperationException.class)
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldNotReplaceAllDocumentsWhenSomeAreMissing() {
+    // when
+    blogEntryCollection
+        .replaceAll(Arrays.asList(newBlogEntry("1", "John Doe"), newBlogEntry("2", "Jane Doe")));
+  }
+
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldPerformBulkOperationsInBatches() {
+    // when
+    final BulkWriteResult result = blogEntryCollection.bulk().batchSize(2)
+        .add(newBlogEntry("2", "Jane Doe"), newBlogEntry("3", "Jack Doe"))
+        .update(e -> e.id.equals("1"), e -> e.commentsNumber++).remove(e -> e.id.equals("3"))
+        .execute();
+    // then
+    Assertions.assertThat(result.getInsertedCount()).isEqualTo(2);
+    Assertions.assertThat(result.getModifiedCount()).isEqualTo(1);
+    Assertions.assertThat(result.getDeletedCount()).isEqualTo(1);
+    Assertions.assertThat(blogEntryCollection.all().toList()).hasSize(2);
+  }
+
+  @Test
+  @UsingDataSet(loadStrategy = LoadStrategyEnum.CLEAN_INSERT)
+  public void shouldReportAllBulkFailuresInUnorderedMode() {
+    try {
+      // when
+      blogEntryCollection.bulk().ordered(false).batchSize(2)
+          .add(newBlogEntry("1", "John Doe"), newBlogEntry("2", "Jane Doe"),
+              newBlogEntry("3", "Jack Doe"), newBlogEntry("1", "John Doe"))
+          .execute();
+      Assertions.fail("Expected a MongoBulkWriteException");
+    } catch (MongoBulkWriteException e) {
+      // then
+      Assertions.assertThat(e.getWriteErrors()).extracting("index").containsExactly(0, 3);
+      Assertions.assertThat(e.getWriteResult().getInsertedCount()).isEqualTo(2);
+    }
+  }
+
 }
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.lambdamatic.mongodb.Projection;
+import org.lambdamatic.mongodb.ProjectionExpression;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+import com.sample.PFoo;
+
+/**
+ * Testing the {@link FilterContextImpl}.
+ */
+public class FilterContextImplTest {
+
+  private static String getDistinctFieldName(final ProjectionExpression<PFoo> fieldExpression) {
+    return FilterContextImpl.getDistinctFieldName(BsonUtils.asBsonDocument(fieldExpression));
+  }
+
+  @Test
+  public void shouldGetDistinctFieldName() {
+    assertThat(getDistinctFieldName(f -> Projection.include(f.stringField)))
+        .isEqualTo("stringField");
+    assertThat(getDistinctFieldName(f -> Projection.include(f.id, f.enumFoo)))
+        .isEqualTo("enumFoo");
+    assertThat(getDistinctFieldName(f -> Projection.include(f.id))).isEqualTo("_id");
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotGetDistinctFieldNameFromMultipleFields() {
+    getDistinctFieldName(f -> Projection.include(f.stringField, f.enumFoo));
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotGetDistinctFieldNameFromExclusion() {
+    getDistinctFieldName(f -> Projection.exclude(f.stringField));
+  }
+
+}
@@ -0,0 +1,201 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.Test;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.UpdateManyModel;
+import com.sample.Foo;
+import com.sample.QFoo;
+import com.sample.UFoo;
+
+/**
+ * Testing the {@link IncrementAggregatorImpl}.
+ */
+public class IncrementAggregatorImplTest {
+
+  private static BsonDocument getFilter(final UpdateManyModel<Foo> update) {
+    return (BsonDocument) update.getFilter();
+  }
+
+  private static BsonDocument getUpdate(final UpdateManyModel<Foo> update) {
+    return (BsonDocument) update.getUpdate();
+  }
+
+  @Test
+  public void shouldAggregateIncrementsPerFilterAndField() {
+    // given
+    final List<List<UpdateManyModel<Foo>>> writes = new ArrayList<>();
+    final IncrementAggregatorImpl<Foo, QFoo, UFoo> aggregator =
+        new IncrementAggregatorImpl<>(writes::add, 0, TimeUnit.MILLISECONDS);
+    // when
+    for (int i = 0; i < 3; i++) {
+      aggregator.increment(f -> f.stringField.equals("foo"), u -> u.primitiveIntField += 2);
+    }
+    aggregator.increment(f -> f.stringField.equals("foo"), u -> u.primitiveIntField -= 1);
+    aggregator.increment(f -> f.stringField.equals("bar"), u -> u.primitiveIntField++);
+    aggregator.flush();
+    aggregator.flush();
+    // then
+    assertThat(writes).hasSize(1);
+    final Map<BsonDocument, BsonDocument> updates = writes.get(0).stream()
+        .collect(Collectors.toMap(update -> getFilter(update), update -> getUpdate(update)));
+    assertThat(updates).hasSize(2);
+    assertThat(updates.get(new BsonDocument("stringField", new BsonString("foo")))).isEqualTo(
+        new BsonDocument("$inc", new BsonDocument("primitiveIntField", new BsonInt32(5))));
+    assertThat(updates.get(new BsonDocument("stringField", new BsonString("bar")))).isEqualTo(
+        new BsonDocument("$inc", new BsonDocument("primitiveIntField", new BsonInt32(1))));
+    assertThat(aggregator.getIncrementCount()).isEqualTo(5);
+    assertThat(aggregator.getUpdateCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldEvictUnchangedCounters() {
+    // given
+    final List<List<UpdateManyModel<Foo>>> writes = new ArrayList<>();
+    final IncrementAggregatorImpl<Foo, QFoo, UFoo> aggregator =
+        new IncrementAggregatorImpl<>(writes::add, 0, TimeUnit.MILLISECONDS);
+    aggregator.increment(f -> f.stringField.equals("foo"), u -> u.primitiveIntField++);
+    aggregator.flush();
+    assertThat(aggregator.getCounterCount()).isEqualTo(1);
+    // when
+    aggregator.flush();
+    aggregator.increment(f -> f.stringField.equals("foo"), u -> u.primitiveIntField++);
+    aggregator.flush();
+    aggregator.flush();
+    // then
+    assertThat(aggregator.getCounterCount()).isEqualTo(0);
+    assertThat(writes).hasSize(2);
+    assertThat(getUpdate(writes.get(1).get(0))).isEqualTo(
+        new BsonDocument("$inc", new BsonDocument("primitiveIntField", new BsonInt32(1))));
+  }
+
+  @Test
+  public void shouldKeepFailedIncrementsPending() {
+    // given
+    final List<List<UpdateManyModel<Foo>>> writes = new ArrayList<>();
+    final IncrementAggregatorImpl<Foo, QFoo, UFoo> aggregator =
+        new IncrementAggregatorImpl<>(updates -> {
+          writes.add(updates);
+          if (writes.size() == 1) {
+            throw new MongoBulkWriteException(
+                BulkWriteResult.acknowledged(0, 1, 0, 1, Collections.emptyList()),
+                Arrays.asList(new BulkWriteError(2, "failed", new BsonDocument(), 1)), null,
+                new ServerAddress());
+          }
+        } , 0, TimeUnit.MILLISECONDS);
+    aggregator.increment(f -> f.stringField.equals("foo"), u -> u.primitiveIntField++);
+    aggregator.increment(f -> f.stringField.equals("bar"), u -> u.primitiveIntField++);
+    try {
+      aggregator.flush();
+    } catch (MongoBulkWriteException e) {
+      // expected
+    }
+    // when
+    aggregator.flush();
+    // then
+    assertThat(writes).hasSize(2);
+    assertThat(writes.get(1)).hasSize(1);
+    assertThat(getFilter(writes.get(1).get(0))).isEqualTo(getFilter(writes.get(0).get(1)));
+    assertThat(getUpdate(writes.get(1).get(0))).isEqualTo(
+        new BsonDocument("$inc", new BsonDocument("primitiveIntField", new BsonInt32(1))));
+    assertThat(aggregator.getUpdateCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldDropUpdateAfterMaxFailedAttempts() {
+    // given
+    final List<List<UpdateManyModel<Foo>>> writes = new ArrayList<>();
+    final IncrementAggregatorImpl<Foo, QFoo, UFoo> aggregator =
+        new IncrementAggregatorImpl<>(updates -> {
+          writes.add(updates);
+          throw new MongoBulkWriteException(
+              BulkWriteResult.acknowledged(0, 0, 0, 0, Collections.emptyList()),
+              Arrays.asList(new BulkWriteError(14, "failed", new BsonDocument(), 0)), null,
+              new ServerAddress());
+        } , 0, TimeUnit.MILLISECONDS);
+    aggregator.increment(f -> f.stringField.equals("foo"), u -> u.primitiveIntField++);
+    // when
+    for (int i = 0; i < IncrementAggregatorImpl.MAX_FLUSH_ATTEMPTS + 1; i++) {
+      try {
+        aggregator.flush();
+      } catch (MongoBulkWriteException e) {
+        // expected
+      }
+    }
+    // then
+    assertThat(writes).hasSize(IncrementAggregatorImpl.MAX_FLUSH_ATTEMPTS);
+    assertThat(aggregator.getDroppedCount()).isEqualTo(1);
+    assertThat(aggregator.getUpdateCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldRetryIncrementsWhenWriterFails() {
+    // given
+    final List<List<UpdateManyModel<Foo>>> writes = new ArrayList<>();
+    final IncrementAggregatorImpl<Foo, QFoo, UFoo> aggregator =
+        new IncrementAggregatorImpl<>(updates -> {
+          writes.add(updates);
+          if (writes.size() < IncrementAggregatorImpl.MAX_FLUSH_ATTEMPTS) {
+            throw new IllegalStateException("connection lost");
+          }
+        } , 0, TimeUnit.MILLISECONDS);
+    aggregator.increment(f -> f.stringField.equals("foo"), u -> u.primitiveIntField++);
+    // when
+    for (int i = 0; i < IncrementAggregatorImpl.MAX_FLUSH_ATTEMPTS; i++) {
+      try {
+        aggregator.flush();
+      } catch (IllegalStateException e) {
+        // expected
+      }
+      // increments performed between failed flushes are sent along with the pending ones
+      aggregator.increment(f -> f.stringField.equals("foo"), u -> u.primitiveIntField++);
+    }
+    aggregator.flush();
+    // then
+    assertThat(writes).hasSize(IncrementAggregatorImpl.MAX_FLUSH_ATTEMPTS + 1);
+    assertThat(getUpdate(writes.get(IncrementAggregatorImpl.MAX_FLUSH_ATTEMPTS - 1).get(0)))
+        .isEqualTo(
+            new BsonDocument("$inc", new BsonDocument("primitiveIntField", new BsonInt32(3))));
+    assertThat(getUpdate(writes.get(IncrementAggregatorImpl.MAX_FLUSH_ATTEMPTS).get(0)))
+        .isEqualTo(
+            new BsonDocument("$inc", new BsonDocument("primitiveIntField", new BsonInt32(1))));
+    assertThat(aggregator.getDroppedCount()).isEqualTo(0);
+    assertThat(aggregator.getUpdateCount()).isEqualTo(2);
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotAggregateAssignments() {
+    // given
+    final IncrementAggregatorImpl<Foo, QFoo, UFoo> aggregator =
+        new IncrementAggregatorImpl<>(updates -> {
+        } , 0, TimeUnit.MILLISECONDS);
+    // when
+    aggregator.increment(f -> f.stringField.equals("foo"), u -> u.primitiveIntField = 2);
+  }
+
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.Encoder;
+import org.bson.codecs.EncoderContext;
+import org.junit.Test;
+
+import com.sample.EnumFoo;
+import com.sample.Foo;
+import com.sample.Foo.FooBuilder;
+
+/**
+ * Testing the {@link InsertionPipeline}.
+ */
+public class InsertionPipelineTest {
+
+  private static List<Foo> buildFoos(final int count) {
+    return IntStream.range(0, count).mapToObj(i -> new FooBuilder().withStringField("foo" + i)
+        .withPrimitiveIntField(i).withEnumFoo(EnumFoo.FOO).build()).collect(Collectors.toList());
+  }
+
+  private static Codec<Foo> getCodec() {
+    return BsonUtils.codecRegistry.get(Foo.class);
+  }
+
+  @Test
+  public void shouldInsertDocumentsInBatchesBoundedByCount() {
+    // given
+    final List<Foo> foos = buildFoos(10);
+    final List<List<RawBsonDocument>> batches = Collections.synchronizedList(new ArrayList<>());
+    // when
+    new InsertionPipeline<>(getCodec(), batches::add, 3, Integer.MAX_VALUE, 2)
+        .insert(foos.iterator());
+    // then
+    assertThat(batches).hasSize(4);
+    final List<String> stringFields = batches.stream().flatMap(List::stream)
+        .map(document -> document.getString("stringField").getValue()).sorted()
+        .collect(Collectors.toList());
+    assertThat(stringFields).isEqualTo(foos.stream().map(Foo::getStringField).sorted()
+        .collect(Collectors.toList()));
+    assertThat(foos).extracting(Foo::getId).doesNotContainNull();
+  }
+
+  @Test
+  public void shouldSplitDocumentsInBatchesBoundedBySize() {
+    // given
+    final List<Foo> foos = buildFoos(10);
+    final List<List<RawBsonDocument>> batches = Collections.synchronizedList(new ArrayList<>());
+    new InsertionPipeline<>(getCodec(), batches::add).insert(foos.iterator());
+    final List<RawBsonDocument> documents = batches.get(0);
+    final int maxBatchBytes = documents.stream()
+        .mapToInt(document -> document.getByteBuffer().remaining()).max().getAsInt() * 3;
+    // when
+    final List<List<RawBsonDocument>> splitBatches =
+        new InsertionPipeline<>(getCodec(), batches::add, 1000, maxBatchBytes, 1).split(documents);
+    // then
+    assertThat(splitBatches.size()).isGreaterThan(1);
+    assertThat(splitBatches.stream().flatMap(List::stream).collect(Collectors.toList()))
+        .isEqualTo(documents);
+    for (List<RawBsonDocument> batch : splitBatches) {
+      assertThat(batch.stream().mapToInt(document -> document.getByteBuffer().remaining()).sum())
+          .isLessThanOrEqualTo(maxBatchBytes);
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldStopAfterFirstFailure() {
+    // given
+    final List<Foo> foos = buildFoos(10);
+    // when
+    new InsertionPipeline<Foo>(getCodec(), batch -> {
+      throw new IllegalStateException("failed to send batch");
+    }, 2, Integer.MAX_VALUE, 1).insert(foos.iterator());
+  }
+
+  @Test
+  public void shouldWaitForBatchesInFlightWhenEncodingFails() {
+    // given
+    final List<Foo> foos = buildFoos(10);
+    final Codec<Foo> codec = getCodec();
+    final AtomicInteger sentBatches = new AtomicInteger();
+    final AtomicInteger pendingBatches = new AtomicInteger();
+    final Encoder<Foo> failingEncoder = new Encoder<Foo>() {
+
+      @Override
+      public void encode(final BsonWriter writer, final Foo foo,
+          final EncoderContext encoderContext) {
+        if (foo.getPrimitiveIntField() == 5) {
+          throw new IllegalStateException("failed to encode document");
+        }
+        codec.encode(writer, foo, encoderContext);
+      }
+
+      @Override
+      public Class<Foo> getEncoderClass() {
+        return Foo.class;
+      }
+    };
+    // when
+    try {
+      new InsertionPipeline<Foo>(failingEncoder, batch -> {
+        pendingBatches.incrementAndGet();
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        sentBatches.incrementAndGet();
+        pendingBatches.decrementAndGet();
+      }, 2, Integer.MAX_VALUE, 2).insert(foos.iterator());
+      fail("Expected an IllegalStateException");
+    } catch (IllegalStateException e) {
+      // then
+      assertThat(pendingBatches.get()).isEqualTo(0);
+      assertThat(sentBatches.get()).isEqualTo(2);
+    }
+  }
+
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.lambdamatic.mongodb.exceptions.OperationException;
+import org.lambdamatic.mongodb.internal.codecs.BindingService;
+
+import com.sample.Foo;
+import com.sample.Foo.FooBuilder;
+
+/**
+ * Testing the {@link WriteBehindBufferImpl}.
+ */
+public class WriteBehindBufferImplTest {
+
+  private static Foo buildFoo(final ObjectId id, final String stringField) {
+    return new FooBuilder().withId(id).withStringField(stringField).build();
+  }
+
+  private static WriteBehindBufferImpl<Foo> buildBuffer(final Consumer<List<Foo>> writer,
+      final int maxPendingUpserts) {
+    return new WriteBehindBufferImpl<>(BindingService.getInstance()::getDocumentId, writer,
+        maxPendingUpserts, 0, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void shouldCoalesceUpsertsById() {
+    // given
+    final List<List<Foo>> writes = new ArrayList<>();
+    final ObjectId id1 = new ObjectId();
+    final ObjectId id2 = new ObjectId();
+    final WriteBehindBufferImpl<Foo> buffer = buildBuffer(writes::add, 100);
+    // when
+    buffer.upsert(buildFoo(id1, "foo1"));
+    buffer.upsert(buildFoo(id2, "foo2"));
+    buffer.upsert(buildFoo(id1, "foo1-updated"));
+    buffer.flush();
+    // then
+    assertThat(writes).hasSize(1);
+    assertThat(writes.get(0)).extracting(Foo::getStringField).containsOnly("foo1-updated",
+        "foo2");
+    assertThat(buffer.getUpsertCount()).isEqualTo(3);
+    assertThat(buffer.getCoalescedCount()).isEqualTo(1);
+    assertThat(buffer.getWrittenCount()).isEqualTo(2);
+    assertThat(buffer.getFlushCount()).isEqualTo(1);
+    assertThat(buffer.getPendingCount()).isEqualTo(0);
+  }
+
+  @Test(expected = OperationException.class)
+  public void shouldRejectUpsertWithoutId() {
+    // given
+    final WriteBehindBufferImpl<Foo> buffer = buildBuffer(writes -> {
+    }, 100);
+    // when
+    buffer.upsert(buildFoo(null, "foo"));
+  }
+
+  private static void awaitFlushes(final WriteBehindBufferImpl<Foo> buffer,
+      final long expectedFlushCount) throws InterruptedException {
+    for (int i = 0; i < 100 && buffer.getFlushCount() < expectedFlushCount; i++) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  public void shouldFlushInBackgroundWhenMaxPendingUpsertsIsReached() throws InterruptedException {
+    // given
+    final List<List<Foo>> writes = new CopyOnWriteArrayList<>();
+    final WriteBehindBufferImpl<Foo> buffer = buildBuffer(writes::add, 2);
+    // when
+    buffer.upsert(buildFoo(new ObjectId(), "foo1"));
+    buffer.upsert(buildFoo(new ObjectId(), "foo2"));
+    awaitFlushes(buffer, 1);
+    buffer.upsert(buildFoo(new ObjectId(), "foo3"));
+    // then
+    assertThat(writes).hasSize(1);
+    assertThat(writes.get(0)).hasSize(2);
+    assertThat(buffer.getPendingCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotThrowToUpserterWhenBackgroundFlushFails() throws InterruptedException {
+    // given
+    final CountDownLatch failedFlush = new CountDownLatch(1);
+    final WriteBehindBufferImpl<Foo> buffer = buildBuffer(upserts -> {
+      failedFlush.countDown();
+      throw new IllegalStateException("failed to write");
+    }, 2);
+    // when
+    buffer.upsert(buildFoo(new ObjectId(), "foo1"));
+    buffer.upsert(buildFoo(new ObjectId(), "foo2"));
+    // then
+    assertThat(failedFlush.await(1, TimeUnit.SECONDS)).isTrue();
+    // the failed upserts are put back once the exception is caught
+    for (int i = 0; i < 100 && buffer.getPendingCount() < 2; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(buffer.getPendingCount()).isEqualTo(2);
+    assertThat(buffer.getWrittenCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldSlowDownUpsertersWhenBackgroundFlushesLagBehind() throws Exception {
+    // given
+    final CountDownLatch blockedFlush = new CountDownLatch(1);
+    final CountDownLatch releaseFlush = new CountDownLatch(1);
+    final WriteBehindBufferImpl<Foo> buffer = buildBuffer(upserts -> {
+      blockedFlush.countDown();
+      try {
+        releaseFlush.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, 2);
+    buffer.upsert(buildFoo(new ObjectId(), "foo1"));
+    buffer.upsert(buildFoo(new ObjectId(), "foo2"));
+    assertThat(blockedFlush.await(1, TimeUnit.SECONDS)).isTrue();
+    // when
+    final Thread upserter = new Thread(() -> {
+      for (int i = 3; i <= 6; i++) {
+        buffer.upsert(buildFoo(new ObjectId(), "foo" + i));
+      }
+    });
+    upserter.start();
+    for (int i = 0; i < 100 && upserter.getState() != Thread.State.BLOCKED; i++) {
+      Thread.sleep(10);
+    }
+    // then the upserter waits for the flush in progress once twice the maximum is pending
+    assertThat(upserter.getState()).isEqualTo(Thread.State.BLOCKED);
+    assertThat(buffer.getPendingCount()).isEqualTo(4);
+    releaseFlush.countDown();
+    upserter.join(1000);
+    assertThat(upserter.isAlive()).isFalse();
+    buffer.close();
+    assertThat(buffer.getWrittenCount()).isEqualTo(6);
+    assertThat(buffer.getPendingCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldKeepPendingUpsertsWhenFlushFails() {
+    // given
+    final WriteBehindBufferImpl<Foo> buffer = buildBuffer(upserts -> {
+      throw new IllegalStateException("failed to write");
+    }, 100);
+    buffer.upsert(buildFoo(new ObjectId(), "foo1"));
+    // when
+    try {
+      buffer.flush();
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    // then
+    assertThat(buffer.getPendingCount()).isEqualTo(1);
+    assertThat(buffer.getWrittenCount()).isEqualTo(0);
+  }
+
+  @Test(expected = OperationException.class)
+  public void shouldFlushOnCloseAndRejectFurtherUpserts() {
+    // given
+    final List<List<Foo>> writes = new ArrayList<>();
+    final WriteBehindBufferImpl<Foo> buffer = buildBuffer(writes::add, 100);
+    buffer.upsert(buildFoo(new ObjectId(), "foo1"));
+    // when
+    buffer.close();
+    // then
+    assertThat(writes).hasSize(1);
+    buffer.upsert(buildFoo(new ObjectId(), "foo2"));
+  }
+
+  @Test
+  public void shouldFlushPeriodically() throws InterruptedException {
+    // given
+    final List<List<Foo>> writes = new ArrayList<>();
+    try (final WriteBehindBufferImpl<Foo> buffer = new WriteBehindBufferImpl<>(
+        domainObject -> BsonUtils.asBsonDocument(new IdFilter<>(domainObject)),
+        upserts -> writes.add(upserts), 100, 10, TimeUnit.MILLISECONDS)) {
+      // when
+      buffer.upsert(buildFoo(new ObjectId(), "foo1"));
+      for (int i = 0; i < 100 && buffer.getFlushCount() == 0; i++) {
+        Thread.sleep(10);
+      }
+      // then
+      assertThat(buffer.getFlushCount()).isEqualTo(1);
+      assertThat(buffer.getPendingCount()).isEqualTo(0);
+    }
+  }
+
+}
@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonObjectId;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.internal.codecs.BindingPlan.FieldBinding;
+
+import com.sample.Bar;
+import com.sample.Foo;
+import com.sample.Foo.FooBuilder;
+
+/**
+ * Testing the {@link BindingService} and its {@link BindingPlan}s.
+ */
+public class BindingServiceTest {
+
+  @Test
+  public void shouldResolveIdBindingOnce() {
+    // when
+    final BindingPlan bindingPlan = BindingService.getInstance().getBindingPlan(Foo.class);
+    // then
+    assertThat(bindingPlan.isDocument()).isTrue();
+    assertThat(bindingPlan.getIdBinding().getDocumentFieldName()).isEqualTo("_id");
+    assertThat(bindingPlan.getIdBinding().getField().getName()).isEqualTo("id");
+    assertThat(bindingPlan.getIdBinding().getKind()).isEqualTo(FieldKind.OBJECT_ID);
+    assertThat(bindingPlan.getNonIdBindings()).hasSize(bindingPlan.getBindings().length - 1)
+        .doesNotContain(bindingPlan.getIdBinding());
+  }
+
+  @Test
+  public void shouldOrderBindingsByDocumentFieldName() {
+    // when
+    final BindingPlan bindingPlan = BindingService.getInstance().getBindingPlan(Foo.class);
+    // then
+    final List<String> documentFieldNames = new ArrayList<>();
+    for (FieldBinding binding : bindingPlan.getBindings()) {
+      documentFieldNames.add(binding.getDocumentFieldName());
+    }
+    assertThat(documentFieldNames).isSorted().contains("raw_content", "primitiveIntField")
+        .doesNotContain("bytes");
+    assertThat(documentFieldNames)
+        .containsExactlyElementsOf(BindingService.getInstance().getBindings(Foo.class).keySet());
+  }
+
+  @Test
+  public void shouldReadValuesWithAccessibleFields() {
+    // given
+    final ObjectId id = new ObjectId();
+    final Foo foo = new FooBuilder().withId(id).withPrimitiveIntField(42).build();
+    final BindingPlan bindingPlan = BindingService.getInstance().getBindingPlan(Foo.class);
+    // when
+    final Object idValue = bindingPlan.getIdBinding().getValue(foo);
+    // then
+    assertThat(idValue).isEqualTo(id);
+    assertThat(BindingService.getFieldValue(foo,
+        BindingService.getInstance().getBindings(Foo.class).get("primitiveIntField")))
+            .isEqualTo(42);
+  }
+
+  @Test
+  public void shouldWriteFieldsLikeBoxedValues() {
+    // given
+    final Foo foo = new FooBuilder().withId(new ObjectId()).withStringField("jdoe")
+        .withPrimitiveByteField((byte) 1).withPrimitiveShortField((short) 2)
+        .withPrimitiveIntField(42).withPrimitiveLongField(42L).withPrimitiveFloatField(1.5f)
+        .withPrimitiveDoubleField(2.5).withPrimitiveBooleanField(true).withPrimitiveCharField('c')
+        .withDate(new Date()).withBar(new Bar("BAR", 2)).withStringList("bar", "baz").build();
+    final BindingPlan bindingPlan = BindingService.getInstance().getBindingPlan(Foo.class);
+    final EncoderContext encoderContext = EncoderContext.builder().build();
+    final BsonDocument fieldWriterDocument = new BsonDocument();
+    final BsonDocument boxedValueDocument = new BsonDocument();
+    final BsonDocumentWriter fieldWriter = new BsonDocumentWriter(fieldWriterDocument);
+    final BsonDocumentWriter boxedValueWriter = new BsonDocumentWriter(boxedValueDocument);
+    fieldWriter.writeStartDocument();
+    boxedValueWriter.writeStartDocument();
+    // when
+    for (FieldBinding binding : bindingPlan.getNonIdBindings()) {
+      binding.write(fieldWriter, foo, encoderContext, DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+      EncoderUtils.writeNamedValue(boxedValueWriter, binding.getDocumentFieldName(),
+          binding.getValue(foo), encoderContext, DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    }
+    fieldWriter.writeEndDocument();
+    boxedValueWriter.writeEndDocument();
+    // then
+    assertThat(fieldWriterDocument).isEqualTo(boxedValueDocument);
+    assertThat(fieldWriterDocument.getInt32("primitiveCharField").getValue()).isEqualTo('c');
+    assertThat(fieldWriterDocument.getDouble("primitiveFloatField").getValue()).isEqualTo(1.5);
+  }
+
+  @Test
+  public void shouldWriteZeroAndFalseArrayElements() {
+    // given
+    final BsonDocument document = new BsonDocument();
+    final BsonDocumentWriter writer = new BsonDocumentWriter(document);
+    final EncoderContext encoderContext = EncoderContext.builder().build();
+    writer.writeStartDocument();
+    // when
+    EncoderUtils.writeNamedValue(writer, "ints", Arrays.asList(1, 0, 2), encoderContext,
+        DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    EncoderUtils.writeNamedValue(writer, "booleans", new Boolean[] {true, false}, encoderContext,
+        DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    writer.writeEndDocument();
+    // then
+    assertThat(document).isEqualTo(
+        BsonDocument.parse("{ints: [1, 0, 2], booleans: [true, false]}"));
+  }
+
+  @Test
+  public void shouldWriteObjectIdsWithTheirOwnName() {
+    // given
+    final ObjectId first = new ObjectId();
+    final ObjectId second = new ObjectId();
+    final BsonDocument document = new BsonDocument();
+    final BsonDocumentWriter writer = new BsonDocumentWriter(document);
+    final EncoderContext encoderContext = EncoderContext.builder().build();
+    writer.writeStartDocument();
+    // when
+    EncoderUtils.writeNamedValue(writer, "ref", first, encoderContext,
+        DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    EncoderUtils.writeNamedValue(writer, "refs", Arrays.asList(first, second), encoderContext,
+        DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    writer.writeEndDocument();
+    // then
+    assertThat(document.getObjectId("ref").getValue()).isEqualTo(first);
+    assertThat(document.getArray("refs").getValues()).containsExactly(new BsonObjectId(first),
+        new BsonObjectId(second));
+    assertThat(document.containsKey(EncoderUtils.MONGOBD_DOCUMENT_ID)).isFalse();
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotWriteValueOfNonEmbeddedDocumentClass() {
+    // given
+    final BsonDocumentWriter writer = new BsonDocumentWriter(new BsonDocument());
+    writer.writeStartDocument();
+    // when
+    EncoderUtils.writeNamedValue(writer, "value", new StringBuilder("foo"),
+        EncoderContext.builder().build(), DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    // then expect an exception
+  }
+
+  @Test
+  public void shouldComputeSinglePlanUnderConcurrentAccess() throws Exception {
+    // given
+    final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    final List<Future<BindingPlan>> results = new ArrayList<>();
+    // when
+    try {
+      final Callable<BindingPlan> task =
+          () -> BindingService.getInstance().getBindingPlan(Bar.class);
+      for (int i = 0; i < 16; i++) {
+        results.add(executorService.submit(task));
+      }
+      // then
+      final BindingPlan bindingPlan = BindingService.getInstance().getBindingPlan(Bar.class);
+      for (Future<BindingPlan> result : results) {
+        assertThat(result.get()).isSameAs(bindingPlan);
+      }
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+}
@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.decode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.encode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.encodeAndDecode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.getDocumentCodec;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.newCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.bson.BsonBinary;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.codecs.Codec;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+import com.sample.Article;
+import com.sample.ArticleCodec;
+
+/**
+ * Testing the encoding and decoding of the values of fields annotated with
+ * {@link org.lambdamatic.mongodb.annotations.Compressed}.
+ */
+public class CompressedValueCodecTest {
+
+  private static String buildLargeText() {
+    final StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      text.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit ").append(i)
+          .append(". ");
+    }
+    return text.toString();
+  }
+
+  private static Article buildArticle(final String body, final byte[] attachment) {
+    final Article article = new Article();
+    article.setId(new ObjectId("5459fed60986a72813eb2d59"));
+    article.setTitle("Lorem ipsum");
+    article.setBody(body);
+    article.setAttachment(attachment);
+    return article;
+  }
+
+  @Test
+  public void shouldCompressLargeValues() {
+    // given
+    final String body = buildLargeText();
+    final byte[] attachment = buildLargeText().getBytes();
+    // when
+    final BsonDocument document =
+        encode(getDocumentCodec(Article.class), buildArticle(body, attachment));
+    // then
+    assertThat(document.getString("title").getValue()).isEqualTo("Lorem ipsum");
+    final BsonBinary compressedBody = document.getBinary("body");
+    assertThat(compressedBody.getType()).isEqualTo(CompressedValues.BINARY_SUBTYPE);
+    assertThat(compressedBody.getData().length).isLessThan(body.length() / 2);
+    assertThat(document.getBinary("attachment").getType())
+        .isEqualTo(CompressedValues.BINARY_SUBTYPE);
+  }
+
+  @Test
+  public void shouldNotCompressSmallOrIncompressibleValues() {
+    // given
+    final byte[] randomBytes = new byte[2048];
+    new Random(42).nextBytes(randomBytes);
+    // when
+    final BsonDocument document =
+        encode(getDocumentCodec(Article.class), buildArticle("Lorem ipsum", randomBytes));
+    // then
+    assertThat(document.get("body")).isEqualTo(new BsonString("Lorem ipsum"));
+    assertThat(document.get("attachment")).isEqualTo(new BsonBinary(randomBytes));
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithDocumentCodec() {
+    // given
+    final Article article = buildArticle(buildLargeText(), buildLargeText().getBytes());
+    // when
+    final Article decodedArticle = encodeAndDecode(getDocumentCodec(Article.class), article);
+    // then
+    assertThat(decodedArticle).isEqualTo(article);
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithGeneratedCodec() {
+    // given
+    final Article article = buildArticle(buildLargeText(), buildLargeText().getBytes());
+    final ArticleCodec codec = new ArticleCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    // when
+    final Article decodedArticle = encodeAndDecode(codec, article);
+    // then
+    assertThat(decodedArticle).isEqualTo(article);
+    assertThat(encode(codec, article)).isEqualTo(encode(getDocumentCodec(Article.class), article));
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithRuntimeCodec() throws Exception {
+    // given
+    final Article article = buildArticle(buildLargeText(), buildLargeText().getBytes());
+    final Codec<Article> codec = newCodec(RuntimeDocumentCodecGenerator.generate(Article.class));
+    // when
+    final Article decodedArticle = encodeAndDecode(codec, article);
+    // then
+    assertThat(decodedArticle).isEqualTo(article);
+    assertThat(encode(codec, article)).isEqualTo(encode(getDocumentCodec(Article.class), article));
+  }
+
+  @Test
+  public void shouldDecodeUncompressedValues() {
+    // given
+    final BsonDocument document = new BsonDocument("body", new BsonString(buildLargeText()))
+        .append("attachment", new BsonBinary(new byte[] {1, 2, 3}));
+    // when
+    final Article decodedArticle = decode(getDocumentCodec(Article.class), document);
+    // then
+    assertThat(decodedArticle.getBody()).isEqualTo(buildLargeText());
+    assertThat(decodedArticle.getAttachment()).isEqualTo(new byte[] {1, 2, 3});
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotDecodeValueCompressedWithUnknownCodec() {
+    // given
+    final BsonDocument document = encode(getDocumentCodec(Article.class),
+        buildArticle(buildLargeText(), null));
+    final byte[] compressedBody = document.getBinary("body").getData();
+    compressedBody[0] = 42;
+    document.put("body", new BsonBinary(CompressedValues.BINARY_SUBTYPE, compressedBody));
+    // when
+    decode(getDocumentCodec(Article.class), document);
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotDecodeValueWithNegativeDecompressedLength() {
+    // given
+    final BsonDocument document = encodeWithDecompressedLength(-1);
+    // when
+    decode(getDocumentCodec(Article.class), document);
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotDecodeValueWithTooLargeDecompressedLength() {
+    // given
+    final BsonDocument document =
+        encodeWithDecompressedLength(CompressedValues.MAX_DECOMPRESSED_SIZE + 1);
+    // when
+    decode(getDocumentCodec(Article.class), document);
+  }
+
+  private static BsonDocument encodeWithDecompressedLength(final int decompressedLength) {
+    final BsonDocument document =
+        encode(getDocumentCodec(Article.class), buildArticle(buildLargeText(), null));
+    final byte[] compressedBody = document.getBinary("body").getData();
+    ByteBuffer.wrap(compressedBody, 1, Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+        .putInt(decompressedLength);
+    document.put("body", new BsonBinary(CompressedValues.BINARY_SUBTYPE, compressedBody));
+    return document;
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotRegisterCodecWithSameName() {
+    CompressionCodecRegistry.getInstance().register(new DeflateCompressionCodec());
+  }
+
+  @Test
+  public void shouldCompressAndDecompressWithDeflateCodec() {
+    // given
+    final byte[] data = Arrays.copyOf(buildLargeText().getBytes(), 10000);
+    final DeflateCompressionCodec codec = new DeflateCompressionCodec();
+    // when
+    final byte[] compressedData = codec.compress(data);
+    // then
+    assertThat(codec.decompress(compressedData, 0, compressedData.length, data.length))
+        .isEqualTo(data);
+  }
+
+  @Test
+  public void shouldCompressAfterHeaderWithDeflateCodec() {
+    // given
+    final byte[] data = Arrays.copyOf(buildLargeText().getBytes(), 10000);
+    final DeflateCompressionCodec codec = new DeflateCompressionCodec();
+    // when
+    final byte[] compressedData = codec.compress(data, 5);
+    // then
+    assertThat(Arrays.copyOfRange(compressedData, 5, compressedData.length))
+        .isEqualTo(codec.compress(data));
+    assertThat(codec.decompress(compressedData, 5, compressedData.length - 5, data.length))
+        .isEqualTo(data);
+  }
+
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.time.LocalDate;
+import java.util.Objects;
+
+import org.apache.commons.io.IOUtils;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.json.JsonReader;
+import org.bson.json.JsonWriter;
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lambdamatic.mongodb.converters.ValueConverter;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+/**
+ * Testing the user-defined {@link ValueConverter}s registered in the {@link ConverterRegistry}.
+ */
+public class ConverterRegistryTest {
+
+  private static final String EVENT_JSON = "{_targetClass:'" + Event.class.getName()
+      + "', day:'2015-10-21', name:'Back to the Future'}";
+
+  @Before
+  public void registerConverter() {
+    ConverterRegistry.getInstance().register(new LocalDateConverter());
+  }
+
+  @After
+  public void unregisterConverter() {
+    ConverterRegistry.getInstance().unregister(LocalDate.class);
+  }
+
+  @Test
+  public void shouldEncodeFieldWithRegisteredConverter() throws IOException, JSONException {
+    // given
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(outputStream, "UTF-8"));
+    // when
+    new DocumentCodec<>(Event.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY).encode(jsonWriter,
+        new Event(LocalDate.of(2015, 10, 21), "Back to the Future"),
+        EncoderContext.builder().build());
+    // then
+    JSONAssert.assertEquals(EVENT_JSON, IOUtils.toString(outputStream.toByteArray(), "UTF-8"),
+        true);
+  }
+
+  @Test
+  public void shouldDecodeFieldWithRegisteredConverter() {
+    // when
+    final Event event =
+        new DocumentCodec<>(Event.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY)
+            .decode(new JsonReader(EVENT_JSON), DecoderContext.builder().build());
+    // then
+    assertThat(event).isEqualTo(new Event(LocalDate.of(2015, 10, 21), "Back to the Future"));
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotRegisterConverterWithUnsupportedDocumentType() {
+    ConverterRegistry.getInstance().register(new ValueConverter<LocalDate, Object>() {
+
+      @Override
+      public Class<LocalDate> getJavaType() {
+        return LocalDate.class;
+      }
+
+      @Override
+      public Class<Object> getDocumentType() {
+        return Object.class;
+      }
+
+      @Override
+      public Object toDocumentValue(final LocalDate javaValue) {
+        return javaValue;
+      }
+
+      @Override
+      public LocalDate toJavaValue(final Object documentValue) {
+        return (LocalDate) documentValue;
+      }
+    });
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotTruncateLongValueIntoInt() {
+    ConverterRegistry.readInt(readerAtValue("NumberLong('4294967296')"));
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotTruncateDoubleValueIntoInt() {
+    ConverterRegistry.readInt(readerAtValue("1.5"));
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotTruncateIntValueIntoByte() {
+    ConverterRegistry.getInstance().getValueDecoder(byte.class).decode(readerAtValue("300"),
+        DecoderContext.builder().build(), null);
+  }
+
+  @Test
+  public void shouldConvertLongValueThatFitsIntoShort() {
+    assertThat(ConverterRegistry.getInstance().getValueDecoder(short.class)
+        .decode(readerAtValue("NumberLong('-32768')"), DecoderContext.builder().build(), null))
+            .isEqualTo(Short.MIN_VALUE);
+  }
+
+  private static JsonReader readerAtValue(final String jsonValue) {
+    final JsonReader reader = new JsonReader("{value: " + jsonValue + "}");
+    reader.readStartDocument();
+    reader.readBsonType();
+    reader.readName();
+    return reader;
+  }
+
+  static class LocalDateConverter implements ValueConverter<LocalDate, String> {
+
+    @Override
+    public Class<LocalDate> getJavaType() {
+      return LocalDate.class;
+    }
+
+    @Override
+    public Class<String> getDocumentType() {
+      return String.class;
+    }
+
+    @Override
+    public String toDocumentValue(final LocalDate javaValue) {
+      return javaValue.toString();
+    }
+
+    @Override
+    public LocalDate toJavaValue(final String documentValue) {
+      return LocalDate.parse(documentValue);
+    }
+  }
+
+  static class Event {
+
+    private LocalDate day;
+
+    private String name;
+
+    Event() {
+      super();
+    }
+
+    Event(final LocalDate day, final String name) {
+      this.day = day;
+      this.name = name;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.day, this.name);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof Event)) {
+        return false;
+      }
+      final Event other = (Event) obj;
+      return Objects.equals(this.day, other.day) && Objects.equals(this.name, other.name);
+    }
+
+    @Override
+    public String toString() {
+      return "Event [day=" + this.day + ", name=" + this.name + "]";
+    }
+  }
+
+}
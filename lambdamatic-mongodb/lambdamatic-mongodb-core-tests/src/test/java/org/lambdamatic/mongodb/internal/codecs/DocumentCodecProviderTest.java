@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.bson.codecs.ValueCodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.junit.Test;
+
+import com.sample.Foo;
+
+/**
+ * Testing the reuse of the {@link org.bson.codecs.Codec}s provided by the {@link DocumentCodecProvider}.
+ */
+public class DocumentCodecProviderTest {
+
+  @Test
+  public void shouldReuseCodecForSameRegistry() {
+    // when
+    final DocumentCodecProvider provider = new DocumentCodecProvider();
+    // then
+    assertThat(provider.get(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY))
+        .isSameAs(provider.get(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY));
+    assertThat(DocumentCodecProvider.getDocumentCodec(RuntimeDocumentCodecGeneratorTest.Item.class,
+        DocumentCodecTest.DEFAULT_CODEC_REGISTRY)).isInstanceOf(DocumentCodec.class)
+            .isSameAs(DocumentCodecProvider.getDocumentCodec(
+                RuntimeDocumentCodecGeneratorTest.Item.class,
+                DocumentCodecTest.DEFAULT_CODEC_REGISTRY));
+  }
+
+  @Test
+  public void shouldNotShareCodecAcrossRegistries() {
+    // given
+    final CodecRegistry otherRegistry = CodecRegistries.fromProviders(new ValueCodecProvider());
+    // when
+    final DocumentCodecProvider provider = new DocumentCodecProvider();
+    // then
+    assertThat(provider.get(Foo.class, otherRegistry))
+        .isNotSameAs(provider.get(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY));
+  }
+
+}
@@ -14,11 +14,14 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.Date;
 import java.util.Map;
 import java.util.TreeMap;
 
 import org.apache.commons.io.IOUtils;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
 import org.bson.BsonReader;
 import org.bson.BsonWriter;
 import org.bson.codecs.BsonValueCodecProvider;
@@ -27,6 +30,7 @@ import org.bson.codecs.EncoderContext;
 import org.bson.codecs.ValueCodecProvider;
 import org.bson.codecs.configuration.CodecRegistries;
 import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
 import org.bson.json.JsonReader;
 import org.bson.json.JsonWriter;
 import org.bson.types.ObjectId;
@@ -155,6 +159,13 @@ public class DocumentCodecTest {
             + "primitiveIntField:1}}, "
             + "{baz:{_targetClass: 'com.sample.Bar', stringField:'BAZ' , primitiveIntField:2}},"
             + "{foo:{_targetClass: 'com.sample.Bar', stringField:'FOO' , primitiveIntField:3}}]}");
+    data.match("Document with primitive fields and embedded document",
+        new FooBuilder().withId(new ObjectId("5459fed60986a72813eb2d59"))
+            .withPrimitiveBooleanField(true).withPrimitiveDoubleField(1.5)
+            .withPrimitiveCharField('c').withBar(new Bar("BAR", 2)).build(),
+        "{_id : { $oid : '5459fed60986a72813eb2d59' }, _targetClass:'com.sample.Foo', "
+            + "primitiveDoubleField:1.5, primitiveBooleanField:true, primitiveCharField:99, "
+            + "bar:{_targetClass: 'com.sample.Bar', stringField:'BAR', primitiveIntField:2}}");
     return data.toArray();
   }
 
@@ -219,4 +230,20 @@ public class DocumentCodecTest {
     assertEquals(javaObject, actual);
   }
 
+  @Test
+  public void shouldDecodeBinaryDocument() {
+    Assume.assumeThat(javaObject, CoreMatchers.instanceOf(Foo.class));
+    // given
+    final DocumentCodec<Foo> documentCodec = new DocumentCodec<>(Foo.class, DEFAULT_CODEC_REGISTRY);
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    documentCodec.encode(new BsonBinaryWriter(outputBuffer), (Foo) javaObject,
+        EncoderContext.builder().isEncodingCollectibleDocument(true).build());
+    final BsonReader bsonReader =
+        new BsonBinaryReader(ByteBuffer.wrap(outputBuffer.toByteArray()));
+    // when
+    final Foo actual = documentCodec.decode(bsonReader, DecoderContext.builder().build());
+    // then
+    assertEquals(javaObject, actual);
+  }
+
 }
@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.decode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.encode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.encodeAndDecode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.getDocumentCodec;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.newCodec;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonString;
+import org.bson.codecs.Codec;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.lambdamatic.SerializablePredicate;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+import com.sample.Bar;
+import com.sample.EnumBar;
+import com.sample.EnumFoo;
+import com.sample.Profile;
+import com.sample.ProfileCodec;
+import com.sample.QProfile;
+
+/**
+ * Testing the encoding and decoding of the {@link java.util.Map} fields annotated with
+ * {@link org.lambdamatic.mongodb.annotations.EmbeddedMap}.
+ */
+public class EmbeddedMapCodecTest {
+
+  private static Profile buildProfile() {
+    final Profile profile = new Profile();
+    profile.setId(new ObjectId("5459fed60986a72813eb2d59"));
+    final Map<String, String> attributes = new LinkedHashMap<>();
+    attributes.put("color", "blue");
+    attributes.put("size", "XL");
+    profile.setAttributes(attributes);
+    final Map<EnumFoo, Bar> barsByTag = new LinkedHashMap<>();
+    barsByTag.put(EnumFoo.BAR,
+        new Bar.BarBuilder().withStringField("bar").withEnumBar(EnumBar.BAR).build());
+    profile.setBarsByTag(barsByTag);
+    final Map<String, String> legacyAttributes = new LinkedHashMap<>();
+    legacyAttributes.put("color", "red");
+    profile.setLegacyAttributes(legacyAttributes);
+    return profile;
+  }
+
+  @Test
+  public void shouldEncodeAnnotatedMapsAsEmbeddedDocuments() {
+    // when
+    final BsonDocument document = encode(getDocumentCodec(Profile.class), buildProfile());
+    // then
+    assertThat(document.get("attributes")).isEqualTo(new BsonDocument("color",
+        new BsonString("blue")).append("size", new BsonString("XL")));
+    assertThat(document.getDocument("barsByTag").getDocument("BAR").getString("stringField"))
+        .isEqualTo(new BsonString("bar"));
+    assertThat(document.get("legacyAttributes")).isEqualTo(
+        new BsonArray(Arrays.asList(new BsonDocument("color", new BsonString("red")))));
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithDocumentCodec() {
+    // given
+    final Profile profile = buildProfile();
+    // when
+    final Profile decodedProfile = encodeAndDecode(getDocumentCodec(Profile.class), profile);
+    // then
+    assertThat(decodedProfile).isEqualTo(profile);
+    assertThat(decodedProfile.getAttributes().keySet()).containsExactly("color", "size");
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithGeneratedCodec() {
+    // given
+    final Profile profile = buildProfile();
+    final ProfileCodec codec = new ProfileCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    // when
+    final Profile decodedProfile = encodeAndDecode(codec, profile);
+    // then
+    assertThat(decodedProfile).isEqualTo(profile);
+    assertThat(encode(codec, profile)).isEqualTo(encode(getDocumentCodec(Profile.class), profile));
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithRuntimeCodec() throws Exception {
+    // given
+    final Profile profile = buildProfile();
+    final Codec<Profile> codec = newCodec(RuntimeDocumentCodecGenerator.generate(Profile.class));
+    // when
+    final Profile decodedProfile = encodeAndDecode(codec, profile);
+    // then
+    assertThat(decodedProfile).isEqualTo(profile);
+    assertThat(encode(codec, profile)).isEqualTo(encode(getDocumentCodec(Profile.class), profile));
+  }
+
+  @Test
+  public void shouldDecodeMapsStoredInEitherForm() {
+    // given
+    final BsonDocument document = encode(getDocumentCodec(Profile.class), buildProfile());
+    final BsonDocument swappedDocument = document.clone();
+    swappedDocument.put("attributes", document.get("legacyAttributes"));
+    swappedDocument.put("legacyAttributes", document.get("attributes"));
+    // when
+    final Profile decodedProfile = decode(getDocumentCodec(Profile.class), swappedDocument);
+    // then
+    assertThat(decodedProfile.getAttributes()).containsOnlyKeys("color")
+        .containsEntry("color", "red");
+    assertThat(decodedProfile.getLegacyAttributes()).containsOnlyKeys("color", "size")
+        .containsEntry("color", "blue");
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotEncodeKeyWithDot() {
+    // given
+    final Profile profile = buildProfile();
+    profile.getAttributes().put("a.b", "c");
+    // when
+    encode(getDocumentCodec(Profile.class), profile);
+  }
+
+  @Test
+  public void shouldQueryMapEntryWithDottedPath() {
+    // given
+    final SerializablePredicate<QProfile> filterExpression =
+        p -> p.attributes.get("color").equals("blue");
+    final BsonDocument filterDocument = new BsonDocument();
+    // when
+    new FilterExpressionCodec().encode(new BsonDocumentWriter(filterDocument), filterExpression,
+        EncoderContext.builder().build());
+    // then
+    assertThat(filterDocument).isEqualTo(new BsonDocument("attributes.color",
+        new BsonString("blue")));
+  }
+
+}
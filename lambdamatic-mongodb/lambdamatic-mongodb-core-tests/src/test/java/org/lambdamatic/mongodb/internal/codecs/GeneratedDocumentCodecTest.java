@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import org.apache.commons.io.IOUtils;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.json.JsonReader;
+import org.bson.json.JsonWriter;
+import org.bson.types.ObjectId;
+import org.json.JSONException;
+import org.junit.Test;
+
+import com.sample.Bar;
+import com.sample.BarCodec;
+import com.sample.EnumFoo;
+import com.sample.Foo;
+import com.sample.Foo.FooBuilder;
+import com.sample.FooCodec;
+
+/**
+ * Testing the {@link GeneratedDocumentCodec}s generated by the annotation processor.
+ */
+public class GeneratedDocumentCodecTest {
+
+  private static Foo buildFoo() {
+    return new FooBuilder().withId(new ObjectId("5459fed60986a72813eb2d59"))
+        .withStringField("jdoe").withPrimitiveByteField((byte) 1)
+        .withPrimitiveShortField((short) 2).withPrimitiveIntField(42)
+        .withPrimitiveLongField(42L).withPrimitiveFloatField(1.5f).withPrimitiveDoubleField(2.5)
+        .withPrimitiveBooleanField(true).withPrimitiveCharField('c').withEnumFoo(EnumFoo.FOO)
+        .withLocation(40.1, -70.2).withDate(new Date()).withBar(new Bar("BAR", 2))
+        .withBarList(new Bar("javaObject", 1)).withStringList("bar", "baz").build();
+  }
+
+  private static String encode(final Codec<Foo> codec, final Foo foo) throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(outputStream, "UTF-8"));
+    codec.encode(jsonWriter, foo, EncoderContext.builder().build());
+    return IOUtils.toString(outputStream.toByteArray(), "UTF-8");
+  }
+
+  @Test
+  public void shouldProvideGeneratedCodec() {
+    assertThat(new DocumentCodecProvider().get(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY))
+        .isInstanceOf(FooCodec.class);
+  }
+
+  @Test
+  public void shouldEncodeLikeDocumentCodec() throws IOException, JSONException {
+    // given
+    final Foo foo = buildFoo();
+    // when
+    final String generatedCodecJson =
+        encode(new FooCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY), foo);
+    // then
+    final String documentCodecJson =
+        encode(new DocumentCodec<>(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY), foo);
+    assertThat(generatedCodecJson).isEqualTo(documentCodecJson);
+  }
+
+  @Test
+  public void shouldDecodeDocument() throws IOException {
+    // given
+    final Foo foo = buildFoo();
+    final String json = encode(new FooCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY), foo);
+    // when
+    final Foo decodedFoo = new FooCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY)
+        .decode(new JsonReader(json), DecoderContext.builder().build());
+    // then
+    assertThat(decodedFoo).isEqualTo(foo);
+  }
+
+  @Test
+  public void shouldDecodeBinaryDocument() {
+    // given
+    final Foo foo = buildFoo();
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    new FooCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY).encode(
+        new BsonBinaryWriter(outputBuffer), foo, EncoderContext.builder().build());
+    // when
+    final Foo decodedFoo = new FooCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY).decode(
+        new BsonBinaryReader(ByteBuffer.wrap(outputBuffer.toByteArray())),
+        DecoderContext.builder().build());
+    // then
+    assertThat(decodedFoo).isEqualTo(foo);
+  }
+
+  @Test
+  public void shouldGenerateIdWhenMissing() {
+    // given
+    final Foo foo = new FooBuilder().withStringField("jdoe").build();
+    // when
+    new FooCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY).encode(
+        new BsonBinaryWriter(new BasicOutputBuffer()), foo, EncoderContext.builder().build());
+    // then
+    assertThat(foo.getId()).isNotNull();
+  }
+
+  @Test
+  public void shouldDecodeEmbeddedDocumentWithGeneratedCodec() {
+    // given
+    final String json = "{_targetClass: 'com.sample.Bar', stringField:'BAR', primitiveIntField:2}";
+    // when
+    final Bar bar = new BarCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY)
+        .decode(new JsonReader(json), DecoderContext.builder().build());
+    // then
+    assertThat(bar).isEqualTo(new Bar("BAR", 2));
+  }
+
+}
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.decode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.encode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.encodeAndDecode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.getDocumentCodec;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.newCodec;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.codecs.Codec;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+import com.sample.Bar;
+import com.sample.EnumBar;
+import com.sample.EnumFoo;
+import com.sample.Inventory;
+import com.sample.InventoryCodec;
+
+/**
+ * Testing the decoding of collections and maps into their declared (generic) types.
+ */
+public class GenericCollectionCodecTest {
+
+  private static Inventory buildInventory() {
+    final Inventory inventory = new Inventory();
+    inventory.setId(new ObjectId("5459fed60986a72813eb2d59"));
+    final Bar bar1 = new Bar.BarBuilder().withStringField("bar1").withEnumBar(EnumBar.BAR)
+        .withPrimitiveIntField(1).build();
+    final Bar bar2 = new Bar.BarBuilder().withStringField("bar2").withEnumBar(EnumBar.BAZ)
+        .withPrimitiveIntField(2).build();
+    inventory.setBars(Arrays.asList(bar1, bar2));
+    inventory.setTags(EnumSet.of(EnumFoo.FOO, EnumFoo.BAZ));
+    inventory.setHistory(new LinkedList<>(Arrays.asList("created", "updated")));
+    inventory.setScores(new TreeSet<>(Arrays.asList(3, 1, 2)));
+    final Map<String, Bar> barsByName = new LinkedHashMap<>();
+    barsByName.put("zbar", bar2);
+    barsByName.put("abar", bar1);
+    inventory.setBarsByName(barsByName);
+    final Map<EnumFoo, Integer> countsByTag = new EnumMap<>(EnumFoo.class);
+    countsByTag.put(EnumFoo.FOO, 1);
+    countsByTag.put(EnumFoo.BAR, 2);
+    inventory.setCountsByTag(countsByTag);
+    return inventory;
+  }
+
+  private static void assertDecoded(final Inventory decodedInventory, final Inventory inventory) {
+    assertThat(decodedInventory).isEqualTo(inventory);
+    assertThat(decodedInventory.getTags()).isInstanceOf(EnumSet.class);
+    assertThat(decodedInventory.getHistory()).isInstanceOf(LinkedList.class);
+    assertThat(decodedInventory.getScores()).isInstanceOf(TreeSet.class);
+    assertThat(decodedInventory.getBarsByName().keySet()).containsExactly("zbar", "abar");
+    assertThat(decodedInventory.getCountsByTag().keySet()).containsOnly(EnumFoo.FOO,
+        EnumFoo.BAR);
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithDocumentCodec() {
+    // given
+    final Inventory inventory = buildInventory();
+    // when
+    final Inventory decodedInventory =
+        encodeAndDecode(getDocumentCodec(Inventory.class), inventory);
+    // then
+    assertDecoded(decodedInventory, inventory);
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithGeneratedCodec() {
+    // given
+    final Inventory inventory = buildInventory();
+    final InventoryCodec codec = new InventoryCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    // when
+    final Inventory decodedInventory = encodeAndDecode(codec, inventory);
+    // then
+    assertDecoded(decodedInventory, inventory);
+    assertThat(encode(codec, inventory))
+        .isEqualTo(encode(getDocumentCodec(Inventory.class), inventory));
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithRuntimeCodec() throws Exception {
+    // given
+    final Inventory inventory = buildInventory();
+    final Codec<Inventory> codec =
+        newCodec(RuntimeDocumentCodecGenerator.generate(Inventory.class));
+    // when
+    final Inventory decodedInventory = encodeAndDecode(codec, inventory);
+    // then
+    assertDecoded(decodedInventory, inventory);
+  }
+
+  @Test
+  public void shouldDecodeEmbeddedDocumentsWithoutTargetClass() {
+    // given
+    final Inventory inventory = buildInventory();
+    final BsonDocument document = encode(getDocumentCodec(Inventory.class), inventory);
+    for (BsonValue bar : document.getArray("bars")) {
+      bar.asDocument().remove(EncoderUtils.TARGET_CLASS_FIELD);
+    }
+    // when
+    final Inventory decodedInventory = decode(getDocumentCodec(Inventory.class), document);
+    // then
+    assertThat(decodedInventory.getBars()).containsExactlyElementsOf(inventory.getBars());
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotDecodeUnknownEnumKey() {
+    // given
+    final BsonDocument document = encode(getDocumentCodec(Inventory.class), buildInventory());
+    document.getArray("countsByTag").get(0).asDocument().put("UNKNOWN", new BsonString("1"));
+    document.getArray("countsByTag").get(0).asDocument().remove(EnumFoo.FOO.name());
+    // when
+    decode(getDocumentCodec(Inventory.class), document);
+  }
+
+}
@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import org.apache.commons.io.IOUtils;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.json.JsonWriter;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.lambdamatic.mongodb.internal.BsonUtils;
+import org.lambdamatic.mongodb.internal.IdFilter;
+import org.lambdamatic.mongodb.internal.codecs.RuntimeDocumentCodecGeneratorTest.Item;
+
+import com.sample.Bar;
+import com.sample.EnumFoo;
+import com.sample.Foo;
+import com.sample.Foo.FooBuilder;
+
+/**
+ * Testing the {@link LazyDocumentCodec}.
+ */
+public class LazyDocumentCodecTest {
+
+  private static Foo buildFoo() {
+    return new FooBuilder().withId(new ObjectId("5459fed60986a72813eb2d59"))
+        .withStringField("jdoe").withPrimitiveIntField(42).withPrimitiveLongField(42L)
+        .withPrimitiveBooleanField(true).withEnumFoo(EnumFoo.FOO).withLocation(40.1, -70.2)
+        .withDate(new Date(1000L)).withBar(new Bar("BAR", 2))
+        .withBarList(new Bar("javaObject", 1)).withStringList("bar", "baz").build();
+  }
+
+  private static Foo decodeLazily(final Foo foo) {
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    new DocumentCodec<>(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY)
+        .encode(new BsonBinaryWriter(outputBuffer), foo, EncoderContext.builder().build());
+    return new LazyDocumentCodec<>(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY).decode(
+        new BsonBinaryReader(ByteBuffer.wrap(outputBuffer.toByteArray())),
+        DecoderContext.builder().build());
+  }
+
+  private static String encode(final Foo foo) throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(outputStream, "UTF-8"));
+    new DocumentCodec<>(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY).encode(jsonWriter,
+        foo, EncoderContext.builder().build());
+    return IOUtils.toString(outputStream.toByteArray(), "UTF-8");
+  }
+
+  private static Object getFieldValue(final Foo foo, final String fieldName) throws Exception {
+    final Field field = Foo.class.getDeclaredField(fieldName);
+    field.setAccessible(true);
+    return field.get(foo);
+  }
+
+  @Test
+  public void shouldDecodeFieldsOnFirstAccess() throws Exception {
+    // when
+    final Foo lazyFoo = decodeLazily(buildFoo());
+    // then
+    assertThat(lazyFoo).isInstanceOf(Foo.class).isInstanceOf(LazyDocument.class);
+    assertThat(getFieldValue(lazyFoo, "stringField")).isNull();
+    assertThat(getFieldValue(lazyFoo, "bar")).isNull();
+    // field without getter is decoded eagerly
+    assertThat(getFieldValue(lazyFoo, "date")).isEqualTo(new Date(1000L));
+    assertThat(lazyFoo.getStringField()).isEqualTo("jdoe");
+    assertThat(getFieldValue(lazyFoo, "stringField")).isEqualTo("jdoe");
+    assertThat(getFieldValue(lazyFoo, "bar")).isNull();
+    assertThat(lazyFoo.getBar()).isEqualTo(new Bar("BAR", 2));
+    assertThat(lazyFoo.getPrimitiveIntField()).isEqualTo(42);
+    assertThat(lazyFoo.isPrimitiveBooleanField()).isTrue();
+    assertThat(lazyFoo.getStringList()).containsExactly("bar", "baz");
+  }
+
+  @Test
+  public void shouldDecodeAllFieldsBeforeOtherMethods() throws Exception {
+    // given
+    final Foo foo = buildFoo();
+    final Foo lazyFoo = decodeLazily(foo);
+    // when
+    final int hashCode = lazyFoo.hashCode();
+    // then
+    assertThat(hashCode).isEqualTo(foo.hashCode());
+    assertThat(getFieldValue(lazyFoo, "barList")).isNotNull();
+    assertThat(((LazyDocument) lazyFoo).getLazyDocumentState().isFullyLoaded()).isTrue();
+  }
+
+  @Test
+  public void shouldEncodeLazyDocumentLikeDomainObject() throws Exception {
+    // given
+    final Foo foo = buildFoo();
+    final Foo lazyFoo = decodeLazily(foo);
+    // when
+    final String json = encode(lazyFoo);
+    // then
+    assertThat(json).isEqualTo(encode(foo));
+  }
+
+  @Test
+  public void shouldOnlyDecodeIdToEncodeIdFilter() throws Exception {
+    // given
+    final Foo lazyFoo = decodeLazily(buildFoo());
+    // when
+    final BsonDocument idFilterDocument = BsonUtils.asBsonDocument(new IdFilter<>(lazyFoo));
+    // then
+    assertThat(idFilterDocument)
+        .isEqualTo(new BsonDocument("_id", new BsonObjectId(lazyFoo.getId())));
+    assertThat(getFieldValue(lazyFoo, "stringField")).isNull();
+    assertThat(getFieldValue(lazyFoo, "barList")).isNull();
+    assertThat(((LazyDocument) lazyFoo).getLazyDocumentState().isFullyLoaded()).isFalse();
+  }
+
+  @Test
+  public void shouldNotDecodeAssignedField() {
+    // given
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    new DocumentCodec<>(Bar.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY).encode(
+        new BsonBinaryWriter(outputBuffer), new Bar("BAR", 2), EncoderContext.builder().build());
+    final Bar lazyBar =
+        new LazyDocumentCodec<>(Bar.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY).decode(
+            new BsonBinaryReader(ByteBuffer.wrap(outputBuffer.toByteArray())),
+            DecoderContext.builder().build());
+    // when
+    lazyBar.setStringField("baz");
+    // then
+    assertThat(lazyBar.getStringField()).isEqualTo("baz");
+    assertThat(lazyBar.getPrimitiveIntField()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldDecodeUnsupportedClassEagerly() {
+    // given
+    final Item item = new Item("foo", 'x', 0.5f);
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    new DocumentCodec<>(Item.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY)
+        .encode(new BsonBinaryWriter(outputBuffer), item, EncoderContext.builder().build());
+    // when
+    final Item decodedItem =
+        new LazyDocumentCodec<>(Item.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY).decode(
+            new BsonBinaryReader(ByteBuffer.wrap(outputBuffer.toByteArray())),
+            DecoderContext.builder().build());
+    // then
+    assertThat(decodedItem).isNotInstanceOf(LazyDocument.class).isEqualTo(item);
+  }
+
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.lambdamatic.mongodb.Projection;
+import org.lambdamatic.mongodb.ProjectionExpression;
+import org.lambdamatic.mongodb.internal.BsonUtils;
+
+import com.sample.Bar;
+import com.sample.Foo;
+import com.sample.Foo.FooBuilder;
+import com.sample.FooCodec;
+import com.sample.PFoo;
+
+/**
+ * Testing the decoding of a subset of the document fields with the {@link DocumentCodec} and the
+ * {@link GeneratedDocumentCodec}.
+ */
+public class PartialDecodingTest {
+
+  private static BsonDocument asProjectionDocument(final ProjectionExpression<PFoo> expression) {
+    return BsonUtils.asBsonDocument(expression);
+  }
+
+  @Test
+  public void shouldGetIncludedFieldNames() {
+    // given
+    final BsonDocument projectionDocument =
+        asProjectionDocument(foo -> Projection.include(foo.stringField, foo.location));
+    // when
+    final Set<String> fieldNames =
+        DocumentCodec.getProjectedFieldNames(Foo.class, projectionDocument);
+    // then
+    assertThat(fieldNames).containsOnly("stringField", "location");
+  }
+
+  @Test
+  public void shouldGetIncludedFieldNamesWithIdAndElementMatch() {
+    // given
+    final BsonDocument projectionDocument = asProjectionDocument(foo -> Projection.include(foo.id,
+        foo.barList.elementMatch(b -> b.stringField.equals("bar"))));
+    // when
+    final Set<String> fieldNames =
+        DocumentCodec.getProjectedFieldNames(Foo.class, projectionDocument);
+    // then
+    assertThat(fieldNames).containsOnly("_id", "barList");
+  }
+
+  @Test
+  public void shouldGetRemainingFieldNamesWithExclusion() {
+    // given
+    final BsonDocument projectionDocument =
+        asProjectionDocument(foo -> Projection.exclude(foo.stringField));
+    // when
+    final Set<String> fieldNames =
+        DocumentCodec.getProjectedFieldNames(Foo.class, projectionDocument);
+    // then
+    assertThat(fieldNames).contains("_id", "primitiveIntField", "bar")
+        .doesNotContain("stringField");
+  }
+
+  @Test
+  public void shouldDecodeOnlyGivenFields() {
+    shouldDecodeOnlyGivenFields(new DocumentCodec<>(Foo.class,
+        DocumentCodecTest.DEFAULT_CODEC_REGISTRY,
+        new HashSet<>(Arrays.asList("_id", "stringField"))));
+  }
+
+  @Test
+  public void shouldDecodeOnlyGivenFieldsWithGeneratedCodec() {
+    // given
+    final Codec<Foo> codec =
+        DocumentCodecProvider.createDocumentCodec(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY,
+            new HashSet<>(Arrays.asList("_id", "stringField")));
+    // then
+    assertThat(codec).isInstanceOf(FooCodec.class);
+    shouldDecodeOnlyGivenFields(codec);
+  }
+
+  private static void shouldDecodeOnlyGivenFields(final Codec<Foo> partialCodec) {
+    // given
+    final ObjectId id = new ObjectId();
+    final Foo foo = new FooBuilder().withId(id).withStringField("jdoe").withPrimitiveIntField(42)
+        .withBar(new Bar("BAR", 2)).withBarList(new Bar("javaObject", 1))
+        .withStringList("bar", "baz").build();
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    new DocumentCodec<>(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY)
+        .encode(new BsonBinaryWriter(outputBuffer), foo, EncoderContext.builder().build());
+    // when
+    final Foo decodedFoo = partialCodec.decode(
+        new BsonBinaryReader(ByteBuffer.wrap(outputBuffer.toByteArray())),
+        DecoderContext.builder().build());
+    // then
+    assertThat(decodedFoo.getId()).isEqualTo(id);
+    assertThat(decodedFoo.getStringField()).isEqualTo("jdoe");
+    assertThat(decodedFoo.getPrimitiveIntField()).isEqualTo(0);
+    assertThat(decodedFoo.getBar()).isNull();
+    assertThat(decodedFoo.getBarList()).isNull();
+    assertThat(decodedFoo.getStringList()).isNull();
+  }
+
+  @Test
+  public void shouldReusePartialDecodingPlan() {
+    // given
+    final DocumentDecodingPlan fullPlan = DocumentDecodingPlan.getPlan(Foo.class);
+    // when
+    final DocumentDecodingPlan partialPlan =
+        fullPlan.restrictTo(new HashSet<>(Arrays.asList("_id", "stringField")));
+    // then
+    assertThat(fullPlan.isPartial()).isFalse();
+    assertThat(fullPlan.restrictTo(null)).isSameAs(fullPlan);
+    assertThat(partialPlan.isPartial()).isTrue();
+    assertThat(partialPlan.getFieldDecoder("stringField")).isNotNull();
+    assertThat(partialPlan.getFieldDecoder("primitiveIntField")).isNull();
+    assertThat(fullPlan.restrictTo(new HashSet<>(Arrays.asList("stringField", "_id"))))
+        .isSameAs(partialPlan);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedPartialDecodingPlans() {
+    // given
+    final DocumentDecodingPlan fullPlan = DocumentDecodingPlan.getPlan(Foo.class);
+    final Set<String> recentFieldNames = new HashSet<>(Arrays.asList("_id", "stringField"));
+    final Set<String> eldestFieldNames = new HashSet<>(Arrays.asList("_id", "primitiveIntField"));
+    final DocumentDecodingPlan eldestPlan = fullPlan.restrictTo(eldestFieldNames);
+    final DocumentDecodingPlan recentPlan = fullPlan.restrictTo(recentFieldNames);
+    // when
+    for (int i = 0; i < DocumentDecodingPlan.MAX_PARTIAL_PLANS; i++) {
+      fullPlan.restrictTo(new HashSet<>(Arrays.asList("_id", "unknownField" + i)));
+      // keep using the recent plan
+      fullPlan.restrictTo(recentFieldNames);
+    }
+    // then
+    assertThat(fullPlan.restrictTo(recentFieldNames)).isSameAs(recentPlan);
+    assertThat(fullPlan.restrictTo(eldestFieldNames)).isNotSameAs(eldestPlan);
+  }
+
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.decode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.encode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.encodeAndDecode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.getDocumentCodec;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.newCodec;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.bson.BsonArray;
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonBoolean;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonObjectId;
+import org.bson.codecs.Codec;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+import com.sample.Measurement;
+import com.sample.MeasurementCodec;
+
+/**
+ * Testing the encoding and decoding of arrays of primitive values.
+ */
+public class PrimitiveArrayCodecTest {
+
+  private static Measurement buildMeasurement() {
+    final Measurement measurement = new Measurement();
+    measurement.setId(new ObjectId("5459fed60986a72813eb2d59"));
+    measurement.setCounts(new int[] {1, 0, 3});
+    measurement.setFlags(new boolean[] {true, false});
+    measurement.setSamples(new double[] {0.5, 0, -1.25});
+    measurement.setTimestamps(new long[] {1L, Long.MAX_VALUE});
+    return measurement;
+  }
+
+  @Test
+  public void shouldEncodeArraysWithAllElements() {
+    // when
+    final BsonDocument document = encode(getDocumentCodec(Measurement.class), buildMeasurement());
+    // then
+    assertThat(document.get("_id"))
+        .isEqualTo(new BsonObjectId(new ObjectId("5459fed60986a72813eb2d59")));
+    assertThat(document.get("counts"))
+        .isEqualTo(new BsonArray(Arrays.asList(new BsonInt32(1), new BsonInt32(0),
+            new BsonInt32(3))));
+    assertThat(document.get("flags")).isEqualTo(
+        new BsonArray(Arrays.asList(BsonBoolean.TRUE, BsonBoolean.FALSE)));
+  }
+
+  @Test
+  public void shouldEncodeAnnotatedArraysAsBinary() {
+    // when
+    final BsonDocument document = encode(getDocumentCodec(Measurement.class), buildMeasurement());
+    // then
+    final BsonBinary samples = document.getBinary("samples");
+    assertThat(samples.getType()).isEqualTo(BsonBinarySubType.USER_DEFINED.getValue());
+    assertThat(samples.getData()).hasSize(3 * Double.BYTES);
+    assertThat(document.getBinary("timestamps").getData()).hasSize(2 * Long.BYTES);
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithDocumentCodec() {
+    // given
+    final Measurement measurement = buildMeasurement();
+    // when
+    final Measurement decodedMeasurement =
+        encodeAndDecode(getDocumentCodec(Measurement.class), measurement);
+    // then
+    assertThat(decodedMeasurement).isEqualTo(measurement);
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithGeneratedCodec() {
+    // given
+    final Measurement measurement = buildMeasurement();
+    final MeasurementCodec codec = new MeasurementCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    // when
+    final Measurement decodedMeasurement = encodeAndDecode(codec, measurement);
+    // then
+    assertThat(encode(codec, measurement))
+        .isEqualTo(encode(getDocumentCodec(Measurement.class), measurement));
+    assertThat(decodedMeasurement).isEqualTo(measurement);
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithRuntimeCodec() throws Exception {
+    // given
+    final Measurement measurement = buildMeasurement();
+    final Codec<Measurement> codec =
+        newCodec(RuntimeDocumentCodecGenerator.generate(Measurement.class));
+    // when
+    final Measurement decodedMeasurement = encodeAndDecode(codec, measurement);
+    // then
+    assertThat(encode(codec, measurement))
+        .isEqualTo(encode(getDocumentCodec(Measurement.class), measurement));
+    assertThat(decodedMeasurement).isEqualTo(measurement);
+  }
+
+  @Test
+  public void shouldDecodeLargeArrays() {
+    // given
+    final Measurement measurement = buildMeasurement();
+    measurement.setCounts(IntStream.range(0, 100).toArray());
+    measurement.setSamples(IntStream.range(0, 100).asDoubleStream().toArray());
+    // when
+    final Measurement decodedMeasurement =
+        encodeAndDecode(getDocumentCodec(Measurement.class), measurement);
+    // then
+    assertThat(decodedMeasurement).isEqualTo(measurement);
+  }
+
+  @Test
+  public void shouldDecodeArraysStoredInEitherForm() {
+    // given
+    final BsonDocument document = encode(getDocumentCodec(Measurement.class), buildMeasurement());
+    final BsonDocument swappedDocument = document.clone();
+    swappedDocument.put("counts", document.get("samples"));
+    swappedDocument.put("samples", document.get("counts"));
+    // when
+    final Measurement decodedMeasurement =
+        decode(getDocumentCodec(Measurement.class), swappedDocument);
+    // then
+    assertThat(decodedMeasurement.getSamples()).containsExactly(1, 0, 3);
+    assertThat(decodedMeasurement.getCounts()).hasSize(6);
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotDecodeTruncatedBinary() {
+    // given
+    final BsonDocument document = encode(getDocumentCodec(Measurement.class), buildMeasurement());
+    document.put("samples", new BsonBinary(BsonBinarySubType.USER_DEFINED, new byte[] {1, 2, 3}));
+    // when
+    decode(getDocumentCodec(Measurement.class), document);
+  }
+
+}
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.encode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.encodeAndDecode;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.getDocumentCodec;
+import static org.lambdamatic.mongodb.internal.codecs.utils.CodecTestUtils.newCodec;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.Codec;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+import com.sample.Envelope;
+import com.sample.EnvelopeCodec;
+
+/**
+ * Testing the encoding and decoding of the embedded documents that are kept in their raw form.
+ */
+public class RawDocumentCodecTest {
+
+  private static final BsonDocument PAYLOAD = new BsonDocument("name", new BsonString("jdoe"))
+      .append("scores", new BsonArray(Arrays.asList(new BsonInt32(1), new BsonInt32(2))))
+      .append("address", new BsonDocument("city", new BsonString("Paris")));
+
+  private static final BsonDocument ATTACHMENT = new BsonDocument("size", new BsonInt32(42));
+
+  private static Envelope buildEnvelope() {
+    final Envelope envelope = new Envelope();
+    envelope.setId(new ObjectId("5459fed60986a72813eb2d59"));
+    envelope.setRecipient("jdoe");
+    envelope.setPayload(new RawBsonDocument(PAYLOAD, new BsonDocumentCodec()));
+    envelope.setAttachment(new RawBsonDocument(ATTACHMENT, new BsonDocumentCodec())
+        .getByteBuffer().asNIO());
+    return envelope;
+  }
+
+  private static void assertDecoded(final Envelope decodedEnvelope) {
+    assertThat(decodedEnvelope.getRecipient()).isEqualTo("jdoe");
+    assertThat(decodedEnvelope.getPayload()).isEqualTo(PAYLOAD);
+    assertThat(new RawBsonDocument(toBytes(decodedEnvelope.getAttachment())))
+        .isEqualTo(ATTACHMENT);
+  }
+
+  private static byte[] toBytes(final ByteBuffer buffer) {
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  @Test
+  public void shouldEncodeRawDocuments() {
+    // when
+    final BsonDocument document = encode(getDocumentCodec(Envelope.class), buildEnvelope());
+    // then
+    assertThat(document.get("payload")).isEqualTo(PAYLOAD);
+    assertThat(document.get("attachment")).isEqualTo(ATTACHMENT);
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithDocumentCodec() {
+    // when
+    final Envelope decodedEnvelope =
+        encodeAndDecode(getDocumentCodec(Envelope.class), buildEnvelope());
+    // then
+    assertDecoded(decodedEnvelope);
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithGeneratedCodec() {
+    // given
+    final EnvelopeCodec codec = new EnvelopeCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    // when
+    final Envelope decodedEnvelope = encodeAndDecode(codec, buildEnvelope());
+    // then
+    assertDecoded(decodedEnvelope);
+    assertThat(encode(codec, buildEnvelope())).isEqualTo(encode(getDocumentCodec(Envelope.class),
+        buildEnvelope()));
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeWithRuntimeCodec() throws Exception {
+    // given
+    final Codec<Envelope> codec = newCodec(RuntimeDocumentCodecGenerator.generate(Envelope.class));
+    // when
+    final Envelope decodedEnvelope = encodeAndDecode(codec, buildEnvelope());
+    // then
+    assertDecoded(decodedEnvelope);
+  }
+
+  @Test
+  public void shouldKeepRawDocumentBytes() {
+    // given
+    final Envelope envelope = buildEnvelope();
+    // when
+    final Envelope decodedEnvelope = encodeAndDecode(getDocumentCodec(Envelope.class), envelope);
+    // then
+    assertThat(toBytes(decodedEnvelope.getPayload().getByteBuffer().asNIO()))
+        .isEqualTo(toBytes(envelope.getPayload().getByteBuffer().asNIO()));
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotDecodeRawDocumentIntoUnsupportedType() {
+    DocumentDecodingPlan.getRawDocumentDecoder(BsonDocument.class);
+  }
+
+}
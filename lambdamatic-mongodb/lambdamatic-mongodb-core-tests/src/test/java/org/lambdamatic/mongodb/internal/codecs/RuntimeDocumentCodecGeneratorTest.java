@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.apache.commons.io.IOUtils;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.json.JsonReader;
+import org.bson.json.JsonWriter;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import com.sample.Bar;
+import com.sample.EnumFoo;
+import com.sample.Foo;
+import com.sample.Foo.FooBuilder;
+
+/**
+ * Testing the {@link RuntimeDocumentCodecGenerator}.
+ */
+public class RuntimeDocumentCodecGeneratorTest {
+
+  @SuppressWarnings("unchecked")
+  private static <T> Codec<T> generateCodec(final Class<T> domainClass) throws Exception {
+    final Optional<Constructor<?>> codecConstructor =
+        RuntimeDocumentCodecGenerator.generate(domainClass);
+    assertThat(codecConstructor.isPresent()).isTrue();
+    return (Codec<T>) codecConstructor.get()
+        .newInstance((CodecRegistry) DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+  }
+
+  private static <T> String encode(final Codec<T> codec, final T domainObject)
+      throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(outputStream, "UTF-8"));
+    codec.encode(jsonWriter, domainObject, EncoderContext.builder().build());
+    return IOUtils.toString(outputStream.toByteArray(), "UTF-8");
+  }
+
+  private static Foo buildFoo() {
+    return new FooBuilder().withId(new ObjectId("5459fed60986a72813eb2d59"))
+        .withStringField("jdoe").withPrimitiveByteField((byte) 1)
+        .withPrimitiveShortField((short) 2).withPrimitiveIntField(42)
+        .withPrimitiveLongField(42L).withPrimitiveFloatField(1.5f).withPrimitiveDoubleField(2.5)
+        .withPrimitiveBooleanField(true).withPrimitiveCharField('c').withEnumFoo(EnumFoo.FOO)
+        .withLocation(40.1, -70.2).withDate(new Date()).withBar(new Bar("BAR", 2))
+        .withBarList(new Bar("javaObject", 1)).withStringList("bar", "baz").build();
+  }
+
+  @Test
+  public void shouldEncodeLikeDocumentCodec() throws Exception {
+    // given
+    final Foo foo = buildFoo();
+    // when
+    final String runtimeCodecJson = encode(generateCodec(Foo.class), foo);
+    // then
+    final String documentCodecJson =
+        encode(new DocumentCodec<>(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY), foo);
+    assertThat(runtimeCodecJson).isEqualTo(documentCodecJson);
+  }
+
+  @Test
+  public void shouldDecodeBinaryDocument() throws Exception {
+    // given
+    final Foo foo = buildFoo();
+    final Codec<Foo> codec = generateCodec(Foo.class);
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    codec.encode(new BsonBinaryWriter(outputBuffer), foo, EncoderContext.builder().build());
+    // when
+    final Foo decodedFoo =
+        codec.decode(new BsonBinaryReader(ByteBuffer.wrap(outputBuffer.toByteArray())),
+            DecoderContext.builder().build());
+    // then
+    assertThat(decodedFoo).isEqualTo(foo);
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeNonPublicClass() throws Exception {
+    // given
+    final Codec<Item> codec = generateCodec(Item.class);
+    final Item item = new Item("foo", 'x', 0.5f);
+    // when
+    final String json = encode(codec, item);
+    final Item decodedItem = codec.decode(new JsonReader(json), DecoderContext.builder().build());
+    // then
+    assertThat(json).isEqualTo(encode(new DocumentCodec<>(Item.class,
+        DocumentCodecTest.DEFAULT_CODEC_REGISTRY), item));
+    assertThat(decodedItem).isEqualTo(item);
+  }
+
+  @Test
+  public void shouldNotGenerateCodecForClassWithFinalField() {
+    assertThat(RuntimeDocumentCodecGenerator.generate(ImmutableItem.class).isPresent()).isFalse();
+  }
+
+  static class Item {
+
+    private String name;
+
+    private char code;
+
+    private float weight;
+
+    Item() {
+      super();
+    }
+
+    Item(final String name, final char code, final float weight) {
+      this.name = name;
+      this.code = code;
+      this.weight = weight;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.name, this.code, this.weight);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof Item)) {
+        return false;
+      }
+      final Item other = (Item) obj;
+      return Objects.equals(this.name, other.name) && this.code == other.code
+          && this.weight == other.weight;
+    }
+
+  }
+
+  static class ImmutableItem {
+
+    private final String name;
+
+    ImmutableItem() {
+      this.name = null;
+    }
+
+    String getName() {
+      return this.name;
+    }
+
+  }
+
+}
@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import com.sample.Bar;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+
+/**
+ * Testing the {@link SampledLogger}.
+ */
+public class SampledLoggerTest {
+
+  private Logger logger;
+
+  private ListAppender<ILoggingEvent> appender;
+
+  @Before
+  public void setupLogger() {
+    final LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+    this.logger = loggerContext.getLogger(SampledLoggerTest.class);
+    this.logger.setAdditive(false);
+    this.appender = new ListAppender<>();
+    this.appender.start();
+    this.logger.addAppender(this.appender);
+  }
+
+  @After
+  public void resetLogger() {
+    this.logger.detachAppender(this.appender);
+  }
+
+  private static BsonDocument getBarDocument() {
+    return new BsonDocument("_targetClass", new BsonString(Bar.class.getName()))
+        .append("primitiveIntField", new BsonInt32(2)).append("stringField", new BsonString("BAR"));
+  }
+
+  @Test
+  public void shouldLogEveryValueAtDebugLevel() {
+    // given
+    this.logger.setLevel(Level.DEBUG);
+    final SampledLogger sampledLogger = new SampledLogger(this.logger, 0, 1024, -1);
+    // then
+    assertThat(sampledLogger.isSampled()).isTrue();
+  }
+
+  @Test
+  public void shouldNotLogUnsampledValuesAtInfoLevel() {
+    // given
+    this.logger.setLevel(Level.INFO);
+    // then
+    assertThat(new SampledLogger(this.logger, 0, 1024, -1).isSampled()).isFalse();
+    assertThat(new SampledLogger(this.logger, 1, 1024, -1).isSampled()).isTrue();
+  }
+
+  @Test
+  public void shouldLogDocumentWrittenInBinaryWriter() throws IllegalAccessException {
+    // given
+    this.logger.setLevel(Level.INFO);
+    final SampledLogger sampledLogger = new SampledLogger(this.logger, 1, 1024, -1);
+    final BsonBinaryWriter writer = new BsonBinaryWriter(new BasicOutputBuffer());
+    writer.writeStartDocument();
+    writer.writeString("name", "value");
+    writer.writeName("bar");
+    writer.writeStartDocument();
+    final int documentPosition = SampledLogger.getDocumentPosition(writer);
+    // when
+    EncoderUtils.encodeDomainObjectContent(writer, new Bar("BAR", 2),
+        EncoderContext.builder().build(), DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    writer.writeEndDocument();
+    sampledLogger.logWrittenDocument("Encoded document: {}", writer, documentPosition, null);
+    // then
+    assertThat(this.appender.list).hasSize(1);
+    assertThat(this.appender.list.get(0).getFormattedMessage())
+        .isEqualTo("Encoded document: " + getBarDocument().toJson());
+  }
+
+  @Test
+  public void shouldLogEachDocumentEncodedInArray() {
+    // given
+    final Logger codecLogger = ((LoggerContext) LoggerFactory.getILoggerFactory())
+        .getLogger(DocumentCodec.LOGGER_NAME);
+    final Level codecLoggerLevel = codecLogger.getLevel();
+    codecLogger.setLevel(Level.DEBUG);
+    codecLogger.addAppender(this.appender);
+    final BsonBinaryWriter writer = new BsonBinaryWriter(new BasicOutputBuffer());
+    final DocumentCodec<Bar> codec =
+        new DocumentCodec<>(Bar.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+    try {
+      // when
+      writer.writeStartDocument();
+      writer.writeStartArray("bars");
+      codec.encode(writer, new Bar("BAR", 2), EncoderContext.builder().build());
+      codec.encode(writer, new Bar("BAZ", 3), EncoderContext.builder().build());
+      writer.writeEndArray();
+      writer.writeEndDocument();
+    } finally {
+      codecLogger.detachAppender(this.appender);
+      codecLogger.setLevel(codecLoggerLevel);
+    }
+    // then
+    assertThat(this.appender.list).extracting("formattedMessage").containsExactly(
+        "Encoded document: " + getBarDocument().toJson(),
+        "Encoded document: " + getBarDocument().append("primitiveIntField", new BsonInt32(3))
+            .append("stringField", new BsonString("BAZ")).toJson());
+  }
+
+  @Test
+  public void shouldLogDocumentWrittenInDocumentWriter() {
+    // given
+    this.logger.setLevel(Level.INFO);
+    final SampledLogger sampledLogger = new SampledLogger(this.logger, 1, 20, -1);
+    final BsonDocumentWriter writer = new BsonDocumentWriter(new BsonDocument());
+    // when
+    new DocumentCodec<>(Bar.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY).encode(writer,
+        new Bar("BAR", 2), EncoderContext.builder().build());
+    sampledLogger.logWrittenDocument("{}", writer, SampledLogger.getDocumentPosition(writer), null);
+    // then
+    final String json = getBarDocument().toJson();
+    assertThat(this.appender.list.get(0).getFormattedMessage())
+        .isEqualTo(json.substring(0, 20) + "... (" + json.length() + " chars)");
+  }
+
+  @Test
+  public void shouldLogSlowQueriesOnly() {
+    // given
+    this.logger.setLevel(Level.INFO);
+    final SampledLogger sampledLogger = new SampledLogger(this.logger, 0, 1024, 1000);
+    // when
+    sampledLogger.logIfSlow("find", System.nanoTime(), getBarDocument());
+    sampledLogger.logIfSlow("find", System.nanoTime() - 2_000_000_000L, getBarDocument());
+    // then
+    assertThat(this.appender.list).hasSize(1);
+    assertThat(this.appender.list.get(0).getLevel()).isEqualTo(Level.WARN);
+    assertThat(this.appender.list.get(0).getFormattedMessage()).startsWith("Slow find (")
+        .endsWith(getBarDocument().toJson());
+  }
+
+}
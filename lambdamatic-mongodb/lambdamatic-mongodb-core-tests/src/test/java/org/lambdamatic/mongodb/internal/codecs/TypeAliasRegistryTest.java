@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Objects;
+
+import org.apache.commons.io.IOUtils;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.json.JsonReader;
+import org.bson.json.JsonWriter;
+import org.bson.types.ObjectId;
+import org.json.JSONException;
+import org.junit.After;
+import org.junit.Test;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.internal.codecs.TypeAliasRegistry.DiscriminatorMode;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import com.sample.Bar;
+import com.sample.Foo;
+import com.sample.Foo.FooBuilder;
+import com.sample.FooCodec;
+import com.sample.Label;
+
+/**
+ * Testing the type discriminators written and read through the {@link TypeAliasRegistry}.
+ */
+public class TypeAliasRegistryTest {
+
+  @After
+  public void resetMode() {
+    TypeAliasRegistry.getInstance().setMode(DiscriminatorMode.CLASS_NAME);
+  }
+
+  private static <T> String encode(final Codec<T> codec, final T domainObject)
+      throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    final JsonWriter jsonWriter = new JsonWriter(new OutputStreamWriter(outputStream, "UTF-8"));
+    codec.encode(jsonWriter, domainObject, EncoderContext.builder().build());
+    return IOUtils.toString(outputStream.toByteArray(), "UTF-8");
+  }
+
+  private static Codec<Box> getBoxCodec() {
+    return new DocumentCodec<>(Box.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+  }
+
+  @Test
+  public void shouldWriteClassNameByDefault() throws IOException, JSONException {
+    // when
+    final String json = encode(getBoxCodec(), new Box("box", new Label("fragile")));
+    // then
+    JSONAssert.assertEquals("{_targetClass:'" + Box.class.getName() + "', name:'box', "
+        + "label:{_targetClass:'" + Label.class.getName() + "', text:'fragile'}}", json, true);
+  }
+
+  @Test
+  public void shouldWriteAliasInAliasMode() throws IOException, JSONException {
+    // given
+    TypeAliasRegistry.getInstance().setMode(DiscriminatorMode.ALIAS);
+    // when
+    final String json = encode(getBoxCodec(), new Box("box", new Label("fragile")));
+    // then class without alias falls back to its name
+    JSONAssert.assertEquals("{_targetClass:'" + Box.class.getName() + "', name:'box', "
+        + "label:{_t:'label', text:'fragile'}}", json, true);
+  }
+
+  @Test
+  public void shouldWriteNoDiscriminatorInNoneMode() throws IOException, JSONException {
+    // given
+    TypeAliasRegistry.getInstance().setMode(DiscriminatorMode.NONE);
+    final Box box = new Box("box", new Label("fragile"));
+    // when
+    final String json = encode(getBoxCodec(), box);
+    final Box decodedBox =
+        getBoxCodec().decode(new JsonReader(json), DecoderContext.builder().build());
+    // then
+    JSONAssert.assertEquals("{name:'box', label:{text:'fragile'}}", json, true);
+    assertThat(decodedBox).isEqualTo(box);
+  }
+
+  @Test
+  public void shouldDecodeBothDiscriminatorFormats() {
+    // given
+    TypeAliasRegistry.getInstance().setMode(DiscriminatorMode.ALIAS);
+    final String legacyJson = "{_targetClass:'" + Box.class.getName() + "', name:'box', "
+        + "label:{_targetClass:'" + Label.class.getName() + "', text:'fragile'}}";
+    final String aliasJson = "{name:'box', label:{_t:'label', text:'fragile'}}";
+    // when
+    final Box legacyBox =
+        getBoxCodec().decode(new JsonReader(legacyJson), DecoderContext.builder().build());
+    final Box aliasBox =
+        getBoxCodec().decode(new JsonReader(aliasJson), DecoderContext.builder().build());
+    // then
+    assertThat(legacyBox).isEqualTo(new Box("box", new Label("fragile")));
+    assertThat(aliasBox).isEqualTo(legacyBox);
+  }
+
+  @Test
+  public void shouldEncodeAliasWithGeneratedCodec() throws IOException, JSONException {
+    // given
+    TypeAliasRegistry.getInstance().register(Bar.class, "bar");
+    TypeAliasRegistry.getInstance().setMode(DiscriminatorMode.ALIAS);
+    final Foo foo = new FooBuilder().withId(new ObjectId("5459fed60986a72813eb2d59"))
+        .withStringField("jdoe").withBar(new Bar("BAR", 2)).build();
+    // when
+    final String json = encode(new FooCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY), foo);
+    final Foo decodedFoo = new FooCodec(DocumentCodecTest.DEFAULT_CODEC_REGISTRY)
+        .decode(new JsonReader(json), DecoderContext.builder().build());
+    // then
+    assertThat(json).contains("\"_t\" : \"bar\"").isEqualTo(
+        encode(new DocumentCodec<>(Foo.class, DocumentCodecTest.DEFAULT_CODEC_REGISTRY), foo));
+    assertThat(decodedFoo).isEqualTo(foo);
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotRegisterSameAliasForAnotherClass() {
+    TypeAliasRegistry.getInstance().register(Box.class, "label");
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotDecodeUnknownAlias() {
+    getBoxCodec().decode(new JsonReader("{_t:'unknown', name:'box'}"),
+        DecoderContext.builder().build());
+  }
+
+  @Test
+  public void shouldNotLookupDiscriminatorInNoneMode() {
+    // given
+    TypeAliasRegistry.getInstance().setMode(DiscriminatorMode.NONE);
+    // when
+    final Box box = getBoxCodec().decode(new JsonReader("{_t:'unknown', name:'box'}"),
+        DecoderContext.builder().build());
+    // then
+    assertThat(box).isEqualTo(new Box("box", null));
+  }
+
+  @Test
+  public void shouldOnlyLookupDiscriminatorInFirstFields() {
+    // when
+    final Box box = getBoxCodec().decode(
+        new JsonReader("{name:'box', label:{text:'fragile'}, _t:'unknown'}"),
+        DecoderContext.builder().build());
+    // then
+    assertThat(box).isEqualTo(new Box("box", new Label("fragile")));
+  }
+
+  static class Box {
+
+    private String name;
+
+    private Label label;
+
+    Box() {
+      super();
+    }
+
+    Box(final String name, final Label label) {
+      this.name = name;
+      this.label = label;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.name, this.label);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (!(obj instanceof Box)) {
+        return false;
+      }
+      final Box other = (Box) obj;
+      return Objects.equals(this.name, other.name) && Objects.equals(this.label, other.label);
+    }
+  }
+
+}
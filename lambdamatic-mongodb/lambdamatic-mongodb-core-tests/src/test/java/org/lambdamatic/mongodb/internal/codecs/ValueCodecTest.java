@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.Test;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.internal.codecs.ConverterRegistryTest.LocalDateConverter;
+
+import com.sample.Bar;
+import com.sample.EnumBar;
+
+/**
+ * Testing the {@link ValueCodec}, used to decode the values returned by a {@code distinct}
+ * command.
+ */
+public class ValueCodecTest {
+
+  private static <T> T decode(final Class<T> valueType, final BsonValue value) {
+    final BsonDocumentReader reader = new BsonDocumentReader(new BsonDocument("value", value));
+    reader.readStartDocument();
+    reader.readBsonType();
+    reader.readName();
+    return new ValueCodec<>(valueType, DocumentCodecTest.DEFAULT_CODEC_REGISTRY).decode(reader,
+        DecoderContext.builder().build());
+  }
+
+  private static <T> BsonValue encode(final Class<T> valueType, final T value) {
+    final BsonDocument document = new BsonDocument();
+    final BsonDocumentWriter writer = new BsonDocumentWriter(document);
+    writer.writeStartDocument();
+    writer.writeName("value");
+    new ValueCodec<>(valueType, DocumentCodecTest.DEFAULT_CODEC_REGISTRY).encode(writer, value,
+        EncoderContext.builder().build());
+    writer.writeEndDocument();
+    return document.get("value");
+  }
+
+  @Test
+  public void shouldDecodeEnumValue() {
+    assertThat(decode(EnumBar.class, new BsonString("BAR"))).isEqualTo(EnumBar.BAR);
+  }
+
+  @Test
+  public void shouldDecodeNumericValueIntoDeclaredType() {
+    assertThat(decode(Long.class, new BsonInt32(42))).isEqualTo(42L);
+    assertThat(decode(Integer.class, new BsonInt64(42))).isEqualTo(42);
+  }
+
+  @Test
+  public void shouldEncodeAndDecodeEmbeddedDocument() {
+    // given
+    final Bar bar = new Bar("BAR", 2);
+    // when
+    final BsonValue value = encode(Bar.class, bar);
+    // then
+    assertThat(value.isDocument()).isTrue();
+    assertThat(decode(Bar.class, value)).isEqualTo(bar);
+  }
+
+  @Test
+  public void shouldDecodeValueWithRegisteredConverter() {
+    // given
+    ConverterRegistry.getInstance().register(new LocalDateConverter());
+    try {
+      // when
+      final LocalDate day = decode(LocalDate.class, new BsonString("2015-10-21"));
+      // then
+      assertThat(day).isEqualTo(LocalDate.of(2015, 10, 21));
+    } finally {
+      ConverterRegistry.getInstance().unregister(LocalDate.class);
+    }
+  }
+
+  @Test(expected = ConversionException.class)
+  public void shouldNotDecodeUnknownEnumValue() {
+    decode(EnumBar.class, new BsonString("UNKNOWN"));
+  }
+
+}
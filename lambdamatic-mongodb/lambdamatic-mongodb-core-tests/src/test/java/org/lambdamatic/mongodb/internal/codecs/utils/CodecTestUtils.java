@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs.utils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.io.BasicOutputBuffer;
+import org.lambdamatic.mongodb.internal.codecs.DocumentCodec;
+import org.lambdamatic.mongodb.internal.codecs.DocumentCodecTest;
+
+/**
+ * Utility methods to encode and decode domain objects with a given {@link Codec} in JUnit tests.
+ */
+public final class CodecTestUtils {
+
+  private CodecTestUtils() {
+    // utility class
+  }
+
+  /**
+   * @param domainClass the domain class
+   * @return a new reflection-based {@link DocumentCodec} for the given domain class, using the
+   *         {@link DocumentCodecTest#DEFAULT_CODEC_REGISTRY}
+   */
+  public static <T> DocumentCodec<T> getDocumentCodec(final Class<T> domainClass) {
+    return new DocumentCodec<>(domainClass, DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+  }
+
+  /**
+   * Instantiates a codec with the given constructor and the
+   * {@link DocumentCodecTest#DEFAULT_CODEC_REGISTRY}.
+   *
+   * @param codecConstructor the constructor of the codec, eg, of a codec generated at runtime
+   * @return a new {@link Codec}
+   * @throws ReflectiveOperationException if the codec could not be instantiated
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Codec<T> newCodec(final Optional<Constructor<?>> codecConstructor)
+      throws ReflectiveOperationException {
+    assertThat(codecConstructor.isPresent()).isTrue();
+    return (Codec<T>) codecConstructor.get()
+        .newInstance((CodecRegistry) DocumentCodecTest.DEFAULT_CODEC_REGISTRY);
+  }
+
+  /**
+   * @param codec the codec to use
+   * @param domainObject the domain object to encode
+   * @return the {@link BsonDocument} in which the given domain object was encoded
+   */
+  public static <T> BsonDocument encode(final Codec<T> codec, final T domainObject) {
+    final BsonDocument document = new BsonDocument();
+    codec.encode(new BsonDocumentWriter(document), domainObject, EncoderContext.builder().build());
+    return document;
+  }
+
+  /**
+   * @param codec the codec to use
+   * @param document the document to decode
+   * @return the domain object decoded from the given {@link BsonDocument}
+   */
+  public static <T> T decode(final Codec<T> codec, final BsonDocument document) {
+    return codec.decode(new BsonDocumentReader(document), DecoderContext.builder().build());
+  }
+
+  /**
+   * Encodes the given domain object in binary form, then decodes it with the same {@link Codec}.
+   *
+   * @param codec the codec to use
+   * @param domainObject the domain object to encode
+   * @return the decoded domain object
+   */
+  public static <T> T encodeAndDecode(final Codec<T> codec, final T domainObject) {
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    codec.encode(new BsonBinaryWriter(outputBuffer), domainObject,
+        EncoderContext.builder().build());
+    return codec.decode(new BsonBinaryReader(ByteBuffer.wrap(outputBuffer.toByteArray())),
+        DecoderContext.builder().build());
+  }
+
+}
@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal;
+
+import static org.lambdamatic.mongodb.internal.LimitContextImpl.SLOW_QUERY_LOGGER;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.BsonDocument;
+import org.lambdamatic.mongodb.BulkWriteResult;
+import org.lambdamatic.mongodb.FilterExpression;
+import org.lambdamatic.mongodb.UpdateExpression;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.metadata.QueryMetadata;
+import org.lambdamatic.mongodb.metadata.UpdateMetadata;
+import org.lambdamatic.mongodb.query.context.BulkWriteContext;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.mongodb.bulk.WriteConcernError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteManyModel;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.UpdateManyModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+
+/**
+ * {@link BulkWriteContext} implementation, which collects the write operations in a list of
+ * {@link WriteModel} and sends them with {@link MongoCollection#bulkWrite(List, BulkWriteOptions)}.
+ * 
+ * @param <DomainType> the Domain Type annotated with {@link Document}
+ * @param <QueryType> the {@link QueryMetadata} associated with Domain Type
+ * @param <UpdateType> the {@link UpdateMetadata} associated with Domain Type
+ */
+class BulkWriteContextImpl<DomainType, QueryType, UpdateType>
+    implements BulkWriteContext<DomainType, QueryType, UpdateType> {
+
+  /** the MongoDB collection to write into. */
+  private final MongoCollection<DomainType> mongoCollection;
+
+  /** the collected write operations. */
+  private final List<WriteModel<DomainType>> writeModels = new ArrayList<>();
+
+  /** whether the operations must be performed in order. */
+  private boolean ordered = true;
+
+  /** the maximum number of operations per batch, or {@code 0} for a single batch. */
+  private int batchSize = 0;
+
+  /**
+   * Constructor.
+   * 
+   * @param mongoCollection the MongoDB collection to write into
+   */
+  BulkWriteContextImpl(final MongoCollection<DomainType> mongoCollection) {
+    this.mongoCollection = mongoCollection;
+  }
+
+  @Override
+  public BulkWriteContext<DomainType, QueryType, UpdateType> add(
+      @SuppressWarnings("unchecked") final DomainType... domainObjects) {
+    for (DomainType domainObject : domainObjects) {
+      this.writeModels.add(new InsertOneModel<>(domainObject));
+    }
+    return this;
+  }
+
+  @Override
+  public BulkWriteContext<DomainType, QueryType, UpdateType> upsert(
+      final DomainType domainObject) {
+    this.writeModels.add(new ReplaceOneModel<>(getIdFilterDocument(domainObject), domainObject,
+        new UpdateOptions().upsert(true)));
+    return this;
+  }
+
+  @Override
+  public BulkWriteContext<DomainType, QueryType, UpdateType> replace(
+      final DomainType domainObject) {
+    this.writeModels
+        .add(new ReplaceOneModel<>(getIdFilterDocument(domainObject), domainObject));
+    return this;
+  }
+
+  private static BsonDocument getIdFilterDocument(final Object domainObject) {
+    return BsonUtils.asBsonDocument(new IdFilter<>(domainObject));
+  }
+
+  @Override
+  public BulkWriteContext<DomainType, QueryType, UpdateType> update(
+      final FilterExpression<QueryType> filterExpression,
+      final UpdateExpression<UpdateType> updateExpression) {
+    this.writeModels.add(new UpdateManyModel<>(BsonUtils.asBsonDocument(filterExpression),
+        BsonUtils.asBsonDocument(updateExpression)));
+    return this;
+  }
+
+  @Override
+  public BulkWriteContext<DomainType, QueryType, UpdateType> remove(
+      final FilterExpression<QueryType> filterExpression) {
+    this.writeModels.add(new DeleteManyModel<>(BsonUtils.asBsonDocument(filterExpression)));
+    return this;
+  }
+
+  @Override
+  public BulkWriteContext<DomainType, QueryType, UpdateType> ordered(final boolean ordered) {
+    this.ordered = ordered;
+    return this;
+  }
+
+  @Override
+  public BulkWriteContext<DomainType, QueryType, UpdateType> batchSize(final int size) {
+    this.batchSize = LimitContextImpl.checkBatchSize(size);
+    return this;
+  }
+
+  @Override
+  public BulkWriteResult execute() {
+    final int batchSize = this.batchSize > 0 ? this.batchSize : this.writeModels.size();
+    final BulkWriteOptions options = new BulkWriteOptions().ordered(this.ordered);
+    int insertedCount = 0;
+    int matchedCount = 0;
+    int modifiedCount = 0;
+    boolean modifiedCountAvailable = true;
+    int deletedCount = 0;
+    final List<BulkWriteUpsert> upserts = new ArrayList<>();
+    final List<BulkWriteError> writeErrors = new ArrayList<>();
+    WriteConcernError writeConcernError = null;
+    ServerAddress serverAddress = null;
+    for (int fromIndex = 0; fromIndex < this.writeModels.size(); fromIndex += batchSize) {
+      final List<WriteModel<DomainType>> batch = this.writeModels.subList(fromIndex,
+          Math.min(fromIndex + batchSize, this.writeModels.size()));
+      final long startNanos = System.nanoTime();
+      com.mongodb.bulk.BulkWriteResult result;
+      try {
+        result = this.mongoCollection.bulkWrite(batch, options);
+      } catch (MongoBulkWriteException e) {
+        result = e.getWriteResult();
+        // indexes are relative to the batch, they need to be shifted to match the operations
+        for (BulkWriteError writeError : e.getWriteErrors()) {
+          writeErrors.add(new BulkWriteError(writeError.getCode(), writeError.getMessage(),
+              writeError.getDetails(), fromIndex + writeError.getIndex()));
+        }
+        if (e.getWriteConcernError() != null) {
+          writeConcernError = e.getWriteConcernError();
+        }
+        serverAddress = e.getServerAddress();
+      } finally {
+        SLOW_QUERY_LOGGER.logIfSlow("bulkWrite", startNanos, null);
+      }
+      if (result.wasAcknowledged()) {
+        insertedCount += result.getInsertedCount();
+        matchedCount += result.getMatchedCount();
+        modifiedCountAvailable &= result.isModifiedCountAvailable();
+        modifiedCount += result.isModifiedCountAvailable() ? result.getModifiedCount() : 0;
+        deletedCount += result.getDeletedCount();
+        for (BulkWriteUpsert upsert : result.getUpserts()) {
+          upserts.add(new BulkWriteUpsert(fromIndex + upsert.getIndex(), upsert.getId()));
+        }
+      } else {
+        modifiedCountAvailable = false;
+      }
+      if (serverAddress != null && this.ordered) {
+        break;
+      }
+    }
+    if (serverAddress != null) {
+      throw new MongoBulkWriteException(
+          com.mongodb.bulk.BulkWriteResult.acknowledged(insertedCount, matchedCount, deletedCount,
+              modifiedCountAvailable ? modifiedCount : null, upserts),
+          writeErrors, writeConcernError, serverAddress);
+    }
+    return new BulkWriteResult(insertedCount, matchedCount,
+        modifiedCountAvailable ? modifiedCount : null, deletedCount, upserts.size());
+  }
+
+}
@@ -8,11 +8,24 @@
 
 package org.lambdamatic.mongodb.internal;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+
 import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonValue;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.lambdamatic.mongodb.FilterExpression;
 import org.lambdamatic.mongodb.ProjectionExpression;
 import org.lambdamatic.mongodb.UpdateExpression;
 import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.internal.codecs.EncoderUtils;
+import org.lambdamatic.mongodb.internal.codecs.DocumentCodec;
+import org.lambdamatic.mongodb.internal.codecs.ValueCodec;
 import org.lambdamatic.mongodb.metadata.ProjectionMetadata;
 import org.lambdamatic.mongodb.metadata.QueryMetadata;
 import org.lambdamatic.mongodb.metadata.UpdateMetadata;
@@ -73,18 +86,125 @@ class FilterContextImpl<DomainType, QueryType, ProjectionType, UpdateType>
   public ProjectionContext<DomainType> projection(
       final ProjectionExpression<ProjectionType> projectionExpression) {
     final BsonDocument projectionDocument = BsonUtils.asBsonDocument(projectionExpression);
-    return new ProjectionContextImpl<>(getFindIterable().projection(projectionDocument));
+    return new ProjectionContextImpl<>(
+        find(withDecodedFields(getProjectedFieldNames(projectionDocument)))
+            .projection(projectionDocument),
+        getFilterDocument());
+  }
+
+  @Override
+  public ProjectionContext<DomainType> decodeOnly(
+      final ProjectionExpression<ProjectionType> projectionExpression) {
+    final BsonDocument projectionDocument = BsonUtils.asBsonDocument(projectionExpression);
+    return new ProjectionContextImpl<>(
+        find(withDecodedFields(getProjectedFieldNames(projectionDocument))),
+        getFilterDocument());
+  }
+
+  @Override
+  public ProjectionContext<DomainType> lazily() {
+    return new ProjectionContextImpl<>(find(withLazyDecoding()), getFilterDocument());
+  }
+
+  private Set<String> getProjectedFieldNames(final BsonDocument projectionDocument) {
+    return DocumentCodec.getProjectedFieldNames(getMongoCollection().getDocumentClass(),
+        projectionDocument);
   }
 
   @Override
   public void forEach(final UpdateExpression<UpdateType> updateExpression) {
     final BsonDocument updateDocument = BsonUtils.asBsonDocument(updateExpression);
+    final long startNanos = System.nanoTime();
     getMongoCollection().updateMany(getFilterDocument(), updateDocument);
+    SLOW_QUERY_LOGGER.logIfSlow("update", startNanos, getFilterDocument());
+  }
+
+  @Override
+  public long count() {
+    final long startNanos = System.nanoTime();
+    final long count = getFilterDocument() != null
+        ? getMongoCollection().count(getFilterDocument()) : getMongoCollection().count();
+    SLOW_QUERY_LOGGER.logIfSlow("count", startNanos, getFilterDocument());
+    return count;
+  }
+
+  @Override
+  public boolean exists() {
+    final long startNanos = System.nanoTime();
+    final BsonDocument document = getMongoCollection().withDocumentClass(BsonDocument.class)
+        .find(getFilterDocument() != null ? getFilterDocument() : new BsonDocument())
+        .projection(new BsonDocument(EncoderUtils.MONGOBD_DOCUMENT_ID, new BsonInt32(1)))
+        .limit(1).first();
+    SLOW_QUERY_LOGGER.logIfSlow("exists", startNanos, getFilterDocument());
+    return document != null;
+  }
+
+  @Override
+  public <T> List<T> distinct(final ProjectionExpression<ProjectionType> fieldExpression,
+      final Class<T> valueType) {
+    final String fieldName = getDistinctFieldName(BsonUtils.asBsonDocument(fieldExpression));
+    final long startNanos = System.nanoTime();
+    final List<T> values = getMongoCollection()
+        .withCodecRegistry(getDistinctValuesCodecRegistry(valueType))
+        .distinct(fieldName, valueType)
+        .filter(getFilterDocument() != null ? getFilterDocument() : new BsonDocument())
+        .into(new ArrayList<>());
+    SLOW_QUERY_LOGGER.logIfSlow("distinct", startNanos, getFilterDocument());
+    return values;
+  }
+
+  /**
+   * @param valueType the Java type of the distinct values
+   * @return the {@link CodecRegistry} to decode the distinct values: BSON values are decoded as
+   *         such, other values are decoded like the fields of a domain class, with the
+   *         {@link ValueCodec} of the given type
+   */
+  private CodecRegistry getDistinctValuesCodecRegistry(final Class<?> valueType) {
+    if (BsonValue.class.isAssignableFrom(valueType)) {
+      return BsonUtils.codecRegistry;
+    }
+    final CodecRegistry codecRegistry = getMongoCollection().getCodecRegistry();
+    return CodecRegistries.fromRegistries(
+        CodecRegistries.fromCodecs(new ValueCodec<>(valueType, codecRegistry)), codecRegistry);
+  }
+
+  /**
+   * @param projectionDocument the projection document to analyze
+   * @return the name of the single field included in the given projection document (the
+   *         {@code _id} field is only considered if no other field is included)
+   * @throws ConversionException if the given projection document does not include a single field
+   */
+  static String getDistinctFieldName(final BsonDocument projectionDocument) {
+    final List<String> includedFieldNames = new ArrayList<>();
+    boolean idIncluded = false;
+    for (Entry<String, BsonValue> entry : projectionDocument.entrySet()) {
+      final BsonValue value = entry.getValue();
+      final boolean included = (value.isNumber() && value.asNumber().intValue() == 1)
+          || (value.isBoolean() && value.asBoolean().getValue());
+      if (!included) {
+        continue;
+      }
+      if (EncoderUtils.MONGOBD_DOCUMENT_ID.equals(entry.getKey())) {
+        idIncluded = true;
+      } else {
+        includedFieldNames.add(entry.getKey());
+      }
+    }
+    if (includedFieldNames.size() == 1) {
+      return includedFieldNames.get(0);
+    } else if (includedFieldNames.isEmpty() && idIncluded) {
+      return EncoderUtils.MONGOBD_DOCUMENT_ID;
+    }
+    throw new ConversionException(
+        "Expected a single included field to find distinct values, but got: "
+            + projectionDocument.toJson());
   }
 
   @Override
   public void remove() {
+    final long startNanos = System.nanoTime();
     getMongoCollection().deleteMany(getFilterDocument());
+    SLOW_QUERY_LOGGER.logIfSlow("remove", startNanos, getFilterDocument());
   }
 
 }
@@ -0,0 +1,439 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonInt64;
+import org.bson.BsonValue;
+import org.lambdamatic.mongodb.FilterExpression;
+import org.lambdamatic.mongodb.IncrementAggregator;
+import org.lambdamatic.mongodb.UpdateExpression;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.exceptions.OperationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.UpdateManyModel;
+
+/**
+ * {@link IncrementAggregator} implementation. The increments are accumulated in a
+ * {@link LongAdder} per filter and field, so that concurrent increments of the same counter do not
+ * contend. Each flush drains the part of the sum that was not sent yet: rather than calling
+ * {@link LongAdder#sumThenReset()}, which may lose an increment performed between the sum and the
+ * reset, the counter records the drained sum and sends the difference with the current one. The
+ * counters which did not change since the previous flush are evicted, so that the memory usage
+ * does not grow with the number of distinct filters over time.
+ * <p>
+ * An update which fails is retried on the next flushes, and dropped (with an error log) after
+ * {@link #MAX_FLUSH_ATTEMPTS} consecutive failures, so that a permanently failing update (eg, an
+ * increment of a non-numeric field) is not retried forever.
+ * </p>
+ * 
+ * @param <DomainType> the Domain Type of the collection to update
+ * @param <QueryType> the {@link org.lambdamatic.mongodb.metadata.QueryMetadata} associated with
+ *        Domain Type
+ * @param <UpdateType> the {@link org.lambdamatic.mongodb.metadata.UpdateMetadata} associated with
+ *        Domain Type
+ */
+class IncrementAggregatorImpl<DomainType, QueryType, UpdateType>
+    implements IncrementAggregator<QueryType, UpdateType> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(IncrementAggregatorImpl.class);
+
+  /** the {@code $inc} operator. */
+  private static final String INC_OPERATOR = "$inc";
+
+  /** the number of attempts to send an update before it is dropped. */
+  static final int MAX_FLUSH_ATTEMPTS = 3;
+
+  /** the counters, indexed by filter and field. */
+  private final Map<CounterKey, Counter> counters = new ConcurrentHashMap<>();
+
+  /** the consumer that sends the given (unordered) updates to the database. */
+  private final Consumer<List<UpdateManyModel<DomainType>>> writer;
+
+  /** the executor for the periodic flushes, or {@code null} if there are none. */
+  private final ScheduledExecutorService scheduler;
+
+  /** the lock to serialize the flushes. */
+  private final Object flushLock = new Object();
+
+  /** whether this aggregator was closed. */
+  private volatile boolean closed = false;
+
+  /** the total number of received increments. */
+  private final LongAdder incrementCount = new LongAdder();
+
+  /** the number of updates sent to the database. */
+  private final LongAdder updateCount = new LongAdder();
+
+  /** the number of updates dropped after {@link #MAX_FLUSH_ATTEMPTS} failed attempts. */
+  private final LongAdder droppedCount = new LongAdder();
+
+  /**
+   * Constructor.
+   * 
+   * @param writer the consumer that sends the given (unordered) updates to the database
+   * @param flushInterval the delay between two flushes, or {@code 0} for no periodic flush
+   * @param unit the time unit of the {@code flushInterval}
+   */
+  IncrementAggregatorImpl(final Consumer<List<UpdateManyModel<DomainType>>> writer,
+      final long flushInterval, final TimeUnit unit) {
+    this.writer = writer;
+    if (flushInterval > 0) {
+      this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "lambdamatic-increment-aggregator");
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval,
+          unit);
+    } else {
+      this.scheduler = null;
+    }
+  }
+
+  @Override
+  public void increment(final FilterExpression<QueryType> filterExpression,
+      final UpdateExpression<UpdateType> updateExpression) {
+    if (this.closed) {
+      throw new OperationException("Cannot increment in a closed aggregator");
+    }
+    final BsonDocument filterDocument = BsonUtils.asBsonDocument(filterExpression);
+    final Map<String, Long> increments = getIncrements(BsonUtils.asBsonDocument(updateExpression));
+    for (Entry<String, Long> increment : increments.entrySet()) {
+      add(new CounterKey(filterDocument, increment.getKey()), increment.getValue());
+    }
+    this.incrementCount.increment();
+    // also flushes if this aggregator was closed in the mean time, so that no increment is lost
+    if (this.closed) {
+      flush();
+    }
+  }
+
+  /**
+   * Adds the given value to the counter with the given key, replacing the counter if it was
+   * evicted in the mean time.
+   * 
+   * @param counterKey the counter key
+   * @param delta the value to add
+   */
+  private void add(final CounterKey counterKey, final long delta) {
+    Counter counter = this.counters.computeIfAbsent(counterKey, key -> new Counter());
+    while (!counter.add(delta)) {
+      this.counters.remove(counterKey, counter);
+      counter = this.counters.computeIfAbsent(counterKey, key -> new Counter());
+    }
+  }
+
+  /**
+   * @param updateDocument the update document to analyze
+   * @return the increments of the given update document, indexed by field name
+   * @throws ConversionException if the given update document contains other operations than
+   *         increments of integral values
+   */
+  private static Map<String, Long> getIncrements(final BsonDocument updateDocument) {
+    final Map<String, Long> increments = new LinkedHashMap<>();
+    for (Entry<String, BsonValue> operation : updateDocument.entrySet()) {
+      if (!INC_OPERATOR.equals(operation.getKey()) || !operation.getValue().isDocument()) {
+        throw new ConversionException("Unsupported update operation: " + operation.getKey()
+            + ". Only increments and decrements are supported.");
+      }
+      for (Entry<String, BsonValue> field : operation.getValue().asDocument().entrySet()) {
+        final BsonValue value = field.getValue();
+        if (value.isInt32() || value.isInt64()) {
+          increments.merge(field.getKey(), value.asNumber().longValue(), Long::sum);
+        } else {
+          throw new ConversionException("Unsupported increment value for field '"
+              + field.getKey() + "': " + value + ". Only integral values are supported.");
+        }
+      }
+    }
+    return increments;
+  }
+
+  @Override
+  public void flush() {
+    synchronized (this.flushLock) {
+      evictUnchangedCounters();
+      final Map<BsonDocument, Map<Counter, Long>> pendingIncrements = new LinkedHashMap<>();
+      final Map<BsonDocument, BsonDocument> incrementDocuments = new LinkedHashMap<>();
+      for (Entry<CounterKey, Counter> entry : this.counters.entrySet()) {
+        final Counter counter = entry.getValue();
+        final long delta = counter.getPendingSum();
+        if (delta != 0) {
+          final BsonDocument filterDocument = entry.getKey().filterDocument;
+          pendingIncrements.computeIfAbsent(filterDocument, f -> new LinkedHashMap<>())
+              .put(counter, delta);
+          // keeps 32-bit values as such, to preserve the type of the fields in the database
+          incrementDocuments.computeIfAbsent(filterDocument, f -> new BsonDocument()).put(
+              entry.getKey().fieldName,
+              delta == (int) delta ? new BsonInt32((int) delta) : new BsonInt64(delta));
+        }
+      }
+      if (pendingIncrements.isEmpty()) {
+        return;
+      }
+      final List<UpdateManyModel<DomainType>> updates = new ArrayList<>();
+      for (Entry<BsonDocument, BsonDocument> entry : incrementDocuments.entrySet()) {
+        updates.add(new UpdateManyModel<>(entry.getKey(),
+            new BsonDocument(INC_OPERATOR, entry.getValue())));
+      }
+      final Set<Integer> failedUpdates = new HashSet<>();
+      try {
+        this.writer.accept(updates);
+      } catch (MongoBulkWriteException e) {
+        for (BulkWriteError error : e.getWriteErrors()) {
+          failedUpdates.add(error.getIndex());
+        }
+        markFlushed(updates, pendingIncrements, failedUpdates);
+        throw e;
+      } catch (RuntimeException e) {
+        // none of the updates is known to be applied: they all count as a failed attempt
+        for (int i = 0; i < updates.size(); i++) {
+          failedUpdates.add(i);
+        }
+        markFlushed(updates, pendingIncrements, failedUpdates);
+        throw e;
+      }
+      markFlushed(updates, pendingIncrements, failedUpdates);
+    }
+  }
+
+  /**
+   * Evicts the counters which did not change since the previous flush. The increments which were
+   * added to an evicted counter in the mean time are moved to a new counter with the same key.
+   */
+  private void evictUnchangedCounters() {
+    for (Entry<CounterKey, Counter> entry : this.counters.entrySet()) {
+      final Counter counter = entry.getValue();
+      if (counter.getPendingSum() == 0) {
+        final long remainingSum = counter.evict();
+        this.counters.remove(entry.getKey(), counter);
+        if (remainingSum != 0) {
+          add(entry.getKey(), remainingSum);
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks the given increments as flushed, except for the failed updates, which are kept pending
+   * unless they already failed {@link #MAX_FLUSH_ATTEMPTS} times.
+   * 
+   * @param updates the updates that were sent
+   * @param pendingIncrements the increments that were sent, grouped by filter in the same order
+   *        as the updates
+   * @param failedUpdates the indexes of the updates that failed
+   */
+  private void markFlushed(final List<UpdateManyModel<DomainType>> updates,
+      final Map<BsonDocument, Map<Counter, Long>> pendingIncrements,
+      final Set<Integer> failedUpdates) {
+    int index = 0;
+    for (Map<Counter, Long> increments : pendingIncrements.values()) {
+      final UpdateManyModel<DomainType> update = updates.get(index);
+      if (!failedUpdates.contains(index++)) {
+        increments.forEach((counter, delta) -> counter.drain(delta));
+        this.updateCount.increment();
+      } else {
+        int failedAttempts = 0;
+        for (Counter counter : increments.keySet()) {
+          failedAttempts = Math.max(failedAttempts, ++counter.failedAttempts);
+        }
+        if (failedAttempts >= MAX_FLUSH_ATTEMPTS) {
+          increments.forEach((counter, delta) -> counter.drain(delta));
+          this.droppedCount.increment();
+          LOGGER.error("Dropped the update of the documents matching {} with {} after {} attempts",
+              update.getFilter(), update.getUpdate(), failedAttempts);
+        }
+      }
+    }
+  }
+
+  /**
+   * Flushes the pending increments, logging (instead of throwing) the exception if the operation
+   * failed.
+   */
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed to flush the pending increments", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    if (this.scheduler != null) {
+      this.scheduler.shutdown();
+    }
+    flush();
+  }
+
+  @Override
+  public long getIncrementCount() {
+    return this.incrementCount.sum();
+  }
+
+  @Override
+  public long getUpdateCount() {
+    return this.updateCount.sum();
+  }
+
+  @Override
+  public long getDroppedCount() {
+    return this.droppedCount.sum();
+  }
+
+  /**
+   * @return the number of counters currently held in memory
+   */
+  int getCounterCount() {
+    return this.counters.size();
+  }
+
+  /**
+   * The key of a counter: a filter document and a field name.
+   */
+  private static class CounterKey {
+
+    private final BsonDocument filterDocument;
+
+    private final String fieldName;
+
+    CounterKey(final BsonDocument filterDocument, final String fieldName) {
+      this.filterDocument = filterDocument;
+      this.fieldName = fieldName;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * this.filterDocument.hashCode() + this.fieldName.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof CounterKey)) {
+        return false;
+      }
+      final CounterKey other = (CounterKey) obj;
+      return this.filterDocument.equals(other.filterDocument)
+          && this.fieldName.equals(other.fieldName);
+    }
+
+  }
+
+  /**
+   * A counter: the sum of the increments, the part of this sum that was already sent to the
+   * database (or dropped), and the number of consecutive failed attempts to send the rest. The
+   * last two are only accessed while holding the flush lock.
+   */
+  private static class Counter {
+
+    /** the state of a counter. */
+    private enum State {
+      /** the counter accepts increments. */
+      ACTIVE,
+      /** the counter was evicted, and rejects increments. */
+      EVICTED
+    }
+
+    /** the sum of the increments. */
+    private final LongAdder sum = new LongAdder();
+
+    /** the number of calls to {@link #add(long)} which started. */
+    private final LongAdder started = new LongAdder();
+
+    /** the number of calls to {@link #add(long)} which completed. */
+    private final LongAdder completed = new LongAdder();
+
+    /** the state of this counter. */
+    private volatile State state = State.ACTIVE;
+
+    /** the part of the {@link #sum} which was sent to the database, or dropped. */
+    private long drained = 0;
+
+    /** the number of consecutive failed attempts to send the pending sum. */
+    private int failedAttempts = 0;
+
+    /**
+     * @param delta the value to add
+     * @return {@code true} if the value was added, {@code false} if this counter was evicted
+     */
+    boolean add(final long delta) {
+      this.started.increment();
+      try {
+        if (this.state == State.EVICTED) {
+          return false;
+        }
+        this.sum.add(delta);
+        return true;
+      } finally {
+        this.completed.increment();
+      }
+    }
+
+    /**
+     * @return the part of the sum which was not drained yet.
+     */
+    long getPendingSum() {
+      return this.sum.sum() - this.drained;
+    }
+
+    /**
+     * Marks the given part of the sum as drained, ie, sent to the database or dropped.
+     * 
+     * @param delta the drained value
+     */
+    void drain(final long delta) {
+      this.drained += delta;
+      this.failedAttempts = 0;
+    }
+
+    /**
+     * Evicts this counter, so that it rejects further increments, and waits for the increments in
+     * progress to complete.
+     * 
+     * @return the part of the sum which was not drained, ie, the increments which were added since
+     *         the caller checked that there were none
+     */
+    long evict() {
+      this.state = State.EVICTED;
+      // an increment which started before the state changed has completed once both counts are
+      // equal (the completed ones being read first)
+      while (this.completed.sum() != this.started.sum()) {
+        Thread.yield();
+      }
+      return getPendingSum();
+    }
+
+  }
+
+}
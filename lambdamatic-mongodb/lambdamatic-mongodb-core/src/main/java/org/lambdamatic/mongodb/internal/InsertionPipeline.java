@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Encoder;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.lambdamatic.mongodb.exceptions.OperationException;
+
+/**
+ * Inserts a (possibly large) sequence of domain objects in bounded memory: the domain objects are
+ * read in chunks which are encoded into {@link RawBsonDocument} in parallel, then grouped into
+ * batches bounded by their number of documents and their total size in bytes. The batches are
+ * sent on a pool of threads shared by all pipelines while the next chunk is being encoded, with a
+ * bounded number of batches in flight per pipeline.
+ * 
+ * @param <DomainType> the type of domain objects to insert
+ */
+class InsertionPipeline<DomainType> {
+
+  /** Default maximum number of documents per batch (ie, the server's maximum write batch size). */
+  static final int DEFAULT_MAX_BATCH_COUNT = 1000;
+
+  /** Default maximum size of a batch, in bytes (ie, the maximum size of a BSON document). */
+  static final int DEFAULT_MAX_BATCH_BYTES = 16 * 1024 * 1024;
+
+  /** Default maximum number of batches being sent at the same time. */
+  static final int DEFAULT_MAX_IN_FLIGHT = 2;
+
+  /**
+   * The threads that send the batches, shared by all pipelines. Idle threads are released after a
+   * while, so that the pool does not hold any thread when no insertion is running.
+   */
+  private static final ExecutorService senders = newSenders(
+      Math.max(DEFAULT_MAX_IN_FLIGHT, Runtime.getRuntime().availableProcessors()));
+
+  /** the encoder for the domain objects. */
+  private final Encoder<DomainType> encoder;
+
+  /** the consumer that sends the batches of documents to the database. */
+  private final Consumer<List<RawBsonDocument>> sender;
+
+  /** the maximum number of documents per batch. */
+  private final int maxBatchCount;
+
+  /** the maximum size of a batch, in bytes. */
+  private final int maxBatchBytes;
+
+  /** the maximum number of batches being sent at the same time. */
+  private final int maxInFlight;
+
+  /**
+   * Constructor with the default limits.
+   * 
+   * @param encoder the encoder for the domain objects
+   * @param sender the consumer that sends the batches of documents to the database
+   */
+  InsertionPipeline(final Encoder<DomainType> encoder,
+      final Consumer<List<RawBsonDocument>> sender) {
+    this(encoder, sender, DEFAULT_MAX_BATCH_COUNT, DEFAULT_MAX_BATCH_BYTES, DEFAULT_MAX_IN_FLIGHT);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param encoder the encoder for the domain objects
+   * @param sender the consumer that sends the batches of documents to the database
+   * @param maxBatchCount the maximum number of documents per batch
+   * @param maxBatchBytes the maximum size of a batch, in bytes
+   * @param maxInFlight the maximum number of batches being sent at the same time
+   */
+  InsertionPipeline(final Encoder<DomainType> encoder,
+      final Consumer<List<RawBsonDocument>> sender, final int maxBatchCount,
+      final int maxBatchBytes, final int maxInFlight) {
+    this.encoder = encoder;
+    this.sender = sender;
+    this.maxBatchCount = maxBatchCount;
+    this.maxBatchBytes = maxBatchBytes;
+    this.maxInFlight = maxInFlight;
+  }
+
+  private static ExecutorService newSenders(final int threadCount) {
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+          final Thread thread = new Thread(runnable, "lambdamatic-insertion");
+          thread.setDaemon(true);
+          return thread;
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Encodes and sends all the given domain objects. This method returns once all batches were
+   * sent, or after the first failure, in which case no more batch is sent. In all cases, it waits
+   * for the batches in flight before returning or throwing.
+   * 
+   * @param domainObjects the domain objects to insert
+   * @throws OperationException if the current thread was interrupted while waiting for the
+   *         batches to be sent
+   */
+  void insert(final Iterator<DomainType> domainObjects) {
+    final Semaphore inFlight = new Semaphore(this.maxInFlight);
+    final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    try {
+      while (domainObjects.hasNext() && failure.get() == null) {
+        final List<DomainType> chunk = new ArrayList<>(this.maxBatchCount);
+        while (domainObjects.hasNext() && chunk.size() < this.maxBatchCount) {
+          chunk.add(domainObjects.next());
+        }
+        final List<RawBsonDocument> documents =
+            chunk.parallelStream().map(this::encode).collect(Collectors.toList());
+        for (List<RawBsonDocument> batch : split(documents)) {
+          // blocks until a previous batch was sent, to keep the memory usage bounded
+          inFlight.acquire();
+          if (failure.get() != null) {
+            inFlight.release();
+            break;
+          }
+          InsertionPipeline.senders.execute(() -> {
+            try {
+              this.sender.accept(batch);
+            } catch (RuntimeException e) {
+              failure.compareAndSet(null, e);
+            } finally {
+              inFlight.release();
+            }
+          });
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new OperationException("Interrupted while inserting documents", e);
+    } finally {
+      // waits until all batches were sent, including when the encoding failed, so that no batch
+      // is still being sent once this method returned
+      inFlight.acquireUninterruptibly(this.maxInFlight);
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  /**
+   * @param domainObject the domain object to encode
+   * @return the {@link RawBsonDocument} corresponding to the given domain object
+   */
+  private RawBsonDocument encode(final DomainType domainObject) {
+    final BasicOutputBuffer outputBuffer = new BasicOutputBuffer();
+    this.encoder.encode(new BsonBinaryWriter(outputBuffer), domainObject,
+        EncoderContext.builder().isEncodingCollectibleDocument(true).build());
+    return new RawBsonDocument(outputBuffer.toByteArray());
+  }
+
+  /**
+   * Splits the given documents into batches whose total size does not exceed the maximum batch
+   * size in bytes. A single document larger than this limit is sent in its own batch.
+   * 
+   * @param documents the documents to split
+   * @return the batches of documents
+   */
+  List<List<RawBsonDocument>> split(final List<RawBsonDocument> documents) {
+    final List<List<RawBsonDocument>> batches = new ArrayList<>();
+    List<RawBsonDocument> batch = new ArrayList<>();
+    long batchBytes = 0;
+    for (RawBsonDocument document : documents) {
+      final int documentBytes = document.getByteBuffer().remaining();
+      if (!batch.isEmpty() && (batchBytes + documentBytes > this.maxBatchBytes
+          || batch.size() >= this.maxBatchCount)) {
+        batches.add(batch);
+        batch = new ArrayList<>();
+        batchBytes = 0;
+      }
+      batch.add(document);
+      batchBytes += documentBytes;
+    }
+    if (!batch.isEmpty()) {
+      batches.add(batch);
+    }
+    return batches;
+  }
+
+}
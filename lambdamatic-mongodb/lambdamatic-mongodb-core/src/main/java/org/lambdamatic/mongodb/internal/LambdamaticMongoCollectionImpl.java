@@ -7,15 +7,27 @@
 package org.lambdamatic.mongodb.internal;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.lambdamatic.mongodb.BulkWriteResult;
 import org.lambdamatic.mongodb.FilterExpression;
+import org.lambdamatic.mongodb.IncrementAggregator;
 import org.lambdamatic.mongodb.LambdamaticMongoCollection;
+import org.lambdamatic.mongodb.WriteBehindBuffer;
 import org.lambdamatic.mongodb.annotations.Document;
 import org.lambdamatic.mongodb.exceptions.OperationException;
+import org.lambdamatic.mongodb.internal.codecs.BindingService;
 import org.lambdamatic.mongodb.metadata.ProjectionMetadata;
 import org.lambdamatic.mongodb.metadata.QueryMetadata;
 import org.lambdamatic.mongodb.metadata.UpdateMetadata;
+import org.lambdamatic.mongodb.query.context.BulkWriteContext;
 import org.lambdamatic.mongodb.query.context.FilterContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +35,7 @@ import org.slf4j.LoggerFactory;
 import com.mongodb.MongoClient;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.UpdateOptions;
 import com.mongodb.client.result.UpdateResult;
 
@@ -86,6 +99,21 @@ public class LambdamaticMongoCollectionImpl<
     }
   }
 
+  @Override
+  public void addAll(final Iterator<DomainType> domainObjects) {
+    final MongoCollection<RawBsonDocument> rawDocumentCollection = getMongoCollection()
+        .withCodecRegistry(CodecRegistries.fromRegistries(
+            CodecRegistries.fromCodecs(new RawBsonDocumentCodec()), BsonUtils.codecRegistry))
+        .withDocumentClass(RawBsonDocument.class);
+    new InsertionPipeline<>(BsonUtils.codecRegistry.get(this.targetClass),
+        rawDocumentCollection::insertMany).insert(domainObjects);
+  }
+
+  @Override
+  public void addAll(final Stream<DomainType> domainObjects) {
+    addAll(domainObjects.iterator());
+  }
+
   @Override
   public void upsert(final DomainType domainObject) {
     final BsonDocument idFilterDocument = BsonUtils.asBsonDocument(new IdFilter<>(domainObject));
@@ -103,6 +131,51 @@ public class LambdamaticMongoCollectionImpl<
     }
   }
 
+  @Override
+  public BulkWriteResult upsertAll(final Collection<DomainType> domainObjects) {
+    final BulkWriteContext<DomainType, QueryType, UpdateType> bulkWriteContext = bulk();
+    domainObjects.forEach(bulkWriteContext::upsert);
+    return bulkWriteContext.execute();
+  }
+
+  @Override
+  public BulkWriteResult replaceAll(final Collection<DomainType> domainObjects) {
+    final BulkWriteContext<DomainType, QueryType, UpdateType> bulkWriteContext = bulk();
+    domainObjects.forEach(bulkWriteContext::replace);
+    final BulkWriteResult result = bulkWriteContext.execute();
+    if (result.getMatchedCount() != domainObjects.size()) {
+      throw new OperationException("Invalid number of document match during the update operation: "
+          + result.getMatchedCount() + " instead of " + domainObjects.size()
+          + " (the matching documents were replaced: " + result + ")");
+    }
+    return result;
+  }
+
+  @Override
+  public WriteBehindBuffer<DomainType> writeBehind(final int maxPendingUpserts,
+      final long flushInterval, final TimeUnit unit) {
+    return new WriteBehindBufferImpl<>(
+        BindingService.getInstance()::getDocumentId, domainObjects -> {
+          final BulkWriteContext<DomainType, QueryType, UpdateType> bulkWriteContext =
+              bulk().ordered(false);
+          domainObjects.forEach(bulkWriteContext::upsert);
+          bulkWriteContext.execute();
+        }, maxPendingUpserts, flushInterval, unit);
+  }
+
+  @Override
+  public IncrementAggregator<QueryType, UpdateType> incrementAggregator(final long flushInterval,
+      final TimeUnit unit) {
+    return new IncrementAggregatorImpl<DomainType, QueryType, UpdateType>(
+        updates -> getMongoCollection().bulkWrite(updates, new BulkWriteOptions().ordered(false)),
+        flushInterval, unit);
+  }
+
+  @Override
+  public BulkWriteContext<DomainType, QueryType, UpdateType> bulk() {
+    return new BulkWriteContextImpl<>(getMongoCollection());
+  }
+
   @Override
   public String toString() {
     return "MongoDB Collection of " + this.targetClass.getName();
@@ -10,13 +10,32 @@ package org.lambdamatic.mongodb.internal;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.bson.BsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
 import org.lambdamatic.mongodb.FilterExpression;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.internal.codecs.BoundedCache;
+import org.lambdamatic.mongodb.internal.codecs.DocumentCodec;
+import org.lambdamatic.mongodb.internal.codecs.DocumentCodecProvider;
+import org.lambdamatic.mongodb.internal.codecs.GeneratedDocumentCodec;
+import org.lambdamatic.mongodb.internal.codecs.LazyDocumentCodec;
+import org.lambdamatic.mongodb.internal.codecs.SampledLogger;
+import org.lambdamatic.mongodb.query.context.CloseableIterator;
 import org.lambdamatic.mongodb.query.context.LimitContext;
+import org.slf4j.LoggerFactory;
 
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 
 /**
  * Context to specify the method to retrieve the matching documents.
@@ -27,6 +46,50 @@ import com.mongodb.client.MongoCollection;
 class LimitContextImpl<DomainType>
     implements LimitContext<DomainType> {
 
+  /** The Logger for the slow queries. */
+  static final SampledLogger SLOW_QUERY_LOGGER =
+      new SampledLogger(LoggerFactory.getLogger(LimitContextImpl.class));
+
+  /** The maximum number of underlying {@link CodecRegistry}s for which codecs are cached. */
+  static final int MAX_CACHED_REGISTRIES = 16;
+
+  /** The maximum number of sets of decoded field names for which codecs are cached. */
+  static final int MAX_CACHED_FIELD_SETS = 64;
+
+  /**
+   * The {@link CodecRegistry}s that decode the documents of a domain class with a {@link Codec}
+   * restricted to some document fields, indexed by domain class, by underlying
+   * {@link CodecRegistry} and then by names of the decoded fields. Reusing them avoids creating a
+   * new {@link Codec} (and a new {@link CodecRegistry} with an empty cache of codecs) for each
+   * projected query. At most {@link #MAX_CACHED_REGISTRIES} underlying registries and
+   * {@link #MAX_CACHED_FIELD_SETS} sets of field names are kept per domain class, the least
+   * recently used being evicted first.
+   */
+  private static final ClassValue<BoundedCache<CodecRegistry,
+      BoundedCache<Set<String>, CodecRegistry>>> partialDecodingRegistries =
+          new ClassValue<BoundedCache<CodecRegistry, BoundedCache<Set<String>, CodecRegistry>>>() {
+            @Override
+            protected BoundedCache<CodecRegistry, BoundedCache<Set<String>, CodecRegistry>>
+                computeValue(final Class<?> domainClass) {
+              return new BoundedCache<>(MAX_CACHED_REGISTRIES);
+            }
+          };
+
+  /**
+   * The {@link CodecRegistry}s that decode the documents of a domain class with a
+   * {@link LazyDocumentCodec}, indexed by domain class and then by underlying
+   * {@link CodecRegistry}. At most {@link #MAX_CACHED_REGISTRIES} underlying registries are kept
+   * per domain class, the least recently used being evicted first.
+   */
+  private static final ClassValue<BoundedCache<CodecRegistry, CodecRegistry>>
+      lazyDecodingRegistries = new ClassValue<BoundedCache<CodecRegistry, CodecRegistry>>() {
+        @Override
+        protected BoundedCache<CodecRegistry, CodecRegistry> computeValue(
+            final Class<?> domainClass) {
+          return new BoundedCache<>(MAX_CACHED_REGISTRIES);
+        }
+      };
+
   /** The document search context. */
   private final FindIterable<DomainType> findIterable;
 
@@ -68,11 +131,14 @@ class LimitContextImpl<DomainType>
    * Constructor.
    * 
    * @param findIterable the document search context
+   * @param filterDocument the {@link BsonDocument} used to find the documents, or {@code null} if
+   *        there is none
    */
-  LimitContextImpl(final FindIterable<DomainType> findIterable) {
+  LimitContextImpl(final FindIterable<DomainType> findIterable,
+      final BsonDocument filterDocument) {
     this.findIterable = findIterable;
     this.mongoCollection = null;
-    this.filterDocument = null;
+    this.filterDocument = filterDocument;
   }
 
   /**
@@ -89,7 +155,52 @@ class LimitContextImpl<DomainType>
 
   @Override
   public List<DomainType> toList() {
-    return getFindIterable().into(new ArrayList<>());
+    final long startNanos = System.nanoTime();
+    final List<DomainType> results = getFindIterable().into(new ArrayList<>());
+    SLOW_QUERY_LOGGER.logIfSlow("find", startNanos, this.filterDocument);
+    return results;
+  }
+
+  @Override
+  public LimitContext<DomainType> batchSize(final int size) {
+    return new LimitContextImpl<>(getFindIterable().batchSize(checkBatchSize(size)),
+        this.filterDocument);
+  }
+
+  /**
+   * @param size the batch size to check
+   * @return the given batch size
+   * @throws ConversionException if the given batch size is negative
+   */
+  static int checkBatchSize(final int size) {
+    if (size < 0) {
+      throw new ConversionException("'batchSize' value cannot be negative.");
+    }
+    return size;
+  }
+
+  @Override
+  public CloseableIterator<DomainType> iterator() {
+    final long startNanos = System.nanoTime();
+    final MongoCursor<DomainType> cursor = getFindIterable().iterator();
+    SLOW_QUERY_LOGGER.logIfSlow("find", startNanos, this.filterDocument);
+    return new CursorIterator<>(cursor);
+  }
+
+  @Override
+  public Stream<DomainType> stream() {
+    final CloseableIterator<DomainType> iterator = iterator();
+    return StreamSupport
+        .stream(Spliterators.spliteratorUnknownSize(iterator,
+            Spliterator.ORDERED | Spliterator.NONNULL), false)
+        .onClose(iterator::close);
+  }
+
+  @Override
+  public void forEachDocument(final Consumer<? super DomainType> action) {
+    try (final CloseableIterator<DomainType> iterator = iterator()) {
+      iterator.forEachRemaining(action);
+    }
   }
 
   /**
@@ -99,10 +210,61 @@ class LimitContextImpl<DomainType>
   FindIterable<DomainType> getFindIterable() {
     if (this.findIterable != null) {
       return this.findIterable;
-    } else if (this.filterDocument == null) {
-      return this.mongoCollection.find();
     }
-    return this.mongoCollection.find(this.filterDocument);
+    return find(this.mongoCollection);
+  }
+
+  /**
+   * @param collection the {@link MongoCollection} to query
+   * @return a new {@link FindIterable} on the given collection, using the filter document of this
+   *         context.
+   */
+  FindIterable<DomainType> find(final MongoCollection<DomainType> collection) {
+    if (this.filterDocument == null) {
+      return collection.find();
+    }
+    return collection.find(this.filterDocument);
+  }
+
+  /**
+   * Returns a view of the {@link MongoCollection} of this context whose documents are decoded
+   * with a {@link Codec} that only reads the given document fields and skips all others. This
+   * {@link Codec} is the {@link GeneratedDocumentCodec} of the domain class if it exists, a
+   * {@link DocumentCodec} otherwise.
+   * 
+   * @param decodedFieldNames the names of the top-level document fields to decode, or
+   *        {@code null} to decode them all
+   * @return the {@link MongoCollection} to query
+   */
+  MongoCollection<DomainType> withDecodedFields(final Set<String> decodedFieldNames) {
+    if (decodedFieldNames == null) {
+      return this.mongoCollection;
+    }
+    final Class<DomainType> domainClass = this.mongoCollection.getDocumentClass();
+    final CodecRegistry codecRegistry = this.mongoCollection.getCodecRegistry();
+    return this.mongoCollection.withCodecRegistry(partialDecodingRegistries.get(domainClass)
+        .computeIfAbsent(codecRegistry, r -> new BoundedCache<>(MAX_CACHED_FIELD_SETS))
+        .computeIfAbsent(decodedFieldNames,
+            names -> CodecRegistries.fromRegistries(
+                CodecRegistries.fromCodecs(
+                    DocumentCodecProvider.createDocumentCodec(domainClass, codecRegistry, names)),
+                codecRegistry)));
+  }
+
+  /**
+   * Returns a view of the {@link MongoCollection} of this context whose documents are decoded
+   * with a {@link LazyDocumentCodec}, ie, into domain objects whose fields are decoded on first
+   * access.
+   * 
+   * @return the {@link MongoCollection} to query
+   */
+  MongoCollection<DomainType> withLazyDecoding() {
+    final Class<DomainType> domainClass = this.mongoCollection.getDocumentClass();
+    return this.mongoCollection.withCodecRegistry(lazyDecodingRegistries.get(domainClass)
+        .computeIfAbsent(this.mongoCollection.getCodecRegistry(),
+            codecRegistry -> CodecRegistries.fromRegistries(
+                CodecRegistries.fromCodecs(new LazyDocumentCodec<>(domainClass, codecRegistry)),
+                codecRegistry)));
   }
 
   /**
@@ -119,4 +281,32 @@ class LimitContextImpl<DomainType>
     return this.filterDocument;
   }
 
+  /**
+   * {@link CloseableIterator} backed by a {@link MongoCursor}.
+   */
+  private static class CursorIterator<DomainType> implements CloseableIterator<DomainType> {
+
+    private final MongoCursor<DomainType> cursor;
+
+    CursorIterator(final MongoCursor<DomainType> cursor) {
+      this.cursor = cursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.cursor.hasNext();
+    }
+
+    @Override
+    public DomainType next() {
+      return this.cursor.next();
+    }
+
+    @Override
+    public void close() {
+      this.cursor.close();
+    }
+
+  }
+
 }
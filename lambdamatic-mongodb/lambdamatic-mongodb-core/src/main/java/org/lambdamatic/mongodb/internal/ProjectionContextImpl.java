@@ -31,9 +31,12 @@ class ProjectionContextImpl<DomainType>
    * Constructor.
    * 
    * @param findIterable the document search context
+   * @param filterDocument the {@link BsonDocument} used to find the documents, or {@code null} if
+   *        there is none
    */
-  ProjectionContextImpl(final FindIterable<DomainType> findIterable) {
-    super(findIterable);
+  ProjectionContextImpl(final FindIterable<DomainType> findIterable,
+      final BsonDocument filterDocument) {
+    super(findIterable, filterDocument);
   }
 
   ProjectionContextImpl(MongoCollection<DomainType> mongoCollection) {
@@ -57,12 +60,18 @@ class ProjectionContextImpl<DomainType>
     super(mongoCollection, filterDocument);
   }
 
+  @Override
+  public ProjectionContext<DomainType> batchSize(final int size) {
+    return new ProjectionContextImpl<>(getFindIterable().batchSize(checkBatchSize(size)),
+        getFilterDocument());
+  }
+
   @Override
   public SkipContext<DomainType> skip(final int skip) {
     if (skip < 0) {
       throw new ConversionException("Skip value cannot be negative.");
     }
-    return new SkipContextImpl<>(getFindIterable().skip(skip));
+    return new SkipContextImpl<>(getFindIterable().skip(skip), getFilterDocument());
   }
 
 }
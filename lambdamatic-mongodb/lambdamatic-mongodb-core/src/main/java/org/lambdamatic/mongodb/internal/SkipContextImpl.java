@@ -52,9 +52,12 @@ class SkipContextImpl<DomainType>
    * Constructor.
    * 
    * @param findIterable the document search context
+   * @param filterDocument the {@link BsonDocument} used to find the documents, or {@code null} if
+   *        there is none
    */
-  SkipContextImpl(final FindIterable<DomainType> findIterable) {
-    super(findIterable);
+  SkipContextImpl(final FindIterable<DomainType> findIterable,
+      final BsonDocument filterDocument) {
+    super(findIterable, filterDocument);
   }
 
   /**
@@ -73,12 +76,21 @@ class SkipContextImpl<DomainType>
     if (limit < 0) {
       throw new ConversionException("'limit' value cannot be negative.");
     }
-    return new LimitContextImpl<>(getFindIterable().limit(limit));
+    return new LimitContextImpl<>(getFindIterable().limit(limit), getFilterDocument());
+  }
+
+  @Override
+  public SkipContext<DomainType> batchSize(final int size) {
+    return new SkipContextImpl<>(getFindIterable().batchSize(checkBatchSize(size)),
+        getFilterDocument());
   }
 
   @Override
   public DomainType first() {
-    return getFindIterable().first();
+    final long startNanos = System.nanoTime();
+    final DomainType result = getFindIterable().first();
+    SLOW_QUERY_LOGGER.logIfSlow("find", startNanos, getFilterDocument());
+    return result;
   }
 
 }
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.lambdamatic.mongodb.WriteBehindBuffer;
+import org.lambdamatic.mongodb.exceptions.OperationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link WriteBehindBuffer} implementation. The pending upserts are kept in a
+ * {@link ConcurrentHashMap} indexed by document id, so that concurrent upserts of different
+ * documents do not contend on a single lock. The flushes are serialized, so that an upsert is
+ * never overwritten in the database by an older one.
+ * <p>
+ * The flushes triggered by the number of pending upserts are performed by the same background
+ * thread as the periodic flushes, so that callers of {@link #upsert(Object)} neither wait for nor
+ * fail because of a bulk write operation that mostly carries other upserts. If the background
+ * thread cannot keep up and the number of pending upserts reaches twice the maximum, the callers
+ * flush the pending upserts themselves (without throwing if that fails), which slows them down
+ * to the pace of the database.
+ * </p>
+ * 
+ * @param <DomainType> the type of domain objects to upsert
+ */
+class WriteBehindBufferImpl<DomainType> implements WriteBehindBuffer<DomainType> {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindBufferImpl.class);
+
+  /** the pending upserts, indexed by document id. */
+  private final Map<Object, DomainType> pendingUpserts = new ConcurrentHashMap<>();
+
+  /** the function that returns the document id of a given domain object. */
+  private final Function<DomainType, Object> idFunction;
+
+  /** the consumer that sends the given upserts to the database. */
+  private final Consumer<List<DomainType>> writer;
+
+  /** the number of pending upserts above which they are flushed. */
+  private final int maxPendingUpserts;
+
+  /** the executor for the periodic flushes and the flushes triggered by the pending upserts. */
+  private final ScheduledExecutorService scheduler;
+
+  /** whether a flush was submitted to the {@link #scheduler} and did not start yet. */
+  private final AtomicBoolean flushSubmitted = new AtomicBoolean(false);
+
+  /** the lock to serialize the flushes. */
+  private final Object flushLock = new Object();
+
+  /** whether this buffer was closed. */
+  private volatile boolean closed = false;
+
+  /** the total number of received upserts. */
+  private final LongAdder upsertCount = new LongAdder();
+
+  /** the number of upserts that replaced a pending one. */
+  private final LongAdder coalescedCount = new LongAdder();
+
+  /** the number of documents sent to the database. */
+  private final LongAdder writtenCount = new LongAdder();
+
+  /** the number of bulk write operations sent to the database. */
+  private final LongAdder flushCount = new LongAdder();
+
+  /**
+   * Constructor.
+   * 
+   * @param idFunction the function that returns the document id of a given domain object
+   * @param writer the consumer that sends the given upserts to the database
+   * @param maxPendingUpserts the number of pending upserts above which they are flushed
+   * @param flushInterval the maximum delay between two flushes, or {@code 0} for no periodic
+   *        flush
+   * @param unit the time unit of the {@code flushInterval}
+   */
+  WriteBehindBufferImpl(final Function<DomainType, Object> idFunction,
+      final Consumer<List<DomainType>> writer, final int maxPendingUpserts,
+      final long flushInterval, final TimeUnit unit) {
+    this.idFunction = idFunction;
+    this.writer = writer;
+    this.maxPendingUpserts = maxPendingUpserts;
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "lambdamatic-write-behind");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (flushInterval > 0) {
+      this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval,
+          unit);
+    }
+  }
+
+  @Override
+  public void upsert(final DomainType domainObject) {
+    if (this.closed) {
+      throw new OperationException("Cannot upsert in a closed write-behind buffer");
+    }
+    final Object id = this.idFunction.apply(domainObject);
+    if (id == null) {
+      throw new OperationException(
+          "Cannot upsert a domain object without id in a write-behind buffer: " + domainObject);
+    }
+    this.upsertCount.increment();
+    if (this.pendingUpserts.put(id, domainObject) != null) {
+      this.coalescedCount.increment();
+    }
+    if (this.closed) {
+      // flushes if this buffer was closed in the mean time, so that no upsert is lost
+      flush();
+      return;
+    }
+    final int pendingCount = this.pendingUpserts.size();
+    if (pendingCount >= 2 * this.maxPendingUpserts) {
+      // back-pressure: the background flushes do not keep up
+      flushQuietly();
+    } else if (pendingCount >= this.maxPendingUpserts) {
+      submitFlush();
+    }
+  }
+
+  /**
+   * Submits a flush to the background thread, unless one is already waiting to start.
+   */
+  private void submitFlush() {
+    if (!this.flushSubmitted.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      this.scheduler.execute(() -> {
+        this.flushSubmitted.set(false);
+        flushQuietly();
+      });
+    } catch (RejectedExecutionException e) {
+      // this buffer was closed in the mean time
+      this.flushSubmitted.set(false);
+      flush();
+    }
+  }
+
+  @Override
+  public void flush() {
+    synchronized (this.flushLock) {
+      final Map<Object, DomainType> flushedUpserts = new LinkedHashMap<>();
+      for (Object id : this.pendingUpserts.keySet()) {
+        final DomainType domainObject = this.pendingUpserts.remove(id);
+        if (domainObject != null) {
+          flushedUpserts.put(id, domainObject);
+        }
+      }
+      if (flushedUpserts.isEmpty()) {
+        return;
+      }
+      try {
+        this.writer.accept(new ArrayList<>(flushedUpserts.values()));
+      } catch (RuntimeException e) {
+        // keeps the upserts that were not superseded in the mean time
+        flushedUpserts.forEach(this.pendingUpserts::putIfAbsent);
+        throw e;
+      }
+      this.writtenCount.add(flushedUpserts.size());
+      this.flushCount.increment();
+    }
+  }
+
+  /**
+   * Flushes the pending upserts, logging (instead of throwing) the exception if the operation
+   * failed.
+   */
+  private void flushQuietly() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Failed to flush {} pending upserts", this.pendingUpserts.size(), e);
+    }
+  }
+
+  @Override
+  public void close() {
+    this.closed = true;
+    this.scheduler.shutdown();
+    try {
+      // waits for the flush in progress, if any
+      while (!this.scheduler.awaitTermination(1, TimeUnit.SECONDS)) {
+        LOGGER.debug("Waiting for the write-behind flush in progress to complete");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    flush();
+  }
+
+  @Override
+  public int getPendingCount() {
+    return this.pendingUpserts.size();
+  }
+
+  @Override
+  public long getUpsertCount() {
+    return this.upsertCount.sum();
+  }
+
+  @Override
+  public long getCoalescedCount() {
+    return this.coalescedCount.sum();
+  }
+
+  @Override
+  public long getWrittenCount() {
+    return this.writtenCount.sum();
+  }
+
+  @Override
+  public long getFlushCount() {
+    return this.flushCount.sum();
+  }
+
+}
@@ -8,25 +8,19 @@
 
 package org.lambdamatic.mongodb.internal.codecs;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-
-import org.apache.commons.io.IOUtils;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
 import org.bson.BsonReader;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
-import org.bson.json.JsonReader;
-import org.bson.json.JsonWriter;
 import org.lambdamatic.analyzer.LambdaExpressionAnalyzer;
 import org.lambdamatic.analyzer.ast.node.LambdaExpression;
 import org.lambdamatic.mongodb.FilterExpression;
 import org.lambdamatic.mongodb.ProjectionExpression;
 import org.lambdamatic.mongodb.UpdateExpression;
-import org.lambdamatic.mongodb.exceptions.ConversionException;
-import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -41,9 +35,10 @@ public abstract class BaseLambdaExpressionCodec<T>
   /** The Logger name to use when logging conversion results. */
   protected static final String LOGGER_NAME = BaseLambdaExpressionCodec.class.getName();
   /**
-   * The usual Logger.
+   * The Logger for a sample of the encoded expressions.
    */
-  private static final Logger LOGGER = LoggerFactory.getLogger(LOGGER_NAME);
+  private static final SampledLogger LOGGER =
+      new SampledLogger(LoggerFactory.getLogger(LOGGER_NAME));
 
   @Override
   public Class<T> getEncoderClass() {
@@ -56,27 +51,17 @@ public abstract class BaseLambdaExpressionCodec<T>
       final EncoderContext encoderContext) {
     final LambdaExpression lambdaExpression =
         LambdaExpressionAnalyzer.getInstance().analyzeExpression(filterExpression);
-    if (LOGGER.isInfoEnabled()) {
-      final ByteArrayOutputStream jsonOutputStream = new ByteArrayOutputStream();
-      try (final JsonWriter debugWriter =
-          new JsonWriter(new OutputStreamWriter(jsonOutputStream, "UTF-8"))) {
-        encodeExpression(lambdaExpression, debugWriter, encoderContext);
-        // use an intermediate JsonWriter whose Outputstream can be
-        // retrieved
-        final String jsonContent = IOUtils.toString(jsonOutputStream.toByteArray(), "UTF-8");
-        LOGGER.info("Bson Expression: {}", jsonContent);
-        try (final JsonReader jsonContentReader = new JsonReader(jsonContent)) {
-          // now, write the document in the target writer
-          writer.pipe(jsonContentReader);
-          writer.flush();
-        }
-      } catch (IOException e) {
-        throw new ConversionException(
-            "Failed to convert '" + lambdaExpression.toString() + "' to a BSON document", e);
-      }
-    } else {
+    if (!LOGGER.isSampled()) {
       encodeExpression(lambdaExpression, writer, encoderContext);
+      return;
     }
+    // the root document is started by the expression encoders, so a sampled expression is encoded
+    // in a standalone document which is logged then piped into the given writer
+    final BsonDocumentWriter documentWriter = new BsonDocumentWriter(new BsonDocument());
+    encodeExpression(lambdaExpression, documentWriter, encoderContext);
+    LOGGER.logWrittenDocument("Bson Expression: {}", documentWriter, -1, lambdaExpression);
+    writer.pipe(new BsonDocumentReader(documentWriter.getDocument()));
+    writer.flush();
   }
 
   /**
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.bson.BsonWriter;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.annotations.DocumentField;
+import org.lambdamatic.mongodb.annotations.DocumentId;
+import org.lambdamatic.mongodb.annotations.EmbeddedDocument;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+/**
+ * The bindings between the fields of a domain class and the fields of its BSON documents, computed
+ * once per domain class by the {@link BindingService}. The {@link FieldBinding}s are kept in an
+ * array ordered by document field name, with their {@link Field} already made accessible, and the
+ * binding annotated with {@link DocumentId} is resolved upfront, so that encoding a domain object
+ * is a plain iteration over the array.
+ */
+class BindingPlan {
+
+  /** The domain class. */
+  private final Class<?> domainClass;
+
+  /** {@code true} if the domain class is annotated with {@link Document}. */
+  private final boolean document;
+
+  /** Whether the domain class is annotated with {@link EmbeddedDocument}. */
+  private final boolean embeddedDocument;
+
+  /** The binding annotated with {@link DocumentId}, or {@code null} if there is none. */
+  private final FieldBinding idBinding;
+
+  /** All bindings, including the id binding, ordered by document field name. */
+  private final FieldBinding[] bindings;
+
+  /** All bindings except the id binding, ordered by document field name. */
+  private final FieldBinding[] nonIdBindings;
+
+  /** The bound {@link Field}s, indexed by document field name. */
+  private final Map<String, Field> fields;
+
+  BindingPlan(final Class<?> domainClass) {
+    this.domainClass = domainClass;
+    this.document = domainClass.getAnnotation(Document.class) != null;
+    this.embeddedDocument = domainClass.getAnnotation(EmbeddedDocument.class) != null;
+    final Map<String, Field> classBindings = new TreeMap<>();
+    // let's analyze the class' declared fields
+    // TODO: verify that inherited private fields are also supported
+    for (Field field : domainClass.getDeclaredFields()) {
+      final DocumentId documentIdAnnotation = field.getAnnotation(DocumentId.class);
+      if (documentIdAnnotation != null) {
+        classBindings.put(EncoderUtils.MONGOBD_DOCUMENT_ID, field);
+        continue;
+      }
+      final DocumentField documentFieldAnnotation = field.getAnnotation(DocumentField.class);
+      if (documentFieldAnnotation != null && documentFieldAnnotation.name().isEmpty()) {
+        classBindings.put(field.getName(), field);
+      } else if (documentFieldAnnotation != null && !documentFieldAnnotation.name().isEmpty()) {
+        classBindings.put(documentFieldAnnotation.name(), field);
+      } else if (!field.getName().startsWith("$jacoco")) {
+        // custom requirement: ignore Jacoco/EclEmma fields introduced at for code coverage
+        classBindings.put(field.getName(), field);
+      }
+    }
+    FieldBinding classIdBinding = null;
+    final List<FieldBinding> allBindings = new ArrayList<>(classBindings.size());
+    final List<FieldBinding> otherBindings = new ArrayList<>(classBindings.size());
+    for (Entry<String, Field> classBinding : classBindings.entrySet()) {
+      final FieldBinding binding = new FieldBinding(classBinding.getKey(), classBinding.getValue());
+      allBindings.add(binding);
+      if (binding.getField().getAnnotation(DocumentId.class) != null) {
+        classIdBinding = binding;
+      } else {
+        otherBindings.add(binding);
+      }
+    }
+    this.idBinding = classIdBinding;
+    this.bindings = allBindings.toArray(new FieldBinding[allBindings.size()]);
+    this.nonIdBindings = otherBindings.toArray(new FieldBinding[otherBindings.size()]);
+    this.fields = Collections.unmodifiableMap(classBindings);
+  }
+
+  /**
+   * @return the domain class.
+   */
+  Class<?> getDomainClass() {
+    return this.domainClass;
+  }
+
+  /**
+   * @return {@code true} if the domain class is annotated with {@link Document}, {@code false}
+   *         otherwise.
+   */
+  boolean isDocument() {
+    return this.document;
+  }
+
+  /**
+   * @return {@code true} if the domain class is annotated with {@link EmbeddedDocument},
+   *         {@code false} otherwise.
+   */
+  boolean isEmbeddedDocument() {
+    return this.embeddedDocument;
+  }
+
+  /**
+   * @return the binding annotated with {@link DocumentId}, or {@code null} if there is none.
+   */
+  FieldBinding getIdBinding() {
+    return this.idBinding;
+  }
+
+  /**
+   * @return all bindings, including the id binding, ordered by document field name. The returned
+   *         array is shared and must not be modified.
+   */
+  FieldBinding[] getBindings() {
+    return this.bindings;
+  }
+
+  /**
+   * @return all bindings except the id binding, ordered by document field name. The returned array
+   *         is shared and must not be modified.
+   */
+  FieldBinding[] getNonIdBindings() {
+    return this.nonIdBindings;
+  }
+
+  /**
+   * @return an unmodifiable {@link Map} of the bound {@link Field}s, indexed by document field name.
+   */
+  Map<String, Field> getFields() {
+    return this.fields;
+  }
+
+  /**
+   * A binding between a field of the domain class and a field of its BSON documents.
+   */
+  static class FieldBinding {
+
+    /** The name of the field in the BSON document. */
+    private final String documentFieldName;
+
+    /** The bound field, made accessible. */
+    private final Field field;
+
+    /** The kind of value held by the field. */
+    private final FieldKind kind;
+
+    /** The strategy to write the field value, chosen from its declared type. */
+    private final FieldWriter writer;
+
+    FieldBinding(final String documentFieldName, final Field field) {
+      this.documentFieldName = documentFieldName.intern();
+      this.field = field;
+      this.kind = FieldKind.of(field);
+      this.writer = EncoderUtils.getFieldWriter(this.documentFieldName, field, this.kind);
+      try {
+        this.field.setAccessible(true);
+      } catch (RuntimeException e) {
+        // field will not be readable: an exception will be thrown if its value is ever accessed
+      }
+    }
+
+    /**
+     * @return the name of the field in the BSON document.
+     */
+    String getDocumentFieldName() {
+      return this.documentFieldName;
+    }
+
+    /**
+     * @return the bound {@link Field}, already made accessible.
+     */
+    Field getField() {
+      return this.field;
+    }
+
+    /**
+     * @return the kind of value held by the field.
+     */
+    FieldKind getKind() {
+      return this.kind;
+    }
+
+    /**
+     * Retrieves the value of this binding's field in the given {@code domainObject}.
+     * 
+     * @param domainObject the object to analyze
+     * @return the field value or {@code null} if it was not set
+     * @throws ConversionException if a problem occurred while accessing the field value
+     */
+    Object getValue(final Object domainObject) {
+      try {
+        return this.field.get(domainObject);
+      } catch (IllegalArgumentException | IllegalAccessException e) {
+        throw new ConversionException("Failed to retrieve value for field '" + this.field.getName()
+            + "' in domain object '" + domainObject + "'", e);
+      }
+    }
+
+    /**
+     * Writes the value of this binding's field in the given {@code domainObject} as a named value.
+     * 
+     * @param bsonWriter the {@link BsonWriter} to write into
+     * @param domainObject the domain object to read the field value from
+     * @param encoderContext the encode context
+     * @param codecRegistry the {@link CodecRegistry} to use when encoding embedded values
+     * @throws ConversionException if a problem occurred while accessing the field value
+     */
+    void write(final BsonWriter bsonWriter, final Object domainObject,
+        final EncoderContext encoderContext, final CodecRegistry codecRegistry) {
+      try {
+        this.writer.write(bsonWriter, domainObject, encoderContext, codecRegistry);
+      } catch (IllegalArgumentException | IllegalAccessException e) {
+        throw new ConversionException("Failed to retrieve value for field '" + this.field.getName()
+            + "' in domain object '" + domainObject + "'", e);
+      }
+    }
+
+    /**
+     * Sets the value of this binding's field in the given {@code domainObject}.
+     * 
+     * @param domainObject the object to update
+     * @param value the value to set
+     * @throws ConversionException if a problem occurred while setting the field value
+     */
+    void setValue(final Object domainObject, final Object value) {
+      try {
+        this.field.set(domainObject, value);
+      } catch (IllegalArgumentException | IllegalAccessException e) {
+        throw new ConversionException("Failed to set value for field '" + this.field.getName()
+            + "' in domain object '" + domainObject + "'", e);
+      }
+    }
+  }
+
+}
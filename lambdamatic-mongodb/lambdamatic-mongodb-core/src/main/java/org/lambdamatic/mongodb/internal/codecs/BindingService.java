@@ -9,15 +9,13 @@
 package org.lambdamatic.mongodb.internal.codecs;
 
 import java.lang.reflect.Field;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.bson.BsonDocument;
 import org.lambdamatic.mongodb.annotations.DocumentField;
 import org.lambdamatic.mongodb.annotations.DocumentId;
 import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.internal.codecs.BindingPlan.FieldBinding;
 
 import com.mongodb.DBObject;
 
@@ -31,9 +29,16 @@ import com.mongodb.DBObject;
 public class BindingService {
 
   /**
-   * Cache of bindings to convert domain class instances to/from {@link BsonDocument}s.
+   * Cache of {@link BindingPlan}s to convert domain class instances to/from {@link BsonDocument}s.
+   * The {@link ClassValue} computes each plan lazily, is safe for concurrent use and does not
+   * prevent the domain classes from being unloaded.
    */
-  private final Map<Class<?>, Map<String, Field>> bindings = new HashMap<>();
+  private final ClassValue<BindingPlan> bindingPlans = new ClassValue<BindingPlan>() {
+    @Override
+    protected BindingPlan computeValue(final Class<?> type) {
+      return new BindingPlan(type);
+    }
+  };
 
   private static final BindingService instance = new BindingService();
 
@@ -65,7 +70,8 @@ public class BindingService {
   }
 
   /**
-   * Retrieves the value of the given {@link Field} in the given {@code domainObject}.
+   * Retrieves the value of the given {@link Field} in the given {@code domainObject}. The
+   * {@link Field}s returned by {@link #getBindings(Class)} are already accessible.
    * 
    * @param domainObject the object to analyze
    * @param domainField the target {@link Field}
@@ -73,7 +79,6 @@ public class BindingService {
    * @throws ConversionException if a problem occurred while accessing the field value
    */
   public static Object getFieldValue(final Object domainObject, final Field domainField) {
-    domainField.setAccessible(true);
     try {
       return domainField.get(domainObject);
     } catch (IllegalArgumentException | IllegalAccessException e) {
@@ -82,6 +87,26 @@ public class BindingService {
     }
   }
 
+  /**
+   * Retrieves the value of the field annotated with {@link DocumentId} in the given
+   * {@code domainObject}. Only this field is decoded if the domain object is a lazy document.
+   * 
+   * @param domainObject the object to analyze
+   * @return the document id or {@code null} if it was not set
+   * @throws ConversionException if the domain class has no field annotated with
+   *         {@link DocumentId}
+   */
+  public Object getDocumentId(final Object domainObject) {
+    final FieldBinding idBinding = getBindingPlan(
+        LazyDocumentState.getDomainClass(domainObject.getClass())).getIdBinding();
+    if (idBinding == null) {
+      throw new ConversionException("Failed to retrieve id for instance of domain class '"
+          + domainObject.getClass().getName() + "': no field annotated with @DocumentId ?");
+    }
+    LazyDocumentState.resolve(domainObject, idBinding.getDocumentFieldName());
+    return idBinding.getValue(domainObject);
+  }
+
   /**
    * Analyzes and puts in a memory map the bindings to use when converting an incoming
    * {@link DBObject} into an instance of {@code targetClass}. The bindings is a {@link Map} of
@@ -92,29 +117,17 @@ public class BindingService {
    * @return the {@link Map} of bindings for the given {@code targetClass}
    */
   public Map<String, Field> getBindings(final Class<?> targetClass) {
-    if (!this.bindings.containsKey(targetClass)) {
-      final Map<String, Field> classBindings = new TreeMap<>();
-      // let's analyze the class' declared fields
-      // TODO: verify that inherited private fields are also supported
-      for (Field field : targetClass.getDeclaredFields()) {
-        final DocumentId documentIdAnnotation = field.getAnnotation(DocumentId.class);
-        if (documentIdAnnotation != null) {
-          classBindings.put("_id", field);
-          continue;
-        }
-        final DocumentField documentFieldAnnotation = field.getAnnotation(DocumentField.class);
-        if (documentFieldAnnotation != null && documentFieldAnnotation.name().isEmpty()) {
-          classBindings.put(field.getName(), field);
-        } else if (documentFieldAnnotation != null && !documentFieldAnnotation.name().isEmpty()) {
-          classBindings.put(documentFieldAnnotation.name(), field);
-        } else if (!field.getName().startsWith("$jacoco")) {
-          // custom requirement: ignore Jacoco/EclEmma fields introduced at for code coverage
-          classBindings.put(field.getName(), field);
-        }
-      }
-      this.bindings.put(targetClass, classBindings);
-    }
-    return Collections.unmodifiableMap(this.bindings.get(targetClass));
+    return getBindingPlan(targetClass).getFields();
+  }
+
+  /**
+   * Returns the {@link BindingPlan} of the given {@code targetClass}, computed on first use.
+   * 
+   * @param targetClass the domain class
+   * @return the {@link BindingPlan} for the given {@code targetClass}
+   */
+  BindingPlan getBindingPlan(final Class<?> targetClass) {
+    return this.bindingPlans.get(targetClass);
   }
 
 }
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A thread-safe cache that holds at most a given number of entries, and evicts the least recently
+ * used entry when that number is exceeded.
+ * <p>
+ * Cached values often hold a reference to their key (eg, a composite {@code CodecRegistry} built
+ * on top of the {@code CodecRegistry} it is indexed by), so weak keys would never be cleared: the
+ * number of entries is bounded instead.
+ * </p>
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of cached values
+ */
+public class BoundedCache<K, V> {
+
+  /** the cached entries, in access order. */
+  private final Map<K, V> entries;
+
+  /**
+   * Constructor.
+   *
+   * @param maxSize the maximum number of entries in this cache
+   */
+  public BoundedCache(final int maxSize) {
+    this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+        return size() > maxSize;
+      }
+    };
+  }
+
+  /**
+   * Returns the value associated with the given key, computing it with the given function if there
+   * is none.
+   *
+   * @param key the key
+   * @param mappingFunction the function that computes the value to cache when there is none
+   * @return the cached or computed value
+   */
+  public synchronized V computeIfAbsent(final K key,
+      final Function<? super K, ? extends V> mappingFunction) {
+    return this.entries.computeIfAbsent(key, mappingFunction);
+  }
+
+  /**
+   * @return the number of cached entries.
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.bson.BsonBinary;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.lambdamatic.mongodb.annotations.Compressed;
+import org.lambdamatic.mongodb.converters.CompressionCodec;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+/**
+ * Reads and writes the values of the fields annotated with {@link Compressed}.
+ * <p>
+ * A compressed value is stored as BSON binary data with the {@link #BINARY_SUBTYPE} subtype, and
+ * starts with a 5-bytes header: the id of the {@link CompressionCodec} that was used, followed by
+ * the size of the uncompressed value (little-endian {@code int}). Values below the threshold, or
+ * whose compressed form would not be smaller, are stored as regular {@link String} or binary
+ * values, so that compression can be enabled or disabled on existing documents.
+ * </p>
+ */
+final class CompressedValues {
+
+  /** The (user-defined) BSON binary subtype of the compressed values. */
+  static final byte BINARY_SUBTYPE = (byte) 0x81;
+
+  /** Size of the header that precedes the compressed data. */
+  private static final int HEADER_SIZE = 5;
+
+  /**
+   * Maximum size of a decompressed value, in bytes, to avoid allocating arbitrarily large arrays
+   * when the header of a value is corrupted. Matches the maximum size of a BSON document.
+   */
+  static final int MAX_DECOMPRESSED_SIZE = 16 * 1024 * 1024;
+
+  private CompressedValues() {
+    // utility class
+  }
+
+  /**
+   * @param fieldType the declared type of a field
+   * @return {@code true} if the values of the given type can be compressed, {@code false}
+   *         otherwise
+   */
+  static boolean supports(final Class<?> fieldType) {
+    return fieldType == String.class || fieldType == byte[].class;
+  }
+
+  /**
+   * Writes the given {@link String} or {@code byte[]} value, compressed if its size reaches the
+   * given {@code threshold}. {@code null} values are skipped.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the value to write
+   * @param threshold the minimum size of the values to compress, in bytes
+   * @param codecName the name of the {@link CompressionCodec} to use
+   */
+  static void writeNamedValue(final BsonWriter writer, final String name, final Object value,
+      final int threshold, final String codecName) {
+    if (value == null) {
+      return;
+    }
+    final boolean stringValue = value instanceof String;
+    // a char takes at most 3 bytes once encoded in UTF-8
+    if (stringValue && ((String) value).length() * 3 < threshold) {
+      writer.writeString(name, (String) value);
+      return;
+    }
+    final byte[] data =
+        stringValue ? ((String) value).getBytes(StandardCharsets.UTF_8) : (byte[]) value;
+    if (data.length > 0 && data.length >= threshold) {
+      final CompressionCodec codec = CompressionCodecRegistry.getInstance().getCodec(codecName);
+      final byte[] binary = codec.compress(data, HEADER_SIZE);
+      if (binary.length < data.length) {
+        binary[0] = codec.getId();
+        ByteBuffer.wrap(binary, 1, Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+            .putInt(data.length);
+        writer.writeBinaryData(name, new BsonBinary(BINARY_SUBTYPE, binary));
+        return;
+      }
+    }
+    if (stringValue) {
+      writer.writeString(name, (String) value);
+    } else {
+      writer.writeBinaryData(name, new BsonBinary(data));
+    }
+  }
+
+  /**
+   * Returns the {@link ValueDecoder} for the fields annotated with {@link Compressed}, which reads
+   * both compressed and uncompressed values.
+   *
+   * @param fieldType the declared type of the field
+   * @return the corresponding {@link ValueDecoder}
+   */
+  static ValueDecoder getValueDecoder(final Class<?> fieldType) {
+    if (!supports(fieldType)) {
+      return DocumentDecodingPlan.getValueDecoder(fieldType);
+    }
+    final boolean stringValue = fieldType == String.class;
+    return ConverterRegistry.nullSafe((reader, context, registry) -> {
+      if (reader.getCurrentBsonType() == BsonType.BINARY
+          && reader.peekBinarySubType() == BINARY_SUBTYPE) {
+        final byte[] data = decompress(reader);
+        return stringValue ? new String(data, StandardCharsets.UTF_8) : data;
+      }
+      return stringValue ? ConverterRegistry.readString(reader)
+          : ConverterRegistry.readBinary(reader);
+    });
+  }
+
+  private static byte[] decompress(final BsonReader reader) {
+    final byte[] binary = reader.readBinaryData().getData();
+    if (binary.length < HEADER_SIZE) {
+      throw new ConversionException(
+          "Unable to decompress value: missing header in " + binary.length + " bytes");
+    }
+    final int decompressedLength =
+        ByteBuffer.wrap(binary, 1, Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    if (decompressedLength < 0 || decompressedLength > MAX_DECOMPRESSED_SIZE) {
+      throw new ConversionException(
+          "Unable to decompress value: invalid decompressed length " + decompressedLength);
+    }
+    return CompressionCodecRegistry.getInstance().getCodec(binary[0]).decompress(binary,
+        HEADER_SIZE, binary.length - HEADER_SIZE, decompressedLength);
+  }
+
+}
@@ -0,0 +1,101 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.lambdamatic.mongodb.annotations.Compressed;
+import org.lambdamatic.mongodb.converters.CompressionCodec;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+/**
+ * Registry of the {@link CompressionCodec}s used for the fields annotated with {@link Compressed}.
+ * The {@link Compressed#DEFLATE} codec is registered by default. This class implements the
+ * singleton pattern for easy access in any Codec or Encoder classes.
+ */
+public class CompressionCodecRegistry {
+
+  private static final CompressionCodecRegistry instance = new CompressionCodecRegistry();
+
+  /** The {@link CompressionCodec}s, indexed by name. */
+  private final Map<String, CompressionCodec> codecsByName = new ConcurrentHashMap<>();
+
+  /** The {@link CompressionCodec}s, indexed by id. */
+  private final Map<Byte, CompressionCodec> codecsById = new ConcurrentHashMap<>();
+
+  /**
+   * Access to the singleton instance.
+   *
+   * @return the singleton instance of the {@link CompressionCodecRegistry}.
+   */
+  public static CompressionCodecRegistry getInstance() {
+    return instance;
+  }
+
+  private CompressionCodecRegistry() {
+    register(new DeflateCompressionCodec());
+  }
+
+  /**
+   * Registers the given {@link CompressionCodec}.
+   *
+   * @param codec the codec to register
+   * @throws ConversionException if another codec with the same name or the same id was already
+   *         registered
+   */
+  public synchronized void register(final CompressionCodec codec) {
+    final CompressionCodec codecWithSameId = this.codecsById.get(codec.getId());
+    if (this.codecsByName.containsKey(codec.getName()) || codecWithSameId != null) {
+      throw new ConversionException("Unable to register compression codec '" + codec.getName()
+          + "': a codec with the same name or id is already registered");
+    }
+    this.codecsByName.put(codec.getName(), codec);
+    this.codecsById.put(codec.getId(), codec);
+  }
+
+  /**
+   * Unregisters the {@link CompressionCodec} with the given name, if any.
+   *
+   * @param name the name of the codec
+   */
+  public synchronized void unregister(final String name) {
+    final CompressionCodec codec = this.codecsByName.remove(name);
+    if (codec != null) {
+      this.codecsById.remove(codec.getId());
+    }
+  }
+
+  /**
+   * @param name the name of the codec
+   * @return the {@link CompressionCodec} with the given name
+   * @throws ConversionException if no such codec is registered
+   */
+  CompressionCodec getCodec(final String name) {
+    final CompressionCodec codec = this.codecsByName.get(name);
+    if (codec == null) {
+      throw new ConversionException("No compression codec named '" + name + "' is registered");
+    }
+    return codec;
+  }
+
+  /**
+   * @param id the id of the codec
+   * @return the {@link CompressionCodec} with the given id
+   * @throws ConversionException if no such codec is registered
+   */
+  CompressionCodec getCodec(final byte id) {
+    final CompressionCodec codec = this.codecsById.get(id);
+    if (codec == null) {
+      throw new ConversionException("No compression codec with id " + id + " is registered");
+    }
+    return codec;
+  }
+
+}
@@ -0,0 +1,359 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.types.ObjectId;
+import org.lambdamatic.mongodb.converters.ValueConverter;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.types.geospatial.Location;
+
+/**
+ * Registry of the {@link ValueDecoder} to use when reading values of a given Java type from a BSON
+ * document, and of the user-defined {@link ValueConverter}s. This class implements the singleton
+ * pattern for easy access in any Codec or Encoder classes.
+ * <p>
+ * {@link ValueDecoder}s are looked-up once per domain class field, when its
+ * {@link DocumentDecodingPlan} is computed, so no per-value type resolution occurs during decoding.
+ * </p>
+ */
+public class ConverterRegistry {
+
+  /** The document types that a {@link ValueConverter} can convert to/from. */
+  private static final List<Class<?>> SUPPORTED_DOCUMENT_TYPES = Arrays.asList(String.class,
+      Integer.class, Long.class, Double.class, Boolean.class, Date.class, ObjectId.class,
+      byte[].class);
+
+  private static final ConverterRegistry instance = new ConverterRegistry();
+
+  /** The built-in {@link ValueDecoder}s, indexed by Java type. */
+  private final Map<Class<?>, ValueDecoder> builtinValueDecoders;
+
+  /** The user-defined {@link ValueConverter}s, indexed by Java type. */
+  private final Map<Class<?>, ValueConverter<?, ?>> converters = new ConcurrentHashMap<>();
+
+  /** The {@link ValueDecoder}s of the user-defined {@link ValueConverter}s, indexed by Java type. */
+  private final Map<Class<?>, ValueDecoder> converterValueDecoders = new ConcurrentHashMap<>();
+
+  /**
+   * Access to the singleton instance.
+   *
+   * @return the singleton instance of the {@link ConverterRegistry}.
+   */
+  public static ConverterRegistry getInstance() {
+    return instance;
+  }
+
+  /**
+   * Singleton constructor.
+   */
+  private ConverterRegistry() {
+    final Map<Class<?>, ValueDecoder> valueDecoders = new HashMap<>();
+    valueDecoders.put(String.class, nullSafe((reader, context, registry) -> readString(reader)));
+    register(valueDecoders, nullSafe((reader, context, registry) -> readBoolean(reader)),
+        Boolean.class, boolean.class);
+    register(valueDecoders, nullSafe((reader, context, registry) -> readByte(reader)),
+        Byte.class, byte.class);
+    register(valueDecoders, nullSafe((reader, context, registry) -> readShort(reader)),
+        Short.class, short.class);
+    register(valueDecoders, nullSafe((reader, context, registry) -> readChar(reader)),
+        Character.class, char.class);
+    register(valueDecoders, nullSafe((reader, context, registry) -> readInt(reader)),
+        Integer.class, int.class);
+    register(valueDecoders, nullSafe((reader, context, registry) -> readLong(reader)),
+        Long.class, long.class);
+    register(valueDecoders, nullSafe((reader, context, registry) -> (float) readDouble(reader)),
+        Float.class, float.class);
+    register(valueDecoders, nullSafe((reader, context, registry) -> readDouble(reader)),
+        Double.class, double.class);
+    valueDecoders.put(ObjectId.class,
+        nullSafe((reader, context, registry) -> readObjectId(reader)));
+    valueDecoders.put(Date.class, nullSafe((reader, context, registry) -> readDate(reader)));
+    valueDecoders.put(byte[].class, nullSafe((reader, context, registry) -> readBinary(reader)));
+    valueDecoders.put(Location.class, nullSafe(
+        (reader, context, registry) -> LocationCodec.decodeLocation(reader, context)));
+    this.builtinValueDecoders = Collections.unmodifiableMap(valueDecoders);
+  }
+
+  private static void register(final Map<Class<?>, ValueDecoder> valueDecoders,
+      final ValueDecoder valueDecoder, final Class<?> boxedType, final Class<?> primitiveType) {
+    valueDecoders.put(boxedType, valueDecoder);
+    valueDecoders.put(primitiveType, valueDecoder);
+  }
+
+  /**
+   * Registers the given {@link ValueConverter}, replacing any previous converter for the same Java
+   * type. Converters should be registered before the first document with a field of the converted
+   * type is encoded or decoded: the generated codecs retrieve their {@link ValueDecoder}s once, when
+   * they are instantiated, so they ignore the converters registered afterwards.
+   *
+   * @param converter the converter to register
+   * @param <JavaType> the Java type of the domain class fields
+   * @param <DocumentType> the type of the values stored in the MongoDB documents
+   * @throws ConversionException if the Java type of the given converter is natively supported or
+   *         if its document type is not supported
+   */
+  public <JavaType, DocumentType> void register(
+      final ValueConverter<JavaType, DocumentType> converter) {
+    if (this.builtinValueDecoders.containsKey(converter.getJavaType())) {
+      throw new ConversionException("Unable to register a converter for natively supported type '"
+          + converter.getJavaType().getName() + "'");
+    }
+    if (!SUPPORTED_DOCUMENT_TYPES.contains(converter.getDocumentType())) {
+      throw new ConversionException("Unsupported document type for converter of '"
+          + converter.getJavaType().getName() + "': " + converter.getDocumentType().getName());
+    }
+    final ValueDecoder documentValueDecoder =
+        this.builtinValueDecoders.get(converter.getDocumentType());
+    this.converters.put(converter.getJavaType(), converter);
+    this.converterValueDecoders.put(converter.getJavaType(),
+        nullSafe((reader, context, registry) -> converter.toJavaValue(converter.getDocumentType()
+            .cast(documentValueDecoder.decode(reader, context, registry)))));
+    // decoding plans are computed with the converters available at the time
+    DocumentDecodingPlan.clearPlans();
+  }
+
+  /**
+   * Unregisters the {@link ValueConverter} for the given Java type, if any.
+   *
+   * @param javaType the Java type of the domain class fields
+   */
+  public void unregister(final Class<?> javaType) {
+    this.converters.remove(javaType);
+    this.converterValueDecoders.remove(javaType);
+    DocumentDecodingPlan.clearPlans();
+  }
+
+  /**
+   * Returns the {@link ValueDecoder} for the given Java type.
+   *
+   * @param javaType the Java type of the values to decode
+   * @return the {@link ValueDecoder} of the user-defined {@link ValueConverter} or the built-in one
+   *         for the given Java type, or {@code null} if there is none.
+   */
+  ValueDecoder getValueDecoder(final Class<?> javaType) {
+    final ValueDecoder converterValueDecoder = this.converterValueDecoders.get(javaType);
+    if (converterValueDecoder != null) {
+      return converterValueDecoder;
+    }
+    return this.builtinValueDecoders.get(javaType);
+  }
+
+  /**
+   * Converts the given Java value using the user-defined {@link ValueConverter} for its type, if
+   * any.
+   *
+   * @param javaValue the value to convert
+   * @return the converted value, or the given {@code javaValue} if there is no user-defined
+   *         {@link ValueConverter} for its type.
+   */
+  @SuppressWarnings("unchecked")
+  Object toDocumentValue(final Object javaValue) {
+    if (javaValue == null || this.converters.isEmpty()) {
+      return javaValue;
+    }
+    final ValueConverter<Object, ?> converter =
+        (ValueConverter<Object, ?>) this.converters.get(javaValue.getClass());
+    if (converter == null) {
+      return javaValue;
+    }
+    return converter.toDocumentValue(javaValue);
+  }
+
+  /**
+   * Wraps the given {@link ValueDecoder} so that BSON {@code null} values are decoded as
+   * {@code null}.
+   *
+   * @param valueDecoder the decoder to wrap
+   * @return the null-safe {@link ValueDecoder}
+   */
+  static ValueDecoder nullSafe(final ValueDecoder valueDecoder) {
+    return (reader, context, registry) -> {
+      if (reader.getCurrentBsonType() == BsonType.NULL) {
+        reader.readNull();
+        return null;
+      }
+      return valueDecoder.decode(reader, context, registry);
+    };
+  }
+
+  static String readString(final BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case STRING:
+        return reader.readString();
+      case SYMBOL:
+        return reader.readSymbol();
+      default:
+        return String.valueOf(DocumentDecodingPlan.readUntypedValue(reader,
+            DocumentDecoder.DEFAULT_DECODER_CONTEXT, null));
+    }
+  }
+
+  static byte readByte(final BsonReader reader) {
+    final int value = readInt(reader);
+    if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+      throw outOfRange(value, byte.class);
+    }
+    return (byte) value;
+  }
+
+  static short readShort(final BsonReader reader) {
+    final int value = readInt(reader);
+    if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+      throw outOfRange(value, short.class);
+    }
+    return (short) value;
+  }
+
+  static int readInt(final BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case INT32:
+        return reader.readInt32();
+      case INT64:
+        final long longValue = reader.readInt64();
+        if (longValue < Integer.MIN_VALUE || longValue > Integer.MAX_VALUE) {
+          throw outOfRange(longValue, int.class);
+        }
+        return (int) longValue;
+      case DOUBLE:
+        final double doubleValue = reader.readDouble();
+        // also rejects NaN, infinite and fractional values
+        if ((int) doubleValue != doubleValue) {
+          throw outOfRange(doubleValue, int.class);
+        }
+        return (int) doubleValue;
+      case STRING:
+        return Integer.parseInt(reader.readString());
+      default:
+        throw unexpectedType(reader, int.class);
+    }
+  }
+
+  static long readLong(final BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case INT32:
+        return reader.readInt32();
+      case INT64:
+        return reader.readInt64();
+      case DOUBLE:
+        final double doubleValue = reader.readDouble();
+        // 2^63 is not a long value, but (long) 2^63 == Long.MAX_VALUE converts back to 2^63
+        if (doubleValue >= 0x1p63 || (long) doubleValue != doubleValue) {
+          throw outOfRange(doubleValue, long.class);
+        }
+        return (long) doubleValue;
+      case DATE_TIME:
+        return reader.readDateTime();
+      case STRING:
+        return Long.parseLong(reader.readString());
+      default:
+        throw unexpectedType(reader, long.class);
+    }
+  }
+
+  static double readDouble(final BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case INT32:
+        return reader.readInt32();
+      case INT64:
+        return reader.readInt64();
+      case DOUBLE:
+        return reader.readDouble();
+      case STRING:
+        return Double.parseDouble(reader.readString());
+      default:
+        throw unexpectedType(reader, double.class);
+    }
+  }
+
+  static boolean readBoolean(final BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case BOOLEAN:
+        return reader.readBoolean();
+      case STRING:
+        return Boolean.parseBoolean(reader.readString());
+      default:
+        throw unexpectedType(reader, boolean.class);
+    }
+  }
+
+  static char readChar(final BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case INT32:
+        final int intValue = reader.readInt32();
+        if (intValue < Character.MIN_VALUE || intValue > Character.MAX_VALUE) {
+          throw outOfRange(intValue, char.class);
+        }
+        return (char) intValue;
+      case STRING:
+        final String value = reader.readString();
+        if (value.length() == 1) {
+          return value.charAt(0);
+        }
+        throw new ConversionException("Unable to convert value '" + value + "' to type char");
+      default:
+        throw unexpectedType(reader, char.class);
+    }
+  }
+
+  static ObjectId readObjectId(final BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case OBJECT_ID:
+        return reader.readObjectId();
+      case STRING:
+        return new ObjectId(reader.readString());
+      default:
+        throw unexpectedType(reader, ObjectId.class);
+    }
+  }
+
+  static Date readDate(final BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case DATE_TIME:
+        return new Date(reader.readDateTime());
+      case INT64:
+        return new Date(reader.readInt64());
+      default:
+        throw unexpectedType(reader, Date.class);
+    }
+  }
+
+  static byte[] readBinary(final BsonReader reader) {
+    switch (reader.getCurrentBsonType()) {
+      case BINARY:
+        return reader.readBinaryData().getData();
+      case ARRAY:
+        return (byte[]) DocumentDecodingPlan.getArrayDecoder(byte.class).decode(reader,
+            DocumentDecoder.DEFAULT_DECODER_CONTEXT, null);
+      default:
+        throw unexpectedType(reader, byte[].class);
+    }
+  }
+
+  private static ConversionException outOfRange(final Object value, final Class<?> targetType) {
+    return new ConversionException(
+        "Unable to convert value '" + value + "' to type " + targetType.getName());
+  }
+
+  private static ConversionException unexpectedType(final BsonReader reader,
+      final Class<?> targetType) {
+    return new ConversionException("Unable to convert BSON value of type '"
+        + reader.getCurrentBsonType() + "' to type " + targetType.getName());
+  }
+
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.lambdamatic.mongodb.annotations.Compressed;
+import org.lambdamatic.mongodb.converters.CompressionCodec;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+/**
+ * The built-in {@link CompressionCodec}, based on {@link Deflater} and {@link Inflater}. Each
+ * thread reuses its own {@link Deflater}, {@link Inflater} and output buffer.
+ */
+class DeflateCompressionCodec implements CompressionCodec {
+
+  /** Initial size of the per-thread output buffer. */
+  private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+
+  /** Output buffers above this size are not kept for later reuse. */
+  private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+  private static final ThreadLocal<Deflater> deflaters =
+      ThreadLocal.withInitial(Deflater::new);
+
+  private static final ThreadLocal<Inflater> inflaters =
+      ThreadLocal.withInitial(Inflater::new);
+
+  private static final ThreadLocal<byte[]> buffers =
+      ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+
+  @Override
+  public String getName() {
+    return Compressed.DEFLATE;
+  }
+
+  @Override
+  public byte getId() {
+    return 1;
+  }
+
+  @Override
+  public byte[] compress(final byte[] data) {
+    return compress(data, 0);
+  }
+
+  @Override
+  public byte[] compress(final byte[] data, final int headerSize) {
+    final Deflater deflater = deflaters.get();
+    deflater.reset();
+    deflater.setInput(data);
+    deflater.finish();
+    byte[] buffer = buffers.get();
+    int length = headerSize;
+    while (!deflater.finished()) {
+      if (length >= buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, headerSize + 1));
+      }
+      length += deflater.deflate(buffer, length, buffer.length - length);
+    }
+    if (buffer.length <= MAX_POOLED_BUFFER_SIZE) {
+      buffers.set(buffer);
+    }
+    return Arrays.copyOf(buffer, length);
+  }
+
+  @Override
+  public byte[] decompress(final byte[] data, final int offset, final int length,
+      final int decompressedLength) {
+    final Inflater inflater = inflaters.get();
+    inflater.reset();
+    inflater.setInput(data, offset, length);
+    if (decompressedLength < 0) {
+      throw new ConversionException(
+          "Unable to decompress value: invalid decompressed length " + decompressedLength);
+    }
+    final byte[] result = new byte[decompressedLength];
+    try {
+      int count = 0;
+      while (count < decompressedLength && !inflater.finished()) {
+        final int inflated = inflater.inflate(result, count, decompressedLength - count);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        count += inflated;
+      }
+      if (count != decompressedLength) {
+        throw new ConversionException("Unable to decompress value: expected "
+            + decompressedLength + " bytes but got " + count);
+      }
+    } catch (DataFormatException e) {
+      throw new ConversionException("Unable to decompress value", e);
+    }
+    return result;
+  }
+
+}
@@ -6,21 +6,16 @@
 
 package org.lambdamatic.mongodb.internal.codecs;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.util.Set;
 
-import org.apache.commons.io.IOUtils;
+import org.bson.BsonDocument;
 import org.bson.BsonReader;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
-import org.bson.json.JsonReader;
-import org.bson.json.JsonWriter;
 import org.lambdamatic.mongodb.exceptions.ConversionException;
-import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -35,8 +30,9 @@ public class DocumentCodec<DomainType>
   /** The Logger name to use when logging conversion results. */
   static final String LOGGER_NAME = DocumentCodec.class.getName();
 
-  /** The usual Logger. */
-  private static final Logger LOGGER = LoggerFactory.getLogger(LOGGER_NAME);
+  /** The Logger for a sample of the encoded documents. */
+  private static final SampledLogger LOGGER =
+      new SampledLogger(LoggerFactory.getLogger(LOGGER_NAME));
 
   /** The user-defined domain class associated with this Codec. */
   private final Class<DomainType> targetClass;
@@ -44,6 +40,9 @@ public class DocumentCodec<DomainType>
   /** the codec registry, to decode elements of an incoming BSON document. */
   private final CodecRegistry codecRegistry;
 
+  /** The stateless decoder, shared by all documents decoded by this codec. */
+  private final DocumentDecoder decoder;
+
   /**
    * Constructor
    * 
@@ -51,8 +50,38 @@ public class DocumentCodec<DomainType>
    * @param codecRegistry the associated {@link CodecRegistry}
    */
   public DocumentCodec(final Class<DomainType> targetClass, final CodecRegistry codecRegistry) {
+    this(targetClass, codecRegistry, null);
+  }
+
+  /**
+   * Constructor for a {@link Codec} that only decodes some of the document fields, for example
+   * when the documents are retrieved with a projection.
+   * 
+   * @param targetClass the domain class supported by this {@link Codec}.
+   * @param codecRegistry the associated {@link CodecRegistry}
+   * @param decodedFieldNames the names of the top-level document fields to decode, or
+   *        {@code null} to decode them all. Other fields are skipped without being materialized.
+   */
+  public DocumentCodec(final Class<DomainType> targetClass, final CodecRegistry codecRegistry,
+      final Set<String> decodedFieldNames) {
     this.targetClass = targetClass;
     this.codecRegistry = codecRegistry;
+    this.decoder = new DocumentDecoder(targetClass, codecRegistry, decodedFieldNames);
+  }
+
+  /**
+   * Computes the names of the top-level document fields returned by the server for the given
+   * projection document.
+   * 
+   * @param domainClass the domain class of the queried documents
+   * @param projectionDocument the projection document, as written by the
+   *        {@link ProjectionExpressionCodec}
+   * @return the names of the document fields to decode, or {@code null} if all fields should be
+   *         decoded
+   */
+  public static Set<String> getProjectedFieldNames(final Class<?> domainClass,
+      final BsonDocument projectionDocument) {
+    return DocumentDecodingPlan.getProjectedFieldNames(domainClass, projectionDocument);
   }
 
   /**
@@ -77,27 +106,20 @@ public class DocumentCodec<DomainType>
   @Override
   public void encode(final BsonWriter writer, final DomainType domainObject,
       final EncoderContext encoderContext) {
-    if (LOGGER.isDebugEnabled()) {
-      final ByteArrayOutputStream jsonOutputStream = new ByteArrayOutputStream();
-      try (final JsonWriter debugWriter =
-          new JsonWriter(new OutputStreamWriter(jsonOutputStream, "UTF-8"))) {
-        // use an intermediate JsonWriter whose Outputstream can be
-        // retrieved
-        EncoderUtils.encodeDomainObject(debugWriter, domainObject, encoderContext,
-            this.codecRegistry);
-        final String jsonContent = IOUtils.toString(jsonOutputStream.toByteArray(), "UTF-8");
-        LOGGER.debug("Encoded document: {}", jsonContent);
-        // now, write the document in the target writer
-        try (final JsonReader jsonContentReader = new JsonReader(jsonContent)) {
-          writer.pipe(jsonContentReader);
-          writer.flush();
-        }
-      } catch (IOException e) {
-        throw new ConversionException(
-            "Failed to convert '" + domainObject.toString() + "' to a BSON document", e);
+    try {
+      writer.writeStartDocument();
+      final int documentPosition = SampledLogger.getDocumentPosition(writer);
+      EncoderUtils.encodeDomainObjectContent(writer, domainObject, encoderContext,
+          this.codecRegistry);
+      writer.writeEndDocument();
+      if (LOGGER.isSampled()) {
+        LOGGER.logWrittenDocument("Encoded document: {}", writer, documentPosition, domainObject);
       }
-    } else {
-      EncoderUtils.encodeDomainObject(writer, domainObject, encoderContext, this.codecRegistry);
+    } catch (IllegalArgumentException | IllegalAccessException e) {
+      throw new ConversionException(
+          "Failed to convert following domain object to BSON document: " + domainObject, e);
+    } finally {
+      writer.flush();
     }
   }
 
@@ -107,9 +129,8 @@ public class DocumentCodec<DomainType>
    */
   @Override
   public DomainType decode(final BsonReader reader, final DecoderContext decoderContext) {
-    final DocumentDecoder decoder = new DocumentDecoder(this.targetClass, this.codecRegistry);
     // code adapted from "org.bson.codecs.BsonDocumentCodec"
-    return decoder.decodeDocument(reader, decoderContext);
+    return this.decoder.decodeDocument(reader, decoderContext);
   }
 
 }
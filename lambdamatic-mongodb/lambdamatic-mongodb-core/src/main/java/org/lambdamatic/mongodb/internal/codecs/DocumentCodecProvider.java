@@ -6,25 +6,137 @@
 
 package org.lambdamatic.mongodb.internal.codecs;
 
+import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.bson.codecs.Codec;
 import org.bson.codecs.configuration.CodecProvider;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
 
 /**
- * {@link CodecProvider} implementation for the {@link DocumentCodec}.
+ * {@link CodecProvider} implementation for the {@link Document} classes. Provides the
+ * {@link GeneratedDocumentCodec} of the domain class if it was generated at compile time. If there
+ * is none, the {@link GeneratedDocumentCodec} may be generated at runtime (see
+ * {@link #RUNTIME_CODECS_PROPERTY}), otherwise a reflection-based {@link DocumentCodec} is
+ * provided.
  *
  */
 public class DocumentCodecProvider
     implements CodecProvider {
 
+  /** Suffix of the generated {@link GeneratedDocumentCodec} class names. */
+  public static final String GENERATED_CODEC_SUFFIX = "Codec";
+
+  /**
+   * Name of the system property to set to {@code true} to generate the
+   * {@link GeneratedDocumentCodec} at runtime for domain classes that were not processed by the
+   * annotation processor.
+   */
+  public static final String RUNTIME_CODECS_PROPERTY = "org.lambdamatic.mongodb.runtimeCodecs";
+
+  /**
+   * The constructors of the {@link GeneratedDocumentCodec}s, indexed by domain class (empty if the
+   * domain class has no generated codec).
+   */
+  private static final ClassValue<Optional<Constructor<?>>> generatedCodecConstructors =
+      new ClassValue<Optional<Constructor<?>>>() {
+        @Override
+        protected Optional<Constructor<?>> computeValue(final Class<?> domainClass) {
+          return findGeneratedCodecConstructor(domainClass);
+        }
+      };
+
+  /**
+   * The {@link Codec}s, indexed by domain class and then by {@link CodecRegistry}. Since all
+   * {@link Codec}s are stateless, a single instance is shared for each pair.
+   */
+  private static final ClassValue<Map<CodecRegistry, Codec<?>>> documentCodecs =
+      new ClassValue<Map<CodecRegistry, Codec<?>>>() {
+        @Override
+        protected Map<CodecRegistry, Codec<?>> computeValue(final Class<?> domainClass) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
   @Override
   public <T> Codec<T> get(final Class<T> clazz, final CodecRegistry registry) {
     if (clazz != null && clazz.getAnnotation(Document.class) != null) {
-      final DocumentCodec<T> lambdamaticDocumentCodec = new DocumentCodec<>(clazz, registry);
-      return lambdamaticDocumentCodec;
+      return getDocumentCodec(clazz, registry);
     }
     return null;
   }
 
+  /**
+   * Returns the {@link Codec} to use for the given domain class. The {@link Codec} is created
+   * once per domain class and {@link CodecRegistry}, and then reused.
+   *
+   * @param domainClass the domain class
+   * @param registry the {@link CodecRegistry} to pass to the {@link Codec}
+   * @param <T> the domain type
+   * @return the {@link GeneratedDocumentCodec} of the given domain class if it exists, a
+   *         {@link DocumentCodec} otherwise
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Codec<T> getDocumentCodec(final Class<T> domainClass, final CodecRegistry registry) {
+    return (Codec<T>) documentCodecs.get(domainClass).computeIfAbsent(registry,
+        r -> createDocumentCodec(domainClass, r));
+  }
+
+  private static <T> Codec<T> createDocumentCodec(final Class<T> domainClass,
+      final CodecRegistry registry) {
+    return createDocumentCodec(domainClass, registry, null);
+  }
+
+  /**
+   * Creates a new {@link Codec} for the given domain class that only decodes the given document
+   * fields, for example when the documents are retrieved with a projection. Callers should reuse
+   * the returned {@link Codec} for the same domain class, {@link CodecRegistry} and field names.
+   *
+   * @param domainClass the domain class
+   * @param registry the {@link CodecRegistry} to pass to the {@link Codec}
+   * @param decodedFieldNames the names of the top-level document fields to decode, or
+   *        {@code null} to decode them all
+   * @param <T> the domain type
+   * @return a new instance of the {@link GeneratedDocumentCodec} of the given domain class if it
+   *         exists, a new {@link DocumentCodec} otherwise
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> Codec<T> createDocumentCodec(final Class<T> domainClass,
+      final CodecRegistry registry, final Set<String> decodedFieldNames) {
+    final Optional<Constructor<?>> generatedCodecConstructor =
+        generatedCodecConstructors.get(domainClass);
+    if (generatedCodecConstructor.isPresent()) {
+      try {
+        return ((GeneratedDocumentCodec<T>) generatedCodecConstructor.get().newInstance(registry))
+            .restrictTo(decodedFieldNames);
+      } catch (ReflectiveOperationException | IllegalArgumentException e) {
+        throw new ConversionException(
+            "Failed to instantiate the generated codec for '" + domainClass.getName() + "'", e);
+      }
+    }
+    return new DocumentCodec<>(domainClass, registry, decodedFieldNames);
+  }
+
+  private static Optional<Constructor<?>> findGeneratedCodecConstructor(
+      final Class<?> domainClass) {
+    try {
+      final Class<?> generatedCodecClass = Class.forName(
+          domainClass.getName() + GENERATED_CODEC_SUFFIX, true, domainClass.getClassLoader());
+      if (GeneratedDocumentCodec.class.isAssignableFrom(generatedCodecClass)) {
+        return Optional.of(generatedCodecClass.getConstructor(CodecRegistry.class));
+      }
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      // no codec generated at compile time for this domain class
+    }
+    if (Boolean.getBoolean(RUNTIME_CODECS_PROPERTY)) {
+      return RuntimeDocumentCodecGenerator.generate(domainClass);
+    }
+    return Optional.empty();
+  }
+
 }
@@ -8,39 +8,30 @@
 
 package org.lambdamatic.mongodb.internal.codecs;
 
-import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
+import java.lang.reflect.Modifier;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
 
-import org.bson.BsonDocument;
-import org.bson.BsonDocumentReader;
-import org.bson.BsonElement;
 import org.bson.BsonReader;
 import org.bson.BsonType;
-import org.bson.BsonValue;
-import org.bson.BsonWriter;
-import org.bson.codecs.BsonValueCodecProvider;
-import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
-import org.bson.types.ObjectId;
 import org.lambdamatic.mongodb.annotations.Document;
 import org.lambdamatic.mongodb.annotations.EmbeddedDocument;
 import org.lambdamatic.mongodb.exceptions.ConversionException;
-import org.lambdamatic.mongodb.types.geospatial.Location;
+import org.lambdamatic.mongodb.internal.codecs.DocumentDecodingPlan.FieldDecoder;
+import org.lambdamatic.mongodb.internal.codecs.TypeAliasRegistry.DiscriminatorMode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Writes a given Document class (ie, annotated with {@link Document} or {@link EmbeddedDocument})
- * into a MongoDB {@link BsonWriter}.
+ * Reads a BSON document from a {@link BsonReader} into an instance of a given Document class (ie,
+ * annotated with {@link Document} or {@link EmbeddedDocument}).
+ * <p>
+ * Decoding is performed in a single pass: each field is read from the {@link BsonReader} and
+ * written straight into the target instance using the {@link DocumentDecodingPlan} of its class.
+ * Fields that have no binding in the target class are skipped, as well as the fields that the
+ * decoder was not asked to decode (see {@link #DocumentDecoder(Class, CodecRegistry, Set)}).
+ * </p>
  * 
  * @author Xavier Coulon
  */
@@ -48,10 +39,22 @@ public class DocumentDecoder {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DocumentDecoder.class);
 
+  /**
+   * Maximum number of fields to inspect when looking-up the type discriminator of a document: the
+   * {@code _id} field (if any) and the discriminator itself.
+   */
+  private static final int DISCRIMINATOR_MAX_POSITION = 2;
+
+  /** The shared {@link DecoderContext} to use when the caller did not provide one. */
+  static final DecoderContext DEFAULT_DECODER_CONTEXT = DecoderContext.builder().build();
+
   private final CodecRegistry codecRegistry;
 
   private final Class<?> targetClass;
 
+  /** The names of the top-level document fields to decode, or {@code null} to decode them all. */
+  private final Set<String> decodedFieldNames;
+
   /**
    * Constructor.
    * 
@@ -59,8 +62,22 @@ public class DocumentDecoder {
    * @param codecRegistry the associated CodecRegistry that will provide the appropriate codec
    */
   public DocumentDecoder(final Class<?> targetClass, final CodecRegistry codecRegistry) {
+    this(targetClass, codecRegistry, null);
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param targetClass the actual target class to encode
+   * @param codecRegistry the associated CodecRegistry that will provide the appropriate codec
+   * @param decodedFieldNames the names of the top-level document fields to decode, or
+   *        {@code null} to decode them all. Other fields are skipped.
+   */
+  public DocumentDecoder(final Class<?> targetClass, final CodecRegistry codecRegistry,
+      final Set<String> decodedFieldNames) {
     this.targetClass = targetClass;
     this.codecRegistry = codecRegistry;
+    this.decodedFieldNames = decodedFieldNames;
   }
 
   /**
@@ -73,334 +90,128 @@ public class DocumentDecoder {
    */
   public <DomainType> DomainType decodeDocument(final BsonReader reader,
       final DecoderContext decoderContext) {
-    final Map<String, BsonElement> keyValuePairs = new HashMap<>();
     reader.readStartDocument();
-    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
-      String fieldName = reader.readName();
-      keyValuePairs.put(fieldName,
-          new BsonElement(fieldName, readBsonValue(reader, decoderContext)));
-    }
-    reader.readEndDocument();
-    // now, convert the map of key-value pairs into an instance of the target document
-    final DomainType domainDocument = getTargetClass(keyValuePairs);
-    final Map<String, Field> bindings =
-        BindingService.getInstance().getBindings(domainDocument.getClass());
-    for (Iterator<String> iterator = keyValuePairs.keySet().iterator(); iterator.hasNext();) {
-      final String key = iterator.next();
-      final Field field = bindings.get(key);
-      if (field == null) {
-        LOGGER.debug("Field '{}' does not exist in class '{}'", key, domainDocument.getClass());
-        continue;
-      }
-      final Object fieldValue = getValue(keyValuePairs.get(key), field.getType());
-      try {
-        field.setAccessible(true);
-        field.set(domainDocument, fieldValue);
-      } catch (IllegalArgumentException | IllegalAccessException e) {
-        throw new ConversionException("Unable to set value '" + fieldValue + "' to field '"
-            + domainDocument.getClass().getName() + "." + field.getName() + "'", e);
-      }
-    }
-    return domainDocument;
+    return decodeDocumentContent(reader, decoderContext,
+        getDecodingPlan(reader, this.targetClass).restrictTo(this.decodedFieldNames),
+        this.codecRegistry);
   }
 
   /**
-   * Instantiate the target user-domain Document if the given {@code keyPairValues} contains a field
-   * named {@link DocumentCodec#TARGET_CLASS_FIELD}, otherwise use the default {@code targetClass}
-   * provided in the constructor of this codec.
+   * Decodes the document and returns a correspond instance of the associated Domain type, without
+   * requiring a {@link DocumentDecoder} instance.
    * 
-   * @param keyValuePairs the key-value pairs to use
-   * @return the instance of the target user-domain Document
-   */
-  @SuppressWarnings("unchecked")
-  private <T> T getTargetClass(final Map<String, BsonElement> keyValuePairs) {
-    final String targetClassName = getTargetClassName(keyValuePairs);
-    try {
-      return (T) Class.forName(targetClassName).newInstance();
-    } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
-      throw new ConversionException("Failed to create a new instance of '" + targetClassName + "'",
-          e);
-    }
-  }
-
-  /**
-   * Retrieves the fully qualified name of the target Document if the given {@code keyPairValues}
-   * contains a field named {@link DocumentCodec#TARGET_CLASS_FIELD}, otherwise use the default
-   * {@code targetClass} provided in the constructor of this codec.
-   * 
-   * @param keyValuePairs the key-value pairs to use
-   * @return the fully qualified name of the class to instantiate
+   * @param reader the reader to read the BSON document from
+   * @param decoderContext the {@link DecoderContext}
+   * @param targetClass the default target class, used if the document has no type discriminator
+   * @param codecRegistry the codec registry to use when decoding embedded documents
+   * @param <DomainType> the expected domain type
+   * @return an instance of a domain class
    */
-  private String getTargetClassName(final Map<String, BsonElement> keyValuePairs) {
-    if (keyValuePairs.containsKey(EncoderUtils.TARGET_CLASS_FIELD)) {
-      final BsonElement targetClassElement = keyValuePairs.get(EncoderUtils.TARGET_CLASS_FIELD);
-      return targetClassElement.getValue().asString().getValue();
-    }
-    return this.targetClass.getName();
+  static <DomainType> DomainType decodeDocument(final BsonReader reader,
+      final DecoderContext decoderContext, final Class<?> targetClass,
+      final CodecRegistry codecRegistry) {
+    reader.readStartDocument();
+    return decodeDocumentContent(reader, decoderContext, getDecodingPlan(reader, targetClass),
+        codecRegistry);
   }
 
   /**
-   * Converts the given {@code value} to the given {@code type}.
+   * Decodes the content of the current document using the given {@link DocumentDecodingPlan},
+   * <strong>assuming that the start of the document has already been read</strong>.
    * 
-   * @param targetType the target type
-   * @param value the value to convert
-   * @return the converted value
+   * @param reader the reader to read the BSON document from
+   * @param decoderContext the {@link DecoderContext}
+   * @param decodingPlan the {@link DocumentDecodingPlan} of the target domain class
+   * @param codecRegistry the codec registry to use when decoding embedded documents
+   * @param <DomainType> the expected domain type
+   * @return an instance of a domain class
    */
-  // TODO do we really need this method ?
-  // @Deprecated
-  private Object convert(final Object value, final Class<?> targetType) {
-    if (targetType.isEnum() && value instanceof String) {
-      // enum field
-      for (Object e : targetType.getEnumConstants()) {
-        if (e.toString().equals((String) value)) {
-          return e;
+  @SuppressWarnings("unchecked")
+  static <DomainType> DomainType decodeDocumentContent(final BsonReader reader,
+      final DecoderContext decoderContext, final DocumentDecodingPlan decodingPlan,
+      final CodecRegistry codecRegistry) {
+    final Object domainDocument = decodingPlan.newInstance();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      final String fieldName = reader.readName();
+      final FieldDecoder fieldDecoder = decodingPlan.getFieldDecoder(fieldName);
+      if (fieldDecoder == null) {
+        if (!decodingPlan.isPartial() && !EncoderUtils.TARGET_CLASS_FIELD.equals(fieldName)
+            && !EncoderUtils.TYPE_ALIAS_FIELD.equals(fieldName)) {
+          LOGGER.debug("Field '{}' does not exist in class '{}'", fieldName,
+              domainDocument.getClass());
         }
+        reader.skipValue();
+        continue;
       }
-    } else if (value instanceof BsonDocument
-        // embedded documents
-        && targetType.getAnnotation(EmbeddedDocument.class) != null) {
-      try (final BsonDocumentReader reader = new BsonDocumentReader((BsonDocument) value)) {
-        return decodeDocument(reader, DecoderContext.builder().build());
-      }
-    } else if (List.class.isAssignableFrom(targetType)) {
-      // List of embedded values/documents
-      return ((List<?>) value);
-    } else if (Set.class.isAssignableFrom(targetType)) {
-      // Set of embedded values/documents
-      return (Set<?>) value;
-    } else if (Map.class.isAssignableFrom(targetType)) {
-      // Set of embedded values/documents
-      return (Map<?, ?>) value;
-    } else if (targetType.isArray()) {
-      switch (targetType.getComponentType().getName()) {
-        case "boolean":
-          return (boolean[]) value;
-        case "byte":
-          return (byte[]) value;
-        case "short":
-          return (short[]) value;
-        case "int":
-          return (int[]) value;
-        case "long":
-          return (long[]) value;
-        case "double":
-          return (double[]) value;
-        case "float":
-          return (float[]) value;
-        default:
-          return (Object[]) value;
-      }
-      // array of embedded values/documents
-    } else {
-      // other types of fields.
-      // FIXME: missing switches. Can we write it differently ?
-      switch (targetType.getName()) {
-        case "boolean":
-        case "java.lang.Boolean":
-          return Boolean.parseBoolean(value.toString());
-        case "byte":
-        case "java.lang.Byte":
-          return Byte.parseByte(value.toString());
-        case "short":
-        case "java.lang.Short":
-          return Short.parseShort(value.toString());
-        case "char":
-        case "java.lang.Character":
-          return new Character((char) value);
-        case "int":
-        case "java.lang.Integer":
-          return Integer.parseInt(value.toString());
-        case "long":
-        case "java.lang.Long":
-          return Long.parseLong(value.toString());
-        case "float":
-        case "java.lang.Float":
-          return Float.parseFloat(value.toString());
-        case "double":
-        case "java.lang.Double":
-          return Double.parseDouble(value.toString());
-        case "java.lang.String":
-          return value.toString();
-        case "org.bson.types.ObjectId":
-          return new ObjectId(value.toString());
-        case "java.util.Date":
-          return new Date((long) value);
-        case "org.lambdamatic.mongodb.types.geospatial.Location":
-          if (value instanceof Location) {
-            return value;
-          } 
-          try (final BsonDocumentReader reader = new BsonDocumentReader((BsonDocument) value)) {
-            return new LocationCodec(this.codecRegistry).decode(reader,
-                DecoderContext.builder().build());
-          } catch (Exception e) {
-            // let's fall back to throwing ConversionException below
-          }
-          break;
-        default:
-          // will throw ConversionException
-          break;
-      }
+      fieldDecoder.decode(domainDocument, reader, decoderContext, codecRegistry);
     }
-    throw new ConversionException(
-        "Unable to convert value '" + value + "' to type " + targetType.getName());
+    reader.readEndDocument();
+    return (DomainType) domainDocument;
   }
 
   /**
-   * Returns the value of the given {@code bsonElement} converted to the given {@code fieldType}.
+   * Retrieves the {@link DocumentDecodingPlan} of the target user-domain Document, using the
+   * document field named {@link EncoderUtils#TARGET_CLASS_FIELD} or
+   * {@link EncoderUtils#TYPE_ALIAS_FIELD} if it exists, otherwise the default {@code targetClass}
+   * provided (see {@link #readTargetClass(BsonReader, Class)} for the cases where the lookup is
+   * skipped).
    * 
-   * @param bsonElement the {@link BsonElement} to inspect
-   * @param expectedType the {@link Class} of the value to return
-   * @return the wrapped value or {@code null} if the given {@code bsonElement} is {@code null}
+   * @param reader the reader positioned at the start of the document. The reader position is left
+   *        unchanged.
+   * @param targetClass the default target class, or {@code null}
+   * @return the {@link DocumentDecodingPlan} to use
    */
-  protected Object getValue(final BsonElement bsonElement, final Class<?> expectedType) {
-    if (bsonElement != null) {
-      final Object bsonValue = decodeValue(bsonElement.getValue(), expectedType);
-      return convert(bsonValue, expectedType);
+  private static DocumentDecodingPlan getDecodingPlan(final BsonReader reader,
+      final Class<?> targetClass) {
+    final Class<?> documentClass = readTargetClass(reader, targetClass);
+    if (documentClass != null) {
+      return DocumentDecodingPlan.getPlan(documentClass);
+    } else if (targetClass != null) {
+      return DocumentDecodingPlan.getPlan(targetClass);
     }
-    return null;
+    throw new ConversionException("Unable to determine the target class of the document: no '"
+        + EncoderUtils.TARGET_CLASS_FIELD + "' or '" + EncoderUtils.TYPE_ALIAS_FIELD
+        + "' field and no default target class");
   }
 
   /**
-   * Returns the value of the given {@link BsonElement}.
+   * Looks-up the type discriminator of the current document, ie, the value of the
+   * {@link EncoderUtils#TARGET_CLASS_FIELD} or {@link EncoderUtils#TYPE_ALIAS_FIELD} field. The
+   * look-up is skipped when the {@code expectedClass} is {@code final} (the document cannot be
+   * decoded into any other class) or when the {@link TypeAliasRegistry} is in
+   * {@link DiscriminatorMode#NONE} mode. Otherwise, since the discriminator is always written
+   * first or right after the {@code _id} field, only the first {@link #DISCRIMINATOR_MAX_POSITION}
+   * fields are inspected before the reader is reset to its initial position.
    * 
-   * @param bsonValue the element to inspect
-   * @param expectedType the expected type of the {@code bsonValue}
-   * @return the wrapped value
+   * @param reader the reader positioned at the start of the document.
+   * @param expectedClass the expected domain class, or {@code null} if unknown
+   * @return the target class, or {@code null} if the document has no type discriminator
+   * @throws ConversionException if the type discriminator could not be resolved
    */
-  public Object decodeValue(final BsonValue bsonValue, final Class<?> expectedType) {
-    if (bsonValue != null) {
-      switch (bsonValue.getBsonType()) {
-        case ARRAY:
-          if (List.class.isAssignableFrom(expectedType)) {
-            return bsonValue.asArray().getValues().stream().map(v -> decodeValue(v, null))
-                .collect(Collectors.toList());
-          } else if (Set.class.isAssignableFrom(expectedType)) {
-            return bsonValue.asArray().getValues().stream().map(v -> decodeValue(v, null))
-                .collect(Collectors.toSet());
-          } else if (Map.class.isAssignableFrom(expectedType)) {
-            return bsonValue.asArray().getValues().stream()
-                .collect(Collectors.<BsonValue, Object, Object, TreeMap<Object, Object>>toMap(
-                    // retrieve name of the first element in the document
-                    k -> readFirstName(k), // the document
-                    // retrieve value of the first element in the document
-                    v -> readFirstValue(v),
-                    // binary operator (see Collectors#throwingMerger()
-                    (k1, k2) -> {
-                      throw new IllegalStateException(String.format("Duplicate key %s", k1));
-                    } ,
-                    // map supplier
-                    TreeMap::new));
-          } else if (expectedType.isArray()) {
-            return bsonValue.asArray().getValues().stream()
-                .map(v -> decodeValue(v, expectedType.getComponentType())).toArray(
-                    size -> (Object[]) Array.newInstance(expectedType.getComponentType(), size));
-          }
-          break;
-        case BINARY:
-          return bsonValue.asBinary().getData();
-        case BOOLEAN:
-          return bsonValue.asBoolean().getValue();
-        case DATE_TIME:
-          return bsonValue.asDateTime().getValue();
-        case DB_POINTER:
-          return bsonValue.asDBPointer().getId();
-        case DOUBLE:
-          return bsonValue.asDouble().getValue();
-        case INT32:
-          return bsonValue.asInt32().getValue();
-        case INT64:
-          return bsonValue.asInt64().getValue();
-        case JAVASCRIPT:
-          return bsonValue.asJavaScript().getCode();
-        case JAVASCRIPT_WITH_SCOPE:
-          return bsonValue.asJavaScriptWithScope().getCode();
-        case NULL:
-          return null;
-        case OBJECT_ID:
-          return bsonValue.asObjectId().getValue();
-        case REGULAR_EXPRESSION:
-          return bsonValue.asRegularExpression().getPattern();
-        case STRING:
-          return bsonValue.asString().getValue();
-        case SYMBOL:
-          return bsonValue.asSymbol().getSymbol();
-        case TIMESTAMP:
-          return bsonValue.asTimestamp().getTime();
-        case DOCUMENT:
-          final BsonDocument bsonDocument = (BsonDocument) bsonValue;
-          if (expectedType == Location.class) {
-            return new LocationCodec(this.codecRegistry)
-                .decode(new BsonDocumentReader(bsonDocument), DecoderContext.builder().build());
-          } else {
-            return new DocumentCodec<>(expectedType, this.codecRegistry)
-                .decode(new BsonDocumentReader(bsonDocument), DecoderContext.builder().build());
+  static Class<?> readTargetClass(final BsonReader reader, final Class<?> expectedClass) {
+    if (expectedClass != null && (Modifier.isFinal(expectedClass.getModifiers())
+        || TypeAliasRegistry.getInstance().getMode() == DiscriminatorMode.NONE)) {
+      return null;
+    }
+    reader.mark();
+    try {
+      for (int i = 0; i < DISCRIMINATOR_MAX_POSITION
+          && reader.readBsonType() != BsonType.END_OF_DOCUMENT; i++) {
+        final String fieldName = reader.readName();
+        if (reader.getCurrentBsonType() == BsonType.STRING) {
+          if (EncoderUtils.TARGET_CLASS_FIELD.equals(fieldName)) {
+            return TypeAliasRegistry.getInstance().resolveClassName(reader.readString());
+          } else if (EncoderUtils.TYPE_ALIAS_FIELD.equals(fieldName)) {
+            return TypeAliasRegistry.getInstance().resolveAlias(reader.readString(),
+                expectedClass);
           }
-        default:
-          throw new ConversionException(
-              "Unexpected BSON Element value of type '" + bsonValue.getBsonType() + "'");
+        }
+        reader.skipValue();
       }
+      return null;
+    } finally {
+      reader.reset();
     }
-    return null;
   }
 
-  /**
-   * Returns the value of the current reader position.
-   *
-   * @param reader the read to read the value from
-   * @param decoderContext the context
-   * @return the non-null value read from the reader
-   */
-  public BsonValue readBsonValue(final BsonReader reader, final DecoderContext decoderContext) {
-    final Class<? extends BsonValue> classForBsonType =
-        BsonValueCodecProvider.getClassForBsonType(reader.getCurrentBsonType());
-    final Codec<? extends BsonValue> codec = this.codecRegistry.get(classForBsonType);
-    return codec.decode(reader, decoderContext);
-  }
-
-  /**
-   * Reads the first name in the given {@link BsonValue}, assuming that it is a
-   * {@link BsonDocument}.
-   * 
-   * @param bsonValue the BsonDocument to read
-   * @return the first name
-   */
-  private static Object readFirstName(final BsonValue bsonValue) {
-    if (bsonValue == null) {
-      throw new ConversionException("Expected a BsonDocument but the given value was a null");
-
-    } else if (!bsonValue.isDocument()) {
-      throw new ConversionException(
-          "Expected a BsonDocument but the given value was a " + bsonValue.getBsonType().name());
-    }
-    try (final BsonDocumentReader reader = new BsonDocumentReader((BsonDocument) bsonValue)) {
-      reader.readStartDocument();
-      final String name = reader.readName();
-      return name;
-    }
-  }
-
-  /**
-   * Reads the first value in the given {@link BsonValue}, assuming that it is a
-   * {@link BsonDocument}.
-   * 
-   * @param bsonValue the BsonDocument to read
-   * @return the first value
-   */
-  private Object readFirstValue(final BsonValue bsonValue) {
-    if (bsonValue == null) {
-      throw new ConversionException("Expected a BsonDocument but the given value was a null");
-
-    } else if (!bsonValue.isDocument()) {
-      throw new ConversionException(
-          "Expected a BsonDocument but the given value was a " + bsonValue.getBsonType().name());
-    }
-    try (final BsonDocumentReader reader = new BsonDocumentReader((BsonDocument) bsonValue)) {
-      reader.readStartDocument();
-      reader.readName();
-      final Object value =
-          decodeValue(readBsonValue(reader, DecoderContext.builder().build()), null);
-      return value;
-    }
-  }
 }
-
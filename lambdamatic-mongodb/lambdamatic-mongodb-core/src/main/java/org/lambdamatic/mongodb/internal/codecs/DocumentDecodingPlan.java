@@ -0,0 +1,755 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.bson.BsonDocument;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.codecs.BsonJavaScriptWithScopeCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.lambdamatic.mongodb.annotations.Compressed;
+import org.lambdamatic.mongodb.annotations.RawDocument;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.internal.codecs.BindingPlan.FieldBinding;
+
+/**
+ * Precomputed plan to decode a BSON document into an instance of a given domain class. The plan
+ * holds the constructor of the domain class along with a {@link FieldDecoder} for each of its
+ * bindings, so that each field value can be read from the {@link BsonReader} and written straight
+ * into the target domain instance, without building any intermediate {@code BsonValue}.
+ * <p>
+ * Plans are computed once per domain class and kept in memory. A plan may also be restricted to a
+ * subset of the document fields (see {@link #restrictTo(Set)}), in which case all other fields are
+ * skipped by the {@link BsonReader} and never materialized.
+ * </p>
+ */
+class DocumentDecodingPlan {
+
+  /** The stateless codec to read JavaScript with scope values. */
+  private static final BsonJavaScriptWithScopeCodec JAVASCRIPT_WITH_SCOPE_CODEC =
+      new BsonJavaScriptWithScopeCodec(new BsonDocumentCodec());
+
+  /** The stateless codec to copy the embedded documents that are kept in their raw form. */
+  private static final RawBsonDocumentCodec RAW_DOCUMENT_CODEC = new RawBsonDocumentCodec();
+
+  /**
+   * Plans indexed by domain class. The {@link ClassValue} does not prevent the domain classes from
+   * being unloaded. Plans computed before the last call to {@link #clearPlans()} are replaced when
+   * they are next requested.
+   */
+  private static final ClassValue<AtomicReference<DocumentDecodingPlan>> plans =
+      new ClassValue<AtomicReference<DocumentDecodingPlan>>() {
+        @Override
+        protected AtomicReference<DocumentDecodingPlan> computeValue(final Class<?> domainClass) {
+          return new AtomicReference<>();
+        }
+      };
+
+  /** The current generation of plans, incremented by {@link #clearPlans()}. */
+  private static volatile int currentGeneration = 0;
+
+  /** The generation of this plan. */
+  private final int generation;
+
+  /** The domain class. */
+  private final Class<?> domainClass;
+
+  /** The default constructor of the domain class, or {@code null} if there is none. */
+  private final Constructor<?> constructor;
+
+  /** the {@link FieldDecoder} indexed by the name of the document field they decode. */
+  private final Map<String, FieldDecoder> fieldDecoders;
+
+  /**
+   * {@code true} if this plan only decodes a subset of the bound fields, {@code false} if it
+   * decodes them all.
+   */
+  private final boolean partial;
+
+  /** The maximum number of partial plans kept for a domain class. */
+  static final int MAX_PARTIAL_PLANS = 64;
+
+  /**
+   * The partial plans derived from this plan, indexed by the names of the fields they decode. At
+   * most {@link #MAX_PARTIAL_PLANS} are kept, the least recently used being evicted first.
+   */
+  private final BoundedCache<Set<String>, DocumentDecodingPlan> partialPlans;
+
+  /**
+   * Returns the {@link DocumentDecodingPlan} for the given {@code domainClass}.
+   *
+   * @param domainClass the domain class
+   * @return the decoding plan for the given domain class
+   */
+  static DocumentDecodingPlan getPlan(final Class<?> domainClass) {
+    final AtomicReference<DocumentDecodingPlan> planReference = plans.get(domainClass);
+    final DocumentDecodingPlan plan = planReference.get();
+    if (plan != null && plan.generation == currentGeneration) {
+      return plan;
+    }
+    final DocumentDecodingPlan newPlan = new DocumentDecodingPlan(domainClass);
+    planReference.set(newPlan);
+    return newPlan;
+  }
+
+  /**
+   * Clears all plans, so that they are computed again with the {@link ValueDecoder}s currently
+   * available in the {@link ConverterRegistry}.
+   */
+  static synchronized void clearPlans() {
+    currentGeneration++;
+  }
+
+  private DocumentDecodingPlan(final Class<?> domainClass) {
+    this.generation = currentGeneration;
+    this.domainClass = domainClass;
+    this.constructor = getDefaultConstructor(domainClass);
+    final Map<String, FieldDecoder> decoders = new HashMap<>();
+    for (FieldBinding binding : BindingService.getInstance().getBindingPlan(domainClass)
+        .getBindings()) {
+      decoders.put(binding.getDocumentFieldName(), new FieldDecoder(binding));
+    }
+    this.fieldDecoders = Collections.unmodifiableMap(decoders);
+    this.partial = false;
+    this.partialPlans = new BoundedCache<>(MAX_PARTIAL_PLANS);
+  }
+
+  private DocumentDecodingPlan(final DocumentDecodingPlan fullPlan,
+      final Set<String> documentFieldNames) {
+    this.generation = fullPlan.generation;
+    this.domainClass = fullPlan.domainClass;
+    this.constructor = fullPlan.constructor;
+    final Map<String, FieldDecoder> decoders = new HashMap<>();
+    for (String documentFieldName : documentFieldNames) {
+      final FieldDecoder fieldDecoder = fullPlan.getFieldDecoder(documentFieldName);
+      if (fieldDecoder != null) {
+        decoders.put(documentFieldName, fieldDecoder);
+      }
+    }
+    this.fieldDecoders = Collections.unmodifiableMap(decoders);
+    this.partial = true;
+    this.partialPlans = fullPlan.partialPlans;
+  }
+
+  /**
+   * Returns a plan that only decodes the given document fields of the domain class. The partial
+   * plans are computed once per set of field names and then reused.
+   * 
+   * @param documentFieldNames the names of the document fields to decode, or {@code null} to
+   *        decode all fields
+   * @return the plan restricted to the given document fields
+   */
+  DocumentDecodingPlan restrictTo(final Set<String> documentFieldNames) {
+    if (documentFieldNames == null) {
+      return this;
+    }
+    return this.partialPlans.computeIfAbsent(documentFieldNames,
+        names -> new DocumentDecodingPlan(this, names));
+  }
+
+  /**
+   * @return {@code true} if this plan only decodes a subset of the bound fields, {@code false} if
+   *         it decodes them all.
+   */
+  boolean isPartial() {
+    return this.partial;
+  }
+
+  /**
+   * Computes the names of the top-level document fields returned by the server for the given
+   * projection document, as written by the {@link ProjectionExpressionEncoder}.
+   * 
+   * @param domainClass the domain class of the queried documents
+   * @param projectionDocument the projection document
+   * @return the names of the top-level document fields to decode, or {@code null} if all fields
+   *         should be decoded
+   */
+  static Set<String> getProjectedFieldNames(final Class<?> domainClass,
+      final BsonDocument projectionDocument) {
+    if (projectionDocument == null || projectionDocument.isEmpty()) {
+      return null;
+    }
+    final Set<String> includedFieldNames = new HashSet<>();
+    final Set<String> excludedFieldNames = new HashSet<>();
+    for (Entry<String, BsonValue> entry : projectionDocument.entrySet()) {
+      // the projection of a nested field still returns its top-level field
+      final String documentFieldName = entry.getKey().split("\\.")[0];
+      final BsonValue value = entry.getValue();
+      if (value.isNumber() && value.asNumber().intValue() == 0
+          || value.isBoolean() && !value.asBoolean().getValue()) {
+        if (documentFieldName.equals(entry.getKey())) {
+          excludedFieldNames.add(documentFieldName);
+        }
+      } else {
+        // '1', 'true' or an operator such as '$elemMatch'
+        includedFieldNames.add(documentFieldName);
+      }
+    }
+    if (!includedFieldNames.isEmpty()) {
+      // the '_id' field is returned unless it is explicitly excluded
+      if (!excludedFieldNames.contains(EncoderUtils.MONGOBD_DOCUMENT_ID)) {
+        includedFieldNames.add(EncoderUtils.MONGOBD_DOCUMENT_ID);
+      }
+      return Collections.unmodifiableSet(includedFieldNames);
+    } else if (excludedFieldNames.isEmpty()) {
+      return null;
+    }
+    final Set<String> remainingFieldNames =
+        new HashSet<>(BindingService.getInstance().getBindings(domainClass).keySet());
+    remainingFieldNames.removeAll(excludedFieldNames);
+    return Collections.unmodifiableSet(remainingFieldNames);
+  }
+
+  private static Constructor<?> getDefaultConstructor(final Class<?> domainClass) {
+    try {
+      final Constructor<?> defaultConstructor = domainClass.getDeclaredConstructor();
+      defaultConstructor.setAccessible(true);
+      return defaultConstructor;
+    } catch (NoSuchMethodException | SecurityException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return a new instance of the domain class.
+   * @throws ConversionException if the instance could not be created
+   */
+  Object newInstance() {
+    try {
+      if (this.constructor == null) {
+        throw new InstantiationException("No default constructor");
+      }
+      return this.constructor.newInstance();
+    } catch (ReflectiveOperationException | IllegalArgumentException e) {
+      throw new ConversionException(
+          "Failed to create a new instance of '" + this.domainClass.getName() + "'", e);
+    }
+  }
+
+  /**
+   * @param documentFieldName the name of the field in the BSON document
+   * @return the {@link FieldDecoder} for the given document field, or {@code null} if the domain
+   *         class has no binding for it.
+   */
+  FieldDecoder getFieldDecoder(final String documentFieldName) {
+    return this.fieldDecoders.get(documentFieldName);
+  }
+
+  /**
+   * Reads a BSON value and writes it into the corresponding field of a domain instance.
+   */
+  static class FieldDecoder {
+
+    /** The target field, already made accessible. */
+    private final Field field;
+
+    /** The kind of value held by the target field. */
+    private final FieldKind kind;
+
+    /** The value decoder for the declared type of the field. */
+    private final ValueDecoder valueDecoder;
+
+    FieldDecoder(final FieldBinding binding) {
+      this.field = binding.getField();
+      this.kind = binding.getKind();
+      this.valueDecoder = getValueDecoder(this.field);
+    }
+
+    /**
+     * Reads the value at the current position of the given {@link BsonReader} and sets it in the
+     * given {@code domainInstance}.
+     *
+     * @param domainInstance the domain instance whose field should be set
+     * @param reader the reader, positioned on the value to read
+     * @param decoderContext the decoder context
+     * @param codecRegistry the codec registry to use when decoding embedded documents
+     * @throws ConversionException if the value could not be set
+     */
+    void decode(final Object domainInstance, final BsonReader reader,
+        final DecoderContext decoderContext, final CodecRegistry codecRegistry) {
+      try {
+        if (this.kind.isPrimitive() && reader.getCurrentBsonType() == BsonType.NULL) {
+          // keep the default value
+          reader.readNull();
+          return;
+        }
+        // primitive fields are set without boxing
+        switch (this.kind) {
+          case INT:
+            this.field.setInt(domainInstance, ConverterRegistry.readInt(reader));
+            break;
+          case LONG:
+            this.field.setLong(domainInstance, ConverterRegistry.readLong(reader));
+            break;
+          case DOUBLE:
+            this.field.setDouble(domainInstance, ConverterRegistry.readDouble(reader));
+            break;
+          case BOOLEAN:
+            this.field.setBoolean(domainInstance, ConverterRegistry.readBoolean(reader));
+            break;
+          case FLOAT:
+            this.field.setFloat(domainInstance, (float) ConverterRegistry.readDouble(reader));
+            break;
+          case SHORT:
+            this.field.setShort(domainInstance, ConverterRegistry.readShort(reader));
+            break;
+          case BYTE:
+            this.field.setByte(domainInstance, ConverterRegistry.readByte(reader));
+            break;
+          case CHAR:
+            this.field.setChar(domainInstance, ConverterRegistry.readChar(reader));
+            break;
+          default:
+            this.field.set(domainInstance,
+                this.valueDecoder.decode(reader, decoderContext, codecRegistry));
+        }
+      } catch (IllegalArgumentException | IllegalAccessException e) {
+        throw new ConversionException("Unable to set value of field '"
+            + domainInstance.getClass().getName() + "." + this.field.getName() + "'", e);
+      }
+    }
+  }
+
+  /**
+   * Returns the {@link ValueDecoder} to use to read values of the given generic
+   * {@code expectedType}. The type arguments of {@link Collection} and {@link Map} types are
+   * resolved here, once, so that their elements are decoded with the {@link ValueDecoder} of their
+   * declared type.
+   *
+   * @param expectedType the expected (generic) Java type of the values to decode
+   * @return the corresponding {@link ValueDecoder}
+   */
+  static ValueDecoder getValueDecoder(final Type expectedType) {
+    if (!(expectedType instanceof ParameterizedType)) {
+      return getValueDecoder(getRawType(expectedType));
+    }
+    final Class<?> rawType = getRawType(expectedType);
+    if (ConverterRegistry.getInstance().getValueDecoder(rawType) != null) {
+      return getValueDecoder(rawType);
+    }
+    final Type[] typeArguments = ((ParameterizedType) expectedType).getActualTypeArguments();
+    if (Collection.class.isAssignableFrom(rawType) && typeArguments.length == 1) {
+      return ConverterRegistry.nullSafe(getCollectionDecoder(
+          getCollectionSupplier(rawType, getRawType(typeArguments[0])), typeArguments[0]));
+    } else if (Map.class.isAssignableFrom(rawType) && typeArguments.length == 2) {
+      return ConverterRegistry.nullSafe(getMapDecoder(getMapSupplier(rawType),
+          getRawType(typeArguments[0]), typeArguments[1]));
+    }
+    return getValueDecoder(rawType);
+  }
+
+  /**
+   * @param type a Java type
+   * @return the {@link Class} of the given type, or the {@link Class} of its (first) upper bound
+   *         for wildcard types and type variables
+   */
+  private static Class<?> getRawType(final Type type) {
+    if (type instanceof Class) {
+      return (Class<?>) type;
+    } else if (type instanceof ParameterizedType) {
+      return getRawType(((ParameterizedType) type).getRawType());
+    } else if (type instanceof WildcardType) {
+      return getRawType(((WildcardType) type).getUpperBounds()[0]);
+    } else if (type instanceof TypeVariable) {
+      return getRawType(((TypeVariable<?>) type).getBounds()[0]);
+    } else if (type instanceof GenericArrayType) {
+      return Array
+          .newInstance(getRawType(((GenericArrayType) type).getGenericComponentType()), 0)
+          .getClass();
+    }
+    return Object.class;
+  }
+
+  /**
+   * Returns the {@link ValueDecoder} to use to read values of the given {@code expectedType}. The
+   * {@link ValueDecoder} is resolved once per field, when the plan is computed.
+   *
+   * @param expectedType the expected Java type of the values to decode, or {@code null} if any
+   *        type is accepted
+   * @return the corresponding {@link ValueDecoder}
+   */
+  static ValueDecoder getValueDecoder(final Class<?> expectedType) {
+    if (expectedType == null || expectedType == Object.class) {
+      return DocumentDecodingPlan::readUntypedValue;
+    }
+    final ValueDecoder registeredValueDecoder =
+        ConverterRegistry.getInstance().getValueDecoder(expectedType);
+    if (registeredValueDecoder != null) {
+      return registeredValueDecoder;
+    } else if (expectedType.isEnum()) {
+      return ConverterRegistry.nullSafe(getEnumDecoder(expectedType));
+    } else if (expectedType.isArray() && expectedType.getComponentType().isPrimitive()) {
+      // byte[] has its own registered decoder
+      return ConverterRegistry
+          .nullSafe(PrimitiveArrays.getArrayDecoder(expectedType.getComponentType()));
+    } else if (expectedType.isArray()) {
+      return ConverterRegistry.nullSafe(getArrayDecoder(expectedType.getComponentType()));
+    } else if (Collection.class.isAssignableFrom(expectedType)) {
+      return ConverterRegistry.nullSafe(
+          getCollectionDecoder(getCollectionSupplier(expectedType, Object.class), Object.class));
+    } else if (Map.class.isAssignableFrom(expectedType)) {
+      return ConverterRegistry.nullSafe(
+          getMapDecoder(getMapSupplier(expectedType), String.class, Object.class));
+    }
+    // embedded document or any other type
+    return ConverterRegistry.nullSafe((reader, context, registry) -> {
+      if (reader.getCurrentBsonType() == BsonType.DOCUMENT) {
+        return DocumentDecoder.decodeDocument(reader, context, expectedType, registry);
+      }
+      final Object value = readUntypedValue(reader, context, registry);
+      if (!expectedType.isInstance(value)) {
+        throw new ConversionException(
+            "Unable to convert value '" + value + "' to type " + expectedType.getName());
+      }
+      return value;
+    });
+  }
+
+  /**
+   * Returns the {@link ValueDecoder} to use to read the values of the given {@code field}, based on
+   * its annotations and its declared generic type.
+   *
+   * @param field the target field
+   * @return the corresponding {@link ValueDecoder}
+   */
+  static ValueDecoder getValueDecoder(final Field field) {
+    if (field.getAnnotation(RawDocument.class) != null) {
+      return getRawDocumentDecoder(field.getType());
+    } else if (field.getAnnotation(Compressed.class) != null) {
+      return CompressedValues.getValueDecoder(field.getType());
+    }
+    return getValueDecoder(field.getGenericType());
+  }
+
+  /**
+   * Returns the {@link ValueDecoder} to use for the fields annotated with {@link RawDocument}: the
+   * bytes of the embedded document are copied without being parsed.
+   *
+   * @param expectedType the declared type of the field, {@link RawBsonDocument} or
+   *        {@link ByteBuffer}
+   * @return the corresponding {@link ValueDecoder}
+   * @throws ConversionException if the given {@code expectedType} is not supported
+   */
+  static ValueDecoder getRawDocumentDecoder(final Class<?> expectedType) {
+    if (expectedType == RawBsonDocument.class) {
+      return ConverterRegistry.nullSafe(
+          (reader, context, registry) -> RAW_DOCUMENT_CODEC.decode(reader, context));
+    } else if (expectedType == ByteBuffer.class) {
+      return ConverterRegistry.nullSafe((reader, context, registry) -> RAW_DOCUMENT_CODEC
+          .decode(reader, context).getByteBuffer().asNIO().asReadOnlyBuffer());
+    }
+    throw new ConversionException("Fields annotated with @" + RawDocument.class.getSimpleName()
+        + " must be of type " + RawBsonDocument.class.getName() + " or "
+        + ByteBuffer.class.getName() + ", not " + expectedType.getName());
+  }
+
+  private static ValueDecoder getEnumDecoder(final Class<?> enumType) {
+    final Map<String, Object> enumConstants = new HashMap<>();
+    for (Object enumConstant : enumType.getEnumConstants()) {
+      enumConstants.putIfAbsent(enumConstant.toString(), enumConstant);
+    }
+    // enum values are written with their name
+    for (Object enumConstant : enumType.getEnumConstants()) {
+      enumConstants.put(((Enum<?>) enumConstant).name(), enumConstant);
+    }
+    return (reader, context, registry) -> {
+      final String value = ConverterRegistry.readString(reader);
+      final Object enumConstant = enumConstants.get(value);
+      if (enumConstant == null) {
+        throw new ConversionException(
+            "Unable to convert value '" + value + "' to type " + enumType.getName());
+      }
+      return enumConstant;
+    };
+  }
+
+  static ValueDecoder getArrayDecoder(final Class<?> componentType) {
+    final ValueDecoder elementDecoder = getValueDecoder(componentType);
+    return (reader, context, registry) -> {
+      final List<Object> elements = new ArrayList<>();
+      reader.readStartArray();
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        elements.add(elementDecoder.decode(reader, context, registry));
+      }
+      reader.readEndArray();
+      final Object array = Array.newInstance(componentType, elements.size());
+      for (int i = 0; i < elements.size(); i++) {
+        Array.set(array, i, elements.get(i));
+      }
+      return array;
+    };
+  }
+
+  /**
+   * Returns the {@link Supplier} of the target {@link Collection} for the given declared
+   * {@code collectionType}: a new instance of the declared type if it is a concrete class, or an
+   * instance of the default implementation of the declared interface otherwise.
+   *
+   * @param collectionType the declared {@link Collection} type
+   * @param elementType the declared type of the elements
+   * @return the {@link Supplier} of empty target collections
+   * @throws ConversionException if no implementation could be found for the given type
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Supplier<Collection<Object>> getCollectionSupplier(
+      final Class<?> collectionType, final Class<?> elementType) {
+    final Supplier<Object> concreteTypeSupplier = getDefaultConstructorSupplier(collectionType);
+    if (concreteTypeSupplier != null) {
+      return (Supplier) concreteTypeSupplier;
+    } else if (elementType.isEnum() && Set.class.isAssignableFrom(collectionType)
+        && collectionType.isAssignableFrom(EnumSet.class)) {
+      return () -> (Collection) EnumSet.noneOf((Class<Enum>) elementType);
+    } else if (collectionType.isAssignableFrom(ArrayList.class)) {
+      return ArrayList::new;
+    } else if (collectionType.isAssignableFrom(HashSet.class)) {
+      return HashSet::new;
+    } else if (collectionType.isAssignableFrom(TreeSet.class)) {
+      return TreeSet::new;
+    } else if (collectionType.isAssignableFrom(ArrayDeque.class)) {
+      return ArrayDeque::new;
+    }
+    throw new ConversionException(
+        "Unable to find an implementation for collection type " + collectionType.getName());
+  }
+
+  /**
+   * Returns the {@link Supplier} of the target {@link Map} for the given declared
+   * {@code mapType}: a new instance of the declared type if it is a concrete class, or an instance
+   * of the default implementation of the declared interface otherwise.
+   *
+   * @param mapType the declared {@link Map} type
+   * @return the {@link Supplier} of empty target maps
+   * @throws ConversionException if no implementation could be found for the given type
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Supplier<Map<Object, Object>> getMapSupplier(final Class<?> mapType) {
+    final Supplier<Object> concreteTypeSupplier = getDefaultConstructorSupplier(mapType);
+    if (concreteTypeSupplier != null) {
+      return (Supplier) concreteTypeSupplier;
+    } else if (mapType.isAssignableFrom(LinkedHashMap.class)) {
+      // keeps the entries in the order of the document
+      return LinkedHashMap::new;
+    } else if (mapType.isAssignableFrom(TreeMap.class)) {
+      return TreeMap::new;
+    } else if (mapType.isAssignableFrom(ConcurrentHashMap.class)) {
+      return ConcurrentHashMap::new;
+    }
+    throw new ConversionException(
+        "Unable to find an implementation for map type " + mapType.getName());
+  }
+
+  /**
+   * @param type the type to instantiate
+   * @return a {@link Supplier} that calls the public default constructor of the given type, or
+   *         {@code null} if the given type is abstract or has no such constructor
+   */
+  private static Supplier<Object> getDefaultConstructorSupplier(final Class<?> type) {
+    if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+      return null;
+    }
+    final Constructor<?> constructor;
+    try {
+      constructor = type.getConstructor();
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+    return () -> {
+      try {
+        return constructor.newInstance();
+      } catch (ReflectiveOperationException e) {
+        throw new ConversionException("Unable to instantiate " + type.getName(), e);
+      }
+    };
+  }
+
+  private static ValueDecoder getCollectionDecoder(
+      final Supplier<Collection<Object>> collectionSupplier, final Type elementType) {
+    final ValueDecoder elementDecoder = getValueDecoder(elementType);
+    return (reader, context, registry) -> {
+      final Collection<Object> elements = collectionSupplier.get();
+      reader.readStartArray();
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        elements.add(elementDecoder.decode(reader, context, registry));
+      }
+      reader.readEndArray();
+      return elements;
+    };
+  }
+
+  /**
+   * Maps are stored either as an embedded document whose field names are the keys (see
+   * {@link org.lambdamatic.mongodb.annotations.EmbeddedMap}), which is read in a single pass, or as
+   * an array of single-entry documents. Both forms are accepted, whatever the current settings.
+   *
+   * @param mapSupplier the {@link Supplier} of empty target maps
+   * @param keyType the declared type of the keys: {@link String} or an {@link Enum} type
+   *        (otherwise, keys are kept as {@link String}s)
+   * @param valueType the declared type of the values
+   * @return the {@link ValueDecoder} for {@link Map} values
+   */
+  private static ValueDecoder getMapDecoder(final Supplier<Map<Object, Object>> mapSupplier,
+      final Class<?> keyType, final Type valueType) {
+    final Function<String, Object> keyConverter = getKeyConverter(keyType);
+    final ValueDecoder valueDecoder = getValueDecoder(valueType);
+    return (reader, context, registry) -> {
+      final Map<Object, Object> entries = mapSupplier.get();
+      if (reader.getCurrentBsonType() == BsonType.DOCUMENT) {
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+          readMapEntry(entries, keyConverter, valueDecoder, reader, context, registry);
+        }
+        reader.readEndDocument();
+        return entries;
+      }
+      reader.readStartArray();
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        if (reader.getCurrentBsonType() != BsonType.DOCUMENT) {
+          throw new ConversionException("Expected a BsonDocument but the given value was a "
+              + reader.getCurrentBsonType().name());
+        }
+        reader.readStartDocument();
+        reader.readBsonType();
+        readMapEntry(entries, keyConverter, valueDecoder, reader, context, registry);
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+          reader.skipName();
+          reader.skipValue();
+        }
+        reader.readEndDocument();
+      }
+      reader.readEndArray();
+      return entries;
+    };
+  }
+
+  /**
+   * Reads the named value at the current position of the given {@link BsonReader} and puts it in
+   * the given {@code entries}.
+   */
+  private static void readMapEntry(final Map<Object, Object> entries,
+      final Function<String, Object> keyConverter, final ValueDecoder valueDecoder,
+      final BsonReader reader, final DecoderContext context, final CodecRegistry registry) {
+    final Object key = keyConverter.apply(reader.readName());
+    if (entries.containsKey(key)) {
+      throw new ConversionException("Duplicate key '" + key + "' while decoding a Map");
+    }
+    entries.put(key, valueDecoder.decode(reader, context, registry));
+  }
+
+  private static Function<String, Object> getKeyConverter(final Class<?> keyType) {
+    if (!keyType.isEnum()) {
+      return key -> key;
+    }
+    final Map<String, Object> enumConstants = new HashMap<>();
+    for (Object enumConstant : keyType.getEnumConstants()) {
+      enumConstants.put(((Enum<?>) enumConstant).name(), enumConstant);
+    }
+    return key -> {
+      final Object enumConstant = enumConstants.get(key);
+      if (enumConstant == null) {
+        throw new ConversionException(
+            "Unable to convert key '" + key + "' to type " + keyType.getName());
+      }
+      return enumConstant;
+    };
+  }
+
+  /**
+   * Reads the value at the current position of the given {@link BsonReader} without any
+   * expectation on its Java type.
+   *
+   * @param reader the reader, positioned on the value to read
+   * @param decoderContext the decoder context
+   * @param codecRegistry the codec registry to use when decoding embedded documents
+   * @return the corresponding Java value
+   */
+  static Object readUntypedValue(final BsonReader reader, final DecoderContext decoderContext,
+      final CodecRegistry codecRegistry) {
+    switch (reader.getCurrentBsonType()) {
+      case ARRAY:
+        final List<Object> elements = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+          elements.add(readUntypedValue(reader, decoderContext, codecRegistry));
+        }
+        reader.readEndArray();
+        return elements;
+      case BINARY:
+        return reader.readBinaryData().getData();
+      case BOOLEAN:
+        return reader.readBoolean();
+      case DATE_TIME:
+        return reader.readDateTime();
+      case DB_POINTER:
+        return reader.readDBPointer().getId();
+      case DOUBLE:
+        return reader.readDouble();
+      case INT32:
+        return reader.readInt32();
+      case INT64:
+        return reader.readInt64();
+      case JAVASCRIPT:
+        return reader.readJavaScript();
+      case JAVASCRIPT_WITH_SCOPE:
+        return JAVASCRIPT_WITH_SCOPE_CODEC.decode(reader, decoderContext).getCode();
+      case NULL:
+        reader.readNull();
+        return null;
+      case OBJECT_ID:
+        return reader.readObjectId();
+      case REGULAR_EXPRESSION:
+        return reader.readRegularExpression().getPattern();
+      case STRING:
+        return reader.readString();
+      case SYMBOL:
+        return reader.readSymbol();
+      case TIMESTAMP:
+        return reader.readTimestamp().getTime();
+      case DOCUMENT:
+        return DocumentDecoder.decodeDocument(reader, decoderContext, null, codecRegistry);
+      default:
+        throw new ConversionException(
+            "Unexpected BSON Element value of type '" + reader.getCurrentBsonType() + "'");
+    }
+  }
+
+}
@@ -9,19 +9,20 @@
 package org.lambdamatic.mongodb.internal.codecs;
 
 import java.lang.reflect.Field;
-import java.util.Arrays;
+import java.lang.reflect.ParameterizedType;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
+import java.util.RandomAccess;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.bson.BsonBinary;
+import org.bson.BsonBinaryReader;
 import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
 import org.bson.codecs.Codec;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
@@ -35,9 +36,14 @@ import org.lambdamatic.analyzer.ast.node.ReturnStatement;
 import org.lambdamatic.analyzer.ast.node.SimpleStatement;
 import org.lambdamatic.analyzer.ast.node.Statement;
 import org.lambdamatic.analyzer.exception.AnalyzeException;
+import org.lambdamatic.mongodb.annotations.BinaryArray;
+import org.lambdamatic.mongodb.annotations.Compressed;
 import org.lambdamatic.mongodb.annotations.Document;
 import org.lambdamatic.mongodb.annotations.DocumentField;
+import org.lambdamatic.mongodb.annotations.EmbeddedDocument;
+import org.lambdamatic.mongodb.annotations.EmbeddedMap;
 import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.internal.codecs.BindingPlan.FieldBinding;
 import org.lambdamatic.mongodb.metadata.MongoOperator;
 import org.lambdamatic.mongodb.metadata.QueryField;
 import org.lambdamatic.mongodb.metadata.QueryMetadata;
@@ -57,6 +63,21 @@ public class EncoderUtils {
   /** Name of the field handling the Java type associated with a document in MongoDB. */
   public static final String TARGET_CLASS_FIELD = "_targetClass";
 
+  /**
+   * Name of the field handling the alias of the Java type associated with a document in MongoDB.
+   */
+  public static final String TYPE_ALIAS_FIELD = "_t";
+
+  /**
+   * Name of the system property to set to {@code true} to store all {@link Map} values as embedded
+   * documents whose field names are the map keys, rather than as arrays of single-entry documents
+   * (see {@link EmbeddedMap} to enable this mode on a single field).
+   */
+  public static final String EMBEDDED_MAPS_PROPERTY = "org.lambdamatic.mongodb.embeddedMaps";
+
+  /** Whether all {@link Map} values are stored as embedded documents. */
+  static final boolean EMBEDDED_MAPS = Boolean.getBoolean(EMBEDDED_MAPS_PROPERTY);
+
   /**
    * Private constructor of the utility class.
    */
@@ -262,35 +283,30 @@ public class EncoderUtils {
   public static void encodeDomainObjectContent(final BsonWriter writer, final Object domainObject,
       final EncoderContext encoderContext, final CodecRegistry codecRegistry)
           throws IllegalAccessException {
-    final Map<String, Field> bindings =
-        BindingService.getInstance().getBindings(domainObject.getClass());
+    // lazy documents must be fully decoded before their fields are read
+    LazyDocumentState.resolve(domainObject);
+    final BindingPlan bindingPlan = BindingService.getInstance()
+        .getBindingPlan(LazyDocumentState.getDomainClass(domainObject.getClass()));
     // write the "_id" attribute first if the domainObject class is annotated with @Document
     // (embedded documents don't have such an '_id' field)
-    if (domainObject.getClass().getAnnotation(Document.class) != null) {
-      final Optional<Entry<String, Field>> idBinding = bindings.entrySet().stream()
-          .filter(e -> BindingService.isIdBinding(e.getValue())).findFirst();
-      if (idBinding.isPresent()) {
-        final Object idValue =
-            BindingService.getFieldValue(domainObject, idBinding.get().getValue());
-        if (idValue == null) {
-          final ObjectId generatedIdValue = new ObjectId();
-          idBinding.get().getValue().set(domainObject, generatedIdValue);
-          writeNamedValue(writer, MONGOBD_DOCUMENT_ID, generatedIdValue, encoderContext,
-              codecRegistry);
-        } else {
-          writeNamedValue(writer, MONGOBD_DOCUMENT_ID, idValue, encoderContext, codecRegistry);
-        }
+    final FieldBinding idBinding = bindingPlan.getIdBinding();
+    if (bindingPlan.isDocument() && idBinding != null) {
+      final Object idValue = idBinding.getValue(domainObject);
+      if (idValue == null) {
+        final ObjectId generatedIdValue = new ObjectId();
+        idBinding.getField().set(domainObject, generatedIdValue);
+        writeNamedValue(writer, MONGOBD_DOCUMENT_ID, generatedIdValue, encoderContext,
+            codecRegistry);
+      } else {
+        writeNamedValue(writer, MONGOBD_DOCUMENT_ID, idValue, encoderContext, codecRegistry);
       }
     }
-    // write the technical/inner "_targetClassName" attribute
-    writer.writeString(TARGET_CLASS_FIELD, domainObject.getClass().getName());
+    // write the technical/inner "_targetClass" (or "_t") attribute
+    TypeAliasRegistry.getInstance().writeDiscriminator(writer, bindingPlan.getDomainClass());
     // write other attributes
-    bindings.entrySet().stream().filter(e -> !BindingService.isIdBinding(e.getValue()))
-        .forEach(binding -> {
-          writeNamedValue(writer, binding.getKey(),
-              BindingService.getFieldValue(domainObject, binding.getValue()), encoderContext,
-              codecRegistry);
-        });
+    for (FieldBinding binding : bindingPlan.getNonIdBindings()) {
+      binding.write(writer, domainObject, encoderContext, codecRegistry);
+    }
   }
 
 
@@ -298,15 +314,23 @@ public class EncoderUtils {
    * Writes the given unnamed value.
    * 
    * @param writer the {@link BsonWriter} to write into
-   * @param value the value to write
+   * @param javaValue the value to write
+   * @throws ConversionException if the type of the given value is not supported
    */
-  public static void writeValue(final BsonWriter writer, final Object value) {
+  public static void writeValue(final BsonWriter writer, final Object javaValue) {
+    final Object value = ConverterRegistry.getInstance().toDocumentValue(javaValue);
     if (value == null) {
       writer.writeNull();
+    } else if (value instanceof Boolean) {
+      writer.writeBoolean((Boolean) value);
     } else if (value instanceof Integer) {
       writer.writeInt32((Integer) value);
     } else if (value instanceof Long) {
       writer.writeInt64((Long) value);
+    } else if (value instanceof Float) {
+      writer.writeDouble(Double.valueOf(((Float) value).toString()));
+    } else if (value instanceof Double) {
+      writer.writeDouble((Double) value);
     } else if (value instanceof Character) {
       writer.writeString(((Character) value).toString());
     } else if (value instanceof String) {
@@ -315,121 +339,92 @@ public class EncoderUtils {
       writer.writeDateTime(((Date) value).getTime());
     } else if (value instanceof Enum) {
       writer.writeString(((Enum<?>) value).name());
+    } else if (value instanceof ObjectId) {
+      writer.writeObjectId((ObjectId) value);
     } else if (value instanceof Collection) {
       writer.writeStartArray();
-      ((Collection<?>) value).stream().forEach(v -> writeValue(writer, v));
+      for (Object v : (Collection<?>) value) {
+        writeValue(writer, v);
+      }
       writer.writeEndArray();
+    } else if (PrimitiveArrays.isPrimitiveArray(value)) {
+      PrimitiveArrays.writeArray(writer, value);
     } else if (value.getClass().isArray()) {
       writer.writeStartArray();
-      Stream.of((Object[]) value).forEach(v -> writeValue(writer, v));
+      final Object[] values = (Object[]) value;
+      for (int i = 0; i < values.length; i++) {
+        writeValue(writer, values[i]);
+      }
       writer.writeEndArray();
     } else {
-      throw new UnsupportedOperationException(
-          "Writing value of a '" + value.getClass() + "' is not supported yet");
+      throw new ConversionException(
+          "Writing value of a type '" + value.getClass() + "' is not supported");
     }
   }
-  
+
   /**
-   * Writes the given named value.
+   * Writes the given unnamed value, ie, an array element. Unlike named values, values such as
+   * {@code 0} or {@code false} are always written since an array element cannot be omitted.
    * 
    * @param writer the {@link BsonWriter} to use
-   * @param value the actual value
+   * @param javaValue the actual value
    * @param encoderContext the {@link EncoderContext}
-   * 
+   * @param codecRegistry the {@link CodecRegistry}
+   * @throws ConversionException if the value is a domain object whose class is annotated neither
+   *         with {@link EmbeddedDocument} nor with {@link Document}
    */
-  static void writeValue(final BsonWriter writer, final Object value,
+  static void writeValue(final BsonWriter writer, final Object javaValue,
       final EncoderContext encoderContext, final CodecRegistry codecRegistry) {
+    final Object value = ConverterRegistry.getInstance().toDocumentValue(javaValue);
     if (value == null) {
       writer.writeNull();
-    } else if (value.getClass().isEnum()) {
+    } else if (value instanceof String) {
+      writer.writeString((String) value);
+    } else if (value instanceof Integer) {
+      writer.writeInt32((Integer) value);
+    } else if (value instanceof Long) {
+      writer.writeInt64((Long) value);
+    } else if (value instanceof Double) {
+      writer.writeDouble((Double) value);
+    } else if (value instanceof Float) {
+      writer.writeDouble((Float) value);
+    } else if (value instanceof Boolean) {
+      writer.writeBoolean((Boolean) value);
+    } else if (value instanceof Byte || value instanceof Short) {
+      writer.writeInt32(((Number) value).intValue());
+    } else if (value instanceof Character) {
+      writer.writeInt32((Character) value);
+    } else if (value instanceof Enum) {
       writer.writeString(((Enum<?>) value).name());
+    } else if (value instanceof Date) {
+      writer.writeDateTime(((Date) value).getTime());
+    } else if (value instanceof ObjectId) {
+      writer.writeObjectId((ObjectId) value);
+    } else if (value instanceof Location) {
+      writer.writeStartDocument();
+      LocationCodec.encodeLocation(writer, (Location) value);
+      writer.writeEndDocument();
+    } else if (value instanceof RawBsonDocument || value instanceof ByteBuffer) {
+      writeRawDocument(writer, value);
     } else if (value instanceof Collection) {
       writer.writeStartArray();
-      final Collection<?> values = (Collection<?>) value;
-      values.stream().forEach(v -> writeValue(writer, v, encoderContext, codecRegistry));
+      writeElements(writer, (Collection<?>) value, encoderContext, codecRegistry);
       writer.writeEndArray();
     } else if (value instanceof byte[]) {
       // binary format
       writer.writeBinaryData(new BsonBinary((byte[]) value));
+    } else if (PrimitiveArrays.isPrimitiveArray(value)) {
+      PrimitiveArrays.writeArray(writer, value);
     } else if (value.getClass().isArray()) {
-      writer.writeStartDocument();
-      Arrays.asList(value);
-      if (value instanceof boolean[]) {
-        for (boolean b : (boolean[]) value) {
-          writer.writeBoolean(b);
-        }
+      writer.writeStartArray();
+      final Object[] values = (Object[]) value;
+      for (int i = 0; i < values.length; i++) {
+        writeValue(writer, values[i], encoderContext, codecRegistry);
       }
-      writer.writeEndDocument();
+      writer.writeEndArray();
     } else {
-      // FIXME: complete the switches to cover all writer.writeXXX methods
-      final String attributeValueClassName = value.getClass().getName();
-      switch (attributeValueClassName) {
-        case "org.bson.types.ObjectId":
-          writer.writeObjectId(MONGOBD_DOCUMENT_ID, (ObjectId) value);
-          break;
-        case "java.lang.Boolean": // also covers "boolean"
-          final boolean booleanValue = (boolean) value;
-          if (booleanValue != false) {
-            writer.writeBoolean(booleanValue);
-          }
-          break;
-        case "java.lang.Byte": // covers also "int" which is autoboxed
-          final byte byteValue = (byte) value;
-          if (byteValue != 0) {
-            writer.writeInt32(byteValue);
-          }
-          break;
-        case "java.lang.Short": // covers also "int" which is autoboxed
-          final short shortValue = (short) value;
-          if (shortValue != 0) {
-            writer.writeInt32(shortValue);
-          }
-          break;
-        case "java.lang.Character": // covers also "int" which is autoboxed
-          final char charValue = (char) value;
-          if (charValue != 0) {
-            writer.writeInt32(charValue);
-          }
-          break;
-        case "java.lang.Integer": // covers also "int" which is autoboxed
-          final int intValue = (int) value;
-          if (intValue != 0) {
-            writer.writeInt32(intValue);
-          }
-          break;
-        case "java.lang.Long": // covers also "long" which is autoboxed
-          final long longValue = (long) value;
-          if (longValue != 0) {
-            writer.writeInt64(longValue);
-          }
-          break;
-        case "java.lang.Float": // covers also "float" which is autoboxed
-          final float floatValue = (float) value;
-          if (floatValue != 0) {
-            writer.writeDouble(floatValue);
-          }
-          break;
-        case "java.lang.Double": // covers also "double" which is autoboxed
-          final double doubleValue = (double) value;
-          if (doubleValue != 0) {
-            writer.writeDouble(doubleValue);
-          }
-          break;
-        case "java.lang.String":
-          writer.writeString((String) value);
-          break;
-        case "java.util.Date":
-          writer.writeDateTime(((Date) value).getTime());
-          break;
-        case "org.lambdamatic.mongodb.types.geospatial.Location":
-          writer.writeStartDocument();
-          new LocationCodec(codecRegistry).encode(writer, (Location) value, encoderContext);
-          writer.writeEndDocument();
-          break;
-        // assume this is an embedded document
-        default:
-          encodeDomainObject(writer, value, encoderContext, codecRegistry);
-      }
+      checkEmbeddedDocument(value);
+      encodeDomainObject(writer, value, encoderContext, codecRegistry);
     }
   }
 
@@ -438,122 +433,306 @@ public class EncoderUtils {
    * 
    * @param writer the {@link BsonWriter} to use
    * @param name the name of the value
-   * @param value the actual value
+   * @param javaValue the actual value
    * @param encoderContext the {@link EncoderContext}
    * 
    */
-  // FIXME: move into EncoderUtils
-  static void writeNamedValue(final BsonWriter writer, final String name, final Object value,
+  static void writeNamedValue(final BsonWriter writer, final String name, final Object javaValue,
       final EncoderContext encoderContext, final CodecRegistry codecRegistry) {
+    final Object value = ConverterRegistry.getInstance().toDocumentValue(javaValue);
     if (value == null) {
       // skip null named values
       return;
-    } else if (value.getClass().isEnum()) {
-      // Enum
+    } else if (value instanceof String) {
+      writer.writeString(name, (String) value);
+    } else if (value instanceof Integer) {
+      final int intValue = (Integer) value;
+      if (intValue != 0) {
+        writer.writeInt32(name, intValue);
+      }
+    } else if (value instanceof Long) {
+      final long longValue = (Long) value;
+      if (longValue != 0) {
+        writer.writeInt64(name, longValue);
+      }
+    } else if (value instanceof Double) {
+      final double doubleValue = (Double) value;
+      if (doubleValue != 0) {
+        writer.writeDouble(name, doubleValue);
+      }
+    } else if (value instanceof Float) {
+      final float floatValue = (Float) value;
+      if (floatValue != 0) {
+        writer.writeDouble(name, floatValue);
+      }
+    } else if (value instanceof Boolean) {
+      if ((Boolean) value) {
+        writer.writeBoolean(name, true);
+      }
+    } else if (value instanceof Byte || value instanceof Short) {
+      final int intValue = ((Number) value).intValue();
+      if (intValue != 0) {
+        writer.writeInt32(name, intValue);
+      }
+    } else if (value instanceof Character) {
+      final char charValue = (Character) value;
+      if (charValue != 0) {
+        writer.writeInt32(name, charValue);
+      }
+    } else if (value instanceof Enum) {
       writer.writeString(name, ((Enum<?>) value).name());
+    } else if (value instanceof Date) {
+      writer.writeDateTime(name, ((Date) value).getTime());
+    } else if (value instanceof ObjectId) {
+      writer.writeObjectId(name, (ObjectId) value);
+    } else if (value instanceof Location) {
+      writer.writeStartDocument(name);
+      LocationCodec.encodeLocation(writer, (Location) value);
+      writer.writeEndDocument();
+    } else if (value instanceof RawBsonDocument || value instanceof ByteBuffer) {
+      // embedded documents kept in their raw form, written back without being parsed
+      writer.writeName(name);
+      writeRawDocument(writer, value);
     } else if (value instanceof Collection) {
       // List and Sets
       writer.writeStartArray(name);
-      final Collection<?> values = (Collection<?>) value;
-      values.stream().forEach(v -> writeValue(writer, v, encoderContext, codecRegistry));
+      writeElements(writer, (Collection<?>) value, encoderContext, codecRegistry);
       writer.writeEndArray();
+    } else if (value instanceof Map && EMBEDDED_MAPS) {
+      writeNamedEmbeddedMap(writer, name, (Map<?, ?>) value, encoderContext, codecRegistry);
     } else if (value instanceof Map) {
       // Maps
       writer.writeStartArray(name);
-      @SuppressWarnings("unchecked")
-      final Map<String, ?> values = (Map<String, ?>) value;
-      values.entrySet().stream().forEach(e -> {
+      for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
         writer.writeStartDocument();
-        writeNamedValue(writer, e.getKey(), e.getValue(), encoderContext, codecRegistry);
+        writeNamedValue(writer, getMapKey(entry.getKey()), entry.getValue(), encoderContext,
+            codecRegistry);
         writer.writeEndDocument();
-      });
+      }
       writer.writeEndArray();
     } else if (value instanceof byte[]) {
       // special case for Binary data stored in byte[]
       final byte[] bytes = (byte[]) value;
       writer.writeBinaryData(name, new BsonBinary(bytes));
+    } else if (PrimitiveArrays.isPrimitiveArray(value)) {
+      // arrays of primitive values, written without boxing
+      PrimitiveArrays.writeNamedArray(writer, name, value);
     } else if (value.getClass().isArray()) {
       // Arrays
       writer.writeStartArray(name);
       final Object[] values = (Object[]) value;
-      Stream.of(values).forEach(v -> writeValue(writer, v, encoderContext, codecRegistry));
+      for (int i = 0; i < values.length; i++) {
+        writeValue(writer, values[i], encoderContext, codecRegistry);
+      }
       writer.writeEndArray();
     } else {
-      // other cases
-      // FIXME: complete the switches to cover all writer.writeXXX methods
-      final String attributeValueClassName = value.getClass().getName();
-      switch (attributeValueClassName) {
-        case "org.bson.types.ObjectId":
-          writer.writeObjectId(MONGOBD_DOCUMENT_ID, (ObjectId) value);
-          break;
-        case "java.lang.Boolean": // also covers "boolean"
-          final boolean booleanValue = (boolean) value;
-          if (booleanValue != false) {
-            writer.writeBoolean(name, booleanValue);
+      checkEmbeddedDocument(value);
+      encodeDomainObject(writer, name, value, encoderContext, codecRegistry);
+    }
+  }
+
+  /**
+   * Verifies that the given value can be written as an embedded document.
+   * 
+   * @param value the value to write
+   * @throws ConversionException if the class of the given value is annotated neither with
+   *         {@link EmbeddedDocument} nor with {@link Document}
+   */
+  private static void checkEmbeddedDocument(final Object value) {
+    final BindingPlan bindingPlan = BindingService.getInstance()
+        .getBindingPlan(LazyDocumentState.getDomainClass(value.getClass()));
+    if (!bindingPlan.isEmbeddedDocument() && !bindingPlan.isDocument()) {
+      throw new ConversionException("Unable to write value of type '"
+          + value.getClass().getName() + "': its class is not annotated with @"
+          + EmbeddedDocument.class.getSimpleName());
+    }
+  }
+
+  /**
+   * Copies the bytes of the given raw embedded document into the given {@link BsonWriter}, without
+   * parsing them when the writer is a {@link org.bson.BsonBinaryWriter}.
+   * 
+   * @param writer the {@link BsonWriter} to use
+   * @param rawDocument the embedded document, as a {@link RawBsonDocument} or as a
+   *        {@link ByteBuffer} holding its BSON bytes
+   */
+  private static void writeRawDocument(final BsonWriter writer, final Object rawDocument) {
+    final ByteBuffer buffer = rawDocument instanceof RawBsonDocument
+        ? ((RawBsonDocument) rawDocument).getByteBuffer().asNIO()
+        : ((ByteBuffer) rawDocument).duplicate();
+    writer.pipe(new BsonBinaryReader(buffer));
+  }
+
+  /**
+   * Writes the elements of the given {@link Collection} as unnamed values, using an indexed loop
+   * when the collection is a {@link RandomAccess} {@link List}.
+   * 
+   * @param writer the {@link BsonWriter} to use
+   * @param values the elements to write
+   * @param encoderContext the {@link EncoderContext}
+   * @param codecRegistry the {@link CodecRegistry} that provides the ad-hoc {@link Codec}
+   */
+  private static void writeElements(final BsonWriter writer, final Collection<?> values,
+      final EncoderContext encoderContext, final CodecRegistry codecRegistry) {
+    if (values instanceof List && values instanceof RandomAccess) {
+      final List<?> list = (List<?>) values;
+      for (int i = 0, size = list.size(); i < size; i++) {
+        writeValue(writer, list.get(i), encoderContext, codecRegistry);
+      }
+    } else {
+      for (Object v : values) {
+        writeValue(writer, v, encoderContext, codecRegistry);
+      }
+    }
+  }
+
+  /**
+   * Chooses the {@link FieldWriter} for the given {@code field}, based on its declared type.
+   * Primitive fields are read and written without boxing, {@link String} and {@link Date} fields
+   * are written directly, values annotated with {@link Compressed} may be compressed, numeric
+   * primitive arrays annotated with {@link BinaryArray} are written as BSON binary data and all
+   * other fields go through
+   * {@link #writeNamedValue(BsonWriter, String, Object, EncoderContext, CodecRegistry)}, which
+   * applies the registered converters.
+   * 
+   * @param name the name of the field in the BSON document
+   * @param field the (accessible) Java field
+   * @param kind the {@link FieldKind} of the field
+   * @return the {@link FieldWriter} to use for the given field
+   */
+  static FieldWriter getFieldWriter(final String name, final Field field, final FieldKind kind) {
+    switch (kind) {
+      case BOOLEAN:
+        return (writer, domainObject, encoderContext, codecRegistry) -> {
+          if (field.getBoolean(domainObject)) {
+            writer.writeBoolean(name, true);
           }
-          break;
-        case "java.lang.Byte": // covers also "int" which is autoboxed
-          final byte byteValue = (byte) value;
-          if (byteValue != 0) {
-            writer.writeInt32(name, byteValue);
+        };
+      case BYTE:
+      case SHORT:
+      case INT:
+        return (writer, domainObject, encoderContext, codecRegistry) -> {
+          final int value = field.getInt(domainObject);
+          if (value != 0) {
+            writer.writeInt32(name, value);
           }
-          break;
-        case "java.lang.Short": // covers also "int" which is autoboxed
-          final short shortValue = (short) value;
-          if (shortValue != 0) {
-            writer.writeInt32(name, shortValue);
+        };
+      case CHAR:
+        return (writer, domainObject, encoderContext, codecRegistry) -> {
+          final char value = field.getChar(domainObject);
+          if (value != 0) {
+            writer.writeInt32(name, value);
           }
-          break;
-        case "java.lang.Character": // covers also "int" which is autoboxed
-          final char charValue = (char) value;
-          if (charValue != 0) {
-            writer.writeInt32(name, charValue);
+        };
+      case LONG:
+        return (writer, domainObject, encoderContext, codecRegistry) -> {
+          final long value = field.getLong(domainObject);
+          if (value != 0) {
+            writer.writeInt64(name, value);
           }
-          break;
-        case "java.lang.Integer": // covers also "int" which is autoboxed
-          final int intValue = (int) value;
-          if (intValue != 0) {
-            writer.writeInt32(name, intValue);
+        };
+      case FLOAT:
+        return (writer, domainObject, encoderContext, codecRegistry) -> {
+          final float value = field.getFloat(domainObject);
+          if (value != 0) {
+            writer.writeDouble(name, value);
           }
-          break;
-        case "java.lang.Long": // covers also "long" which is autoboxed
-          final long longValue = (long) value;
-          if (longValue != 0) {
-            writer.writeInt64(name, longValue);
+        };
+      case DOUBLE:
+        return (writer, domainObject, encoderContext, codecRegistry) -> {
+          final double value = field.getDouble(domainObject);
+          if (value != 0) {
+            writer.writeDouble(name, value);
           }
-          break;
-        case "java.lang.Float": // covers also "float" which is autoboxed
-          final float floatValue = (float) value;
-          if (floatValue != 0) {
-            writer.writeDouble(name, floatValue);
+        };
+      case STRING:
+        return (writer, domainObject, encoderContext, codecRegistry) -> {
+          final String value = (String) field.get(domainObject);
+          if (value != null) {
+            writer.writeString(name, value);
           }
-          break;
-        case "java.lang.Double": // covers also "double" which is autoboxed
-          final double doubleValue = (double) value;
-          if (doubleValue != 0) {
-            writer.writeDouble(name, doubleValue);
+        };
+      case DATE:
+        return (writer, domainObject, encoderContext, codecRegistry) -> {
+          final Date value = (Date) field.get(domainObject);
+          if (value != null && value.getClass() == Date.class) {
+            writer.writeDateTime(name, value.getTime());
+          } else {
+            // subclasses of Date may have a registered converter
+            writeNamedValue(writer, name, value, encoderContext, codecRegistry);
           }
-          break;
-        case "java.lang.String":
-          writer.writeString(name, (String) value);
-          break;
-        case "java.util.Date":
-          writer.writeDateTime(name, ((Date) value).getTime());
-          break;
-        case "org.lambdamatic.mongodb.types.geospatial.Location":
-          writer.writeStartDocument(name);
-          new LocationCodec(codecRegistry).encode(writer, (Location) value, encoderContext);
-          writer.writeEndDocument();
-          break;
-        // check if this is an embedded document
-        default:
-          // FIXME: verify that class is annotated with @EmbeddedDocument
-          encodeDomainObject(writer, name, value, encoderContext, codecRegistry);
-      }
+        };
+      default:
+        final Compressed compressed = field.getAnnotation(Compressed.class);
+        if (compressed != null && CompressedValues.supports(field.getType())) {
+          final int threshold = compressed.threshold();
+          final String codecName = compressed.codec();
+          return (writer, domainObject, encoderContext, codecRegistry) -> CompressedValues
+              .writeNamedValue(writer, name, field.get(domainObject), threshold, codecName);
+        }
+        if (field.getAnnotation(BinaryArray.class) != null
+            && PrimitiveArrays.supportsBinary(field.getType())) {
+          return (writer, domainObject, encoderContext, codecRegistry) -> PrimitiveArrays
+              .writeNamedBinary(writer, name, field.get(domainObject));
+        }
+        if (isEmbeddedMap(field)) {
+          return (writer, domainObject, encoderContext, codecRegistry) -> writeNamedEmbeddedMap(
+              writer, name, (Map<?, ?>) field.get(domainObject), encoderContext, codecRegistry);
+        }
+        return (writer, domainObject, encoderContext, codecRegistry) -> writeNamedValue(writer,
+            name, field.get(domainObject), encoderContext, codecRegistry);
     }
   }
 
   
+  /**
+   * Writes the given {@link Map} as an embedded document whose field names are the map keys, in
+   * the iteration order of the map. {@code null} maps are skipped.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the {@link Map} to write
+   * @param encoderContext the encoder context
+   * @param codecRegistry the codec registry
+   * @throws ConversionException if a key is not a valid document field name
+   */
+  static void writeNamedEmbeddedMap(final BsonWriter writer, final String name,
+      final Map<?, ?> value, final EncoderContext encoderContext,
+      final CodecRegistry codecRegistry) {
+    if (value == null) {
+      return;
+    }
+    writer.writeStartDocument(name);
+    for (Map.Entry<?, ?> entry : value.entrySet()) {
+      final String key = getMapKey(entry.getKey());
+      if (key.isEmpty() || key.indexOf('.') >= 0 || key.charAt(0) == '$') {
+        throw new ConversionException("Unable to write key '" + key + "' of map '" + name
+            + "' as a document field name");
+      }
+      writeNamedValue(writer, key, entry.getValue(), encoderContext, codecRegistry);
+    }
+    writer.writeEndDocument();
+  }
+
+  /**
+   * @param key a {@link Map} key
+   * @return the given key, or its name if it is an {@link Enum} (like enum values)
+   */
+  private static String getMapKey(final Object key) {
+    return key instanceof Enum ? ((Enum<?>) key).name() : (String) key;
+  }
+
+  /**
+   * @param field a domain class field
+   * @return {@code true} if the given field is a parameterized {@link Map} annotated with
+   *         {@link EmbeddedMap}, {@code false} otherwise
+   */
+  static boolean isEmbeddedMap(final Field field) {
+    return field.getAnnotation(EmbeddedMap.class) != null
+        && Map.class.isAssignableFrom(field.getType())
+        && field.getGenericType() instanceof ParameterizedType;
+  }
+
   /**
    * Writes the given named {@link Expression}.
    * 
@@ -564,7 +743,8 @@ public class EncoderUtils {
   public static void writeNamedExpression(final BsonWriter writer, final String name,
       final Expression valueExpr) {
     // LambdaExpressions have to be treated differently
-    final Object value = (valueExpr != null) ? valueExpr.getValue() : null;
+    final Object value = ConverterRegistry.getInstance()
+        .toDocumentValue((valueExpr != null) ? valueExpr.getValue() : null);
     if (value == null) {
       writer.writeNull(name);
     } else if (value instanceof Boolean) {
@@ -601,7 +781,7 @@ public class EncoderUtils {
       writer.writeEndArray();
     } else {
       throw new ConversionException(
-          "Writing value of a type '" + value.getClass() + "' is not supported yet");
+          "Writing value of a type '" + value.getClass() + "' is not supported");
     }
   }
 
@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.lang.reflect.Field;
+import java.util.Date;
+
+import org.bson.types.ObjectId;
+import org.lambdamatic.mongodb.annotations.Compressed;
+import org.lambdamatic.mongodb.annotations.EmbeddedDocument;
+
+/**
+ * The type of value held by a binding, which determines how its value is written and read.
+ */
+enum FieldKind {
+  BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, STRING, DATE, OBJECT_ID, EMBEDDED, OTHER;
+
+  /**
+   * @param field the field
+   * @return the {@link FieldKind} for the given field, which is {@link #OTHER} for the fields
+   *         whose values are {@link Compressed}
+   */
+  static FieldKind of(final Field field) {
+    if (field.getAnnotation(Compressed.class) != null
+        && CompressedValues.supports(field.getType())) {
+      return OTHER;
+    }
+    return of(field.getType());
+  }
+
+  /**
+   * @param fieldType the declared type of the field
+   * @return the {@link FieldKind} for the given field type
+   */
+  static FieldKind of(final Class<?> fieldType) {
+    if (fieldType.isPrimitive()) {
+      return FieldKind.valueOf(fieldType.getName().toUpperCase());
+    } else if (fieldType == String.class) {
+      return STRING;
+    } else if (fieldType == Date.class) {
+      return DATE;
+    } else if (fieldType == ObjectId.class) {
+      return OBJECT_ID;
+    } else if (fieldType.getAnnotation(EmbeddedDocument.class) != null) {
+      return EMBEDDED;
+    }
+    return OTHER;
+  }
+
+  /**
+   * @return {@code true} if this kind is a primitive type, {@code false} otherwise
+   */
+  boolean isPrimitive() {
+    return this.ordinal() <= DOUBLE.ordinal();
+  }
+}
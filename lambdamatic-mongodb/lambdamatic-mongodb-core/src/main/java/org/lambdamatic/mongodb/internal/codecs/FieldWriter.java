@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import org.bson.BsonWriter;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Writes the value of a given field of a domain object as a named value in a {@link BsonWriter}.
+ * The {@link FieldWriter} of each binding is chosen once from the declared type of the field (see
+ * {@link EncoderUtils#getFieldWriter(String, java.lang.reflect.Field, FieldKind)}), so that
+ * primitive values are read and written without boxing.
+ */
+@FunctionalInterface
+interface FieldWriter {
+
+  /**
+   * Writes the value of the field in the given {@code domainObject}.
+   * 
+   * @param writer the {@link BsonWriter} to write into
+   * @param domainObject the domain object to read the field value from
+   * @param encoderContext the encode context
+   * @param codecRegistry the {@link CodecRegistry} to use when encoding embedded values
+   * @throws IllegalAccessException if the field value could not be read
+   */
+  void write(BsonWriter writer, Object domainObject, EncoderContext encoderContext,
+      CodecRegistry codecRegistry) throws IllegalAccessException;
+
+}
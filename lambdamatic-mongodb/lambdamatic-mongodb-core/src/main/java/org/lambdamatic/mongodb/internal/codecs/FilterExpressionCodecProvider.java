@@ -25,6 +25,9 @@ import org.slf4j.LoggerFactory;
 public class FilterExpressionCodecProvider
     implements CodecProvider {
 
+  /** The stateless {@link FilterExpressionCodec}, shared by all lookups. */
+  private static final FilterExpressionCodec codec = new FilterExpressionCodec();
+
   /** The usual Logger. */
   private static final Logger LOGGER = LoggerFactory.getLogger(FilterExpressionCodecProvider.class);
 
@@ -40,7 +43,7 @@ public class FilterExpressionCodecProvider
   public <QM> Codec<QM> get(final Class<QM> clazz, final CodecRegistry registry) {
     try {
       if (Arrays.stream(clazz.getInterfaces()).anyMatch(i -> i.equals(FilterExpression.class))) {
-        return (Codec<QM>) new FilterExpressionCodec();
+        return (Codec<QM>) codec;
       }
     } catch (SecurityException | IllegalArgumentException e) {
       LOGGER.error("Failed to check if class '{}' is an instance of ''", e, clazz.getName(),
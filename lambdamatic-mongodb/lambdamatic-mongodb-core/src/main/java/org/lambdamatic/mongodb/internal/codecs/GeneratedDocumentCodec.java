@@ -0,0 +1,518 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.ObjectId;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.annotations.EmbeddedDocument;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+/**
+ * Base class for the {@link Codec}s generated at compile time for the domain classes annotated
+ * with {@link Document} or {@link EmbeddedDocument}, or at runtime by the
+ * {@link RuntimeDocumentCodecGenerator}. Generated subclasses read and write the domain class
+ * fields directly (or through {@link MethodHandle}s for private fields), with hard-coded document
+ * field names and types, which avoids the reflective {@link DocumentCodec} path.
+ * <p>
+ * The BSON documents produced by the generated codecs are identical to those produced by the
+ * {@link DocumentCodec}. When decoding a document whose type discriminator targets a subclass of
+ * the domain class, decoding is delegated to the {@link DocumentDecoder}.
+ * </p>
+ *
+ * @param <DomainType> the actual domain type to encode and decode
+ */
+public abstract class GeneratedDocumentCodec<DomainType> implements Codec<DomainType> {
+
+  /** The user-defined domain class associated with this Codec. */
+  private final Class<DomainType> targetClass;
+
+  /** the codec registry, to decode elements of an incoming BSON document. */
+  private final CodecRegistry codecRegistry;
+
+  /** The {@link Codec}s of the embedded documents, indexed by domain class. */
+  private final Map<Class<?>, Codec<?>> embeddedDocumentCodecs = new ConcurrentHashMap<>();
+
+  /** The names of the top-level document fields to decode, or {@code null} to decode them all. */
+  private Set<String> decodedFieldNames;
+
+  /**
+   * Constructor
+   *
+   * @param targetClass the domain class supported by this {@link Codec}.
+   * @param codecRegistry the associated {@link CodecRegistry}
+   */
+  protected GeneratedDocumentCodec(final Class<DomainType> targetClass,
+      final CodecRegistry codecRegistry) {
+    this.targetClass = targetClass;
+    this.codecRegistry = codecRegistry;
+  }
+
+  /**
+   * Restricts this codec to the given document fields when decoding, for example when the
+   * documents are retrieved with a projection. Other fields are skipped without being
+   * materialized. This method must be called before the codec is shared.
+   *
+   * @param decodedFieldNames the names of the top-level document fields to decode, or
+   *        {@code null} to decode them all
+   * @return this codec
+   */
+  GeneratedDocumentCodec<DomainType> restrictTo(final Set<String> decodedFieldNames) {
+    this.decodedFieldNames = decodedFieldNames;
+    return this;
+  }
+
+  /**
+   * @return the {@link CodecRegistry} associated with this codec.
+   */
+  public CodecRegistry getCodecRegistry() {
+    return this.codecRegistry;
+  }
+
+  @Override
+  public Class<DomainType> getEncoderClass() {
+    return this.targetClass;
+  }
+
+  @Override
+  public void encode(final BsonWriter writer, final DomainType domainObject,
+      final EncoderContext encoderContext) {
+    try {
+      // lazy documents must be fully decoded before their fields are read
+      LazyDocumentState.resolve(domainObject);
+      writer.writeStartDocument();
+      encodeContent(writer, domainObject, encoderContext);
+      writer.writeEndDocument();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new ConversionException(
+          "Failed to convert following domain object to BSON document: " + domainObject, e);
+    } finally {
+      writer.flush();
+    }
+  }
+
+  @Override
+  public DomainType decode(final BsonReader reader, final DecoderContext decoderContext) {
+    reader.readStartDocument();
+    final Class<?> documentClass = DocumentDecoder.readTargetClass(reader, this.targetClass);
+    if (documentClass != null && documentClass != this.targetClass) {
+      return DocumentDecoder.decodeDocumentContent(reader, decoderContext,
+          DocumentDecodingPlan.getPlan(documentClass).restrictTo(this.decodedFieldNames),
+          this.codecRegistry);
+    }
+    final DomainType domainObject = newInstance();
+    try {
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        final String fieldName = reader.readName();
+        if ((this.decodedFieldNames != null && !this.decodedFieldNames.contains(fieldName))
+            || !decodeField(domainObject, fieldName, reader, decoderContext)) {
+          reader.skipValue();
+        }
+      }
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new ConversionException(
+          "Failed to decode BSON document into an instance of " + this.targetClass.getName(), e);
+    }
+    reader.readEndDocument();
+    return domainObject;
+  }
+
+  /**
+   * Encodes the fields of the given {@code domainObject} in the given {@code writer},
+   * <strong>assuming that a document is already being written</strong>.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param domainObject the domain object to encode
+   * @param encoderContext the encode context
+   * @throws Throwable if a field value could not be read
+   */
+  protected abstract void encodeContent(BsonWriter writer, DomainType domainObject,
+      EncoderContext encoderContext) throws Throwable;
+
+  /**
+   * @return a new instance of the domain class.
+   */
+  protected abstract DomainType newInstance();
+
+  /**
+   * Reads the value at the current position of the given {@link BsonReader} and sets it in the
+   * field of the given {@code domainObject} bound to the given document field name.
+   *
+   * @param domainObject the domain object whose field should be set
+   * @param documentFieldName the name of the field in the BSON document
+   * @param reader the reader, positioned on the value to read
+   * @param decoderContext the decoder context
+   * @return {@code true} if the value was read, {@code false} if the domain class has no binding
+   *         for the given document field name
+   * @throws Throwable if the field value could not be set
+   */
+  protected abstract boolean decodeField(DomainType domainObject, String documentFieldName,
+      BsonReader reader, DecoderContext decoderContext) throws Throwable;
+
+  /**
+   * Writes the given value using the same rules as the {@link DocumentCodec}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the value to write
+   * @param encoderContext the encode context
+   */
+  protected void writeNamedValue(final BsonWriter writer, final String name, final Object value,
+      final EncoderContext encoderContext) {
+    EncoderUtils.writeNamedValue(writer, name, value, encoderContext, this.codecRegistry);
+  }
+
+  /**
+   * Writes the given {@link Map} of a field annotated with
+   * {@link org.lambdamatic.mongodb.annotations.EmbeddedMap} as an embedded document whose field
+   * names are the map keys.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the {@link Map} to write, or {@code null}
+   * @param encoderContext the encode context
+   */
+  protected void writeEmbeddedMap(final BsonWriter writer, final String name, final Object value,
+      final EncoderContext encoderContext) {
+    EncoderUtils.writeNamedEmbeddedMap(writer, name, (Map<?, ?>) value, encoderContext,
+        this.codecRegistry);
+  }
+
+  /**
+   * Writes the given numeric primitive array as BSON binary data, for the fields annotated with
+   * {@link org.lambdamatic.mongodb.annotations.BinaryArray}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param array the primitive array to write, or {@code null}
+   */
+  protected static void writeBinaryArray(final BsonWriter writer, final String name,
+      final Object array) {
+    PrimitiveArrays.writeNamedBinary(writer, name, array);
+  }
+
+  /**
+   * Writes the given {@link String} or {@code byte[]} value of a field annotated with
+   * {@link org.lambdamatic.mongodb.annotations.Compressed}, compressed if its size reaches the
+   * given {@code threshold}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the value to write, or {@code null}
+   * @param threshold the minimum size of the values to compress, in bytes
+   * @param codecName the name of the compression codec to use
+   */
+  protected static void writeCompressedValue(final BsonWriter writer, final String name,
+      final Object value, final int threshold, final String codecName) {
+    CompressedValues.writeNamedValue(writer, name, value, threshold, codecName);
+  }
+
+  /**
+   * Writes the type discriminator of the given domain class, according to the current
+   * {@link TypeAliasRegistry.DiscriminatorMode}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param domainClass the class of the domain object being encoded
+   */
+  protected static void writeTypeDiscriminator(final BsonWriter writer,
+      final Class<?> domainClass) {
+    TypeAliasRegistry.getInstance().writeDiscriminator(writer, domainClass);
+  }
+
+  /**
+   * Writes the given {@code boolean} value, unless it is {@code false}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the value to write
+   */
+  protected static void writeNonDefaultValue(final BsonWriter writer, final String name,
+      final boolean value) {
+    if (value) {
+      writer.writeBoolean(name, true);
+    }
+  }
+
+  /**
+   * Writes the given {@code int} value (also used for {@code byte}, {@code short} and
+   * {@code char} values), unless it is {@code 0}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the value to write
+   */
+  protected static void writeNonDefaultValue(final BsonWriter writer, final String name,
+      final int value) {
+    if (value != 0) {
+      writer.writeInt32(name, value);
+    }
+  }
+
+  /**
+   * Writes the given {@code long} value, unless it is {@code 0}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the value to write
+   */
+  protected static void writeNonDefaultValue(final BsonWriter writer, final String name,
+      final long value) {
+    if (value != 0) {
+      writer.writeInt64(name, value);
+    }
+  }
+
+  /**
+   * Writes the given {@code double} value (also used for {@code float} values), unless it is
+   * {@code 0}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the value to write
+   */
+  protected static void writeNonDefaultValue(final BsonWriter writer, final String name,
+      final double value) {
+    if (value != 0) {
+      writer.writeDouble(name, value);
+    }
+  }
+
+  /**
+   * Writes the given {@link String} value, unless it is {@code null}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the value to write
+   */
+  protected static void writeNonDefaultValue(final BsonWriter writer, final String name,
+      final String value) {
+    if (value != null) {
+      writer.writeString(name, value);
+    }
+  }
+
+  /**
+   * Writes the given {@link Date} value, unless it is {@code null}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the value to write
+   */
+  protected static void writeNonDefaultValue(final BsonWriter writer, final String name,
+      final Date value) {
+    if (value != null) {
+      writer.writeDateTime(name, value.getTime());
+    }
+  }
+
+  /**
+   * Writes the given {@link ObjectId} value, unless it is {@code null}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the value
+   * @param value the value to write
+   */
+  protected static void writeNonDefaultValue(final BsonWriter writer, final String name,
+      final ObjectId value) {
+    if (value != null) {
+      writer.writeObjectId(name, value);
+    }
+  }
+
+  /**
+   * Writes the given embedded document using the {@link Codec} of its class.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the embedded document
+   * @param embeddedDocument the embedded document to write, or {@code null}
+   * @param encoderContext the encode context
+   */
+  @SuppressWarnings("unchecked")
+  protected void writeEmbeddedDocument(final BsonWriter writer, final String name,
+      final Object embeddedDocument, final EncoderContext encoderContext) {
+    if (embeddedDocument == null) {
+      return;
+    }
+    writer.writeName(name);
+    encoderContext.encodeWithChildContext(
+        (Codec<Object>) getEmbeddedDocumentCodec(embeddedDocument.getClass()), writer,
+        embeddedDocument);
+  }
+
+  /**
+   * Reads the embedded document at the current position of the given {@link BsonReader} using the
+   * {@link Codec} of the given class.
+   *
+   * @param reader the reader, positioned on the embedded document to read
+   * @param decoderContext the decoder context
+   * @param embeddedDocumentClass the expected class of the embedded document
+   * @param <T> the expected type of the embedded document
+   * @return the embedded document, or {@code null} if the BSON value was {@code null}
+   */
+  protected <T> T readEmbeddedDocument(final BsonReader reader,
+      final DecoderContext decoderContext, final Class<T> embeddedDocumentClass) {
+    if (readNull(reader)) {
+      return null;
+    }
+    return getEmbeddedDocumentCodec(embeddedDocumentClass).decode(reader, decoderContext);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Codec<T> getEmbeddedDocumentCodec(final Class<T> embeddedDocumentClass) {
+    return (Codec<T>) this.embeddedDocumentCodecs.computeIfAbsent(embeddedDocumentClass,
+        c -> DocumentCodecProvider.getDocumentCodec(c, this.codecRegistry));
+  }
+
+  /**
+   * Reads the value at the current position of the given {@link BsonReader} using the given
+   * {@link ValueDecoder}.
+   *
+   * @param valueDecoder the {@link ValueDecoder} to use
+   * @param reader the reader, positioned on the value to read
+   * @param decoderContext the decoder context
+   * @return the value, or {@code null} if the BSON value was {@code null}
+   */
+  protected Object readValue(final ValueDecoder valueDecoder, final BsonReader reader,
+      final DecoderContext decoderContext) {
+    return valueDecoder.decode(reader, decoderContext, this.codecRegistry);
+  }
+
+  /**
+   * Returns the {@link ValueDecoder} to read the values of the given field, based on its
+   * annotations and its declared generic type.
+   *
+   * @param domainClass the class declaring the field
+   * @param fieldName the name of the field
+   * @return the {@link ValueDecoder} for the given field
+   * @throws ConversionException if the field could not be found
+   */
+  protected static ValueDecoder getValueDecoder(final Class<?> domainClass,
+      final String fieldName) {
+    return DocumentDecodingPlan.getValueDecoder(getAccessibleField(domainClass, fieldName));
+  }
+
+  /**
+   * Reads the BSON {@code null} value at the current position of the given {@link BsonReader}, if
+   * any.
+   *
+   * @param reader the reader, positioned on the value to read
+   * @return {@code true} if a {@code null} value was read, {@code false} otherwise
+   */
+  protected static boolean readNull(final BsonReader reader) {
+    if (reader.getCurrentBsonType() == BsonType.NULL) {
+      reader.readNull();
+      return true;
+    }
+    return false;
+  }
+
+  protected static byte readByte(final BsonReader reader) {
+    return ConverterRegistry.readByte(reader);
+  }
+
+  protected static short readShort(final BsonReader reader) {
+    return ConverterRegistry.readShort(reader);
+  }
+
+  protected static int readInt(final BsonReader reader) {
+    return ConverterRegistry.readInt(reader);
+  }
+
+  protected static long readLong(final BsonReader reader) {
+    return ConverterRegistry.readLong(reader);
+  }
+
+  protected static double readDouble(final BsonReader reader) {
+    return ConverterRegistry.readDouble(reader);
+  }
+
+  protected static boolean readBoolean(final BsonReader reader) {
+    return ConverterRegistry.readBoolean(reader);
+  }
+
+  protected static char readChar(final BsonReader reader) {
+    return ConverterRegistry.readChar(reader);
+  }
+
+  protected static String readString(final BsonReader reader) {
+    return readNull(reader) ? null : ConverterRegistry.readString(reader);
+  }
+
+  protected static Date readDate(final BsonReader reader) {
+    return readNull(reader) ? null : ConverterRegistry.readDate(reader);
+  }
+
+  protected static ObjectId readObjectId(final BsonReader reader) {
+    return readNull(reader) ? null : ConverterRegistry.readObjectId(reader);
+  }
+
+  /**
+   * Returns a {@link MethodHandle} to read the given field, even if it is private.
+   *
+   * @param domainClass the class declaring the field
+   * @param fieldName the name of the field
+   * @return the getter {@link MethodHandle}
+   * @throws ConversionException if the field could not be found or made accessible
+   */
+  protected static MethodHandle findGetter(final Class<?> domainClass, final String fieldName) {
+    try {
+      return MethodHandles.lookup().unreflectGetter(getAccessibleField(domainClass, fieldName));
+    } catch (IllegalAccessException e) {
+      throw new ConversionException(
+          "Unable to access field '" + domainClass.getName() + "." + fieldName + "'", e);
+    }
+  }
+
+  /**
+   * Returns a {@link MethodHandle} to write the given field, even if it is private.
+   *
+   * @param domainClass the class declaring the field
+   * @param fieldName the name of the field
+   * @return the setter {@link MethodHandle}
+   * @throws ConversionException if the field could not be found or made accessible
+   */
+  protected static MethodHandle findSetter(final Class<?> domainClass, final String fieldName) {
+    try {
+      return MethodHandles.lookup().unreflectSetter(getAccessibleField(domainClass, fieldName));
+    } catch (IllegalAccessException e) {
+      throw new ConversionException(
+          "Unable to access field '" + domainClass.getName() + "." + fieldName + "'", e);
+    }
+  }
+
+  private static Field getAccessibleField(final Class<?> domainClass, final String fieldName) {
+    try {
+      final Field field = domainClass.getDeclaredField(fieldName);
+      field.setAccessible(true);
+      return field;
+    } catch (NoSuchFieldException | SecurityException e) {
+      throw new ConversionException(
+          "Unable to access field '" + domainClass.getName() + "." + fieldName + "'", e);
+    }
+  }
+
+}
@@ -8,9 +8,6 @@
 
 package org.lambdamatic.mongodb.internal.codecs;
 
-import java.lang.reflect.Field;
-import java.util.Map;
-
 import org.bson.BsonReader;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
@@ -55,20 +52,7 @@ public class IdFilterCodec
    * @throws ConversionException if no value could be find.
    */
   private static Object findId(final Object domainObject) {
-    final Map<String, Field> bindings =
-        BindingService.getInstance().getBindings(domainObject.getClass());
-    final Field idField = bindings.get(EncoderUtils.MONGOBD_DOCUMENT_ID);
-    if (idField != null) {
-      idField.setAccessible(true);
-      try {
-        return idField.get(domainObject);
-      } catch (IllegalArgumentException | IllegalAccessException e) {
-        throw new ConversionException("Failed to retrieve id for instance of domain class '"
-            + domainObject.getClass().getName() + "'", e);
-      }
-    }
-    return new ConversionException("Failed to retrieve id for instance of domain class '"
-        + domainObject.getClass().getName() + "': no field annotated with @Document ?");
+    return BindingService.getInstance().getDocumentId(domainObject);
   }
 
   /**
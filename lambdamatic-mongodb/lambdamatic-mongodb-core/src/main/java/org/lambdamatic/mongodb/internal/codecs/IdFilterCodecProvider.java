@@ -18,6 +18,9 @@ import org.lambdamatic.mongodb.internal.IdFilter;
 public class IdFilterCodecProvider
     implements CodecProvider {
 
+  /** The stateless {@link IdFilterCodec}, shared by all lookups. */
+  private static final IdFilterCodec codec = new IdFilterCodec();
+
   /**
    * {@inheritDoc}
    * 
@@ -28,7 +31,7 @@ public class IdFilterCodecProvider
   @Override
   public <T> Codec<T> get(final Class<T> clazz, final CodecRegistry registry) {
     if (clazz != null && clazz.equals(IdFilter.class)) {
-      return (Codec<T>) new IdFilterCodec();
+      return (Codec<T>) codec;
     }
     return null;
   }
@@ -0,0 +1,24 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+/**
+ * Interface implemented by the subclasses of the domain classes generated by the
+ * {@link LazyDocumentGenerator}, whose instances are backed by the raw BSON bytes of their document
+ * and decode their fields on first access.
+ */
+public interface LazyDocument {
+
+  /**
+   * @return the {@link LazyDocumentState} holding the raw document and the fields that were
+   *         already decoded, or {@code null} if the instance is still being constructed.
+   */
+  LazyDocumentState getLazyDocumentState();
+
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.util.Optional;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.RawBsonDocumentCodec;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.lambdamatic.mongodb.internal.codecs.LazyDocumentGenerator.LazyDocumentClass;
+
+/**
+ * {@link Codec} that decodes documents into {@link LazyDocument}s: domain objects backed by the
+ * raw BSON bytes of their document, whose fields are decoded on first access. Documents whose
+ * class cannot be subclassed (see {@link LazyDocumentGenerator}) are decoded eagerly.
+ * <p>
+ * Encoding is delegated to the regular {@link Codec} of the domain class.
+ * </p>
+ *
+ * @param <DomainType> the domain type
+ */
+public class LazyDocumentCodec<DomainType> implements Codec<DomainType> {
+
+  /** The stateless codec to read the raw documents. */
+  private static final RawBsonDocumentCodec RAW_DOCUMENT_CODEC = new RawBsonDocumentCodec();
+
+  /** The generated {@link LazyDocument} classes, indexed by domain class. */
+  private static final ClassValue<Optional<LazyDocumentClass>> lazyDocumentClasses =
+      new ClassValue<Optional<LazyDocumentClass>>() {
+        @Override
+        protected Optional<LazyDocumentClass> computeValue(final Class<?> domainClass) {
+          return LazyDocumentGenerator.generate(domainClass);
+        }
+      };
+
+  /** The domain class associated with this codec. */
+  private final Class<DomainType> targetClass;
+
+  /** The codec registry, to encode and decode embedded documents. */
+  private final CodecRegistry codecRegistry;
+
+  /**
+   * Constructor.
+   * 
+   * @param targetClass the domain class supported by this {@link Codec}
+   * @param codecRegistry the associated {@link CodecRegistry}
+   */
+  public LazyDocumentCodec(final Class<DomainType> targetClass,
+      final CodecRegistry codecRegistry) {
+    this.targetClass = targetClass;
+    this.codecRegistry = codecRegistry;
+  }
+
+  @Override
+  public Class<DomainType> getEncoderClass() {
+    return this.targetClass;
+  }
+
+  @Override
+  public void encode(final BsonWriter writer, final DomainType domainObject,
+      final EncoderContext encoderContext) {
+    DocumentCodecProvider.getDocumentCodec(this.targetClass, this.codecRegistry).encode(writer,
+        domainObject, encoderContext);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public DomainType decode(final BsonReader reader, final DecoderContext decoderContext) {
+    final RawBsonDocument rawDocument = RAW_DOCUMENT_CODEC.decode(reader, decoderContext);
+    final BsonBinaryReader rawReader = new BsonBinaryReader(rawDocument.getByteBuffer().asNIO());
+    try {
+      rawReader.readStartDocument();
+      final Class<?> documentClass = DocumentDecoder.readTargetClass(rawReader, this.targetClass);
+      final Class<?> domainClass = documentClass != null ? documentClass : this.targetClass;
+      final Optional<LazyDocumentClass> lazyDocumentClass = lazyDocumentClasses.get(domainClass);
+      if (lazyDocumentClass.isPresent()) {
+        return (DomainType) lazyDocumentClass.get().newInstance(rawDocument, this.codecRegistry);
+      }
+      return DocumentDecoder.decodeDocumentContent(rawReader, decoderContext,
+          DocumentDecodingPlan.getPlan(domainClass), this.codecRegistry);
+    } finally {
+      rawReader.close();
+    }
+  }
+
+}
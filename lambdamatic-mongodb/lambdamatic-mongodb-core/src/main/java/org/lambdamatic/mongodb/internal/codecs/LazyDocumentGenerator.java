@@ -0,0 +1,412 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+import org.lambdamatic.mongodb.internal.codecs.BindingPlan.FieldBinding;
+import org.lambdamatic.mongodb.internal.codecs.RuntimeDocumentCodecGenerator.CodecClassLoader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates a subclass of a domain class at runtime, whose instances are backed by the raw BSON
+ * bytes of their document and decode their fields on first access (see {@link LazyDocument}).
+ * <p>
+ * The generated subclass overrides the public and protected methods of the domain class:
+ * <ul>
+ * <li>the getter of a private bound field decodes this field on its first call,</li>
+ * <li>the setter of such a field marks it as loaded, so that it will not be decoded anymore,</li>
+ * <li>any other method (eg: {@code equals()}, {@code hashCode()} or {@code toString()}) decodes
+ * all remaining fields, since it may read them directly.</li>
+ * </ul>
+ * Fields that are not private or that have no getter are decoded when the instance is created.
+ * Domain classes that cannot be safely subclassed (eg: classes that are not public or that have
+ * package-private or final methods) are not supported, and their documents are decoded eagerly.
+ * </p>
+ */
+final class LazyDocumentGenerator implements Opcodes {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LazyDocumentGenerator.class);
+
+  /** Suffix of the generated class names. */
+  private static final String LAZY_CLASS_SUFFIX = "$$LambdamaticLazy";
+
+  private static final String STATE = Type.getInternalName(LazyDocumentState.class);
+
+  private static final String STATE_DESC = Type.getDescriptor(LazyDocumentState.class);
+
+  private static final String STATE_FIELD = "lazyDocumentState";
+
+  /** The kinds of intercepted methods. */
+  private enum Interception {
+    LOAD, MARK_LOADED, LOAD_ALL;
+  }
+
+  /** The domain class. */
+  private final Class<?> domainClass;
+
+  /** The internal name of the domain class. */
+  private final String domainInternalName;
+
+  /** The internal name of the class to generate. */
+  private final String lazyInternalName;
+
+  /** The document field names of the lazy fields, indexed by their Java field name. */
+  private final Map<String, String> lazyFieldNames = new LinkedHashMap<>();
+
+  /** The indexes of the lazy fields, indexed by document field name. */
+  private final Map<String, Integer> lazyFieldIndexes = new HashMap<>();
+
+  /** The methods to override. */
+  private final List<InterceptedMethod> interceptedMethods = new ArrayList<>();
+
+  private LazyDocumentGenerator(final Class<?> domainClass) {
+    this.domainClass = domainClass;
+    this.domainInternalName = Type.getInternalName(domainClass);
+    this.lazyInternalName = this.domainInternalName + LAZY_CLASS_SUFFIX;
+  }
+
+  /**
+   * Generates the {@link LazyDocument} subclass of the given domain class.
+   * 
+   * @param domainClass the domain class
+   * @return the generated {@link LazyDocumentClass}, or an empty {@link Optional} if the domain
+   *         class is not supported
+   */
+  static Optional<LazyDocumentClass> generate(final Class<?> domainClass) {
+    final LazyDocumentGenerator generator = new LazyDocumentGenerator(domainClass);
+    if (!generator.analyze()) {
+      LOGGER.debug("Documents of class '{}' will not be decoded lazily", domainClass.getName());
+      return Optional.empty();
+    }
+    try {
+      final Class<?> lazyClass = new CodecClassLoader(domainClass.getClassLoader())
+          .define(generator.lazyInternalName.replace('/', '.'), generator.generateBytecode());
+      return Optional.of(new LazyDocumentClass(lazyClass.getConstructor(LazyDocumentState.class),
+          generator.lazyFieldNames.values().toArray(new String[0]),
+          generator.lazyFieldIndexes, DocumentDecodingPlan.getPlan(domainClass)));
+    } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+      LOGGER.warn("Failed to generate a lazy document class for '{}'", domainClass.getName(), e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Collects the lazy fields and the methods to override.
+   * 
+   * @return {@code true} if the domain class can be subclassed with at least one lazy field,
+   *         {@code false} otherwise.
+   */
+  private boolean analyze() {
+    final int classModifiers = this.domainClass.getModifiers();
+    if (!Modifier.isPublic(classModifiers) || Modifier.isFinal(classModifiers)
+        || Modifier.isAbstract(classModifiers) || this.domainClass.isInterface()
+        || this.domainClass.getClassLoader() == null
+        || this.domainClass.isMemberClass() && !Modifier.isStatic(classModifiers)) {
+      return false;
+    }
+    try {
+      final int constructorModifiers = this.domainClass.getDeclaredConstructor().getModifiers();
+      if (!Modifier.isPublic(constructorModifiers)
+          && !Modifier.isProtected(constructorModifiers)) {
+        return false;
+      }
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+    // the private bound fields, indexed by Java field name
+    final Map<String, FieldBinding> candidates = new HashMap<>();
+    for (FieldBinding binding : BindingService.getInstance().getBindingPlan(this.domainClass)
+        .getBindings()) {
+      if (Modifier.isPrivate(binding.getField().getModifiers())) {
+        candidates.put(binding.getField().getName(), binding);
+      }
+    }
+    // the public and protected methods, the most specific first
+    final Map<String, Method> methods = new LinkedHashMap<>();
+    for (Class<?> c = this.domainClass; c != Object.class; c = c.getSuperclass()) {
+      for (Method method : c.getDeclaredMethods()) {
+        final int modifiers = method.getModifiers();
+        if (Modifier.isStatic(modifiers) || Modifier.isPrivate(modifiers) || method.isBridge()
+            || method.isSynthetic()) {
+          continue;
+        }
+        if (!Modifier.isPublic(modifiers) && !Modifier.isProtected(modifiers)) {
+          // package-private methods cannot be overridden from the generated class
+          return false;
+        }
+        methods.putIfAbsent(method.getName() + Type.getMethodDescriptor(method), method);
+      }
+    }
+    // first, the getters determine the lazy fields
+    final Map<Method, FieldBinding> getters = new HashMap<>();
+    for (Method method : methods.values()) {
+      final FieldBinding binding = getAccessedBinding(method, candidates, true);
+      if (binding != null && !Modifier.isFinal(method.getModifiers())) {
+        getters.put(method, binding);
+        final String fieldName = binding.getField().getName();
+        if (!this.lazyFieldNames.containsKey(fieldName)) {
+          this.lazyFieldIndexes.put(binding.getDocumentFieldName(), this.lazyFieldNames.size());
+          this.lazyFieldNames.put(fieldName, binding.getDocumentFieldName());
+        }
+      }
+    }
+    if (this.lazyFieldNames.isEmpty()) {
+      return false;
+    }
+    // then, all methods are intercepted
+    for (Method method : methods.values()) {
+      final FieldBinding getterBinding = getters.get(method);
+      final FieldBinding setterBinding = getAccessedBinding(method, candidates, false);
+      if (getterBinding != null) {
+        this.interceptedMethods.add(new InterceptedMethod(method, Interception.LOAD,
+            this.lazyFieldIndexes.get(getterBinding.getDocumentFieldName())));
+      } else if (setterBinding != null) {
+        final Integer index = this.lazyFieldIndexes.get(setterBinding.getDocumentFieldName());
+        if (index != null && !Modifier.isFinal(method.getModifiers())) {
+          this.interceptedMethods.add(new InterceptedMethod(method, Interception.MARK_LOADED, index));
+        } else if (index != null) {
+          // the setter could not mark the field as loaded
+          return false;
+        }
+      } else if (Modifier.isFinal(method.getModifiers())) {
+        // the method could read a lazy field that was not decoded yet
+        if (getAccessedBinding(method, candidates, true) == null) {
+          return false;
+        }
+      } else {
+        this.interceptedMethods.add(new InterceptedMethod(method, Interception.LOAD_ALL, -1));
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param method the method to analyze
+   * @param candidates the private bound fields, indexed by Java field name
+   * @param getter {@code true} to look for a getter, {@code false} to look for a setter
+   * @return the binding whose field is read (or written) by the given method according to the
+   *         JavaBeans naming conventions, or {@code null} if there is none.
+   */
+  private static FieldBinding getAccessedBinding(final Method method,
+      final Map<String, FieldBinding> candidates, final boolean getter) {
+    final String methodName = method.getName();
+    final String propertyName;
+    if (getter && method.getParameterCount() == 0 && methodName.startsWith("get")
+        && methodName.length() > 3) {
+      propertyName = methodName.substring(3);
+    } else if (getter && method.getParameterCount() == 0 && methodName.startsWith("is")
+        && methodName.length() > 2) {
+      propertyName = methodName.substring(2);
+    } else if (!getter && method.getParameterCount() == 1 && methodName.startsWith("set")
+        && methodName.length() > 3) {
+      propertyName = methodName.substring(3);
+    } else {
+      return null;
+    }
+    final FieldBinding binding = candidates.get(
+        Character.toLowerCase(propertyName.charAt(0)) + propertyName.substring(1));
+    if (binding == null) {
+      return null;
+    }
+    final Class<?> fieldType = binding.getField().getType();
+    if (getter && method.getReturnType() == fieldType
+        || !getter && method.getParameterTypes()[0] == fieldType) {
+      return binding;
+    }
+    return null;
+  }
+
+  private byte[] generateBytecode() {
+    final ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC,
+        this.lazyInternalName, null, this.domainInternalName,
+        new String[] {Type.getInternalName(LazyDocument.class)});
+    classWriter.visitField(ACC_PRIVATE | ACC_FINAL, STATE_FIELD, STATE_DESC, null, null)
+        .visitEnd();
+    generateConstructor(classWriter);
+    generateStateGetter(classWriter);
+    for (InterceptedMethod interceptedMethod : this.interceptedMethods) {
+      generateInterceptedMethod(classWriter, interceptedMethod.method,
+          interceptedMethod.interception, interceptedMethod.index);
+    }
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private void generateConstructor(final ClassWriter classWriter) {
+    final MethodVisitor mv =
+        classWriter.visitMethod(ACC_PUBLIC, "<init>", "(" + STATE_DESC + ")V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, this.domainInternalName, "<init>", "()V", false);
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitFieldInsn(PUTFIELD, this.lazyInternalName, STATE_FIELD, STATE_DESC);
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void generateStateGetter(final ClassWriter classWriter) {
+    final MethodVisitor mv = classWriter.visitMethod(ACC_PUBLIC, "getLazyDocumentState",
+        "()" + STATE_DESC, null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, this.lazyInternalName, STATE_FIELD, STATE_DESC);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void generateInterceptedMethod(final ClassWriter classWriter, final Method method,
+      final Interception interception, final int index) {
+    final String descriptor = Type.getMethodDescriptor(method);
+    final String[] exceptions = new String[method.getExceptionTypes().length];
+    for (int i = 0; i < exceptions.length; i++) {
+      exceptions[i] = Type.getInternalName(method.getExceptionTypes()[i]);
+    }
+    final int access = method.getModifiers() & (ACC_PUBLIC | ACC_PROTECTED | ACC_VARARGS);
+    final MethodVisitor mv =
+        classWriter.visitMethod(access, method.getName(), descriptor, null, exceptions);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, this.lazyInternalName, STATE_FIELD, STATE_DESC);
+    switch (interception) {
+      case LOAD:
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitLdcInsn(index);
+        mv.visitMethodInsn(INVOKESTATIC, STATE, "load", "(" + STATE_DESC + "Ljava/lang/Object;I)V",
+            false);
+        break;
+      case MARK_LOADED:
+        mv.visitLdcInsn(index);
+        mv.visitMethodInsn(INVOKESTATIC, STATE, "markLoaded", "(" + STATE_DESC + "I)V", false);
+        break;
+      default:
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESTATIC, STATE, "loadAll",
+            "(" + STATE_DESC + "Ljava/lang/Object;)V", false);
+    }
+    // delegate to the domain class
+    mv.visitVarInsn(ALOAD, 0);
+    int localVariableIndex = 1;
+    for (Type argumentType : Type.getArgumentTypes(descriptor)) {
+      mv.visitVarInsn(argumentType.getOpcode(ILOAD), localVariableIndex);
+      localVariableIndex += argumentType.getSize();
+    }
+    mv.visitMethodInsn(INVOKESPECIAL, this.domainInternalName, method.getName(), descriptor,
+        false);
+    mv.visitInsn(Type.getReturnType(descriptor).getOpcode(IRETURN));
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /**
+   * A method of the domain class to override in the generated class.
+   */
+  private static class InterceptedMethod {
+
+    private final Method method;
+
+    private final Interception interception;
+
+    /** The index of the lazy field, or {@code -1} if the method is not a getter or a setter. */
+    private final int index;
+
+    InterceptedMethod(final Method method, final Interception interception, final int index) {
+      this.method = method;
+      this.interception = interception;
+      this.index = index;
+    }
+  }
+
+  /**
+   * A generated {@link LazyDocument} class, along with its lazy fields.
+   */
+  static class LazyDocumentClass {
+
+    /** The constructor of the generated class, which accepts a {@link LazyDocumentState}. */
+    private final Constructor<?> constructor;
+
+    /** The document field names of the lazy fields, in the order of their index. */
+    private final String[] lazyFieldNames;
+
+    /** The indexes of the lazy fields, indexed by document field name. */
+    private final Map<String, Integer> lazyFieldIndexes;
+
+    /** The decoding plan of the domain class. */
+    private final DocumentDecodingPlan decodingPlan;
+
+    LazyDocumentClass(final Constructor<?> constructor, final String[] lazyFieldNames,
+        final Map<String, Integer> lazyFieldIndexes, final DocumentDecodingPlan decodingPlan) {
+      this.constructor = constructor;
+      this.lazyFieldNames = lazyFieldNames;
+      this.lazyFieldIndexes = Collections.unmodifiableMap(lazyFieldIndexes);
+      this.decodingPlan = decodingPlan;
+    }
+
+    /**
+     * Creates a new instance of the generated class, backed by the given raw document. All fields
+     * that are not lazy are decoded immediately.
+     * 
+     * @param rawDocument the raw document
+     * @param codecRegistry the codec registry to use when decoding embedded documents
+     * @return the new domain object
+     * @throws ConversionException if the instance could not be created
+     */
+    Object newInstance(final RawBsonDocument rawDocument, final CodecRegistry codecRegistry) {
+      final LazyDocumentState state = new LazyDocumentState(this, rawDocument, codecRegistry);
+      try {
+        final Object domainObject = this.constructor.newInstance(state);
+        state.loadEagerFields(domainObject);
+        return domainObject;
+      } catch (ReflectiveOperationException | IllegalArgumentException e) {
+        throw new ConversionException("Failed to create a new instance of '"
+            + this.constructor.getDeclaringClass().getName() + "'", e);
+      }
+    }
+
+    String[] getLazyFieldNames() {
+      return this.lazyFieldNames;
+    }
+
+    /**
+     * @param documentFieldName the name of a document field
+     * @return the index of the corresponding lazy field, or {@code -1} if the field is not lazy
+     */
+    int getLazyFieldIndex(final String documentFieldName) {
+      final Integer index = this.lazyFieldIndexes.get(documentFieldName);
+      return index != null ? index : -1;
+    }
+
+    DocumentDecodingPlan getDecodingPlan() {
+      return this.decodingPlan;
+    }
+  }
+
+}
@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import org.bson.BsonBinaryReader;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.lambdamatic.mongodb.internal.codecs.DocumentDecodingPlan.FieldDecoder;
+import org.lambdamatic.mongodb.internal.codecs.LazyDocumentGenerator.LazyDocumentClass;
+
+/**
+ * The state of a {@link LazyDocument}: the raw BSON document it was read from, along with the lazy
+ * fields that were already decoded. The raw document is released as soon as all lazy fields have
+ * been decoded (or assigned).
+ * <p>
+ * The public static methods are called by the generated subclasses of the domain classes, before
+ * delegating to the intercepted method of the domain class.
+ * </p>
+ */
+public final class LazyDocumentState {
+
+  /** The generated class of the domain object. */
+  private final LazyDocumentClass lazyDocumentClass;
+
+  /** The codec registry to use when decoding embedded documents. */
+  private final CodecRegistry codecRegistry;
+
+  /** The loaded flags of the lazy fields, indexed like the intercepted fields. */
+  private final boolean[] loaded;
+
+  /** The number of lazy fields that were not loaded yet. */
+  private int remaining;
+
+  /** The raw document, or {@code null} once all lazy fields were loaded. */
+  private RawBsonDocument rawDocument;
+
+  LazyDocumentState(final LazyDocumentClass lazyDocumentClass, final RawBsonDocument rawDocument,
+      final CodecRegistry codecRegistry) {
+    this.lazyDocumentClass = lazyDocumentClass;
+    this.rawDocument = rawDocument;
+    this.codecRegistry = codecRegistry;
+    this.remaining = lazyDocumentClass.getLazyFieldNames().length;
+    this.loaded = new boolean[this.remaining];
+  }
+
+  /**
+   * Decodes the lazy field at the given index, unless it was already loaded.
+   * 
+   * @param state the state of the lazy document, or {@code null} if the document is still being
+   *        constructed
+   * @param domainObject the domain object
+   * @param index the index of the lazy field
+   */
+  public static void load(final LazyDocumentState state, final Object domainObject,
+      final int index) {
+    if (state != null) {
+      state.loadField(domainObject, index);
+    }
+  }
+
+  /**
+   * Decodes all lazy fields that were not loaded yet.
+   * 
+   * @param state the state of the lazy document, or {@code null} if the document is still being
+   *        constructed
+   * @param domainObject the domain object
+   */
+  public static void loadAll(final LazyDocumentState state, final Object domainObject) {
+    if (state != null) {
+      state.loadAllFields(domainObject);
+    }
+  }
+
+  /**
+   * Marks the lazy field at the given index as loaded, since it is about to be assigned.
+   * 
+   * @param state the state of the lazy document, or {@code null} if the document is still being
+   *        constructed
+   * @param index the index of the lazy field
+   */
+  public static void markLoaded(final LazyDocumentState state, final int index) {
+    if (state != null) {
+      state.markFieldLoaded(index);
+    }
+  }
+
+  /**
+   * Decodes all remaining lazy fields of the given {@code domainObject} if it is a
+   * {@link LazyDocument}, so that its fields can be read directly.
+   * 
+   * @param domainObject the domain object
+   */
+  static void resolve(final Object domainObject) {
+    if (domainObject instanceof LazyDocument) {
+      loadAll(((LazyDocument) domainObject).getLazyDocumentState(), domainObject);
+    }
+  }
+
+  /**
+   * Decodes the given field of the given {@code domainObject} if it is a {@link LazyDocument} and
+   * if this field is lazy and was not loaded yet, so that this single field can be read directly.
+   * 
+   * @param domainObject the domain object
+   * @param documentFieldName the name of the document field to decode
+   */
+  static void resolve(final Object domainObject, final String documentFieldName) {
+    if (domainObject instanceof LazyDocument) {
+      final LazyDocumentState state = ((LazyDocument) domainObject).getLazyDocumentState();
+      if (state != null) {
+        final int index = state.lazyDocumentClass.getLazyFieldIndex(documentFieldName);
+        if (index >= 0) {
+          state.loadField(domainObject, index);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param javaClass the class of a domain object
+   * @return the domain class of the given class, ie, its superclass if it is a generated
+   *         {@link LazyDocument} class, the given class itself otherwise.
+   */
+  static Class<?> getDomainClass(final Class<?> javaClass) {
+    if (LazyDocument.class.isAssignableFrom(javaClass)) {
+      return javaClass.getSuperclass();
+    }
+    return javaClass;
+  }
+
+  /**
+   * Decodes all fields of the raw document that are not lazy, ie, that have no intercepted getter.
+   * 
+   * @param domainObject the domain object
+   */
+  synchronized void loadEagerFields(final Object domainObject) {
+    final DocumentDecodingPlan decodingPlan = this.lazyDocumentClass.getDecodingPlan();
+    final BsonBinaryReader reader = newReader();
+    try {
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        final String fieldName = reader.readName();
+        final FieldDecoder fieldDecoder = decodingPlan.getFieldDecoder(fieldName);
+        if (fieldDecoder != null && this.lazyDocumentClass.getLazyFieldIndex(fieldName) < 0) {
+          fieldDecoder.decode(domainObject, reader, DocumentDecoder.DEFAULT_DECODER_CONTEXT,
+              this.codecRegistry);
+        } else {
+          reader.skipValue();
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    if (this.remaining == 0) {
+      this.rawDocument = null;
+    }
+  }
+
+  private synchronized void loadField(final Object domainObject, final int index) {
+    if (this.loaded[index]) {
+      return;
+    }
+    final String documentFieldName = this.lazyDocumentClass.getLazyFieldNames()[index];
+    final BsonBinaryReader reader = newReader();
+    try {
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        if (documentFieldName.equals(reader.readName())) {
+          this.lazyDocumentClass.getDecodingPlan().getFieldDecoder(documentFieldName).decode(
+              domainObject, reader, DocumentDecoder.DEFAULT_DECODER_CONTEXT, this.codecRegistry);
+          break;
+        }
+        reader.skipValue();
+      }
+    } finally {
+      reader.close();
+    }
+    markFieldLoaded(index);
+  }
+
+  private synchronized void loadAllFields(final Object domainObject) {
+    if (this.remaining == 0) {
+      return;
+    }
+    final BsonBinaryReader reader = newReader();
+    try {
+      while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+        final String fieldName = reader.readName();
+        final int index = this.lazyDocumentClass.getLazyFieldIndex(fieldName);
+        if (index >= 0 && !this.loaded[index]) {
+          this.lazyDocumentClass.getDecodingPlan().getFieldDecoder(fieldName).decode(domainObject,
+              reader, DocumentDecoder.DEFAULT_DECODER_CONTEXT, this.codecRegistry);
+        } else {
+          reader.skipValue();
+        }
+      }
+    } finally {
+      reader.close();
+    }
+    // fields that are missing in the document keep their default value
+    for (int i = 0; i < this.loaded.length; i++) {
+      this.loaded[i] = true;
+    }
+    this.remaining = 0;
+    this.rawDocument = null;
+  }
+
+  private synchronized void markFieldLoaded(final int index) {
+    if (!this.loaded[index]) {
+      this.loaded[index] = true;
+      this.remaining--;
+      if (this.remaining == 0) {
+        this.rawDocument = null;
+      }
+    }
+  }
+
+  /**
+   * @return {@code true} if all lazy fields were loaded and the raw document was released,
+   *         {@code false} otherwise.
+   */
+  synchronized boolean isFullyLoaded() {
+    return this.remaining == 0;
+  }
+
+  /**
+   * @return a new {@link BsonBinaryReader} on the raw document, positioned after the start of the
+   *         document.
+   */
+  private BsonBinaryReader newReader() {
+    final BsonBinaryReader reader =
+        new BsonBinaryReader(this.rawDocument.getByteBuffer().asNIO());
+    reader.readStartDocument();
+    return reader;
+  }
+
+}
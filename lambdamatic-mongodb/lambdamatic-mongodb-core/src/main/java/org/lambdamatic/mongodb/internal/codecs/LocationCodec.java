@@ -8,25 +8,15 @@
 
 package org.lambdamatic.mongodb.internal.codecs;
 
-import java.lang.reflect.Field;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-
 import org.bson.BsonDocument;
-import org.bson.BsonElement;
 import org.bson.BsonReader;
-import org.bson.BsonType;
 import org.bson.BsonWriter;
 import org.bson.codecs.Codec;
 import org.bson.codecs.DecoderContext;
 import org.bson.codecs.EncoderContext;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.lambdamatic.mongodb.annotations.DocumentField;
-import org.lambdamatic.mongodb.exceptions.ConversionException;
 import org.lambdamatic.mongodb.types.geospatial.Location;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 /**
  * Custom {@link Codec} to encode and decode {@link Location} to/from {@link BsonDocument} with the
@@ -45,8 +35,6 @@ import org.slf4j.LoggerFactory;
 public class LocationCodec
     extends DocumentCodec<Location> {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(LocationCodec.class);
-
   /**
    * Constructor
    * 
@@ -79,6 +67,18 @@ public class LocationCodec
   @Override
   public void encode(final BsonWriter writer, final Location location,
       final EncoderContext encoderContext) {
+    encodeLocation(writer, location);
+  }
+
+  /**
+   * Writes the given {@link Location} in the given {@link BsonWriter}, without requiring a
+   * {@link LocationCodec} instance.
+   * 
+   * @param writer the {@link BsonWriter} to write into
+   * @param location the {@link Location} to write
+   * @see LocationCodec#encode(BsonWriter, Location, EncoderContext)
+   */
+  static void encodeLocation(final BsonWriter writer, final Location location) {
     writer.writeString("type", "Point");
     writer.writeStartArray("coordinates");
     writer.writeDouble(location.getLatitude());
@@ -99,37 +99,20 @@ public class LocationCodec
    */
   @Override
   public Location decode(final BsonReader reader, final DecoderContext decoderContext) {
-    // code duplicated and adapted from "org.bson.codecs.BsonDocumentCodec"
-    final DocumentDecoder documentEncoder = new DocumentDecoder(Location.class, getCodecRegistry());
-    final Map<String, BsonElement> keyValuePairs = new HashMap<>();
-    reader.readStartDocument();
-    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
-      String fieldName = reader.readName();
-      keyValuePairs.put(fieldName,
-          new BsonElement(fieldName, documentEncoder.readBsonValue(reader, decoderContext)));
-    }
-    reader.readEndDocument();
-    // now, convert the map key-pairs into an instance of the target
-    // document
-    final LocationDocument locationDocument = new LocationDocument();
-    final Map<String, Field> bindings =
-        BindingService.getInstance().getBindings(LocationDocument.class);
-    for (Iterator<String> iterator = keyValuePairs.keySet().iterator(); iterator.hasNext();) {
-      final String key = iterator.next();
-      final Field field = bindings.get(key);
-      if (field == null) {
-        LOGGER.debug("Field '{}' does not exist in class '{}'", key, LocationDocument.class);
-        continue;
-      }
-      final Object fieldValue = documentEncoder.getValue(keyValuePairs.get(key), field.getType());
-      try {
-        field.setAccessible(true);
-        field.set(locationDocument, fieldValue);
-      } catch (IllegalArgumentException | IllegalAccessException e) {
-        throw new ConversionException("Unable to set value '" + fieldValue + "' to field '"
-            + LocationDocument.class.getName() + "." + field.getName() + "'", e);
-      }
-    }
+    return decodeLocation(reader, decoderContext);
+  }
+
+  /**
+   * Reads a {@link Location} from the given {@link BsonReader}, without requiring a
+   * {@link LocationCodec} instance.
+   * 
+   * @param reader the reader positioned on the location document
+   * @param decoderContext the decoder context
+   * @return the {@link Location}
+   */
+  static Location decodeLocation(final BsonReader reader, final DecoderContext decoderContext) {
+    final LocationDocument locationDocument =
+        DocumentDecoder.decodeDocument(reader, decoderContext, LocationDocument.class, null);
     return locationDocument.toLocation();
   }
 
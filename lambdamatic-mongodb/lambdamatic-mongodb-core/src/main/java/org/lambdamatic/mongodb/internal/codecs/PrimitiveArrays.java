@@ -0,0 +1,354 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.bson.BsonBinary;
+import org.bson.BsonBinarySubType;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.lambdamatic.mongodb.annotations.BinaryArray;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+/**
+ * Reads and writes arrays of primitive values ({@code byte[]} excepted, which is stored as BSON
+ * binary data) without boxing their elements.
+ * <p>
+ * Arrays are written as BSON arrays, unless the field is annotated with {@link BinaryArray}, in
+ * which case the elements are packed in little-endian order in a single BSON binary value with the
+ * {@link BsonBinarySubType#USER_DEFINED} subtype. Both forms are accepted when decoding.
+ * </p>
+ */
+final class PrimitiveArrays {
+
+  /** Initial capacity of the arrays filled from a BSON array, whose size is not known upfront. */
+  private static final int INITIAL_CAPACITY = 16;
+
+  private PrimitiveArrays() {
+    // utility class
+  }
+
+  /**
+   * @param value the value to check
+   * @return {@code true} if the given value is an array of primitive values other than
+   *         {@code byte[]}, {@code false} otherwise
+   */
+  static boolean isPrimitiveArray(final Object value) {
+    return value instanceof int[] || value instanceof long[] || value instanceof double[]
+        || value instanceof boolean[] || value instanceof float[] || value instanceof short[]
+        || value instanceof char[];
+  }
+
+  /**
+   * @param arrayType the type of array
+   * @return {@code true} if arrays of the given type can be written as BSON binary data with
+   *         {@link #writeNamedBinary(BsonWriter, String, Object)}
+   */
+  static boolean supportsBinary(final Class<?> arrayType) {
+    return arrayType == int[].class || arrayType == long[].class || arrayType == double[].class
+        || arrayType == float[].class || arrayType == short[].class || arrayType == char[].class;
+  }
+
+  /**
+   * Writes the given primitive array as a named BSON array. All elements are written, including
+   * the default values.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the array
+   * @param array the primitive array to write (see {@link #isPrimitiveArray(Object)})
+   */
+  static void writeNamedArray(final BsonWriter writer, final String name, final Object array) {
+    writer.writeStartArray(name);
+    writeElements(writer, array);
+    writer.writeEndArray();
+  }
+
+  /**
+   * Writes the given primitive array as an unnamed BSON array. All elements are written, including
+   * the default values.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param array the primitive array to write (see {@link #isPrimitiveArray(Object)})
+   */
+  static void writeArray(final BsonWriter writer, final Object array) {
+    writer.writeStartArray();
+    writeElements(writer, array);
+    writer.writeEndArray();
+  }
+
+  private static void writeElements(final BsonWriter writer, final Object array) {
+    if (array instanceof int[]) {
+      for (int value : (int[]) array) {
+        writer.writeInt32(value);
+      }
+    } else if (array instanceof long[]) {
+      for (long value : (long[]) array) {
+        writer.writeInt64(value);
+      }
+    } else if (array instanceof double[]) {
+      for (double value : (double[]) array) {
+        writer.writeDouble(value);
+      }
+    } else if (array instanceof boolean[]) {
+      for (boolean value : (boolean[]) array) {
+        writer.writeBoolean(value);
+      }
+    } else if (array instanceof float[]) {
+      for (float value : (float[]) array) {
+        writer.writeDouble(value);
+      }
+    } else if (array instanceof short[]) {
+      for (short value : (short[]) array) {
+        writer.writeInt32(value);
+      }
+    } else if (array instanceof char[]) {
+      for (char value : (char[]) array) {
+        writer.writeInt32(value);
+      }
+    } else {
+      throw new ConversionException(
+          "Unable to write value of type " + array.getClass().getName() + " as a primitive array");
+    }
+  }
+
+  /**
+   * Writes the given numeric primitive array as named BSON binary data, with the
+   * {@link BsonBinarySubType#USER_DEFINED} subtype. Other values are written with
+   * {@link #writeNamedArray(BsonWriter, String, Object)}, and {@code null} values are skipped.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param name the name of the binary value
+   * @param array the primitive array to write
+   */
+  static void writeNamedBinary(final BsonWriter writer, final String name, final Object array) {
+    if (array == null) {
+      return;
+    }
+    final ByteBuffer buffer;
+    if (array instanceof int[]) {
+      final int[] values = (int[]) array;
+      buffer = allocate(values.length * Integer.BYTES);
+      buffer.asIntBuffer().put(values);
+    } else if (array instanceof long[]) {
+      final long[] values = (long[]) array;
+      buffer = allocate(values.length * Long.BYTES);
+      buffer.asLongBuffer().put(values);
+    } else if (array instanceof double[]) {
+      final double[] values = (double[]) array;
+      buffer = allocate(values.length * Double.BYTES);
+      buffer.asDoubleBuffer().put(values);
+    } else if (array instanceof float[]) {
+      final float[] values = (float[]) array;
+      buffer = allocate(values.length * Float.BYTES);
+      buffer.asFloatBuffer().put(values);
+    } else if (array instanceof short[]) {
+      final short[] values = (short[]) array;
+      buffer = allocate(values.length * Short.BYTES);
+      buffer.asShortBuffer().put(values);
+    } else if (array instanceof char[]) {
+      final char[] values = (char[]) array;
+      buffer = allocate(values.length * Character.BYTES);
+      buffer.asCharBuffer().put(values);
+    } else {
+      writeNamedArray(writer, name, array);
+      return;
+    }
+    writer.writeBinaryData(name, new BsonBinary(BsonBinarySubType.USER_DEFINED, buffer.array()));
+  }
+
+  private static ByteBuffer allocate(final int size) {
+    return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  /**
+   * Returns the {@link ValueDecoder} that reads a BSON array or BSON binary data into an array of
+   * the given primitive {@code componentType}.
+   *
+   * @param componentType the primitive component type, other than {@code byte}
+   * @return the corresponding {@link ValueDecoder} (which does not handle {@code null} values)
+   */
+  static ValueDecoder getArrayDecoder(final Class<?> componentType) {
+    if (componentType == int.class) {
+      return (reader, context, registry) -> readIntArray(reader);
+    } else if (componentType == long.class) {
+      return (reader, context, registry) -> readLongArray(reader);
+    } else if (componentType == double.class) {
+      return (reader, context, registry) -> readDoubleArray(reader);
+    } else if (componentType == boolean.class) {
+      return (reader, context, registry) -> readBooleanArray(reader);
+    } else if (componentType == float.class) {
+      return (reader, context, registry) -> readFloatArray(reader);
+    } else if (componentType == short.class) {
+      return (reader, context, registry) -> readShortArray(reader);
+    } else if (componentType == char.class) {
+      return (reader, context, registry) -> readCharArray(reader);
+    }
+    throw new ConversionException(
+        "Unable to decode arrays of " + componentType.getName() + " as primitive arrays");
+  }
+
+  private static int[] readIntArray(final BsonReader reader) {
+    if (reader.getCurrentBsonType() == BsonType.BINARY) {
+      final ByteBuffer buffer = readBinary(reader, Integer.BYTES, int[].class);
+      final int[] values = new int[buffer.remaining() / Integer.BYTES];
+      buffer.asIntBuffer().get(values);
+      return values;
+    }
+    int[] values = new int[INITIAL_CAPACITY];
+    int size = 0;
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = ConverterRegistry.readInt(reader);
+    }
+    reader.readEndArray();
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  private static long[] readLongArray(final BsonReader reader) {
+    if (reader.getCurrentBsonType() == BsonType.BINARY) {
+      final ByteBuffer buffer = readBinary(reader, Long.BYTES, long[].class);
+      final long[] values = new long[buffer.remaining() / Long.BYTES];
+      buffer.asLongBuffer().get(values);
+      return values;
+    }
+    long[] values = new long[INITIAL_CAPACITY];
+    int size = 0;
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = ConverterRegistry.readLong(reader);
+    }
+    reader.readEndArray();
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  private static double[] readDoubleArray(final BsonReader reader) {
+    if (reader.getCurrentBsonType() == BsonType.BINARY) {
+      final ByteBuffer buffer = readBinary(reader, Double.BYTES, double[].class);
+      final double[] values = new double[buffer.remaining() / Double.BYTES];
+      buffer.asDoubleBuffer().get(values);
+      return values;
+    }
+    double[] values = new double[INITIAL_CAPACITY];
+    int size = 0;
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = ConverterRegistry.readDouble(reader);
+    }
+    reader.readEndArray();
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  private static float[] readFloatArray(final BsonReader reader) {
+    if (reader.getCurrentBsonType() == BsonType.BINARY) {
+      final ByteBuffer buffer = readBinary(reader, Float.BYTES, float[].class);
+      final float[] values = new float[buffer.remaining() / Float.BYTES];
+      buffer.asFloatBuffer().get(values);
+      return values;
+    }
+    float[] values = new float[INITIAL_CAPACITY];
+    int size = 0;
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = (float) ConverterRegistry.readDouble(reader);
+    }
+    reader.readEndArray();
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  private static short[] readShortArray(final BsonReader reader) {
+    if (reader.getCurrentBsonType() == BsonType.BINARY) {
+      final ByteBuffer buffer = readBinary(reader, Short.BYTES, short[].class);
+      final short[] values = new short[buffer.remaining() / Short.BYTES];
+      buffer.asShortBuffer().get(values);
+      return values;
+    }
+    short[] values = new short[INITIAL_CAPACITY];
+    int size = 0;
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = ConverterRegistry.readShort(reader);
+    }
+    reader.readEndArray();
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  private static char[] readCharArray(final BsonReader reader) {
+    if (reader.getCurrentBsonType() == BsonType.BINARY) {
+      final ByteBuffer buffer = readBinary(reader, Character.BYTES, char[].class);
+      final char[] values = new char[buffer.remaining() / Character.BYTES];
+      buffer.asCharBuffer().get(values);
+      return values;
+    }
+    char[] values = new char[INITIAL_CAPACITY];
+    int size = 0;
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = ConverterRegistry.readChar(reader);
+    }
+    reader.readEndArray();
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  private static boolean[] readBooleanArray(final BsonReader reader) {
+    boolean[] values = new boolean[INITIAL_CAPACITY];
+    int size = 0;
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = ConverterRegistry.readBoolean(reader);
+    }
+    reader.readEndArray();
+    return size == values.length ? values : Arrays.copyOf(values, size);
+  }
+
+  /**
+   * Reads the current BSON binary value.
+   *
+   * @param reader the reader, positioned on a BSON binary value
+   * @param elementSize the size of each array element, in bytes
+   * @param arrayType the type of array to read, for error reporting
+   * @return the binary data, in little-endian order
+   * @throws ConversionException if the size of the binary data is not a multiple of the given
+   *         {@code elementSize}
+   */
+  private static ByteBuffer readBinary(final BsonReader reader, final int elementSize,
+      final Class<?> arrayType) {
+    final byte[] data = reader.readBinaryData().getData();
+    if (data.length % elementSize != 0) {
+      throw new ConversionException("Unable to convert binary data of " + data.length
+          + " bytes to type " + arrayType.getSimpleName());
+    }
+    return ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+}
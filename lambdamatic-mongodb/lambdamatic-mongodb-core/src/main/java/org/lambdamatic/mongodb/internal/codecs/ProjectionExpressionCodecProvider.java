@@ -23,6 +23,9 @@ import org.slf4j.LoggerFactory;
 public class ProjectionExpressionCodecProvider
     implements CodecProvider {
 
+  /** The stateless {@link ProjectionExpressionCodec}, shared by all lookups. */
+  private static final ProjectionExpressionCodec codec = new ProjectionExpressionCodec();
+
   /** The usual Logger. */
   private static final Logger LOGGER =
       LoggerFactory.getLogger(ProjectionExpressionCodecProvider.class);
@@ -40,7 +43,7 @@ public class ProjectionExpressionCodecProvider
     try {
       if (Arrays.stream(clazz.getInterfaces())
           .anyMatch(i -> i.equals(ProjectionExpression.class))) {
-        return (Codec<PM>) new ProjectionExpressionCodec();
+        return (Codec<PM>) codec;
       }
     } catch (SecurityException | IllegalArgumentException e) {
       LOGGER.error("Failed to check if class '{}' is an instance of ''", e, clazz.getName(),
@@ -0,0 +1,632 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.ObjectId;
+import org.lambdamatic.mongodb.annotations.BinaryArray;
+import org.lambdamatic.mongodb.annotations.Compressed;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates a {@link GeneratedDocumentCodec} subclass at runtime, for domain classes that were not
+ * processed by the annotation processor (eg: classes coming from third-party libraries).
+ * <p>
+ * The generated class has the same behaviour as the {@code Codec}s generated at compile time: each
+ * binding of the domain class is read and written with a dedicated {@link MethodHandle} held in a
+ * {@code static final} field, and the document field names are hard-coded in the bytecode. Since
+ * the generated class is defined in its own {@link ClassLoader}, all {@link MethodHandle}s are
+ * adapted to erased types, so that the domain class does not need to be accessible from the
+ * generated class.
+ * </p>
+ */
+public final class RuntimeDocumentCodecGenerator implements Opcodes {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(RuntimeDocumentCodecGenerator.class);
+
+  /** Suffix of the generated class names. */
+  private static final String CODEC_CLASS_SUFFIX = "$$LambdamaticCodec";
+
+  private static final String BASE_CLASS = Type.getInternalName(GeneratedDocumentCodec.class);
+
+  private static final String METHOD_HANDLE = Type.getInternalName(MethodHandle.class);
+
+  private static final String METHOD_HANDLE_DESC = Type.getDescriptor(MethodHandle.class);
+
+  private static final String CLASS_DESC = Type.getDescriptor(Class.class);
+
+  private static final String VALUE_DECODER_DESC = Type.getDescriptor(ValueDecoder.class);
+
+  private static final String WRITER = Type.getInternalName(BsonWriter.class);
+
+  private static final String WRITER_DESC = Type.getDescriptor(BsonWriter.class);
+
+  private static final String READER_DESC = Type.getDescriptor(BsonReader.class);
+
+  private static final String ENCODER_CONTEXT_DESC = Type.getDescriptor(EncoderContext.class);
+
+  private static final String DECODER_CONTEXT_DESC = Type.getDescriptor(DecoderContext.class);
+
+  private static final String OBJECT_ID = Type.getInternalName(ObjectId.class);
+
+  /**
+   * The constants (domain class, {@link MethodHandle}s, field types) of the generated classes,
+   * indexed by class name, until they are retrieved by the static initializer of the class.
+   */
+  private static final Map<String, Object[]> pendingConstants = new ConcurrentHashMap<>();
+
+  /**
+   * Called by the static initializer of the generated classes.
+   *
+   * @param codecClassName the name of the generated class
+   * @return the constants of the generated class
+   */
+  public static Object[] getConstants(final String codecClassName) {
+    return pendingConstants.remove(codecClassName);
+  }
+
+  /**
+   * Generates the {@link GeneratedDocumentCodec} for the given domain class.
+   *
+   * @param domainClass the domain class
+   * @return the constructor of the generated {@link GeneratedDocumentCodec}, which accepts a
+   *         single {@link CodecRegistry} argument, or an empty {@link Optional} if the domain class
+   *         is not supported (no default constructor, static or final bindings).
+   */
+  static Optional<Constructor<?>> generate(final Class<?> domainClass) {
+    if (!isSupported(domainClass)) {
+      return Optional.empty();
+    }
+    final String codecClassName = domainClass.getName() + CODEC_CLASS_SUFFIX;
+    try {
+      final RuntimeDocumentCodecGenerator generator =
+          new RuntimeDocumentCodecGenerator(domainClass, codecClassName);
+      final byte[] bytecode = generator.generateBytecode();
+      pendingConstants.put(codecClassName, generator.constants.toArray());
+      final Class<?> codecClass =
+          new CodecClassLoader(domainClass.getClassLoader()).define(codecClassName, bytecode);
+      return Optional.of(codecClass.getConstructor(CodecRegistry.class));
+    } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+      pendingConstants.remove(codecClassName);
+      LOGGER.warn("Failed to generate a codec for class '{}'", domainClass.getName(), e);
+      return Optional.empty();
+    }
+  }
+
+  private static boolean isSupported(final Class<?> domainClass) {
+    if (Modifier.isAbstract(domainClass.getModifiers()) || domainClass.isInterface()
+        || domainClass.getClassLoader() == null) {
+      return false;
+    }
+    try {
+      domainClass.getDeclaredConstructor();
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+    for (BindingPlan.FieldBinding binding : BindingService.getInstance()
+        .getBindingPlan(domainClass).getBindings()) {
+      final int modifiers = binding.getField().getModifiers();
+      if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** The domain class. */
+  private final Class<?> domainClass;
+
+  /** The internal name of the class to generate. */
+  private final String codecInternalName;
+
+  /** The constants to pass to the generated class, in the order of their static fields. */
+  private final List<Object> constants = new ArrayList<>();
+
+  /** The static field holding the domain class. */
+  private final String domainClassField;
+
+  /** The static field holding the constructor {@link MethodHandle}. */
+  private final String constructorField;
+
+  /** The bindings of the domain class, indexed by document field name. */
+  private final Map<String, FieldBinding> bindings = new TreeMap<>();
+
+  private RuntimeDocumentCodecGenerator(final Class<?> domainClass, final String codecClassName)
+      throws IllegalAccessException, NoSuchMethodException {
+    this.domainClass = domainClass;
+    this.codecInternalName = codecClassName.replace('.', '/');
+    this.domainClassField = addConstant(domainClass);
+    final Constructor<?> constructor = domainClass.getDeclaredConstructor();
+    constructor.setAccessible(true);
+    this.constructorField = addConstant(MethodHandles.lookup().unreflectConstructor(constructor)
+        .asType(MethodType.methodType(Object.class)));
+    int valueDecoderIndex = 0;
+    for (BindingPlan.FieldBinding binding : BindingService.getInstance()
+        .getBindingPlan(domainClass).getBindings()) {
+      final Field field = binding.getField();
+      final MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+      final MethodHandle setter = MethodHandles.lookup().unreflectSetter(field);
+      final FieldBinding fieldBinding = new FieldBinding(field.getName(), field.getType(),
+          binding.getKind(), addConstant(getter.asType(getter.type().erase())),
+          addConstant(setter.asType(setter.type().erase())), addConstant(field.getType()));
+      if (CompressedValues.supports(field.getType())) {
+        fieldBinding.compressed = field.getAnnotation(Compressed.class);
+      }
+      fieldBinding.binaryArray = field.getAnnotation(BinaryArray.class) != null
+          && PrimitiveArrays.supportsBinary(field.getType());
+      fieldBinding.embeddedMap = EncoderUtils.isEmbeddedMap(field);
+      if (fieldBinding.kind == FieldKind.OTHER) {
+        fieldBinding.valueDecoderField = "decoder" + valueDecoderIndex++;
+      }
+      this.bindings.put(binding.getDocumentFieldName(), fieldBinding);
+    }
+  }
+
+  /**
+   * Adds a constant to pass to the generated class.
+   *
+   * @param constant the constant value (a {@link Class} or a {@link MethodHandle})
+   * @return the name of the static field that will hold the constant in the generated class
+   */
+  private String addConstant(final Object constant) {
+    this.constants.add(constant);
+    return "constant" + (this.constants.size() - 1);
+  }
+
+  private static String constantDescriptor(final Object constant) {
+    return constant instanceof Class ? CLASS_DESC : METHOD_HANDLE_DESC;
+  }
+
+  private byte[] generateBytecode() {
+    final ClassWriter classWriter =
+        new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+          @Override
+          protected String getCommonSuperClass(final String type1, final String type2) {
+            // the generated methods never merge different reference types
+            return "java/lang/Object";
+          }
+        };
+    classWriter.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, this.codecInternalName, null,
+        BASE_CLASS, null);
+    for (int i = 0; i < this.constants.size(); i++) {
+      classWriter.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "constant" + i,
+          constantDescriptor(this.constants.get(i)), null, null).visitEnd();
+    }
+    for (FieldBinding binding : this.bindings.values()) {
+      if (binding.valueDecoderField != null) {
+        classWriter.visitField(ACC_PRIVATE | ACC_FINAL, binding.valueDecoderField,
+            VALUE_DECODER_DESC, null, null).visitEnd();
+      }
+    }
+    generateStaticInitializer(classWriter);
+    generateConstructor(classWriter);
+    generateNewInstance(classWriter);
+    generateEncodeContent(classWriter);
+    generateDecodeField(classWriter);
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private void generateStaticInitializer(final ClassWriter classWriter) {
+    final MethodVisitor mv = classWriter.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+    mv.visitCode();
+    mv.visitLdcInsn(this.codecInternalName.replace('/', '.'));
+    mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(RuntimeDocumentCodecGenerator.class),
+        "getConstants", "(Ljava/lang/String;)[Ljava/lang/Object;", false);
+    mv.visitVarInsn(ASTORE, 0);
+    for (int i = 0; i < this.constants.size(); i++) {
+      final String descriptor = constantDescriptor(this.constants.get(i));
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitLdcInsn(i);
+      mv.visitInsn(AALOAD);
+      mv.visitTypeInsn(CHECKCAST, Type.getType(descriptor).getInternalName());
+      mv.visitFieldInsn(PUTSTATIC, this.codecInternalName, "constant" + i, descriptor);
+    }
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void generateConstructor(final ClassWriter classWriter) {
+    final MethodVisitor mv = classWriter.visitMethod(ACC_PUBLIC, "<init>",
+        "(" + Type.getDescriptor(CodecRegistry.class) + ")V", null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETSTATIC, this.codecInternalName, this.domainClassField, CLASS_DESC);
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitMethodInsn(INVOKESPECIAL, BASE_CLASS, "<init>",
+        "(" + CLASS_DESC + Type.getDescriptor(CodecRegistry.class) + ")V", false);
+    for (FieldBinding binding : this.bindings.values()) {
+      if (binding.valueDecoderField != null) {
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETSTATIC, this.codecInternalName, this.domainClassField, CLASS_DESC);
+        mv.visitLdcInsn(binding.javaFieldName);
+        mv.visitMethodInsn(INVOKESTATIC, BASE_CLASS, "getValueDecoder",
+            "(" + CLASS_DESC + "Ljava/lang/String;)" + VALUE_DECODER_DESC, false);
+        mv.visitFieldInsn(PUTFIELD, this.codecInternalName, binding.valueDecoderField,
+            VALUE_DECODER_DESC);
+      }
+    }
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void generateNewInstance(final ClassWriter classWriter) {
+    final MethodVisitor mv = classWriter.visitMethod(ACC_PROTECTED, "newInstance",
+        "()Ljava/lang/Object;", null, null);
+    mv.visitCode();
+    mv.visitFieldInsn(GETSTATIC, this.codecInternalName, this.constructorField,
+        METHOD_HANDLE_DESC);
+    mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact", "()Ljava/lang/Object;",
+        false);
+    mv.visitInsn(ARETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /**
+   * Generates the {@code encodeContent(BsonWriter, Object, EncoderContext)} method. Local
+   * variables: 0: this, 1: writer, 2: domain object, 3: encoder context, 4: document id.
+   */
+  private void generateEncodeContent(final ClassWriter classWriter) {
+    final MethodVisitor mv = classWriter.visitMethod(ACC_PROTECTED, "encodeContent",
+        "(" + WRITER_DESC + "Ljava/lang/Object;" + ENCODER_CONTEXT_DESC + ")V", null,
+        new String[] {"java/lang/Throwable"});
+    mv.visitCode();
+    final FieldBinding idBinding = this.bindings.get(EncoderUtils.MONGOBD_DOCUMENT_ID);
+    if (idBinding != null && this.domainClass.getAnnotation(Document.class) != null) {
+      if (idBinding.kind == FieldKind.OBJECT_ID) {
+        // generate the document id if it is missing
+        final Label writeId = new Label();
+        generateGetValue(mv, idBinding);
+        mv.visitTypeInsn(CHECKCAST, OBJECT_ID);
+        mv.visitVarInsn(ASTORE, 4);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitJumpInsn(IFNONNULL, writeId);
+        mv.visitTypeInsn(NEW, OBJECT_ID);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT_ID, "<init>", "()V", false);
+        mv.visitVarInsn(ASTORE, 4);
+        mv.visitFieldInsn(GETSTATIC, this.codecInternalName, idBinding.setterField,
+            METHOD_HANDLE_DESC);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact",
+            "(Ljava/lang/Object;Ljava/lang/Object;)V", false);
+        mv.visitLabel(writeId);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitLdcInsn(EncoderUtils.MONGOBD_DOCUMENT_ID);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitMethodInsn(INVOKEINTERFACE, WRITER, "writeObjectId",
+            "(Ljava/lang/String;L" + OBJECT_ID + ";)V", true);
+      } else {
+        generateEncodeField(mv, EncoderUtils.MONGOBD_DOCUMENT_ID, idBinding);
+      }
+    }
+    // write the technical/inner "_targetClass" (or "_t") attribute
+    mv.visitVarInsn(ALOAD, 1);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "getClass", "()Ljava/lang/Class;",
+        false);
+    mv.visitMethodInsn(INVOKESTATIC, BASE_CLASS, "writeTypeDiscriminator",
+        "(" + WRITER_DESC + CLASS_DESC + ")V", false);
+    for (Entry<String, FieldBinding> binding : this.bindings.entrySet()) {
+      if (!binding.getKey().equals(EncoderUtils.MONGOBD_DOCUMENT_ID)) {
+        generateEncodeField(mv, binding.getKey(), binding.getValue());
+      }
+    }
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /**
+   * Pushes the value of the given binding on the domain object (local variable 2) on the stack.
+   */
+  private void generateGetValue(final MethodVisitor mv, final FieldBinding binding) {
+    mv.visitFieldInsn(GETSTATIC, this.codecInternalName, binding.getterField, METHOD_HANDLE_DESC);
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact",
+        "(Ljava/lang/Object;)" + binding.erasedType.getDescriptor(), false);
+  }
+
+  private static String getWriteMethodName(final FieldBinding binding) {
+    if (binding.kind == FieldKind.EMBEDDED) {
+      return "writeEmbeddedDocument";
+    } else if (binding.embeddedMap) {
+      return "writeEmbeddedMap";
+    }
+    return "writeNamedValue";
+  }
+
+  private void generateEncodeField(final MethodVisitor mv, final String documentFieldName,
+      final FieldBinding binding) {
+    switch (binding.kind) {
+      case OTHER:
+        if (binding.compressed != null) {
+          mv.visitVarInsn(ALOAD, 1);
+          mv.visitLdcInsn(documentFieldName);
+          generateGetValue(mv, binding);
+          mv.visitLdcInsn(binding.compressed.threshold());
+          mv.visitLdcInsn(binding.compressed.codec());
+          mv.visitMethodInsn(INVOKESTATIC, BASE_CLASS, "writeCompressedValue",
+              "(" + WRITER_DESC + "Ljava/lang/String;Ljava/lang/Object;ILjava/lang/String;)V",
+              false);
+          break;
+        } else if (binding.binaryArray) {
+          mv.visitVarInsn(ALOAD, 1);
+          mv.visitLdcInsn(documentFieldName);
+          generateGetValue(mv, binding);
+          mv.visitMethodInsn(INVOKESTATIC, BASE_CLASS, "writeBinaryArray",
+              "(" + WRITER_DESC + "Ljava/lang/String;Ljava/lang/Object;)V", false);
+          break;
+        }
+        // fall through
+      case EMBEDDED:
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitLdcInsn(documentFieldName);
+        generateGetValue(mv, binding);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitMethodInsn(INVOKEVIRTUAL, BASE_CLASS, getWriteMethodName(binding),
+            "(" + WRITER_DESC + "Ljava/lang/String;Ljava/lang/Object;" + ENCODER_CONTEXT_DESC
+                + ")V",
+            false);
+        break;
+      default:
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitLdcInsn(documentFieldName);
+        generateGetValue(mv, binding);
+        final Type valueType;
+        switch (binding.kind) {
+          case FLOAT:
+            mv.visitInsn(F2D);
+            valueType = Type.DOUBLE_TYPE;
+            break;
+          case BYTE:
+          case SHORT:
+          case CHAR:
+            valueType = Type.INT_TYPE;
+            break;
+          case STRING:
+          case DATE:
+          case OBJECT_ID:
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(binding.fieldType));
+            valueType = Type.getType(binding.fieldType);
+            break;
+          default:
+            valueType = binding.erasedType;
+        }
+        mv.visitMethodInsn(INVOKESTATIC, BASE_CLASS, "writeNonDefaultValue",
+            "(" + WRITER_DESC + "Ljava/lang/String;" + valueType.getDescriptor() + ")V", false);
+    }
+  }
+
+  /**
+   * Generates the {@code decodeField(Object, String, BsonReader, DecoderContext)} method. Local
+   * variables: 0: this, 1: domain object, 2: document field name, 3: reader, 4: decoder context.
+   */
+  private void generateDecodeField(final ClassWriter classWriter) {
+    final MethodVisitor mv = classWriter.visitMethod(ACC_PROTECTED, "decodeField",
+        "(Ljava/lang/Object;Ljava/lang/String;" + READER_DESC + DECODER_CONTEXT_DESC + ")Z", null,
+        new String[] {"java/lang/Throwable"});
+    mv.visitCode();
+    // switch on the hash code of the document field name, then on the name itself
+    final Map<Integer, List<String>> namesByHashCode = new TreeMap<>();
+    for (String documentFieldName : this.bindings.keySet()) {
+      namesByHashCode.computeIfAbsent(documentFieldName.hashCode(), h -> new ArrayList<>())
+          .add(documentFieldName);
+    }
+    final Label unknownField = new Label();
+    final int[] hashCodes = namesByHashCode.keySet().stream().mapToInt(Integer::intValue).toArray();
+    final Label[] hashCodeLabels = new Label[hashCodes.length];
+    for (int i = 0; i < hashCodeLabels.length; i++) {
+      hashCodeLabels[i] = new Label();
+    }
+    mv.visitVarInsn(ALOAD, 2);
+    mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "hashCode", "()I", false);
+    mv.visitLookupSwitchInsn(unknownField, hashCodes, hashCodeLabels);
+    for (int i = 0; i < hashCodes.length; i++) {
+      mv.visitLabel(hashCodeLabels[i]);
+      for (String documentFieldName : namesByHashCode.get(hashCodes[i])) {
+        final Label nextName = new Label();
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitLdcInsn(documentFieldName);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/String", "equals", "(Ljava/lang/Object;)Z",
+            false);
+        mv.visitJumpInsn(IFEQ, nextName);
+        generateDecodeValue(mv, this.bindings.get(documentFieldName));
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IRETURN);
+        mv.visitLabel(nextName);
+      }
+      mv.visitJumpInsn(GOTO, unknownField);
+    }
+    mv.visitLabel(unknownField);
+    mv.visitInsn(ICONST_0);
+    mv.visitInsn(IRETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void generateDecodeValue(final MethodVisitor mv, final FieldBinding binding) {
+    final Label end = new Label();
+    if (binding.fieldType.isPrimitive()) {
+      // BSON null values leave primitive fields unchanged
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitMethodInsn(INVOKESTATIC, BASE_CLASS, "readNull", "(" + READER_DESC + ")Z", false);
+      mv.visitJumpInsn(IFNE, end);
+    }
+    mv.visitFieldInsn(GETSTATIC, this.codecInternalName, binding.setterField, METHOD_HANDLE_DESC);
+    mv.visitVarInsn(ALOAD, 1);
+    switch (binding.kind) {
+      case BOOLEAN:
+        generateRead(mv, "readBoolean", Type.BOOLEAN_TYPE);
+        break;
+      case BYTE:
+        generateRead(mv, "readByte", Type.BYTE_TYPE);
+        break;
+      case SHORT:
+        generateRead(mv, "readShort", Type.SHORT_TYPE);
+        break;
+      case CHAR:
+        generateRead(mv, "readChar", Type.CHAR_TYPE);
+        break;
+      case INT:
+        generateRead(mv, "readInt", Type.INT_TYPE);
+        break;
+      case LONG:
+        generateRead(mv, "readLong", Type.LONG_TYPE);
+        break;
+      case FLOAT:
+        generateRead(mv, "readDouble", Type.DOUBLE_TYPE);
+        mv.visitInsn(D2F);
+        break;
+      case DOUBLE:
+        generateRead(mv, "readDouble", Type.DOUBLE_TYPE);
+        break;
+      case STRING:
+        generateRead(mv, "readString", Type.getType(String.class));
+        break;
+      case DATE:
+        generateRead(mv, "readDate", Type.getType(Date.class));
+        break;
+      case OBJECT_ID:
+        generateRead(mv, "readObjectId", Type.getType(ObjectId.class));
+        break;
+      case EMBEDDED:
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitFieldInsn(GETSTATIC, this.codecInternalName, binding.typeField, CLASS_DESC);
+        mv.visitMethodInsn(INVOKEVIRTUAL, BASE_CLASS, "readEmbeddedDocument",
+            "(" + READER_DESC + DECODER_CONTEXT_DESC + CLASS_DESC + ")Ljava/lang/Object;", false);
+        break;
+      default:
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, this.codecInternalName, binding.valueDecoderField,
+            VALUE_DECODER_DESC);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitMethodInsn(INVOKEVIRTUAL, BASE_CLASS, "readValue",
+            "(" + VALUE_DECODER_DESC + READER_DESC + DECODER_CONTEXT_DESC + ")Ljava/lang/Object;",
+            false);
+    }
+    mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_HANDLE, "invokeExact",
+        "(Ljava/lang/Object;" + binding.erasedType.getDescriptor() + ")V", false);
+    mv.visitLabel(end);
+  }
+
+  private static void generateRead(final MethodVisitor mv, final String readMethodName,
+      final Type returnType) {
+    mv.visitVarInsn(ALOAD, 3);
+    mv.visitMethodInsn(INVOKESTATIC, BASE_CLASS, readMethodName,
+        "(" + READER_DESC + ")" + returnType.getDescriptor(), false);
+  }
+
+  /**
+   * A binding of the domain class, along with the names of the static fields holding its
+   * {@link MethodHandle}s and type in the generated class.
+   */
+  private static class FieldBinding {
+
+    /** The name of the field in the domain class. */
+    private final String javaFieldName;
+
+    private final Class<?> fieldType;
+
+    /** The field type as seen by the erased {@link MethodHandle}s. */
+    private final Type erasedType;
+
+    private final FieldKind kind;
+
+    private final String getterField;
+
+    private final String setterField;
+
+    private final String typeField;
+
+    /** The instance field holding the {@link ValueDecoder}, if needed. */
+    private String valueDecoderField;
+
+    /** Whether the field value is written as BSON binary data. */
+    private boolean binaryArray;
+
+    /** Whether the field value is a map written as an embedded document. */
+    private boolean embeddedMap;
+
+    /** The compression settings of the field value, if any. */
+    private Compressed compressed;
+
+    FieldBinding(final String javaFieldName, final Class<?> fieldType, final FieldKind kind,
+        final String getterField, final String setterField, final String typeField) {
+      this.javaFieldName = javaFieldName;
+      this.fieldType = fieldType;
+      this.erasedType = fieldType.isPrimitive() ? Type.getType(fieldType) : Type.getType(Object.class);
+      this.kind = kind;
+      this.getterField = getterField;
+      this.setterField = setterField;
+      this.typeField = typeField;
+    }
+  }
+
+  /**
+   * {@link ClassLoader} for a single generated class, which delegates to the domain class'
+   * {@link ClassLoader} and then to this library's {@link ClassLoader}.
+   */
+  static class CodecClassLoader extends ClassLoader {
+
+    CodecClassLoader(final ClassLoader parent) {
+      super(parent);
+    }
+
+    @Override
+    protected Class<?> loadClass(final String name, final boolean resolve)
+        throws ClassNotFoundException {
+      try {
+        return super.loadClass(name, resolve);
+      } catch (ClassNotFoundException e) {
+        return GeneratedDocumentCodec.class.getClassLoader().loadClass(name);
+      }
+    }
+
+    Class<?> define(final String name, final byte[] bytecode) {
+      return defineClass(name, bytecode, 0, bytecode.length);
+    }
+  }
+
+}
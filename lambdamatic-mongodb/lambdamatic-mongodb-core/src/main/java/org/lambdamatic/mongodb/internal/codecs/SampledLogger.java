@@ -0,0 +1,220 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.BsonBinaryWriter;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonWriter;
+import org.bson.ByteBuf;
+import org.bson.RawBsonDocument;
+import org.bson.io.OutputBuffer;
+import org.slf4j.Logger;
+
+/**
+ * Logs a sample of the queries and documents encoded by the codecs, along with the queries whose
+ * execution exceeded a given latency threshold. Values are always encoded once, straight into the
+ * target {@link BsonWriter}: the logged document is read back from that writer (its
+ * {@link BsonDocument} or the exact range of its output bytes where the document was written), and
+ * only when the value was actually selected for logging. Logged documents are truncated to a
+ * maximum length.
+ * <p>
+ * Every value is logged when the underlying {@link Logger} is at {@code DEBUG} level. At
+ * {@code INFO} level, only a sample of the values is logged, according to the
+ * {@link #SAMPLE_RATE_PROPERTY} system property. Slow queries are logged at {@code WARN} level.
+ * </p>
+ */
+public class SampledLogger {
+
+  /**
+   * Name of the system property that specifies the ratio (between {@code 0} and {@code 1}) of the
+   * encoded values to log at {@code INFO} level. Defaults to {@code 0}.
+   */
+  public static final String SAMPLE_RATE_PROPERTY = "org.lambdamatic.mongodb.logging.sampleRate";
+
+  /**
+   * Name of the system property that specifies the maximum number of characters of a logged
+   * document. Defaults to {@code 1024}.
+   */
+  public static final String MAX_LENGTH_PROPERTY = "org.lambdamatic.mongodb.logging.maxLength";
+
+  /**
+   * Name of the system property that specifies the execution time (in milliseconds) above which a
+   * query is logged. Defaults to {@code -1}, which disables the slow query log.
+   */
+  public static final String SLOW_QUERY_THRESHOLD_PROPERTY =
+      "org.lambdamatic.mongodb.logging.slowQueryThresholdMillis";
+
+  /** The underlying logger. */
+  private final Logger logger;
+
+  /** The ratio of the encoded values to log at {@code INFO} level. */
+  private final double sampleRate;
+
+  /** The maximum number of characters of a logged document. */
+  private final int maxLength;
+
+  /** The execution time above which a query is logged, or a negative value if disabled. */
+  private final long slowQueryThresholdNanos;
+
+  /**
+   * Constructor, using the settings from the system properties.
+   * 
+   * @param logger the underlying logger
+   */
+  public SampledLogger(final Logger logger) {
+    this(logger, Double.parseDouble(System.getProperty(SAMPLE_RATE_PROPERTY, "0")),
+        Integer.getInteger(MAX_LENGTH_PROPERTY, 1024),
+        Long.getLong(SLOW_QUERY_THRESHOLD_PROPERTY, -1L));
+  }
+
+  /**
+   * Constructor.
+   * 
+   * @param logger the underlying logger
+   * @param sampleRate the ratio (between {@code 0} and {@code 1}) of the encoded values to log at
+   *        {@code INFO} level
+   * @param maxLength the maximum number of characters of a logged document
+   * @param slowQueryThresholdMillis the execution time (in milliseconds) above which a query is
+   *        logged, or a negative value to disable the slow query log
+   */
+  public SampledLogger(final Logger logger, final double sampleRate, final int maxLength,
+      final long slowQueryThresholdMillis) {
+    this.logger = logger;
+    this.sampleRate = sampleRate;
+    this.maxLength = maxLength;
+    this.slowQueryThresholdNanos = slowQueryThresholdMillis < 0 ? -1
+        : TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMillis);
+  }
+
+  /**
+   * @return {@code true} if the value about to be encoded should be logged, {@code false}
+   *         otherwise.
+   */
+  public boolean isSampled() {
+    if (this.logger.isDebugEnabled()) {
+      return true;
+    }
+    return this.sampleRate > 0 && this.logger.isInfoEnabled()
+        && (this.sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < this.sampleRate);
+  }
+
+  /**
+   * Returns the position of the document that was just started in the given {@link BsonWriter}, to
+   * pass to {@link #logWrittenDocument(String, BsonWriter, int, Object)} once the document has been
+   * written. This method must be called right after {@link BsonWriter#writeStartDocument()}, when
+   * the only bytes written for the document are its (yet unknown) size, so that the returned
+   * position excludes the type and name of the element if the document is a field value or an
+   * array element.
+   * 
+   * @param writer the writer in which a document was just started
+   * @return the position of the document in the output of the given writer, or {@code -1} if it
+   *         cannot be determined
+   */
+  public static int getDocumentPosition(final BsonWriter writer) {
+    if (writer instanceof BsonBinaryWriter) {
+      return ((BsonBinaryWriter) writer).getBsonOutput().getPosition() - 4;
+    }
+    return -1;
+  }
+
+  /**
+   * Logs the document that was just written in the given {@link BsonWriter}.
+   * 
+   * @param message the message to log, with a single {@code {}} placeholder for the document
+   * @param writer the writer in which the document was written
+   * @param documentPosition the position returned by {@link #getDocumentPosition(BsonWriter)} when
+   *        the document was started
+   * @param fallback the value to log if the written document cannot be read back from the writer
+   */
+  public void logWrittenDocument(final String message, final BsonWriter writer,
+      final int documentPosition, final Object fallback) {
+    final BsonDocument writtenDocument = getWrittenDocument(writer, documentPosition);
+    log(message, writtenDocument != null ? writtenDocument.toJson() : String.valueOf(fallback));
+  }
+
+  /**
+   * Logs the given filter document if the query that started at the given time exceeded the slow
+   * query threshold.
+   * 
+   * @param operation the name of the operation
+   * @param startNanos the value of {@link System#nanoTime()} when the query started
+   * @param filterDocument the query filter, or {@code null} if there is none
+   */
+  public void logIfSlow(final String operation, final long startNanos,
+      final BsonDocument filterDocument) {
+    if (this.slowQueryThresholdNanos < 0) {
+      return;
+    }
+    final long elapsedNanos = System.nanoTime() - startNanos;
+    if (elapsedNanos >= this.slowQueryThresholdNanos && this.logger.isWarnEnabled()) {
+      this.logger.warn("Slow {} ({} ms): {}", operation,
+          TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+          filterDocument != null ? truncate(filterDocument.toJson()) : "{}");
+    }
+  }
+
+  private void log(final String message, final String content) {
+    if (this.logger.isDebugEnabled()) {
+      this.logger.debug(message, truncate(content));
+    } else {
+      this.logger.info(message, truncate(content));
+    }
+  }
+
+  /**
+   * @param content the content to log
+   * @return the given content, truncated to the maximum length
+   */
+  String truncate(final String content) {
+    if (this.maxLength < 0 || content.length() <= this.maxLength) {
+      return content;
+    }
+    return content.substring(0, this.maxLength) + "... (" + content.length() + " chars)";
+  }
+
+  /**
+   * Reads back the document that was written in the given {@link BsonWriter}. Only the bytes of
+   * the document are copied from the output of a {@link BsonBinaryWriter}, since this output may
+   * contain many other documents (eg: when inserting documents in bulk).
+   * 
+   * @param writer the writer in which the document was written
+   * @param documentPosition the position of the document in the output of the writer
+   * @return the written document, or {@code null} if it cannot be read back
+   */
+  static BsonDocument getWrittenDocument(final BsonWriter writer, final int documentPosition) {
+    if (writer instanceof BsonDocumentWriter) {
+      return ((BsonDocumentWriter) writer).getDocument();
+    } else if (writer instanceof BsonBinaryWriter && documentPosition >= 0
+        && ((BsonBinaryWriter) writer).getBsonOutput() instanceof OutputBuffer) {
+      final OutputBuffer output = (OutputBuffer) ((BsonBinaryWriter) writer).getBsonOutput();
+      final byte[] documentBytes = new byte[output.getPosition() - documentPosition];
+      // copy the [documentPosition, position) range, which may span several buffers
+      final List<ByteBuf> buffers = output.getByteBuffers();
+      int bufferStart = 0;
+      for (ByteBuf buffer : buffers) {
+        final int bufferEnd = bufferStart + buffer.limit();
+        final int from = Math.max(bufferStart, documentPosition);
+        final int to = Math.min(bufferEnd, output.getPosition());
+        if (from < to) {
+          buffer.get(from - bufferStart, documentBytes, from - documentPosition, to - from);
+        }
+        bufferStart = bufferEnd;
+        buffer.release();
+      }
+      return new RawBsonDocument(documentBytes);
+    }
+    return null;
+  }
+
+}
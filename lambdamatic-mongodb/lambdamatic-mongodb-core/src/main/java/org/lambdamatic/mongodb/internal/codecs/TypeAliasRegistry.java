@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.bson.BsonWriter;
+import org.lambdamatic.mongodb.annotations.TypeAlias;
+import org.lambdamatic.mongodb.exceptions.ConversionException;
+
+/**
+ * Registry of the type discriminators written in the BSON documents to retrieve the domain class
+ * of each document (and embedded document) when decoding. This class implements the singleton
+ * pattern for easy access in any Codec or Encoder classes.
+ * <p>
+ * By default, the fully qualified name of the domain class is written in the
+ * {@link EncoderUtils#TARGET_CLASS_FIELD} field. In {@link DiscriminatorMode#ALIAS} mode, the
+ * short alias of the domain class (see {@link TypeAlias} and {@link #register(Class, String)}) is
+ * written in the {@link EncoderUtils#TYPE_ALIAS_FIELD} field instead. In
+ * {@link DiscriminatorMode#NONE} mode, no discriminator is written at all, which is only suitable
+ * for non-polymorphic domain models. Documents written in {@link DiscriminatorMode#CLASS_NAME} or
+ * {@link DiscriminatorMode#ALIAS} mode can be decoded in either of these modes, which allows for
+ * migrating existing collections. In {@link DiscriminatorMode#NONE} mode, documents are always
+ * decoded into the expected class, and existing discriminators are not even looked-up.
+ * </p>
+ * <p>
+ * Discriminators are resolved through in-memory tables, so no {@link Class#forName(String)} lookup
+ * occurs per decoded document.
+ * </p>
+ */
+public class TypeAliasRegistry {
+
+  /**
+   * Name of the system property that specifies the initial {@link DiscriminatorMode} (eg:
+   * {@code alias}). Defaults to {@link DiscriminatorMode#CLASS_NAME}.
+   */
+  public static final String DISCRIMINATOR_MODE_PROPERTY =
+      "org.lambdamatic.mongodb.typeDiscriminator";
+
+  /**
+   * The way the domain class of a document is written.
+   */
+  public enum DiscriminatorMode {
+    /** The fully qualified name of the class is written. */
+    CLASS_NAME,
+    /** The alias of the class is written if it has one, its fully qualified name otherwise. */
+    ALIAS,
+    /** No discriminator is written. */
+    NONE;
+  }
+
+  private static final TypeAliasRegistry instance = new TypeAliasRegistry();
+
+  /** The current mode. */
+  private volatile DiscriminatorMode mode;
+
+  /** The domain classes, indexed by alias. */
+  private final Map<String, Class<?>> classesByAlias = new ConcurrentHashMap<>();
+
+  /** The aliases (empty if the class has none), indexed by domain class. */
+  private final Map<Class<?>, Optional<String>> aliasesByClass = new ConcurrentHashMap<>();
+
+  /** The domain classes, indexed by their fully qualified name. */
+  private final Map<String, Class<?>> classesByName = new ConcurrentHashMap<>();
+
+  /**
+   * Access to the singleton instance.
+   *
+   * @return the singleton instance of the {@link TypeAliasRegistry}.
+   */
+  public static TypeAliasRegistry getInstance() {
+    return instance;
+  }
+
+  /**
+   * Singleton constructor.
+   */
+  private TypeAliasRegistry() {
+    final String modeProperty = System.getProperty(DISCRIMINATOR_MODE_PROPERTY);
+    this.mode = modeProperty != null ? DiscriminatorMode.valueOf(modeProperty.toUpperCase())
+        : DiscriminatorMode.CLASS_NAME;
+  }
+
+  /**
+   * @return the current {@link DiscriminatorMode}.
+   */
+  public DiscriminatorMode getMode() {
+    return this.mode;
+  }
+
+  /**
+   * Sets the {@link DiscriminatorMode} to use when encoding documents.
+   *
+   * @param mode the mode to use
+   */
+  public void setMode(final DiscriminatorMode mode) {
+    this.mode = mode;
+  }
+
+  /**
+   * Registers the given alias for the given domain class. Domain classes annotated with
+   * {@link TypeAlias} are registered automatically the first time they are encoded or decoded, but
+   * subclasses that may be decoded from a field declared with their parent type should be
+   * registered explicitly.
+   *
+   * @param domainClass the domain class
+   * @param alias the alias of the domain class
+   * @throws ConversionException if the alias is already registered for another class, or if
+   *         another alias is already registered for the given class
+   */
+  public synchronized void register(final Class<?> domainClass, final String alias) {
+    if (alias == null || alias.isEmpty()) {
+      throw new ConversionException(
+          "Unable to register an empty alias for class '" + domainClass.getName() + "'");
+    }
+    final Class<?> registeredClass = this.classesByAlias.get(alias);
+    if (registeredClass != null && registeredClass != domainClass) {
+      throw new ConversionException("Unable to register alias '" + alias + "' for class '"
+          + domainClass.getName() + "': already registered for '" + registeredClass.getName()
+          + "'");
+    }
+    final Optional<String> registeredAlias = this.aliasesByClass.get(domainClass);
+    if (registeredAlias != null && registeredAlias.isPresent()
+        && !registeredAlias.get().equals(alias)) {
+      throw new ConversionException("Unable to register alias '" + alias + "' for class '"
+          + domainClass.getName() + "': already registered as '" + registeredAlias.get() + "'");
+    }
+    this.classesByAlias.put(alias, domainClass);
+    this.aliasesByClass.put(domainClass, Optional.of(alias));
+  }
+
+  /**
+   * Registers the given domain class with the alias specified in its {@link TypeAlias} annotation.
+   *
+   * @param domainClass the domain class
+   * @throws ConversionException if the class is not annotated with {@link TypeAlias}, or if its
+   *         alias is already registered for another class
+   */
+  public void register(final Class<?> domainClass) {
+    final TypeAlias typeAlias = domainClass.getAnnotation(TypeAlias.class);
+    if (typeAlias == null) {
+      throw new ConversionException(
+          "Class '" + domainClass.getName() + "' is not annotated with @TypeAlias");
+    }
+    register(domainClass, typeAlias.value());
+  }
+
+  /**
+   * @param domainClass the domain class
+   * @return the alias of the given domain class, or {@code null} if it has none.
+   */
+  String getAlias(final Class<?> domainClass) {
+    Optional<String> alias = this.aliasesByClass.get(domainClass);
+    if (alias == null) {
+      final TypeAlias typeAlias = domainClass.getAnnotation(TypeAlias.class);
+      if (typeAlias != null) {
+        register(domainClass, typeAlias.value());
+      } else {
+        this.aliasesByClass.putIfAbsent(domainClass, Optional.empty());
+      }
+      alias = this.aliasesByClass.get(domainClass);
+    }
+    return alias.orElse(null);
+  }
+
+  /**
+   * Writes the discriminator of the given domain class in the given {@link BsonWriter}, according
+   * to the current {@link DiscriminatorMode}.
+   *
+   * @param writer the {@link BsonWriter} to write into
+   * @param javaClass the class of the domain object being encoded (or its {@link LazyDocument}
+   *        subclass)
+   */
+  void writeDiscriminator(final BsonWriter writer, final Class<?> javaClass) {
+    final Class<?> domainClass = LazyDocumentState.getDomainClass(javaClass);
+    switch (this.mode) {
+      case NONE:
+        return;
+      case ALIAS:
+        final String alias = getAlias(domainClass);
+        if (alias != null) {
+          writer.writeString(EncoderUtils.TYPE_ALIAS_FIELD, alias);
+          return;
+        }
+        // fall back to the class name
+      default:
+        writer.writeString(EncoderUtils.TARGET_CLASS_FIELD, domainClass.getName());
+    }
+  }
+
+  /**
+   * Resolves the domain class associated with the given alias.
+   *
+   * @param alias the alias read in the document
+   * @param expectedClass the expected domain class, or {@code null} if unknown
+   * @return the domain class
+   * @throws ConversionException if no domain class is registered with the given alias
+   */
+  Class<?> resolveAlias(final String alias, final Class<?> expectedClass) {
+    final Class<?> domainClass = this.classesByAlias.get(alias);
+    if (domainClass != null) {
+      return domainClass;
+    } else if (expectedClass != null && alias.equals(getAlias(expectedClass))) {
+      return expectedClass;
+    }
+    throw new ConversionException("Unknown type alias '" + alias + "'");
+  }
+
+  /**
+   * Resolves the domain class with the given fully qualified name.
+   *
+   * @param className the fully qualified name of the domain class
+   * @return the domain class
+   * @throws ConversionException if the class could not be found
+   */
+  Class<?> resolveClassName(final String className) {
+    return this.classesByName.computeIfAbsent(className, name -> {
+      try {
+        return Class.forName(name);
+      } catch (ClassNotFoundException e) {
+        throw new ConversionException("Failed to create a new instance of '" + name + "'", e);
+      }
+    });
+  }
+
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Codec for standalone values of a given Java type (eg, the values returned by a
+ * {@code distinct} command), which reads and writes them exactly like the fields of a domain
+ * class of that type: with the registered converters, enum names, embedded documents, etc.
+ *
+ * @param <T> the Java type of the values
+ */
+public class ValueCodec<T> implements Codec<T> {
+
+  /** the Java type of the values. */
+  private final Class<T> valueType;
+
+  /** the {@link ValueDecoder} for the values. */
+  private final ValueDecoder valueDecoder;
+
+  /** the {@link CodecRegistry} to use for the embedded documents. */
+  private final CodecRegistry codecRegistry;
+
+  /**
+   * Constructor.
+   *
+   * @param valueType the Java type of the values
+   * @param codecRegistry the {@link CodecRegistry} to use for the embedded documents
+   */
+  public ValueCodec(final Class<T> valueType, final CodecRegistry codecRegistry) {
+    this.valueType = valueType;
+    this.valueDecoder = DocumentDecodingPlan.getValueDecoder(valueType);
+    this.codecRegistry = codecRegistry;
+  }
+
+  @Override
+  public void encode(final BsonWriter writer, final T value,
+      final EncoderContext encoderContext) {
+    EncoderUtils.writeValue(writer, value, encoderContext, this.codecRegistry);
+  }
+
+  @Override
+  public Class<T> getEncoderClass() {
+    return this.valueType;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public T decode(final BsonReader reader, final DecoderContext decoderContext) {
+    return (T) this.valueDecoder.decode(reader, decoderContext, this.codecRegistry);
+  }
+
+}
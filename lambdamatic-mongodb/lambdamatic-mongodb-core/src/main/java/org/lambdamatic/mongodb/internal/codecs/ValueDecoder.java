@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.internal.codecs;
+
+import org.bson.BsonReader;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Reads a value from a {@link BsonReader}.
+ */
+@FunctionalInterface
+public interface ValueDecoder {
+
+  /**
+   * Reads the value at the current position of the given {@link BsonReader}.
+   *
+   * @param reader the reader, positioned on the value to read
+   * @param decoderContext the decoder context
+   * @param codecRegistry the codec registry to use when decoding embedded documents
+   * @return the value, or {@code null} if the BSON value was {@code null}
+   */
+  Object decode(BsonReader reader, DecoderContext decoderContext, CodecRegistry codecRegistry);
+
+}
@@ -30,6 +30,7 @@ import org.lambdamatic.mongodb.apt.testutil.FieldAssertion;
 import org.lambdamatic.mongodb.apt.testutil.WithDomainClass;
 import org.lambdamatic.mongodb.internal.LambdamaticMongoCollectionImpl;
 import org.lambdamatic.mongodb.internal.codecs.EncoderUtils;
+import org.lambdamatic.mongodb.internal.codecs.GeneratedDocumentCodec;
 import org.lambdamatic.mongodb.internal.configuration.MongoClientConfiguration;
 import org.lambdamatic.mongodb.metadata.LocationField;
 import org.lambdamatic.mongodb.metadata.ProjectionArray;
@@ -456,6 +457,17 @@ public class LambdamaticAnnotationProcessorTest {
 
   }
 
+  @Test
+  @WithDomainClass(Foo.class)
+  @WithDomainClass(Bar.class)
+  public void shouldProcessDomainClassesAndGenerateCodecs() throws ClassNotFoundException {
+    // verification
+    final Class<?> fooCodecClass = Class.forName("com.sample.FooCodec");
+    ClassAssertion.assertThat(fooCodecClass).isExtending(GeneratedDocumentCodec.class, Foo.class);
+    final Class<?> barCodecClass = Class.forName("com.sample.BarCodec");
+    ClassAssertion.assertThat(barCodecClass).isExtending(GeneratedDocumentCodec.class, Bar.class);
+  }
+
   @Test(expected = ClassNotFoundException.class)
   @WithDomainClass(Bar.class)
   public void shouldProcessSingleDomainClassAndNotGenerateCollection() throws URISyntaxException,
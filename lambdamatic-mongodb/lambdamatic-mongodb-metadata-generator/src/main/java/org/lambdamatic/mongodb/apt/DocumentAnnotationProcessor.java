@@ -16,13 +16,14 @@ import javax.lang.model.SourceVersion;
 import javax.lang.model.element.TypeElement;
 
 import org.lambdamatic.mongodb.annotations.BaseDocument;
+import org.lambdamatic.mongodb.apt.template.DocumentCodecTemplateContext;
 import org.lambdamatic.mongodb.apt.template.MetadataTemplateContext;
 import org.lambdamatic.mongodb.apt.template.MongoCollectionProducerTemplateContext;
 import org.lambdamatic.mongodb.apt.template.MongoCollectionTemplateContext;
 
 /**
  * Processor for classes annotated with {@code Document} or {@link BaseDocument}. Generates their
- * associated metadata Java classes in the target folder given in the constructor.
+ * associated metadata Java classes and {@code Codec} in the target folder given in the constructor.
  * 
  * @author Xavier Coulon
  *
@@ -41,6 +42,9 @@ public class DocumentAnnotationProcessor extends BaseAnnotationProcessor {
         MetadataTemplateContext.createUpdateMetadataTemplateContext(domainType, this));
     generateSourceCode(new MongoCollectionTemplateContext(domainType, this));
     generateSourceCode(new MongoCollectionProducerTemplateContext(domainType, this));
+    if (DocumentCodecTemplateContext.isSupported(domainType)) {
+      generateSourceCode(new DocumentCodecTemplateContext(domainType, this));
+    }
   }
 
 }
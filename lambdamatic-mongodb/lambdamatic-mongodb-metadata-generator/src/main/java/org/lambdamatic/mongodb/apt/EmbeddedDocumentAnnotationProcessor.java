@@ -15,6 +15,7 @@ import javax.annotation.processing.SupportedSourceVersion;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.TypeElement;
 
+import org.lambdamatic.mongodb.apt.template.DocumentCodecTemplateContext;
 import org.lambdamatic.mongodb.apt.template.MetadataTemplateContext;
 import org.lambdamatic.mongodb.metadata.ProjectionMetadata;
 import org.lambdamatic.mongodb.metadata.QueryMetadata;
@@ -23,7 +24,7 @@ import org.lambdamatic.mongodb.metadata.UpdateMetadata;
 /**
  * Processor for classes annotated with {@code EmbeddedDocument}. Generates their associated
  * {@link QueryMetadata}, {@link ProjectionMetadata} and {@link UpdateMetadata} implementation
- * classes in the target folder given in the constructor.
+ * classes along with their {@code Codec} in the target folder given in the constructor.
  * 
  * @author Xavier Coulon
  *
@@ -36,7 +37,8 @@ public class EmbeddedDocumentAnnotationProcessor extends BaseAnnotationProcessor
 
   /**
    * Generates the {@code QueryMetadata}, {@link ProjectionMetadata} and {@link UpdateMetadata}
-   * implementation sources for the annotated class currently being processed.
+   * implementation sources and the {@code Codec} for the annotated class currently being
+   * processed.
    * 
    * @param domainType all properties to use when running the engine to generate the source code.
    * 
@@ -50,6 +52,9 @@ public class EmbeddedDocumentAnnotationProcessor extends BaseAnnotationProcessor
         MetadataTemplateContext.createProjectionMetadataTemplateContext(domainType, this));
     generateSourceCode(
         MetadataTemplateContext.createUpdateMetadataTemplateContext(domainType, this));
+    if (DocumentCodecTemplateContext.isSupported(domainType)) {
+      generateSourceCode(new DocumentCodecTemplateContext(domainType, this));
+    }
   }
 
 }
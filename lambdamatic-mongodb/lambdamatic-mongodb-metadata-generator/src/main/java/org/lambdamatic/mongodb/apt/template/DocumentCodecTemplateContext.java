@@ -0,0 +1,485 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Red Hat. All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which accompanies this
+ * distribution, and is available at http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors: Red Hat - Initial Contribution
+ *******************************************************************************/
+
+package org.lambdamatic.mongodb.apt.template;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.lambdamatic.mongodb.annotations.BinaryArray;
+import org.lambdamatic.mongodb.annotations.Compressed;
+import org.lambdamatic.mongodb.annotations.Document;
+import org.lambdamatic.mongodb.annotations.DocumentField;
+import org.lambdamatic.mongodb.annotations.DocumentId;
+import org.lambdamatic.mongodb.annotations.EmbeddedDocument;
+import org.lambdamatic.mongodb.annotations.EmbeddedMap;
+import org.lambdamatic.mongodb.annotations.TransientField;
+import org.lambdamatic.mongodb.apt.BaseAnnotationProcessor;
+
+/**
+ * Template Context builder for the generated {@code Codec} classes of the domain types annotated
+ * with {@link Document} or {@link EmbeddedDocument}.
+ */
+public class DocumentCodecTemplateContext extends BaseTemplateContext {
+
+  /**
+   * {@link Function} to generate the simple class name for the {@code Codec} implementation of a
+   * given {@link TypeElement}.
+   */
+  public static final Function<DeclaredType, String> elementToCodecSimpleClassName =
+      t -> ClassUtils.getShortClassName(t.toString()) + "Codec";
+
+  /** Name of the document field that holds the document id. */
+  private static final String DOCUMENT_ID_FIELD = "_id";
+
+  /** Name of the variable holding the domain object in the generated code. */
+  private static final String DOMAIN_OBJECT = "domainObject";
+
+  /** the {@link CodecField} for the id of the domain type, if any. */
+  private final CodecField idField;
+
+  /** the {@link CodecField}s for the other fields of the domain type. */
+  private final List<CodecField> fields;
+
+  /** whether the {@code _id} field should be written (only for {@link Document} types). */
+  private final boolean writeIdField;
+
+  /**
+   * Checks if a {@code Codec} can be generated for the given domain type: the type must be a
+   * top-level, non-abstract class with a non-private default constructor and no final instance
+   * field.
+   *
+   * @param domainElement the domain type
+   * @return <code>true</code> if a {@code Codec} can be generated, <code>false</code> otherwise
+   */
+  public static boolean isSupported(final TypeElement domainElement) {
+    if (domainElement.getKind() != ElementKind.CLASS
+        || domainElement.getNestingKind() != NestingKind.TOP_LEVEL
+        || domainElement.getModifiers().contains(Modifier.ABSTRACT)
+        || !domainElement.getTypeParameters().isEmpty()) {
+      return false;
+    }
+    final boolean hasDefaultConstructor = domainElement.getEnclosedElements().stream()
+        .filter(e -> e.getKind() == ElementKind.CONSTRUCTOR)
+        .map(e -> (ExecutableElement) e)
+        .anyMatch(c -> c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE));
+    return hasDefaultConstructor && getBoundFields(domainElement).stream()
+        .noneMatch(f -> f.getModifiers().contains(Modifier.FINAL));
+  }
+
+  private static List<VariableElement> getBoundFields(final TypeElement domainElement) {
+    return domainElement.getEnclosedElements().stream()
+        .filter(e -> e.getKind() == ElementKind.FIELD)
+        .filter(e -> !e.getModifiers().contains(Modifier.STATIC))
+        .filter(e -> e.getAnnotation(TransientField.class) == null)
+        .map(e -> (VariableElement) e).collect(Collectors.toList());
+  }
+
+  /**
+   * Full constructor
+   *
+   * @param domainElement the {@link TypeElement} to work on.
+   * @param annotationProcessor the annotation processor used to generate the {@code Codec}
+   *        implementation
+   */
+  public DocumentCodecTemplateContext(final TypeElement domainElement,
+      final BaseAnnotationProcessor annotationProcessor) {
+    super((DeclaredType) domainElement.asType(), annotationProcessor);
+    final Types typeUtils = annotationProcessor.getProcessingEnvironment().getTypeUtils();
+    final List<CodecField> codecFields = getBoundFields(domainElement).stream()
+        .map(f -> new CodecField(f, typeUtils)).collect(Collectors.toList());
+    final Optional<CodecField> documentIdField = codecFields.stream()
+        .filter(f -> f.getDocumentFieldName().equals(DOCUMENT_ID_FIELD)).findFirst();
+    this.idField = documentIdField.orElse(null);
+    // same order as in the DocumentCodec
+    this.fields = codecFields.stream()
+        .filter(f -> !f.getDocumentFieldName().equals(DOCUMENT_ID_FIELD))
+        .sorted(Comparator.comparing(CodecField::getDocumentFieldName))
+        .collect(Collectors.toList());
+    this.writeIdField = domainElement.getAnnotation(Document.class) != null;
+  }
+
+  @Override
+  public String getFullyQualifiedClassName() {
+    return getPackageName() + "." + getSimpleClassName();
+  }
+
+  @Override
+  public String getSimpleClassName() {
+    return elementToCodecSimpleClassName.apply(this.domainType);
+  }
+
+  @Override
+  public String getTemplateFileName() {
+    return "document_codec_template.mustache";
+  }
+
+  /**
+   * @return the {@link CodecField} for the id of the domain type, or <code>null</code> if the
+   *         {@code _id} field should not be written.
+   */
+  public CodecField getIdField() {
+    return this.writeIdField ? this.idField : null;
+  }
+
+  /**
+   * @return all {@link CodecField}s to decode, including the id field.
+   */
+  public List<CodecField> getDecodedFields() {
+    final List<CodecField> decodedFields = new ArrayList<>();
+    if (this.idField != null) {
+      decodedFields.add(this.idField);
+    }
+    decodedFields.addAll(this.fields);
+    return decodedFields;
+  }
+
+  /**
+   * @return all {@link CodecField}s to encode after the {@code _id} and the type discriminator
+   *         fields.
+   */
+  public List<CodecField> getEncodedFields() {
+    return this.fields;
+  }
+
+  /**
+   * @return the {@link CodecField}s which are accessed via {@code MethodHandle}s.
+   */
+  public List<CodecField> getPrivateFields() {
+    return getDecodedFields().stream().filter(CodecField::isPrivateField)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * @return the {@link CodecField}s which are decoded with a {@code ValueDecoder}.
+   */
+  public List<CodecField> getValueDecoderFields() {
+    return getDecodedFields().stream().filter(f -> f.kind == FieldKind.OTHER)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * The way the value of a field is written and read by the generated {@code Codec}.
+   */
+  enum FieldKind {
+    BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, STRING, DATE, OBJECT_ID, EMBEDDED, OTHER;
+  }
+
+  /**
+   * A domain type field as seen by the generated {@code Codec}.
+   */
+  public static class CodecField {
+
+    /** the name of the Java field. */
+    private final String javaFieldName;
+
+    /** the name of the document field. */
+    private final String documentFieldName;
+
+    /** the source code declaration of the Java field type. */
+    private final String javaFieldType;
+
+    /** the source code declaration of the erasure of the Java field type. */
+    private final String erasedJavaFieldType;
+
+    /** whether the field is private and must be accessed via {@code MethodHandle}s. */
+    private final boolean privateField;
+
+    /** the way the field value is written and read. */
+    private final FieldKind kind;
+
+    /** whether the field value is written as BSON binary data. */
+    private final boolean binaryArray;
+
+    /** the compression settings of the field value, if any. */
+    private final Compressed compressed;
+
+    /** whether the field value is a map written as an embedded document. */
+    private final boolean embeddedMap;
+
+    CodecField(final VariableElement field, final Types typeUtils) {
+      this.javaFieldName = field.getSimpleName().toString();
+      if (field.getAnnotation(DocumentId.class) != null) {
+        this.documentFieldName = DOCUMENT_ID_FIELD;
+      } else {
+        this.documentFieldName = ElementUtils.getAnnotationValue(
+            field.getAnnotation(DocumentField.class), a -> a.name(), this.javaFieldName);
+      }
+      final TypeMirror fieldType = field.asType();
+      this.javaFieldType = fieldType.toString();
+      this.erasedJavaFieldType = typeUtils.erasure(fieldType).toString();
+      this.privateField = field.getModifiers().contains(Modifier.PRIVATE);
+      this.compressed = isCompressible(fieldType) ? field.getAnnotation(Compressed.class) : null;
+      this.kind = this.compressed != null ? FieldKind.OTHER : getKind(fieldType);
+      this.binaryArray =
+          field.getAnnotation(BinaryArray.class) != null && isNumericPrimitiveArray(fieldType);
+      this.embeddedMap = field.getAnnotation(EmbeddedMap.class) != null
+          && fieldType.getKind() == TypeKind.DECLARED
+          && ElementUtils.isAssignable((DeclaredType) fieldType, Map.class)
+          && !((DeclaredType) fieldType).getTypeArguments().isEmpty();
+    }
+
+    private static boolean isCompressible(final TypeMirror fieldType) {
+      return fieldType.toString().equals(String.class.getName())
+          || (fieldType.getKind() == TypeKind.ARRAY
+              && ((ArrayType) fieldType).getComponentType().getKind() == TypeKind.BYTE);
+    }
+
+    private static boolean isNumericPrimitiveArray(final TypeMirror fieldType) {
+      if (fieldType.getKind() != TypeKind.ARRAY) {
+        return false;
+      }
+      switch (((ArrayType) fieldType).getComponentType().getKind()) {
+        case SHORT:
+        case CHAR:
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    private static FieldKind getKind(final TypeMirror fieldType) {
+      if (fieldType.getKind().isPrimitive()) {
+        return FieldKind.valueOf(fieldType.getKind().name());
+      } else if (fieldType.getKind() == TypeKind.DECLARED) {
+        final Element fieldTypeElement = ((DeclaredType) fieldType).asElement();
+        switch (fieldTypeElement.toString()) {
+          case "java.lang.String":
+            return FieldKind.STRING;
+          case "java.util.Date":
+            return FieldKind.DATE;
+          case "org.bson.types.ObjectId":
+            return FieldKind.OBJECT_ID;
+          default:
+            if (fieldTypeElement.getAnnotation(EmbeddedDocument.class) != null) {
+              return FieldKind.EMBEDDED;
+            }
+        }
+      }
+      return FieldKind.OTHER;
+    }
+
+    /**
+     * @return the name of the Java field.
+     */
+    public String getJavaFieldName() {
+      return this.javaFieldName;
+    }
+
+    /**
+     * @return the name of the document field.
+     */
+    public String getDocumentFieldName() {
+      return this.documentFieldName;
+    }
+
+    /**
+     * @return the source code declaration of the Java field type.
+     */
+    public String getJavaFieldType() {
+      return this.javaFieldType;
+    }
+
+    /**
+     * @return <code>true</code> if the field is private and must be accessed via
+     *         {@code MethodHandle}s.
+     */
+    public boolean isPrivateField() {
+      return this.privateField;
+    }
+
+    /**
+     * @return <code>true</code> if the field is of type {@code ObjectId}.
+     */
+    public boolean isObjectId() {
+      return this.kind == FieldKind.OBJECT_ID;
+    }
+
+    /**
+     * @return the name of the static {@code MethodHandle} field to read this field.
+     */
+    public String getGetterName() {
+      return this.javaFieldName + "Getter";
+    }
+
+    /**
+     * @return the name of the static {@code MethodHandle} field to write this field.
+     */
+    public String getSetterName() {
+      return this.javaFieldName + "Setter";
+    }
+
+    /**
+     * @return the name of the {@code ValueDecoder} field to read this field.
+     */
+    public String getValueDecoderName() {
+      return this.javaFieldName + "Decoder";
+    }
+
+    /**
+     * @return the class literal of the erasure of the Java field type.
+     */
+    public String getClassLiteral() {
+      return this.erasedJavaFieldType + ".class";
+    }
+
+    /**
+     * @return the expression that reads the field value on the domain object.
+     */
+    public String getValueExpression() {
+      if (this.privateField) {
+        return "((" + this.javaFieldType + ") " + getGetterName() + ".invokeExact(" + DOMAIN_OBJECT
+            + "))";
+      }
+      return DOMAIN_OBJECT + "." + this.javaFieldName;
+    }
+
+    /**
+     * @param valueExpression the expression of the value to assign
+     * @return the statement that writes the given value in the field of the domain object.
+     */
+    private String getAssignment(final String valueExpression) {
+      if (this.privateField) {
+        final String cast = "(" + this.javaFieldType + ") ";
+        return getSetterName() + ".invokeExact(" + DOMAIN_OBJECT + ", "
+            + (valueExpression.startsWith(cast) ? "" : cast) + valueExpression + ");";
+      }
+      return DOMAIN_OBJECT + "." + this.javaFieldName + " = " + valueExpression + ";";
+    }
+
+    /**
+     * @return the statement(s) that write the field value in the {@code BsonWriter}, following the
+     *         same rules as the {@code DocumentCodec}: {@code null} values and primitive default
+     *         values are skipped.
+     */
+    public String getEncodeStatement() {
+      final String name = '"' + this.documentFieldName + '"';
+      switch (this.kind) {
+        case BOOLEAN:
+          return "if (" + getValueExpression() + ") {\n      writer.writeBoolean(" + name
+              + ", true);\n    }";
+        case BYTE:
+        case SHORT:
+        case CHAR:
+        case INT:
+          return writeIfNotDefault("writeInt32", name, "0");
+        case LONG:
+          return writeIfNotDefault("writeInt64", name, "0");
+        case FLOAT:
+        case DOUBLE:
+          return writeIfNotDefault("writeDouble", name, "0");
+        case STRING:
+          return writeIfNotDefault("writeString", name, "null");
+        case DATE:
+          return "{\n      final java.util.Date value = " + getValueExpression()
+              + ";\n      if (value != null) {\n        writer.writeDateTime(" + name
+              + ", value.getTime());\n      }\n    }";
+        case OBJECT_ID:
+          return writeIfNotDefault("writeObjectId", name, "null");
+        case EMBEDDED:
+          return "writeEmbeddedDocument(writer, " + name + ", " + getValueExpression()
+              + ", encoderContext);";
+        default:
+          if (this.compressed != null) {
+            return "writeCompressedValue(writer, " + name + ", " + getValueExpression() + ", "
+                + this.compressed.threshold() + ", \""
+                + this.compressed.codec().replace("\\", "\\\\").replace("\"", "\\\"") + "\");";
+          } else if (this.binaryArray) {
+            return "writeBinaryArray(writer, " + name + ", " + getValueExpression() + ");";
+          } else if (this.embeddedMap) {
+            return "writeEmbeddedMap(writer, " + name + ", " + getValueExpression()
+                + ", encoderContext);";
+          }
+          return "writeNamedValue(writer, " + name + ", " + getValueExpression()
+              + ", encoderContext);";
+      }
+    }
+
+    private String writeIfNotDefault(final String writeMethod, final String name,
+        final String defaultValue) {
+      return "{\n      final " + this.javaFieldType + " value = " + getValueExpression()
+          + ";\n      if (value != " + defaultValue + ") {\n        writer." + writeMethod + "("
+          + name + ", value);\n      }\n    }";
+    }
+
+    /**
+     * @return the statement that assigns the {@code documentId} local variable to the field of the
+     *         domain object.
+     */
+    public String getGeneratedIdAssignment() {
+      return getAssignment("documentId");
+    }
+
+    /**
+     * @return the statement(s) that read the field value from the {@code BsonReader}. BSON
+     *         {@code null} values leave primitive fields unchanged.
+     */
+    public String getDecodeStatement() {
+      switch (this.kind) {
+        case BOOLEAN:
+          return readPrimitive("readBoolean(reader)");
+        case BYTE:
+          return readPrimitive("readByte(reader)");
+        case SHORT:
+          return readPrimitive("readShort(reader)");
+        case CHAR:
+          return readPrimitive("readChar(reader)");
+        case INT:
+          return readPrimitive("readInt(reader)");
+        case LONG:
+          return readPrimitive("readLong(reader)");
+        case FLOAT:
+          return readPrimitive("(float) readDouble(reader)");
+        case DOUBLE:
+          return readPrimitive("readDouble(reader)");
+        case STRING:
+          return getAssignment("readString(reader)");
+        case DATE:
+          return getAssignment("readDate(reader)");
+        case OBJECT_ID:
+          return getAssignment("readObjectId(reader)");
+        case EMBEDDED:
+          return getAssignment("readEmbeddedDocument(reader, decoderContext, "
+              + getClassLiteral() + ")");
+        default:
+          return getAssignment("(" + this.javaFieldType + ") readValue(this."
+              + getValueDecoderName() + ", reader, decoderContext)");
+      }
+    }
+
+    private String readPrimitive(final String readExpression) {
+      return "if (!readNull(reader)) {\n          " + getAssignment(readExpression)
+          + "\n        }";
+    }
+
+  }
+
+}
@@ -73,8 +73,7 @@ public class ElementUtils {
     final boolean implementation = element.getInterfaces().stream()
         .filter(interfaceMirror -> interfaceMirror.getKind() == TypeKind.DECLARED)
         .map(interfaceMirror -> (DeclaredType) interfaceMirror)
-        .map(declaredInterface -> declaredInterface.asElement())
-        .anyMatch(declaredElement -> declaredElement.toString().equals(targetType.getName()));
+        .anyMatch(declaredInterface -> isAssignable(declaredInterface, targetType));
     if (implementation) {
       return true;
     }
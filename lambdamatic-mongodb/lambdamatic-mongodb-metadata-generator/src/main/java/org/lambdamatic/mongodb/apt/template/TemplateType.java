@@ -216,8 +216,9 @@ public class TemplateType extends TemplateElement {
       } else if (ElementUtils.isAssignable(declaredType, Collection.class)) {
         // collections (list/set)
         return collectionToTemplateType.apply(declaredType.getTypeArguments().get(0), processingEnv);
-      } else if (ElementUtils.isAssignable(declaredType, Map.class)) {
-        // map
+      } else if (ElementUtils.isAssignable(declaredType, Map.class)
+          && !declaredType.getTypeArguments().isEmpty()) {
+        // map (but not types such as BsonDocument, which are not parameterized)
         return mapToTemplateType.apply(declaredType, processingEnv);
       } else {
         return declaredTypeToTemplateType.apply(declaredType);